@@ -0,0 +1,344 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * A compact, length-prefixed binary encoding of a ticket, used instead of the text format when
+ *  {@link Configuration#isBinaryFormatEnabled()} is set.
+ * <p>
+ * Every string is stored as its length followed by its UTF-8 bytes, so nothing a ticket contains can
+ *  be mistaken for the end of a field (a comment may safely contain the line <code>CommentEnd</code>).
+ *  Lengths and counts are unsigned LEB128 varints, dates are milliseconds since the epoch, and enums
+ *  are stored by name so that reordering them can't change what a ticket means.
+ * <p>
+ * The layout of version 1 is:
+ * <pre>
+ * MAGIC VERSION
+ * [TITLE] [AUTHOR] [DATE] [STATUS] [PRIORITY] [TYPE]
+ * [DETAILS]
+ * [COMMENT COUNT] ([AUTHOR] [DATE] [COMMENT])...
+ * </pre>
+ * The header fields come first so that only they need to be decoded to list tickets.
+ * <p>
+ * Binary tickets are stored in the same <code>.ticket</code> files as text ones, and the readers in
+ *  {@link FileUtil}, {@link LazyTicket} and {@link TicketObjectReader} tell them apart with
+ *  {@link #isBinary(byte[], int)}, so both formats can be mixed freely.
+ *
+ * @author Tyler Robbins
+ * @version 1.0
+ * @since 1.2
+ */
+public final class BinaryTicketFormat {
+    /**
+     * The bytes every binary ticket starts with. The first byte can never start a UTF-8 line, so a
+     *  text ticket can never be mistaken for a binary one.
+     */
+    public static final byte[] MAGIC = { (byte)0x89, 'T', 'K', 'T' };
+
+    /**
+     * The version of the binary format written by this program.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The most bytes a single string may take up, so that a corrupt length can't exhaust memory.
+     */
+    private static final int MAX_STRING_LENGTH = 64 * 1024 * 1024;
+
+    /**
+     * Dummy constructor to prevent outside construction.
+     */
+    private BinaryTicketFormat() { }
+
+    /**
+     * Checks if the start of a ticket file is in the binary format.
+     * @param start The first bytes of the file.
+     * @param length How many bytes of {@code start} were read.
+     * @return true if the file starts with {@link #MAGIC}, false otherwise.
+     */
+    public static boolean isBinary(byte[] start, int length) {
+        return length >= MAGIC.length && Arrays.equals(Arrays.copyOf(start, MAGIC.length), MAGIC);
+    }
+
+    /**
+     * Checks if the next bytes of a stream are a binary ticket, without consuming them.
+     * @param in The stream to check, which must support {@link InputStream#mark(int)}.
+     * @return true if the stream continues with {@link #MAGIC}, false otherwise.
+     * @throws IOException If the stream could not be read.
+     */
+    public static boolean isBinary(InputStream in) throws IOException {
+        byte[] start = new byte[MAGIC.length];
+        int length = 0;
+
+        in.mark(MAGIC.length);
+        for(int read; length < start.length && (read = in.read(start, length, start.length - length)) != -1; length += read);
+        in.reset();
+
+        return isBinary(start, length);
+    }
+
+    /**
+     * Encodes a ticket.
+     * <p>
+     * Comments that were appended in their own files are left out, just like in the text format.
+     * @param ticket The ticket to encode.
+     * @return The encoded ticket.
+     */
+    public static byte[] encode(Ticket ticket) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+
+        out.write(MAGIC, 0, MAGIC.length);
+        out.write(VERSION);
+
+        writeString(out, ticket.getTitle());
+        writeString(out, ticket.getAuthor());
+        writeVarLong(out, ticket.getDate().getTime());
+        writeString(out, ticket.getStatus().name());
+        writeString(out, ticket.getPriority().name());
+        writeString(out, ticket.getType().name());
+
+        writeString(out, ticket.getDetails());
+
+        int count = 0;
+        for(TicketComment tc : ticket.getComments()) {
+            if(tc.getStoredAs() == null) count++;
+        }
+
+        writeVarLong(out, count);
+        for(TicketComment tc : ticket.getComments()) {
+            if(tc.getStoredAs() != null) continue;
+
+            writeString(out, tc.getAuthor());
+            writeVarLong(out, tc.getDate().getTime());
+            writeString(out, tc.getComment());
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes an encoded ticket to a stream.
+     * @param ticket The ticket to write.
+     * @param out The stream to write to.
+     * @throws IOException If the ticket could not be written.
+     */
+    public static void write(Ticket ticket, OutputStream out) throws IOException {
+        out.write(encode(ticket));
+    }
+
+    /**
+     * Decodes a whole ticket. The stream is closed once the ticket has been read.
+     * @param stream The stream to read the ticket from, positioned at the start of {@link #MAGIC}.
+     * @param md5ID The MD5 ID the ticket is stored under, which the contents are checked against.
+     * @return A Ticket object if the ticket could be read, null otherwise.
+     */
+    public static Ticket read(InputStream stream, String md5ID) {
+        return read(stream, md5ID, false);
+    }
+
+    /**
+     * Decodes the header fields of a ticket (the title, author, date, status, priority and type),
+     *  without decoding the details or comments. The stream is closed afterwards.
+     * @param stream The stream to read the ticket from, positioned at the start of {@link #MAGIC}.
+     * @param md5ID The MD5 ID the ticket is stored under.
+     * @return A Ticket object with only its header fields set, or null if they could not be read.
+     */
+    public static Ticket readHeader(InputStream stream, String md5ID) {
+        return read(stream, md5ID, true);
+    }
+
+    /**
+     * Counts the comments stored in a ticket, skipping over everything else without decoding it. The
+     *  stream is closed afterwards.
+     * <p>
+     * Comments that were appended in their own files are not counted.
+     * @param stream The stream to read the ticket from, positioned at the start of {@link #MAGIC}.
+     * @param md5ID The MD5 ID the ticket is stored under.
+     * @return The number of comments, or -1 if the ticket could not be read.
+     */
+    public static int readCommentCount(InputStream stream, String md5ID) {
+        try(DataInputStream in = new DataInputStream(stream)) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if(!isBinary(magic, magic.length)) {
+                malformed(md5ID, "binary ticket header");
+                return -1;
+            }
+
+            int version = in.readUnsignedByte();
+            if(version != VERSION) {
+                malformed(md5ID, "binary format version " + VERSION + ", not " + version);
+                return -1;
+            }
+
+            // The title and author, then the date, then the status, priority, type and details
+            skipString(in);
+            skipString(in);
+            readVarLong(in);
+            for(int i = 0; i < 4; i++) skipString(in);
+
+            long count = readVarLong(in);
+            return count > Integer.MAX_VALUE ? -1 : (int)count;
+        } catch(EOFException e) {
+            malformed(md5ID, "more data, but the ticket ended");
+        } catch(IOException e) {
+            System.err.println("Malformed ticket " + md5ID + ": " + e.getMessage());
+        }
+
+        return -1;
+    }
+
+    /**
+     * Decodes a ticket.
+     * @param stream The stream to read the ticket from, which is closed afterwards.
+     * @param md5ID The MD5 ID the ticket is stored under.
+     * @param headerOnly Should only the header fields be read.
+     * @return A Ticket object if the ticket could be read, null otherwise.
+     */
+    private static Ticket read(InputStream stream, String md5ID, boolean headerOnly) {
+        try(DataInputStream in = new DataInputStream(stream)) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if(!isBinary(magic, magic.length)) return malformed(md5ID, "binary ticket header");
+
+            int version = in.readUnsignedByte();
+            if(version != VERSION) return malformed(md5ID, "binary format version " + VERSION + ", not " + version);
+
+            Ticket ticket = new Ticket();
+
+            ticket.setTitle(readString(in));
+            ticket.setAuthor(readString(in));
+            ticket.setDate(new Date(readVarLong(in)));
+
+            try {
+                ticket.setStatus(Ticket.TicketStatus.valueOf(readString(in)));
+                ticket.setPriority(Ticket.TicketPriority.valueOf(readString(in)));
+                ticket.setType(Ticket.TicketType.valueOf(readString(in)));
+            } catch(IllegalArgumentException e) {
+                return malformed(md5ID, "status, priority and type names");
+            }
+
+            if(headerOnly) return ticket;
+
+            ticket.setDetails(readString(in));
+
+            long count = readVarLong(in);
+            for(long i = 0; i < count; i++) {
+                String author = readString(in);
+                Date date = new Date(readVarLong(in));
+
+                ticket.addComment(new TicketComment(author, date, readString(in)));
+            }
+
+            // Sanity check
+            if(!ticket.getMD5ID().equals(md5ID)) {
+                System.err.println("Ticket MD5 ID does not match MD5 ID for contents.");
+                System.err.println("Ticket was either corrupted or incorrectly modified.");
+                return null;
+            }
+
+            return ticket;
+        } catch(EOFException e) {
+            return malformed(md5ID, "more data, but the ticket ended");
+        } catch(IOException e) {
+            System.err.println("Malformed ticket " + md5ID + ": " + e.getMessage());
+        }
+
+        return null;
+    }
+
+    /**
+     * Prints why a binary ticket is malformed.
+     * @param md5ID The MD5 ID of the malformed ticket.
+     * @param expected What was expected to be read.
+     * @return null, so that callers can return this directly.
+     */
+    private static Ticket malformed(String md5ID, String expected) {
+        System.err.println("Malformed ticket " + md5ID + ": expected " + expected + ".");
+        return null;
+    }
+
+    /**
+     * Writes a string as its varint length followed by its UTF-8 bytes.
+     * @param out The stream to write to.
+     * @param str The string to write.
+     */
+    private static void writeString(ByteArrayOutputStream out, String str) {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+
+        writeVarLong(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(ByteArrayOutputStream, String)}.
+     * @param in The stream to read from.
+     * @return The string that was read.
+     * @throws IOException If the stream ended first, or the length is too large.
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        long length = readVarLong(in);
+        if(length > MAX_STRING_LENGTH) throw new IOException("string of " + length + " bytes is too long");
+
+        byte[] bytes = new byte[(int)length];
+        in.readFully(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Skips over a string written by {@link #writeString(ByteArrayOutputStream, String)}.
+     * @param in The stream to read from.
+     * @throws IOException If the stream ended first, or the length is too large.
+     */
+    private static void skipString(DataInputStream in) throws IOException {
+        long length = readVarLong(in);
+        if(length > MAX_STRING_LENGTH) throw new IOException("string of " + length + " bytes is too long");
+
+        for(long skipped = 0; skipped < length; ) {
+            int n = in.skipBytes((int)(length - skipped));
+            if(n <= 0) throw new EOFException();
+
+            skipped += n;
+        }
+    }
+
+    /**
+     * Writes a non-negative number as an unsigned LEB128 varint, 7 bits per byte.
+     * @param out The stream to write to.
+     * @param value The number to write.
+     */
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while((value & ~0x7FL) != 0) {
+            out.write((int)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+
+        out.write((int)value);
+    }
+
+    /**
+     * Reads an unsigned LEB128 varint.
+     * @param in The stream to read from.
+     * @return The number that was read.
+     * @throws IOException If the stream ended first, or the varint is longer than a long.
+     */
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+
+        for(int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long)(b & 0x7F) << shift;
+
+            if((b & 0x80) == 0) return value;
+        }
+
+        throw new IOException("varint is too long");
+    }
+}
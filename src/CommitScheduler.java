@@ -0,0 +1,133 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Buffers ticket files that need to be committed, and commits them together as a single commit.
+ * <p>
+ * Pending files are flushed when {@link Configuration#getCommitBatchSize()} files are waiting, when
+ *  {@link Configuration#getCommitWindow()} milliseconds have passed since the first one was
+ *  scheduled, or when the program exits. A commit window of 0 commits every file immediately.
+ * <p>
+ * When the fsync policy is {@link Configuration.FsyncPolicy#COMMIT}, every flush first forces the
+ *  tickets written since the last one to disk and renames them into place, so they are only read
+ *  from their files once they are about to be committed.
+ * <p>
+ * If background syncing is enabled, then every flush also asks the {@link SyncScheduler} to sync.
+ *
+ * @author Tyler Robbins
+ * @version 1.0
+ * @since 1.2
+ */
+public class CommitScheduler {
+    /**
+     * The instance of this singleton.
+     */
+    private static CommitScheduler instance = null;
+
+    /**
+     * All files waiting to be committed, in the order they were scheduled.
+     */
+    private Set<File> pending;
+
+    /**
+     * The timer used to flush pending files once the commit window is over.
+     */
+    private Timer timer;
+
+    /**
+     * The currently scheduled flush, or null if none is scheduled.
+     */
+    private TimerTask flushTask;
+
+    /**
+     * Constructs a new CommitScheduler and registers a shutdown hook to flush anything still pending
+     *  when the program exits.
+     */
+    private CommitScheduler() {
+        pending = new LinkedHashSet<File>();
+        timer = new Timer("CommitScheduler", true);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if(!flush()) System.err.println("Failed to commit pending tickets before exiting.");
+        }));
+    }
+
+    /**
+     * Gets the instance for this singleton.
+     * @return The instance for this singleton.
+     */
+    public static synchronized CommitScheduler getInstance() {
+        if(instance == null) {
+            instance = new CommitScheduler();
+        }
+
+        return instance;
+    }
+
+    /**
+     * Schedules a file to be committed.
+     * @param file The file to commit.
+     * @throws IllegalArgumentException If the file is null, such as from a write that failed.
+     */
+    public synchronized void schedule(File file) {
+        // A null would only fail later inside flush(), far from whatever failed to produce the file
+        if(file == null) throw new IllegalArgumentException("File to commit must not be null.");
+
+        pending.add(file);
+
+        if(Configuration.getCommitWindow() <= 0 || pending.size() >= Configuration.getCommitBatchSize()) {
+            flush();
+        } else if(flushTask == null) {
+            flushTask = new TimerTask() {
+                public void run() {
+                    if(!flush()) System.err.println("Failed to commit pending tickets.");
+                }
+            };
+
+            timer.schedule(flushTask, Configuration.getCommitWindow());
+        }
+    }
+
+    /**
+     * Commits all pending files as a single commit.
+     * <p>
+     * If the commit fails, then the files are kept pending so that the next flush will try again.
+     * @return true if there was nothing to commit or the commit was successful, false otherwise.
+     */
+    public synchronized boolean flush() {
+        if(flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+
+        if(pending.isEmpty()) return true;
+
+        List<File> files = new ArrayList<File>(pending);
+
+        // Put every file being committed in place, where nothing can still lose it in a crash
+        if(!FileUtil.syncWrites()) return false;
+
+        if(!GitUtil.commit(files)) return false;
+
+        pending.clear();
+
+        if(Configuration.isBackgroundSyncEnabled()) {
+            SyncScheduler.getInstance().requestSync(GitUtil.getLocalTicketsID());
+        }
+
+        return true;
+    }
+
+    /**
+     * Gets the number of files waiting to be committed.
+     * @return The number of files waiting to be committed.
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+}
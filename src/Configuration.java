@@ -6,6 +6,34 @@
  * @since 0.8
  */
 public final class Configuration {
+    /**
+     * When written tickets are forced to disk.
+     * <p>
+     * Tickets are always written to a temporary file that is then renamed into place, so they are never
+     *  seen half written while the program is running. Whether that still holds after a crash depends
+     *  on the policy.
+     */
+    public enum FsyncPolicy {
+        /**
+         * Every write forces its contents to disk, renames them into place, and forces the rename to
+         *  disk before it returns.
+         */
+        ALWAYS,
+        
+        /**
+         * Writes are kept in their temporary files until the next group commit, which forces them all to
+         *  disk, renames them into place, and then syncs each directory they were renamed into once.
+         *  Until then the old version of a ticket is the one that is read.
+         */
+        COMMIT,
+        
+        /**
+         * Writes are renamed into place straight away and never forced to disk, so a crash can lose
+         *  them, or leave a ticket empty on file systems that can write a rename before the contents.
+         */
+        NEVER;
+    }
+    
     /**
      * Dummy constructor to remove the possibility of constructing this object
      */
@@ -26,6 +54,61 @@ public final class Configuration {
      */
     private static String singleDir = null;
     
+    /**
+     * Should commits be written directly into the repository instead of calling git.
+     */
+    private static boolean nativeGitEnabled = true;
+    
+    /**
+     * Should tickets be read from the Git object database instead of the checked out files.
+     */
+    private static boolean objectReadEnabled = false;
+    
+    /**
+     * How long, in milliseconds, a scheduled commit may wait to be grouped with others.
+     */
+    private static long commitWindow = 2000;
+    
+    /**
+     * How many files may be waiting to be committed before they are committed regardless of the window.
+     */
+    private static int commitBatchSize = 100;
+    
+    /**
+     * How long, in milliseconds, a git command that talks to the remote may run for.
+     */
+    private static long networkTimeout = 10 * 60 * 1000;
+    
+    /**
+     * Should commits be synced with the remote in the background.
+     */
+    private static boolean backgroundSyncEnabled = false;
+    
+    /**
+     * Should the wall time and exit code of every external command be printed.
+     */
+    private static boolean verbose = false;
+    
+    /**
+     * How many threads ticket files are parsed on.
+     */
+    private static int loadThreads = Runtime.getRuntime().availableProcessors();
+    
+    /**
+     * The shortest that a ticket ID is shortened to when listing tickets.
+     */
+    private static int minIdLength = 7;
+    
+    /**
+     * When written tickets are forced to disk.
+     */
+    private static FsyncPolicy fsyncPolicy = FsyncPolicy.COMMIT;
+    
+    /**
+     * Should tickets be written in the binary format instead of the text format.
+     */
+    private static boolean binaryFormatEnabled = false;
+    
     /**
      * The version of this program
      */
@@ -47,6 +130,183 @@ public final class Configuration {
         Configuration.guiEnabled = guiEnabled;
     }
     
+    /**
+     * Gets if commits should be written directly into the repository instead of calling git.
+     * @return If native Git is enabled.
+     */
+    public static boolean isNativeGitEnabled() {
+        return nativeGitEnabled;
+    }
+    
+    /**
+     * Sets if commits should be written directly into the repository instead of calling git.
+     * @param nativeGitEnabled The value to set {@code Configuration.nativeGitEnabled} to.
+     */
+    public static void setIsNativeGitEnabled(boolean nativeGitEnabled) {
+        Configuration.nativeGitEnabled = nativeGitEnabled;
+    }
+    
+    /**
+     * Gets if tickets should be read from the Git object database instead of the checked out files.
+     * @return If reading from the object database is enabled.
+     */
+    public static boolean isObjectReadEnabled() {
+        return objectReadEnabled;
+    }
+    
+    /**
+     * Sets if tickets should be read from the Git object database instead of the checked out files.
+     * @param objectReadEnabled The value to set {@code Configuration.objectReadEnabled} to.
+     */
+    public static void setIsObjectReadEnabled(boolean objectReadEnabled) {
+        Configuration.objectReadEnabled = objectReadEnabled;
+    }
+    
+    /**
+     * Gets how long, in milliseconds, a scheduled commit may wait to be grouped with others.
+     * @return The commit window in milliseconds. 0 means every commit is made immediately.
+     */
+    public static long getCommitWindow() {
+        return commitWindow;
+    }
+    
+    /**
+     * Sets how long, in milliseconds, a scheduled commit may wait to be grouped with others.
+     * @param commitWindow The value to set {@code Configuration.commitWindow} to.
+     */
+    public static void setCommitWindow(long commitWindow) {
+        Configuration.commitWindow = commitWindow;
+    }
+    
+    /**
+     * Gets how many files may be waiting to be committed before they are committed regardless of the window.
+     * @return The maximum number of files in a single group commit.
+     */
+    public static int getCommitBatchSize() {
+        return commitBatchSize;
+    }
+    
+    /**
+     * Sets how many files may be waiting to be committed before they are committed regardless of the window.
+     * @param commitBatchSize The value to set {@code Configuration.commitBatchSize} to.
+     */
+    public static void setCommitBatchSize(int commitBatchSize) {
+        Configuration.commitBatchSize = commitBatchSize;
+    }
+    
+    /**
+     * Gets how many threads ticket files are parsed on.
+     * @return The number of threads ticket files are parsed on.
+     */
+    public static int getLoadThreads() {
+        return loadThreads;
+    }
+    
+    /**
+     * Sets how many threads ticket files are parsed on.
+     * @param loadThreads The value to set {@code Configuration.loadThreads} to.
+     */
+    public static void setLoadThreads(int loadThreads) {
+        Configuration.loadThreads = loadThreads;
+    }
+    
+    /**
+     * Gets the shortest that a ticket ID is shortened to when listing tickets.
+     * @return The shortest length of a listed ticket ID.
+     */
+    public static int getMinIdLength() {
+        return minIdLength;
+    }
+    
+    /**
+     * Sets the shortest that a ticket ID is shortened to when listing tickets.
+     * @param minIdLength The value to set {@code Configuration.minIdLength} to.
+     */
+    public static void setMinIdLength(int minIdLength) {
+        Configuration.minIdLength = minIdLength;
+    }
+    
+    /**
+     * Gets when written tickets are forced to disk.
+     * @return The fsync policy.
+     */
+    public static FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+    
+    /**
+     * Sets when written tickets are forced to disk.
+     * @param fsyncPolicy The value to set {@code Configuration.fsyncPolicy} to.
+     */
+    public static void setFsyncPolicy(FsyncPolicy fsyncPolicy) {
+        Configuration.fsyncPolicy = fsyncPolicy;
+    }
+    
+    /**
+     * Gets if tickets should be written in the binary format instead of the text format.
+     * @return If the binary format is enabled.
+     * @see BinaryTicketFormat
+     */
+    public static boolean isBinaryFormatEnabled() {
+        return binaryFormatEnabled;
+    }
+    
+    /**
+     * Sets if tickets should be written in the binary format instead of the text format.
+     * @param binaryFormatEnabled The value to set {@code Configuration.binaryFormatEnabled} to.
+     */
+    public static void setIsBinaryFormatEnabled(boolean binaryFormatEnabled) {
+        Configuration.binaryFormatEnabled = binaryFormatEnabled;
+    }
+    
+    /**
+     * Gets how long, in milliseconds, a git command that talks to the remote may run for.
+     * @return The network timeout in milliseconds.
+     */
+    public static long getNetworkTimeout() {
+        return networkTimeout;
+    }
+    
+    /**
+     * Sets how long, in milliseconds, a git command that talks to the remote may run for.
+     * @param networkTimeout The value to set {@code Configuration.networkTimeout} to.
+     */
+    public static void setNetworkTimeout(long networkTimeout) {
+        Configuration.networkTimeout = networkTimeout;
+    }
+    
+    /**
+     * Gets if commits should be synced with the remote in the background.
+     * @return If background syncing is enabled.
+     */
+    public static boolean isBackgroundSyncEnabled() {
+        return backgroundSyncEnabled;
+    }
+    
+    /**
+     * Sets if commits should be synced with the remote in the background.
+     * @param backgroundSyncEnabled The value to set {@code Configuration.backgroundSyncEnabled} to.
+     */
+    public static void setIsBackgroundSyncEnabled(boolean backgroundSyncEnabled) {
+        Configuration.backgroundSyncEnabled = backgroundSyncEnabled;
+    }
+    
+    /**
+     * Gets if the wall time and exit code of every external command should be printed.
+     * @return If verbose output is enabled.
+     */
+    public static boolean isVerbose() {
+        return verbose;
+    }
+    
+    /**
+     * Sets if the wall time and exit code of every external command should be printed.
+     * @param verbose The value to set {@code Configuration.verbose} to.
+     */
+    public static void setIsVerbose(boolean verbose) {
+        Configuration.verbose = verbose;
+    }
+    
     /**
      * Gets the working directory (where the original project repository is).
      * @return The working directory.
@@ -1,19 +1,51 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 import javax.swing.JOptionPane;
 
@@ -25,6 +57,65 @@ import javax.swing.JOptionPane;
  * @since 0.5
  */
 public class FileUtil {
+    /**
+     * The format of every date written to a ticket.
+     */
+    public static final String DATE_PATTERN = "yyyy/MM/dd HH:mm:ss";
+    
+    /**
+     * A formatter for {@link #DATE_PATTERN} for each thread, since SimpleDateFormat isn't thread safe
+     *  and is expensive to create for every date.
+     */
+    private static final ThreadLocal<DateFormat> DATE_FORMAT = ThreadLocal.withInitial(() -> new SimpleDateFormat(DATE_PATTERN));
+    
+    /**
+     * The charset text tickets were written in before they were always written as UTF-8.
+     */
+    private static final Charset LEGACY_CHARSET = Charset.defaultCharset();
+    
+    /**
+     * The suffix of the directory next to a ticket file that comments appended to the ticket are
+     *  stored in, one file per comment.
+     */
+    public static final String COMMENTS_SUFFIX = ".comments";
+    
+    /**
+     * The format of the date at the start of each appended comment's filename, which keeps them in
+     *  order when sorted by name.
+     */
+    private static final String COMMENT_NAME_PATTERN = "yyyyMMddHHmmssSSS";
+    
+    /**
+     * How few ticket files a single task reads before it stops splitting its share in half.
+     */
+    private static final int LOAD_SPLIT_THRESHOLD = 64;
+    
+    /**
+     * The pool ticket files are read on, or null if it hasn't been created yet.
+     */
+    private static ForkJoinPool loadPool = null;
+    
+    /**
+     * Every write waiting for the next group commit to force it to disk and rename it into place,
+     *  by the file it will be renamed to, in the order they were written.
+     */
+    private static final Map<Path, PendingWrite> pendingWrites = new LinkedHashMap<Path, PendingWrite>();
+    
+    /**
+     * How many characters of a ticket's MD5 ID name the shard directory it is stored in.
+     */
+    public static final int SHARD_LENGTH = 2;
+    
+    /**
+     * The directory whose layout was last checked by {@link #isSharded(File)}, or null if none has been.
+     */
+    private static File shardedDir = null;
+    
+    /**
+     * Was the layout of {@link #shardedDir} sharded.
+     */
+    private static boolean sharded = false;
+    
     /**
      * Dummy constructor to prevent outside construction.
      */
@@ -194,7 +285,8 @@ public class FileUtil {
     /**
      * Cleans up unnecessary files in the given directory
      * <p>
-     * In the given directory, all files except the .git/ folder and all .ticket files are removed.
+     * In the given directory, all files except the .git/ folder, all .ticket files and their appended
+     *  comments are removed.
      * 
      * @param directory the directory to clean uneccessary files from. 
      */
@@ -202,7 +294,13 @@ public class FileUtil {
         File[] fileList = directory.listFiles();
         
         for(File f : fileList) {
-            if(f.getName().equals(".git") || f.getName().endsWith(".ticket")) continue;
+            if(f.getName().equals(".git") || f.getName().endsWith(".ticket") || f.getName().endsWith(COMMENTS_SUFFIX)) continue;
+            
+            // Shard directories hold tickets, so only what is inside of them can be unnecessary
+            if(isShardDir(f.getName()) && f.isDirectory()) {
+                cleanUnecessaryFiles(f);
+                continue;
+            }
             
             if(f.isDirectory())
                 cleanUnecessaryFiles(f);
@@ -224,7 +322,7 @@ public class FileUtil {
             File[] fileList = getProjectTicketDir().listFiles();
             
             for(File f : fileList) {
-                if(f.getName().equals(".git") || f.getName().endsWith(".ticket")) continue;
+                if(f.getName().equals(".git") || f.getName().endsWith(".ticket") || f.getName().endsWith(COMMENTS_SUFFIX)) continue;
                 f.delete();
             }
         } catch(IOException e) {
@@ -234,15 +332,30 @@ public class FileUtil {
     
     /**
      * Writes a Ticket object to a file.
+     * <p>
+     * Comments that were appended with {@link #appendComment(File, TicketComment)} are left in their
+     *  own files, and are not written to the ticket file.
+     * <p>
+     * The ticket is written with {@link #writeAtomically(File, Consumer, Runnable)}, so a crash leaves
+     *  either the old or the new ticket, and never part of one.
+     * <p>
+     * If {@link Configuration#isBinaryFormatEnabled()} is set, then the ticket is written in the
+     *  {@link BinaryTicketFormat} instead of the text format.
      * @param ticket The ticket to write.
-     * @return A File object representing the file the ticket was written to if the ticket was written
-     *          to successfully, null otherwise.
-     * @throws IOException From File.createNewFile()
+     * @return A File object representing the file the ticket was written to, which is never null.
+     * @throws IOException If the ticket could not be written, or it is a {@link LazyTicket} whose
+     *  details and comments could not be read.
      */
     public static File writeTicket(Ticket ticket) throws IOException {
-        File file = new File(getProjectTicketDir(), ticket.getMD5ID() + ".ticket");
+        // Read the rest of a lazy ticket first, so that a ticket which can't be read is never half written
+        try {
+            ticket.getDetails();
+        } catch(UncheckedIOException e) {
+            throw e.getCause();
+        }
         
-        if(!file.exists()) file.createNewFile();
+        File file = getTicketFile(ticket.getMD5ID());
+        Files.createDirectories(file.getParentFile().toPath());
         
         /*
          * [TITLE]
@@ -265,269 +378,1317 @@ public class FileUtil {
          * ...
          * CommentsEnd
          */
-        if(file.exists()) {
-            PrintStream ps = new PrintStream(file);
-            
-            ps.println(ticket.getShortMD5ID());
-            
-            ps.println(ticket.getTitle());
-            
-            ps.println("DetailsStart");
-            ps.println(ticket.getDetails());
-            ps.println("DetailsEnd");
+        String md5ID = ticket.getMD5ID();
+        
+        // The indexes only learn about the ticket once it can actually be read from its file
+        Runnable renamed = () -> {
+            TicketIdTrie.ticketWritten(md5ID);
+            TicketSearchIndex.ticketChanged(md5ID);
+        };
+        
+        if(Configuration.isBinaryFormatEnabled()) {
+            byte[] encoded = BinaryTicketFormat.encode(ticket);
+            writeAtomically(file, ps -> ps.write(encoded, 0, encoded.length), renamed);
+        } else {
+            writeAtomically(file, ps -> writeText(ticket, ps), renamed);
+        }
+        
+        return file;
+    }
+    
+    /**
+     * Writes a ticket in the text format.
+     * <p>
+     * Comments that were appended in their own files are left out.
+     * @param ticket The ticket to write.
+     * @param ps The stream to write the ticket to.
+     */
+    public static void writeText(Ticket ticket, PrintStream ps) {
+        ps.println(ticket.getShortMD5ID());
+        
+        ps.println(ticket.getTitle());
+        
+        ps.println("DetailsStart");
+        ps.println(ticket.getDetails());
+        ps.println("DetailsEnd");
+        
+        ps.println(ticket.getAuthor());
+        ps.println(formatDate(ticket.getDate()));
+        
+        ps.println(ticket.getStatus().ordinal());
+        ps.println(ticket.getPriority().ordinal());
+        ps.println(ticket.getType().ordinal());
+        
+        ps.println("CommentsStart");
+        for(TicketComment tc : ticket.getComments()) {
+            if(tc.getStoredAs() != null) continue;
             
-            ps.println(ticket.getAuthor());
-            ps.println(new SimpleDateFormat("yyyy/MM/dd HH:mm:ss").format(ticket.getDate()));
+            ps.println("CommentStart");
+            ps.println(tc.getAuthor());
+            ps.println(formatDate(tc.getDate()));
             
-            ps.println(ticket.getStatus().ordinal());
-            ps.println(ticket.getPriority().ordinal());
-            ps.println(ticket.getType().ordinal());
+            ps.println(tc.getComment());
+            ps.println("CommentEnd");
+        }
+        ps.println("CommentsEnd");
+    }
+    
+    /**
+     * Writes a file so that it can never be seen half written, even after a crash.
+     * @param file The file to write.
+     * @param contents Writes the contents of the file to the stream it is given.
+     * @throws IOException If the file could not be written, in which case it is left unchanged.
+     * @see #writeAtomically(File, Consumer, Runnable)
+     */
+    public static void writeAtomically(File file, Consumer<PrintStream> contents) throws IOException {
+        writeAtomically(file, contents, null);
+    }
+    
+    /**
+     * Writes a file so that it can never be seen half written, even after a crash.
+     * <p>
+     * The contents are written to a temporary file in the same directory, which is then renamed over
+     *  the file. When the temporary file is forced to disk and renamed depends on
+     *  {@link Configuration#getFsyncPolicy()}: under {@link Configuration.FsyncPolicy#COMMIT} both
+     *  are left to the next {@link #syncWrites()}, so until then the old file is still the one that is
+     *  read.
+     * @param file The file to write.
+     * @param contents Writes the contents of the file to the stream it is given.
+     * @param renamed Run once the file has been renamed into place, or null.
+     * @throws IOException If the file could not be written, in which case it is left unchanged.
+     */
+    public static void writeAtomically(File file, Consumer<PrintStream> contents, Runnable renamed) throws IOException {
+        Path path = file.toPath();
+        Path temp = path.resolveSibling("." + file.getName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+        Configuration.FsyncPolicy policy = Configuration.getFsyncPolicy();
+        
+        try {
+            try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                PrintStream ps = new PrintStream(new BufferedOutputStream(Channels.newOutputStream(channel), 65536), false, "UTF-8");
+                contents.accept(ps);
+                ps.flush();
+                
+                if(ps.checkError()) throw new IOException("Failed to write " + file);
+                
+                // The rename must never be able to reach the disk before the contents do
+                if(policy == Configuration.FsyncPolicy.ALWAYS) channel.force(true);
+            }
             
-            ps.println("CommentsStart");
-            for(TicketComment tc : ticket.getComments()) {
-                ps.println("CommentStart");
-                ps.println(tc.getAuthor());
-                ps.println(new SimpleDateFormat("yyyy/MM/dd HH:mm:ss").format(tc.getDate()));
+            if(policy == Configuration.FsyncPolicy.COMMIT) {
+                PendingWrite replaced;
+                synchronized(pendingWrites) {
+                    replaced = pendingWrites.put(path, new PendingWrite(temp, path, renamed));
+                }
                 
-                ps.println(tc.getComment());
-                ps.println("CommentEnd");
+                // Only the latest contents of a file are ever renamed into place
+                if(replaced != null) Files.deleteIfExists(replaced.temp);
+                return;
             }
-            ps.println("CommentsEnd");
             
-            ps.close();
-            return file;
+            moveIntoPlace(temp, path);
+        } catch(IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
         }
         
-        return null;
+        if(policy == Configuration.FsyncPolicy.ALWAYS) syncDirectory(file.getParentFile());
+        
+        if(renamed != null) renamed.run();
     }
     
     /**
-     * Gets a list of all ticket filenames that exist in the copied project repository directory.
-     * @return A List of all ticket filenames.
+     * Forces every write waiting for a group commit to disk, renames them all into place, and then
+     *  syncs each directory they were renamed into once.
+     * <p>
+     * This is called before every group commit, so that every file being committed has been written,
+     *  and no commit refers to a ticket that a crash could still lose. Writes that can't be forced or
+     *  renamed are kept waiting for the next call.
+     * @return true if every waiting write is now in place and on disk, false otherwise.
      */
-    public static List<String> getAllTicketFilenames() {
-        List<String> filenames = new ArrayList<String>();
-        File dir;
-        
-        try {
-            dir = getProjectTicketDir();
-        } catch(IOException e) {
-            e.printStackTrace();
-            return null;
+    public static boolean syncWrites() {
+        List<PendingWrite> writes;
+        synchronized(pendingWrites) {
+            writes = new ArrayList<PendingWrite>(pendingWrites.values());
+            pendingWrites.clear();
         }
         
-        File[] fList = dir.listFiles();
+        List<PendingWrite> moved = new ArrayList<PendingWrite>(writes.size());
+        Set<File> dirs = new LinkedHashSet<File>();
+        boolean success = true;
         
-        for(File f : fList) {
-            if(f.getName().endsWith(".ticket")) {
-                try {
-                    filenames.add(f.getCanonicalPath());
-                } catch(IOException e) {
-                    System.err.println("Failed to get canonical path of ticket " + f.getName().split(".")[0] + ". Skipping.");
-                    e.printStackTrace();
+        for(PendingWrite write : writes) {
+            try {
+                try(FileChannel channel = FileChannel.open(write.temp, StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+                
+                moveIntoPlace(write.temp, write.path);
+                
+                moved.add(write);
+                dirs.add(write.path.getParent().toFile());
+            } catch(IOException e) {
+                e.printStackTrace();
+                success = false;
+                
+                // Unless the file has been written again since, in which case this write is stale
+                boolean stale;
+                synchronized(pendingWrites) {
+                    stale = pendingWrites.putIfAbsent(write.path, write) != null;
+                }
+                
+                if(stale) {
+                    try {
+                        Files.deleteIfExists(write.temp);
+                    } catch(IOException e2) {
+                        e2.printStackTrace();
+                    }
                 }
             }
         }
         
-        return filenames;
+        for(File dir : dirs) syncDirectory(dir);
+        
+        for(PendingWrite write : moved) {
+            if(write.renamed != null) write.renamed.run();
+        }
+        
+        return success;
     }
     
     /**
-     * Gets a List of Ticket objects representing each ticket filename from {@link #getAllTicketFilenames()}
-     * @return A List of all Ticket objects representing each ticket filename in the copied project
-     *          repository directory.  
+     * Renames a temporary file over the file it was written for, atomically where the platform can.
+     * @param temp The temporary file.
+     * @param path The file to replace.
+     * @throws IOException If the file could not be renamed.
      */
-    public static List<Ticket> getAllTickets() {
-        List<String> filenames = getAllTicketFilenames();
-        List<Ticket> tickets = new ArrayList<Ticket>();
-        
-        for(String filename : filenames) {
-            Ticket t = readTicketFilename(filename);
-            
-            if(t != null) tickets.add(t);
+    private static void moveIntoPlace(Path temp, Path path) throws IOException {
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch(AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * Forces the entries of a directory to disk, so that files renamed into it survive a crash.
+     * <p>
+     * Not every platform can open a directory to sync it (Windows can't), in which case this does nothing.
+     * @param dir The directory to sync.
+     */
+    private static void syncDirectory(File dir) {
+        try(FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch(IOException e) {
+            // The platform doesn't support syncing directories
         }
+    }
+    
+    /**
+     * Appends a comment to a ticket without rewriting the ticket file.
+     * <p>
+     * The comment is written to its own file in the ticket's comments directory, so adding a comment
+     *  costs as much as the comment itself, and comments added by different people never conflict.
+     * <p>
+     * Each file holds the author, the date, and then the comment exactly as it was written.
+     * @param ticketFile The file of the ticket to add the comment to.
+     * @param comment The comment to append.
+     * @return The file the comment was written to.
+     * @throws IOException If the comment could not be written.
+     */
+    public static File appendComment(File ticketFile, TicketComment comment) throws IOException {
+        File dir = getCommentDir(ticketFile);
+        Files.createDirectories(dir.toPath());
         
-        return tickets;
+        String name = new SimpleDateFormat(COMMENT_NAME_PATTERN).format(comment.getDate()) + "-" +
+                      String.format("%08x", Objects.hash(comment.getAuthor(), comment.getComment())) + ".comment";
+        File file = new File(dir, name);
+        
+        String ticketName = ticketFile.getName();
+        String md5ID = ticketName.substring(0, ticketName.length() - ".ticket".length());
+        
+        writeAtomically(file, ps -> {
+            ps.println(comment.getAuthor());
+            ps.println(formatDate(comment.getDate()));
+            ps.print(comment.getComment());
+        }, () -> TicketSearchIndex.ticketChanged(md5ID));
+        
+        comment.setStoredAs(name);
+        
+        return file;
     }
     
     /**
-     * Reads a Ticket from a given filename.
-     * @param filename The filename to read the ticket from.
-     * @return A Ticket object if the filename could be successfully read, null otherwise.
+     * Gets the directory that comments appended to a ticket are stored in.
+     * @param ticketFile The ticket's file.
+     * @return The ticket's comments directory, which may not exist yet.
      */
-    public static Ticket readTicketFilename(String filename) {
-        File ticketFile = new File(filename);
-        return readTicketFile(ticketFile);
+    public static File getCommentDir(File ticketFile) {
+        String name = ticketFile.getName();
+        
+        return new File(ticketFile.getParentFile(), name.substring(0, name.length() - ".ticket".length()) + COMMENTS_SUFFIX);
     }
     
     /**
-     * Reads a Ticket from a given File object.
-     * @param ticketFile The File object to read the ticket from.
-     * @return A Ticket object if the file could be successfully read, null otherwise.
+     * Reads a single appended comment.
+     * @param br The reader to read the comment from, which is closed afterwards.
+     * @param name The name of the comment's file.
+     * @return The comment, or null if it is malformed.
      */
-    public static Ticket readTicketFile(File ticketFile) {
+    public static TicketComment readComment(BufferedReader br, String name) {
         try {
-            BufferedReader br = new BufferedReader(new FileReader(ticketFile));
-            String line;
-            Ticket ticket = new Ticket();
-            
-            br.readLine(); // Skip over short MD5 ID
-            
-            if((line = br.readLine()) == null) {
-                System.err.println("Malformed Ticket Title!");
-                br.close();
-                return null;
-            }
-            ticket.setTitle(line.trim());
+            String author = br.readLine();
+            String rawDate = br.readLine();
             
-            if((line = br.readLine()) == null || !line.trim().equals("DetailsStart")) {
-                System.err.println("Malformed Ticket Details!");
-                br.close();
+            Date date = rawDate == null ? null : parseDate(rawDate);
+            if(author == null || date == null) {
+                System.err.println("Malformed comment " + name + ": expected author and date.");
                 return null;
             }
             
-            while((line = br.readLine()) != null) {
-                if(line.equals("DetailsEnd")) break;
-                
-                ticket.setDetails(ticket.getDetails() + line.trim() + "\n");
-            }
+            StringBuilder comment = new StringBuilder();
+            char[] buffer = new char[8192];
+            int read;
+            while((read = br.read(buffer)) != -1) comment.append(buffer, 0, read);
             
-            ticket.setDetails(ticket.getDetails().trim());
+            TicketComment tc = new TicketComment(author, date, comment.toString());
+            tc.setStoredAs(name);
             
-            if((line = br.readLine()) == null) {
-                System.err.println("Malformed Ticket Author!");
+            return tc;
+        } catch(IOException e) {
+            e.printStackTrace();
+        } finally {
+            try {
                 br.close();
-                return null;
+            } catch(IOException e) {
+                e.printStackTrace();
             }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Adds every comment appended to a ticket to it, in the order they were written.
+     * @param ticket The ticket to add the comments to.
+     * @param ticketFile The ticket's file.
+     */
+    private static void readAppendedComments(Ticket ticket, File ticketFile) {
+        String[] names = getCommentDir(ticketFile).list();
+        if(names == null) return;
+        
+        Arrays.sort(names);
+        
+        for(String name : names) {
+            if(!name.endsWith(".comment")) continue;
             
-            ticket.setAuthor(line.trim());
-            
-            if((line = br.readLine()) == null) {
-                System.err.println("Malformed Ticket Date!");
-                br.close();
-                return null;
-            }
+            File file = new File(getCommentDir(ticketFile), name);
             try {
-                ticket.setDate(new SimpleDateFormat("yyyy/MM/dd HH:mm:ss").parse(line.trim()));
-            } catch(ParseException e) {
-                System.err.println("Failed to parse date. Probably malformed!");
+                TicketComment tc = readComment(new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)), name);
+                if(tc != null) ticket.addComment(tc);
+            } catch(IOException e) {
                 e.printStackTrace();
-                br.close();
-                return null;
-            }
-            
-            if((line = br.readLine()) == null) {
-                System.err.println("Malformed Ticket Status!");
-                br.close();
-                return null;
-            }
-            ticket.setStatus(Ticket.TicketStatus.values()[Integer.valueOf(line.trim())]);
-            
-            if((line = br.readLine()) == null) {
-                System.err.println("Malformed Ticket Priority!");
-                br.close();
-                return null;
-            }
-            ticket.setPriority(Ticket.TicketPriority.values()[Integer.valueOf(line.trim())]);
-            
-            if((line = br.readLine()) == null) {
-                System.err.println("Malformed Ticket Type!");
-                br.close();
-                return null;
-            }
-            ticket.setType(Ticket.TicketType.values()[Integer.valueOf(line.trim())]);
-            
-            if(!br.readLine().equals("CommentsStart")) {
-                System.err.println("Malformed Ticket Comments Section!");
-                br.close();
-                return null;
-            }
-            
-            while((line = br.readLine()) != null) {
-                if(line.equals("CommentsEnd")) break;
-                
-                if(line.equals("CommentStart")) {
-                    String author = br.readLine();
-                    String rawDate = br.readLine();
-                    String comment = "";
-                    
-                    while((line = br.readLine()) != null) {
-                        if(line.equals("CommentEnd")) break;
-                        
-                        comment += line;
-                    }
-                    
-                    if(line == null) {
-                        System.err.println("Malformed ticket Comments Section!");
-                        br.close();
-                        return null;
-                    }
-                    
-                    Date date = null;
-                    try {
-                        DateFormat formatter = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
-                        date = formatter.parse(rawDate);
-                    } catch(ParseException e) {
-                        System.err.println("Failed to parse date. Probably malformed!");
-                        e.printStackTrace();
-                        br.close();
-                        return null;
-                    }
-                    
-                    ticket.addComment(new TicketComment(author, date, comment));
-                }
-            }
-            
-            br.close();
-            
-            // Sanity check
-            if(!ticket.getMD5ID().equals(ticketFile.getName().split("\\.")[0])) {
-                System.err.println("Ticket MD5 ID does not match MD5 ID for contents.");
-                System.err.println("Ticket was either corrupted or incorrectly modified.");
-                return null;
             }
-            
-            return ticket;
-        } catch(IOException e) {
-            e.printStackTrace();
         }
-        
-        return null;
     }
     
     /**
-     * Reads a specific ticket based on the beginning of its MD5 ID
-     * @param startMD5ID the first N characters of a ticket's MD5 ID
-     * @return A Ticket object of the ticket specified. If one does not exist with an ID starting with {@code startMD5ID}, then null is returned.
+     * Gets a list of all ticket filenames that exist in the copied project repository directory.
+     * @return A List of all ticket filenames.
      */
-    public static Ticket readTicket(String startMD5ID) {
+    public static List<String> getAllTicketFilenames() {
+        List<String> filenames = new ArrayList<String>();
         File dir;
-        try{
+        
+        try {
             dir = getProjectTicketDir();
         } catch(IOException e) {
             e.printStackTrace();
             return null;
         }
         
-        File[] filesList = dir.listFiles();
-        File ticketFile = null;
-        int numFiles = 0;
+        for(File f : listTicketFiles(dir)) {
+            try {
+                filenames.add(f.getCanonicalPath());
+            } catch(IOException e) {
+                System.err.println("Failed to get canonical path of ticket " + f.getName().split(".")[0] + ". Skipping.");
+                e.printStackTrace();
+            }
+        }
+        
+        return filenames;
+    }
+    
+    /**
+     * Gets every ticket file in a directory, in either layout.
+     * @param dir The directory containing the tickets.
+     * @return A List of every ticket file, both directly in the directory and in its shard directories.
+     */
+    public static List<File> listTicketFiles(File dir) {
+        List<File> files = new ArrayList<File>();
+        
+        for(File ticketDir : getTicketDirs(dir)) {
+            String[] names = ticketDir.list();
+            if(names == null) continue;
+            
+            for(String name : names) {
+                if(name.endsWith(".ticket")) files.add(new File(ticketDir, name));
+            }
+        }
+        
+        return files;
+    }
+    
+    /**
+     * Gets every directory that tickets can be stored in.
+     * <p>
+     * Tickets are either stored directly in the copied project repository directory, or in shard
+     *  directories named after the first {@link #SHARD_LENGTH} characters of their MD5 IDs (ex:
+     *  <code>ab/abcdef....ticket</code>). Both layouts can be mixed.
+     * @param dir The directory containing the tickets.
+     * @return A List of the directory and every shard directory in it.
+     */
+    public static List<File> getTicketDirs(File dir) {
+        List<File> dirs = new ArrayList<File>();
+        dirs.add(dir);
+        
+        String[] names = dir.list();
+        if(names == null) return dirs;
         
-        for(File f : filesList) {
-            if(f.getName().startsWith(startMD5ID)) {
-                ticketFile = f;
-                numFiles++;
+        for(String name : names) {
+            if(isShardDir(name)) {
+                File shard = new File(dir, name);
+                if(shard.isDirectory()) dirs.add(shard);
             }
         }
         
+        return dirs;
+    }
+    
+    /**
+     * Checks if a name is the name of a shard directory.
+     * @param name The name to check.
+     * @return true if the name is {@link #SHARD_LENGTH} lowercase hexadecimal characters, false otherwise.
+     */
+    public static boolean isShardDir(String name) {
+        if(name.length() != SHARD_LENGTH) return false;
+        
+        for(int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if((c < '0' || c > '9') && (c < 'a' || c > 'f')) return false;
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Checks if new tickets in a directory should be stored in shard directories.
+     * <p>
+     * A directory is sharded once it has any shard directory in it. This is only checked once for
+     *  each directory, since it only changes when the tickets are migrated.
+     * @param dir The directory containing the tickets.
+     * @return true if new tickets should be stored in shard directories, false otherwise.
+     */
+    public static synchronized boolean isSharded(File dir) {
+        if(!dir.equals(shardedDir)) {
+            shardedDir = dir;
+            sharded = getTicketDirs(dir).size() > 1;
+        }
+        
+        return sharded;
+    }
+    
+    /**
+     * Moves every ticket stored directly in the copied project repository directory, along with its
+     *  appended comments, into its shard directory, and commits the move.
+     * <p>
+     * The tickets are moved in parallel on {@link Configuration#getLoadThreads()} threads. This only
+     *  ever needs to be done once, since new tickets are written into shard directories from then on.
+     * @return The number of tickets that were moved, or -1 if the tickets could not all be moved.
+     */
+    public static int migrateToShards() {
+        File dir;
+        try {
+            dir = getProjectTicketDir();
+        } catch(IOException e) {
+            e.printStackTrace();
+            return -1;
+        }
+        
+        // Anything waiting to be committed would be committed under its old path
+        if(!CommitScheduler.getInstance().flush()) return -1;
+        
+        List<File> flat = new ArrayList<File>();
+        for(String name : dir.list()) {
+            if(name.endsWith(".ticket")) flat.add(new File(dir, name));
+        }
+        
+        Queue<File> moved = new ConcurrentLinkedQueue<File>();
+        AtomicInteger failed = new AtomicInteger();
+        
+        try {
+            getLoadPool().submit(() -> flat.parallelStream().forEach(file -> {
+                try {
+                    moveToShard(file, moved);
+                } catch(IOException e) {
+                    System.err.println("Failed to move " + file.getName() + " into its shard directory.");
+                    e.printStackTrace();
+                    failed.incrementAndGet();
+                }
+            })).get();
+        } catch(InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+            return -1;
+        }
+        
+        synchronized(FileUtil.class) {
+            shardedDir = dir;
+            sharded = true;
+        }
+        
+        if(!moved.isEmpty() && !GitUtil.commit(new ArrayList<File>(moved))) {
+            System.err.println("Failed to commit the moved tickets.");
+            return -1;
+        }
+        
+        return failed.get() == 0 ? flat.size() : -1;
+    }
+    
+    /**
+     * Moves a single ticket, and its appended comments, into its shard directory.
+     * @param file The ticket file to move.
+     * @param moved The queue to add the old and new path of every moved file to.
+     * @throws IOException If the ticket could not be moved.
+     */
+    private static void moveToShard(File file, Queue<File> moved) throws IOException {
+        File shard = new File(file.getParentFile(), file.getName().substring(0, SHARD_LENGTH));
+        Files.createDirectories(shard.toPath());
+        
+        File comments = getCommentDir(file);
+        String[] commentNames = comments.list();
+        
+        if(commentNames != null) {
+            File newComments = new File(shard, comments.getName());
+            Files.move(comments.toPath(), newComments.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            
+            for(String name : commentNames) {
+                moved.add(new File(comments, name));
+                moved.add(new File(newComments, name));
+            }
+        }
+        
+        File newFile = new File(shard, file.getName());
+        Files.move(file.toPath(), newFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        
+        moved.add(file);
+        moved.add(newFile);
+    }
+    
+    /**
+     * Gets a List of Ticket objects representing each ticket filename from {@link #getAllTicketFilenames()}
+     * <p>
+     * If reading from the object database is enabled, or there are no ticket files checked out, then
+     *  the tickets are read with {@link #getAllCommittedTickets()} instead.
+     * <p>
+     * The files are read in parallel with {@link #readTicketFiles(List)}, and the tickets are returned
+     *  in the order of their filenames.
+     * @return A List of all Ticket objects representing each ticket filename in the copied project
+     *          repository directory.  
+     */
+    public static List<Ticket> getAllTickets() {
+        List<String> filenames = getAllTicketFilenames();
+        
+        if(Configuration.isObjectReadEnabled() || (filenames != null && filenames.isEmpty())) {
+            List<Ticket> committed = getAllCommittedTickets();
+            if(committed != null) return committed;
+        }
+        
+        Collections.sort(filenames);
+        
+        List<File> files = new ArrayList<File>(filenames.size());
+        for(String filename : filenames) files.add(new File(filename));
+        
+        Ticket[] read = readTicketFiles(files);
+        List<Ticket> tickets = new ArrayList<Ticket>(read.length);
+        List<String> failed = new ArrayList<String>();
+        
+        for(int i = 0; i < read.length; i++) {
+            if(read[i] != null)
+                tickets.add(read[i]);
+            else
+                failed.add(files.get(i).getName());
+        }
+        
+        if(!failed.isEmpty()) System.err.println("Failed to read " + failed.size() + " ticket(s): " + String.join(", ", failed));
+        
+        return tickets;
+    }
+    
+    /**
+     * Reads many ticket files at once, splitting them across {@link Configuration#getLoadThreads()}
+     *  threads.
+     * @param files The files to read.
+     * @return An array with the Ticket read from each file at the same position, or null where a file
+     *          could not be read.
+     */
+    public static Ticket[] readTicketFiles(List<File> files) {
+        return readTicketFiles(files, false);
+    }
+    
+    /**
+     * Reads many ticket files at once, splitting them across {@link Configuration#getLoadThreads()}
+     *  threads.
+     * @param files The files to read.
+     * @param headersOnly If only the headers should be read, as {@link LazyTicket}s.
+     * @return An array with the Ticket read from each file at the same position, or null where a file
+     *          could not be read.
+     */
+    public static Ticket[] readTicketFiles(List<File> files, boolean headersOnly) {
+        Ticket[] tickets = new Ticket[files.size()];
+        ReadTicketsTask task = new ReadTicketsTask(files, tickets, 0, files.size(), headersOnly);
+        
+        if(Configuration.getLoadThreads() <= 1 || files.size() <= LOAD_SPLIT_THRESHOLD) {
+            task.compute();
+        } else {
+            getLoadPool().invoke(task);
+        }
+        
+        return tickets;
+    }
+    
+    /**
+     * Gets the pool ticket files are read on, creating it if it hasn't been created yet or the
+     *  number of load threads has changed.
+     * @return The pool ticket files are read on.
+     */
+    private static synchronized ForkJoinPool getLoadPool() {
+        if(loadPool == null || loadPool.getParallelism() != Configuration.getLoadThreads()) {
+            if(loadPool != null) loadPool.shutdown();
+            
+            loadPool = new ForkJoinPool(Configuration.getLoadThreads(), pool -> {
+                ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                t.setDaemon(true);
+                return t;
+            }, null, false);
+        }
+        
+        return loadPool;
+    }
+    
+    /**
+     * Something that the contents of a ticket can be opened from again, such as its file.
+     *
+     * @author Tyler Robbins
+     * @version 1.0
+     * @since 1.2
+     */
+    public interface TicketSource {
+        /**
+         * Opens the contents of the ticket from the start.
+         * @return A stream of the ticket's contents.
+         * @throws IOException If the contents could not be opened.
+         */
+        InputStream open() throws IOException;
+    }
+    
+    /**
+     * A file written to a temporary file that is waiting for a group commit to rename it into place.
+     */
+    private static class PendingWrite {
+        /**
+         * The temporary file the contents were written to.
+         */
+        final Path temp;
+        
+        /**
+         * The file the temporary file will be renamed to.
+         */
+        final Path path;
+        
+        /**
+         * Run once the file has been renamed into place, or null.
+         */
+        final Runnable renamed;
+        
+        /**
+         * Constructs a new PendingWrite.
+         * @param temp The temporary file the contents were written to.
+         * @param path The file the temporary file will be renamed to.
+         * @param renamed Run once the file has been renamed into place, or null.
+         */
+        PendingWrite(Path temp, Path path, Runnable renamed) {
+            this.temp = temp;
+            this.path = path;
+            this.renamed = renamed;
+        }
+    }
+    
+    /**
+     * Reads a range of ticket files, splitting the range in half until it is small enough.
+     *
+     * @author Tyler Robbins
+     * @version 1.0
+     * @since 1.2
+     */
+    private static class ReadTicketsTask extends RecursiveAction {
+        /**
+         * Done only because eclipse wouldn't shut up otherwise.
+         */
+        private static final long serialVersionUID = 1L;
+        
+        /**
+         * All files being read.
+         */
+        private List<File> files;
+        
+        /**
+         * Where each ticket is stored, at the same position as its file.
+         */
+        private Ticket[] tickets;
+        
+        /**
+         * The first file in this task's range.
+         */
+        private int from;
+        
+        /**
+         * One past the last file in this task's range.
+         */
+        private int to;
+        
+        /**
+         * Should only the headers be read.
+         */
+        private boolean headersOnly;
+        
+        /**
+         * Creates a task to read a range of ticket files.
+         * @param files All files being read.
+         * @param tickets Where each ticket is stored.
+         * @param from The first file in the range.
+         * @param to One past the last file in the range.
+         * @param headersOnly Should only the headers be read.
+         */
+        ReadTicketsTask(List<File> files, Ticket[] tickets, int from, int to, boolean headersOnly) {
+            this.files = files;
+            this.tickets = tickets;
+            this.from = from;
+            this.to = to;
+            this.headersOnly = headersOnly;
+        }
+        
+        @Override
+        protected void compute() {
+            if(to - from <= LOAD_SPLIT_THRESHOLD || getPool() == null) {
+                for(int i = from; i < to; i++)
+                    tickets[i] = headersOnly ? LazyTicket.read(files.get(i)) : readTicketFile(files.get(i));
+                return;
+            }
+            
+            int mid = (from + to) >>> 1;
+            invokeAll(new ReadTicketsTask(files, tickets, from, mid, headersOnly),
+                      new ReadTicketsTask(files, tickets, mid, to, headersOnly));
+        }
+    }
+    
+    /**
+     * Gets the header fields of every ticket, without parsing every ticket file.
+     * <p>
+     * Ticket files are read through the {@link TicketIndex}, so only those that changed since the last
+     *  call are parsed. If reading from the object database is enabled, or there are no ticket files
+     *  checked out, then the entries are built from {@link #getAllCommittedTickets()} instead.
+     * @return A List of the entries of every ticket, or null if they could not be read.
+     */
+    public static List<TicketIndex.Entry> getAllTicketEntries() {
+        List<TicketIndex.Entry> committed = getCommittedTicketEntries();
+        if(committed != null) return committed;
+        
+        TicketIndex index = TicketIndex.getInstance();
+        
+        return index == null ? null : index.refresh();
+    }
+    
+    /**
+     * Gets the header fields of every ticket as a {@link TicketColumns} store, for scanning, sorting
+     *  and counting them without an object per ticket.
+     * @return A store with a row for each entry of {@link #getAllTicketEntries()}, or null if they could not be read.
+     */
+    public static TicketColumns getAllTicketColumns() {
+        List<TicketIndex.Entry> entries = getAllTicketEntries();
+        
+        return entries == null ? null : TicketColumns.of(entries);
+    }
+    
+    /**
+     * Gets the entries of every ticket that match a query.
+     * <p>
+     * The query is executed against the {@link TicketIndex}, so only the entries its most selective
+     *  condition looks up are tested. When the entries are built from the committed tickets instead
+     *  (see {@link #getAllTicketEntries()}), every one of them is tested.
+     * @param query The query to execute.
+     * @return A List of the matching entries, sorted and limited by the query, or null if they could not be read.
+     */
+    public static List<TicketIndex.Entry> queryTicketEntries(TicketQuery query) {
+        List<TicketIndex.Entry> committed = getCommittedTicketEntries();
+        if(committed != null) return query.execute(committed);
+        
+        TicketIndex index = TicketIndex.getInstance();
+        if(index == null || index.refresh() == null) return null;
+        
+        return query.execute(index);
+    }
+    
+    /**
+     * Builds the entries of every ticket from {@link #getAllCommittedTickets()}, if reading from the
+     *  object database is enabled or there are no ticket files checked out.
+     * @return A List of the entries of every committed ticket, or null if the index should be used instead.
+     */
+    private static List<TicketIndex.Entry> getCommittedTicketEntries() {
+        if(!isReadingCommittedTickets()) return null;
+        
+        List<Ticket> committed = getAllCommittedTickets();
+        if(committed == null) return null;
+        
+        List<TicketIndex.Entry> entries = new ArrayList<TicketIndex.Entry>(committed.size());
+        for(Ticket t : committed) entries.add(new TicketIndex.Entry(t.getMD5ID(), t));
+        
+        return entries;
+    }
+    
+    /**
+     * Checks whether tickets are read from the Git object database instead of their files, because
+     *  reading from the object database is enabled or there are no ticket files checked out.
+     * <p>
+     * Whenever this is true, the entries of {@link #getAllTicketEntries()} are of committed tickets,
+     *  so the rest of those tickets has to be read with {@link #readCommittedTicket(String)} as well.
+     * @return true if tickets are read from the object database, false if they are read from their files.
+     */
+    public static boolean isReadingCommittedTickets() {
+        if(Configuration.isObjectReadEnabled()) return true;
+        
+        try {
+            return !hasTicketFiles(getProjectTicketDir());
+        } catch(IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Checks if there is any ticket file in a directory, in either layout, stopping at the first one
+     *  found instead of listing them all.
+     * @param dir The directory containing the tickets.
+     * @return true if there is at least one ticket file, false if there are none or the directory could not be read.
+     */
+    public static boolean hasTicketFiles(File dir) {
+        List<Path> shards = new ArrayList<Path>();
+        
+        try {
+            try(DirectoryStream<Path> entries = Files.newDirectoryStream(dir.toPath())) {
+                for(Path entry : entries) {
+                    String name = entry.getFileName().toString();
+                    
+                    if(name.endsWith(".ticket")) return true;
+                    if(isShardDir(name)) shards.add(entry);
+                }
+            }
+            
+            for(Path shard : shards) {
+                if(!Files.isDirectory(shard)) continue;
+                
+                try(DirectoryStream<Path> tickets = Files.newDirectoryStream(shard, "*.ticket")) {
+                    if(tickets.iterator().hasNext()) return true;
+                }
+            }
+        } catch(IOException e) {
+            // Nothing can be read from a directory that can't be listed
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Reads a single ticket committed to the _Tickets branch, with the comments appended to it,
+     *  straight from the Git object database with a {@link TicketObjectReader}.
+     * <p>
+     * Any commits that are still pending are flushed first so that they are included.
+     * @param md5ID The full MD5 ID of the ticket.
+     * @return The committed ticket, or null if it could not be read.
+     */
+    public static Ticket readCommittedTicket(String md5ID) {
+        if(!CommitScheduler.getInstance().flush()) {
+            System.err.println("Failed to commit pending tickets, reading from the last commit.");
+        }
+        
+        try {
+            return TicketObjectReader.getInstance().readTicket(GitUtil.TICKETS_BRANCH, md5ID);
+        } catch(IOException e) {
+            System.err.println("Failed to read ticket " + md5ID + " from the object database.");
+            e.printStackTrace();
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Gets a List of all Ticket objects committed to the _Tickets branch, read straight from the Git
+     *  object database with a {@link TicketObjectReader}.
+     * <p>
+     * Any commits that are still pending are flushed first so that they are included.
+     * @return A List of all committed Ticket objects, or null if they could not be read.
+     */
+    public static List<Ticket> getAllCommittedTickets() {
+        if(!CommitScheduler.getInstance().flush()) {
+            System.err.println("Failed to commit pending tickets, reading from the last commit.");
+        }
+        
+        try {
+            return TicketObjectReader.getInstance().readAllTickets(GitUtil.TICKETS_BRANCH);
+        } catch(IOException e) {
+            System.err.println("Failed to read tickets from the object database.");
+            e.printStackTrace();
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Reads a Ticket from a given filename.
+     * @param filename The filename to read the ticket from.
+     * @return A Ticket object if the filename could be successfully read, null otherwise.
+     */
+    public static Ticket readTicketFilename(String filename) {
+        File ticketFile = new File(filename);
+        return readTicketFile(ticketFile);
+    }
+    
+    /**
+     * Reads a Ticket from a given File object, in either the text or the {@link BinaryTicketFormat}.
+     * @param ticketFile The File object to read the ticket from.
+     * @return A Ticket object if the file could be successfully read, null otherwise.
+     */
+    public static Ticket readTicketFile(File ticketFile) {
+        try {
+            String md5ID = ticketFile.getName().split("\\.")[0];
+            BufferedInputStream in = new BufferedInputStream(new FileInputStream(ticketFile), 65536);
+            
+            Ticket ticket = BinaryTicketFormat.isBinary(in) ? BinaryTicketFormat.read(in, md5ID)
+                                                            : readTicket(in, md5ID, () -> new FileInputStream(ticketFile));
+            
+            if(ticket != null) readAppendedComments(ticket, ticketFile);
+            
+            return ticket;
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Counts the comments on a ticket, including those appended in their own files, without keeping
+     *  any of the ticket in memory.
+     * <p>
+     * The file is streamed through once. Lines are only compared against the markers of the text
+     *  format, and the details and comments of a binary ticket are skipped without being decoded.
+     * @param ticketFile The ticket's file.
+     * @return The number of comments, or -1 if the ticket could not be read.
+     */
+    public static int countComments(File ticketFile) {
+        String md5ID = ticketFile.getName().split("\\.")[0];
+        int count;
+        
+        try(BufferedInputStream in = new BufferedInputStream(new FileInputStream(ticketFile), 65536)) {
+            count = BinaryTicketFormat.isBinary(in) ? BinaryTicketFormat.readCommentCount(in, md5ID)
+                                                    : countTextComments(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 65536), md5ID);
+        } catch(IOException e) {
+            e.printStackTrace();
+            return -1;
+        }
+        
+        if(count < 0) return -1;
+        
+        String[] names = getCommentDir(ticketFile).list();
+        if(names != null) {
+            for(String name : names) {
+                if(name.endsWith(".comment")) count++;
+            }
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Counts the comments in a ticket in the .ticket format, following the same markers as
+     *  {@link #readTicket(BufferedReader, String)} without keeping what is between them.
+     * @param in The reader to read the ticket from.
+     * @param md5ID The MD5 ID the ticket is stored under.
+     * @return The number of comments, or -1 if the ticket is malformed.
+     * @throws IOException If the ticket could not be read.
+     */
+    private static int countTextComments(BufferedReader in, String md5ID) throws IOException {
+        String line;
+        
+        // The short MD5 ID and title, then the details
+        if(in.readLine() == null || in.readLine() == null || (line = in.readLine()) == null || !line.trim().equals("DetailsStart")) {
+            System.err.println("Malformed ticket " + md5ID + ": expected DetailsStart.");
+            return -1;
+        }
+        
+        while((line = in.readLine()) != null && !line.equals("DetailsEnd"));
+        
+        // The author, date, status, priority and type
+        for(int i = 0; i < 5 && line != null; i++) line = in.readLine();
+        
+        if(line == null || (line = in.readLine()) == null || !line.equals("CommentsStart")) {
+            System.err.println("Malformed ticket " + md5ID + ": expected CommentsStart.");
+            return -1;
+        }
+        
+        int count = 0;
+        while((line = in.readLine()) != null && !line.equals("CommentsEnd")) {
+            if(!line.equals("CommentStart")) continue;
+            
+            // The author and date can't end a comment, so they are skipped along with the comment
+            in.readLine();
+            in.readLine();
+            while((line = in.readLine()) != null && !line.equals("CommentEnd"));
+            
+            if(line == null) {
+                System.err.println("Malformed ticket " + md5ID + ": expected CommentEnd.");
+                return -1;
+            }
+            
+            count++;
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Counts the comments on every ticket in a {@link TicketColumns} store whose count isn't known yet,
+     *  with {@link #countComments(File)}, spread across {@link Configuration#getLoadThreads()} threads.
+     * <p>
+     * If tickets are {@link #isReadingCommittedTickets() read from the object database}, then the
+     *  comments are counted from {@link #getAllCommittedTickets()} instead.
+     * @param columns The store to set the counts of.
+     * @return The number of tickets whose comments could not be counted, which are left unknown.
+     */
+    public static int countComments(TicketColumns columns) {
+        if(isReadingCommittedTickets()) return countCommittedComments(columns);
+        
+        File dir;
+        try {
+            dir = getProjectTicketDir();
+        } catch(IOException e) {
+            e.printStackTrace();
+            return columns.size();
+        }
+        
+        AtomicInteger failed = new AtomicInteger();
+        
+        try {
+            getLoadPool().submit(() -> IntStream.range(0, columns.size()).parallel().forEach(row -> {
+                if(columns.getCommentCount(row) >= 0) return;
+                
+                int count = countComments(getTicketFile(dir, columns.getMD5ID(row)));
+                if(count < 0) failed.incrementAndGet();
+                else columns.setCommentCount(row, count);
+            })).get();
+        } catch(InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+            return columns.size();
+        }
+        
+        return failed.get();
+    }
+    
+    /**
+     * Counts the comments on every ticket in a {@link TicketColumns} store whose count isn't known yet,
+     *  from the tickets committed to the _Tickets branch.
+     * @param columns The store to set the counts of.
+     * @return The number of tickets whose comments could not be counted, which are left unknown.
+     */
+    private static int countCommittedComments(TicketColumns columns) {
+        List<Ticket> committed = getAllCommittedTickets();
+        if(committed == null) return columns.size();
+        
+        Map<String, Integer> counts = new HashMap<String, Integer>(committed.size() * 2);
+        for(Ticket t : committed) counts.put(t.getMD5ID(), t.getComments().size());
+        
+        int failed = 0;
+        for(int row = 0; row < columns.size(); row++) {
+            if(columns.getCommentCount(row) >= 0) continue;
+            
+            Integer count = counts.get(columns.getMD5ID(row));
+            if(count == null) failed++;
+            else columns.setCommentCount(row, count);
+        }
+        
+        return failed;
+    }
+    
+    /**
+     * Reads a Ticket in the .ticket format from a reader. The reader is closed once the ticket has been read.
+     * <p>
+     * The ticket is read in a single pass, with the details and each comment accumulated in a
+     *  StringBuilder. If the ticket is malformed, then what was expected and the line number it was
+     *  expected on are printed.
+     * @param br The reader to read the ticket from.
+     * @param md5ID The MD5 ID the ticket is stored under, which the contents are checked against.
+     * @return A Ticket object if the contents could be successfully read, null otherwise.
+     */
+    public static Ticket readTicket(BufferedReader br, String md5ID) {
+        return checkMD5ID(parseTicket(br, md5ID), md5ID);
+    }
+    
+    /**
+     * Reads a Ticket in the .ticket format from a stream of its contents as UTF-8. The stream is
+     *  closed once the ticket has been read.
+     * <p>
+     * Tickets used to be written in the platform's default charset. If the contents don't match the
+     *  MD5 ID when read as UTF-8, and that charset is not UTF-8, then the contents are opened again
+     *  and read in the platform's charset, so that those tickets can still be read.
+     * @param in The stream of the ticket's contents.
+     * @param md5ID The MD5 ID the ticket is stored under, which the contents are checked against.
+     * @param source Opens the ticket's contents again, from the start.
+     * @return A Ticket object if the contents could be successfully read, null otherwise.
+     */
+    public static Ticket readTicket(InputStream in, String md5ID, TicketSource source) {
+        Ticket ticket = parseTicket(new LineNumberReader(new InputStreamReader(in, StandardCharsets.UTF_8), 65536), md5ID);
+        
+        if(ticket != null && !ticket.getMD5ID().equals(md5ID) && !LEGACY_CHARSET.equals(StandardCharsets.UTF_8)) {
+            try {
+                Ticket legacy = parseTicket(new LineNumberReader(new InputStreamReader(source.open(), LEGACY_CHARSET), 65536), md5ID);
+                if(legacy != null && legacy.getMD5ID().equals(md5ID)) return legacy;
+            } catch(IOException e) {
+                e.printStackTrace();
+            }
+        }
+        
+        return checkMD5ID(ticket, md5ID);
+    }
+    
+    /**
+     * Checks that a ticket's contents match the MD5 ID it is stored under.
+     * @param ticket The ticket that was read, which may be null.
+     * @param md5ID The MD5 ID the ticket is stored under.
+     * @return The ticket if it matches, null otherwise.
+     */
+    private static Ticket checkMD5ID(Ticket ticket, String md5ID) {
+        if(ticket == null) return null;
+        
+        // Sanity check
+        if(!ticket.getMD5ID().equals(md5ID)) {
+            System.err.println("Ticket MD5 ID does not match MD5 ID for contents.");
+            System.err.println("Ticket was either corrupted or incorrectly modified.");
+            return null;
+        }
+        
+        return ticket;
+    }
+    
+    /**
+     * Reads a Ticket in the .ticket format from a reader without checking it against its MD5 ID. The
+     *  reader is closed once the ticket has been read.
+     * @param br The reader to read the ticket from.
+     * @param md5ID The MD5 ID the ticket is stored under, which is only used to report problems.
+     * @return A Ticket object if the contents could be parsed, null otherwise.
+     */
+    private static Ticket parseTicket(BufferedReader br, String md5ID) {
+        LineNumberReader in = br instanceof LineNumberReader ? (LineNumberReader)br : new LineNumberReader(br, 65536);
+        
+        try {
+            String line;
+            Ticket ticket = new Ticket();
+            
+            if(in.readLine() == null) return malformed(md5ID, in, "short MD5 ID"); // Skip over short MD5 ID
+            
+            if((line = in.readLine()) == null) return malformed(md5ID, in, "title");
+            ticket.setTitle(line.trim());
+            
+            if((line = in.readLine()) == null || !line.trim().equals("DetailsStart")) return malformed(md5ID, in, "DetailsStart");
+            
+            StringBuilder details = new StringBuilder();
+            while((line = in.readLine()) != null) {
+                if(line.equals("DetailsEnd")) break;
+                
+                details.append(line.trim()).append('\n');
+            }
+            
+            if(line == null) return malformed(md5ID, in, "DetailsEnd");
+            ticket.setDetails(details.toString().trim());
+            
+            if((line = in.readLine()) == null) return malformed(md5ID, in, "author");
+            ticket.setAuthor(line.trim());
+            
+            if((line = in.readLine()) == null) return malformed(md5ID, in, "date");
+            Date date = parseDate(line.trim());
+            if(date == null) return malformed(md5ID, in, "date in the format " + DATE_PATTERN);
+            ticket.setDate(date);
+            
+            try {
+                if((line = in.readLine()) == null) return malformed(md5ID, in, "status");
+                ticket.setStatus(Ticket.TicketStatus.values()[Integer.parseInt(line.trim())]);
+                
+                if((line = in.readLine()) == null) return malformed(md5ID, in, "priority");
+                ticket.setPriority(Ticket.TicketPriority.values()[Integer.parseInt(line.trim())]);
+                
+                if((line = in.readLine()) == null) return malformed(md5ID, in, "type");
+                ticket.setType(Ticket.TicketType.values()[Integer.parseInt(line.trim())]);
+            } catch(NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                return malformed(md5ID, in, "status, priority and type numbers");
+            }
+            
+            if((line = in.readLine()) == null || !line.equals("CommentsStart")) return malformed(md5ID, in, "CommentsStart");
+            
+            StringBuilder comment = new StringBuilder();
+            while((line = in.readLine()) != null) {
+                if(line.equals("CommentsEnd")) break;
+                
+                if(line.equals("CommentStart")) {
+                    String author = in.readLine();
+                    String rawDate = in.readLine();
+                    
+                    if(author == null || rawDate == null) return malformed(md5ID, in, "comment author and date");
+                    
+                    Date commentDate = parseDate(rawDate);
+                    if(commentDate == null) return malformed(md5ID, in, "comment date in the format " + DATE_PATTERN);
+                    
+                    comment.setLength(0);
+                    while((line = in.readLine()) != null) {
+                        if(line.equals("CommentEnd")) break;
+                        
+                        comment.append(line);
+                    }
+                    
+                    if(line == null) return malformed(md5ID, in, "CommentEnd");
+                    
+                    ticket.addComment(new TicketComment(author, commentDate, comment.toString()));
+                }
+            }
+            
+            return ticket;
+        } catch(IOException e) {
+            e.printStackTrace();
+        } finally {
+            try {
+                in.close();
+            } catch(IOException e) {
+                e.printStackTrace();
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Prints where a ticket is malformed.
+     * @param md5ID The MD5 ID of the malformed ticket.
+     * @param in The reader the ticket was being read from, which is positioned just after the problem.
+     * @param expected What was expected to be read.
+     * @return null, so that callers can return this directly.
+     */
+    private static Ticket malformed(String md5ID, LineNumberReader in, String expected) {
+        System.err.println("Malformed ticket " + md5ID + ": expected " + expected + " at line " + in.getLineNumber() + ".");
+        return null;
+    }
+    
+    /**
+     * Parses a date in the {@link #DATE_PATTERN} format that tickets and comments are written with.
+     * @param rawDate The date to parse.
+     * @return The parsed date, or null if it is malformed.
+     */
+    public static Date parseDate(String rawDate) {
+        try {
+            return DATE_FORMAT.get().parse(rawDate);
+        } catch(ParseException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Formats a date in the {@link #DATE_PATTERN} format that tickets and comments are written with.
+     * @param date The date to format.
+     * @return The formatted date.
+     */
+    public static String formatDate(Date date) {
+        return DATE_FORMAT.get().format(date);
+    }
+    
+    /**
+     * Reads a specific ticket based on the beginning of its MD5 ID
+     * <p>
+     * The ID is looked up in the {@link TicketIdTrie}, so this doesn't depend on how many tickets there are.
+     * @param startMD5ID the first N characters of a ticket's MD5 ID
+     * @return A Ticket object of the ticket specified. If one does not exist with an ID starting with {@code startMD5ID}, then null is returned.
+     */
+    public static Ticket readTicket(String startMD5ID) {
+        String md5ID = resolveTicketID(startMD5ID);
+        if(md5ID == null) return null;
+        
+        try {
+            return readTicketFile(getTicketFile(md5ID));
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Gets the file a ticket is stored in.
+     * @param md5ID The full MD5 ID of the ticket.
+     * @return The ticket's file, which may not exist.
+     * @throws IOException From getProjectTicketDir()
+     * @see #getTicketFile(File, String)
+     */
+    public static File getTicketFile(String md5ID) throws IOException {
+        return getTicketFile(getProjectTicketDir(), md5ID);
+    }
+    
+    /**
+     * Gets the file a ticket is stored in, in whichever layout it is stored in.
+     * <p>
+     * If the ticket doesn't exist yet, then this is where it should be written: in its shard directory
+     *  if the directory is {@link #isSharded(File) sharded}, and directly in the directory otherwise.
+     * @param dir The directory containing the tickets.
+     * @param md5ID The full MD5 ID of the ticket.
+     * @return The ticket's file, which may not exist.
+     */
+    public static File getTicketFile(File dir, String md5ID) {
+        File shardedFile = new File(new File(dir, md5ID.substring(0, SHARD_LENGTH)), md5ID + ".ticket");
+        if(shardedFile.exists()) return shardedFile;
+        
+        File flatFile = new File(dir, md5ID + ".ticket");
+        if(flatFile.exists() || !isSharded(dir)) return flatFile;
+        
+        return shardedFile;
+    }
+    
+    /**
+     * Finds the full MD5 ID of a ticket from the beginning of it.
+     * <p>
+     * The ID is looked up in a {@link TicketIdTrie} of only the shard directory it is in, once it is
+     *  long enough to name one, so this doesn't depend on how many tickets there are.
+     * @param startMD5ID the first N characters of a ticket's MD5 ID
+     * @return The full MD5 ID. If there is not exactly one ticket with an ID starting with {@code startMD5ID}, then null is returned.
+     */
+    public static String resolveTicketID(String startMD5ID) {
+        TicketIdTrie trie = TicketIdTrie.getInstance(startMD5ID);
+        if(trie == null) return null;
+        
+        int numFiles = trie.count(startMD5ID);
+        
         if(numFiles == 0) {
             System.err.println("No such ticket exists starting with " + startMD5ID);
             return null;
         } else if(numFiles > 1) {
-            System.err.println("Ticket MD5ID is abiguous. " + numFiles + " found starting with " + startMD5ID + ".");
+            System.err.println("Ticket MD5ID is abiguous. " + numFiles + " found starting with " + startMD5ID + ":");
+            for(String id : trie.find(startMD5ID, 10)) System.err.println("\t" + id);
+            if(numFiles > 10) System.err.println("\t...");
             return null;
         } else {
-            return readTicketFile(new File(dir.getAbsolutePath(), ticketFile.getName()));
+            return trie.find(startMD5ID, 1).get(0);
         }
     }
 }
@@ -0,0 +1,275 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads Git config files without forking <code>git config</code>.
+ * <p>
+ * Supports sections, subsections, quoted values, escapes, line continuations, comments and
+ *  <code>[include] path = ...</code> directives. Every file is only parsed once per process.
+ *
+ * @author Tyler Robbins
+ * @version 1.0
+ * @since 1.2
+ */
+public class GitConfig {
+    /**
+     * How many includes deep are followed before giving up, the same limit Git uses.
+     */
+    private static final int MAX_INCLUDE_DEPTH = 10;
+
+    /**
+     * Every config that has been read so far, mapped from the path it was read from.
+     */
+    private static final Map<String, GitConfig> cache = new ConcurrentHashMap<String, GitConfig>();
+
+    /**
+     * The global config, or null if it hasn't been read yet.
+     */
+    private static GitConfig global = null;
+
+    /**
+     * All values in this config, mapped from their lowercase "section.subsection.key" names.
+     * Later values override earlier ones.
+     */
+    private Map<String, String> values;
+
+    /**
+     * Creates a new, empty GitConfig.
+     */
+    private GitConfig() {
+        values = new HashMap<String, String>();
+    }
+
+    /**
+     * Gets the user's global config, which is made up of $XDG_CONFIG_HOME/git/config and
+     *  ~/.gitconfig, or just $GIT_CONFIG_GLOBAL if that is set.
+     * @return The global config.
+     */
+    public static synchronized GitConfig getGlobal() {
+        if(global == null) {
+            global = new GitConfig();
+
+            String override = System.getenv("GIT_CONFIG_GLOBAL");
+
+            if(override != null) {
+                global.readFile(new File(override), 0, new HashSet<String>());
+            } else {
+                String xdg = System.getenv("XDG_CONFIG_HOME");
+                File xdgDir = xdg != null && xdg.length() > 0 ? new File(xdg)
+                                                              : new File(System.getProperty("user.home"), ".config");
+
+                global.readFile(new File(new File(xdgDir, "git"), "config"), 0, new HashSet<String>());
+                global.readFile(new File(System.getProperty("user.home"), ".gitconfig"), 0, new HashSet<String>());
+            }
+        }
+
+        return global;
+    }
+
+    /**
+     * Gets the config of a single repository (its .git/config file).
+     * @param gitDir The .git directory of the repository.
+     * @return The repository's config.
+     */
+    public static GitConfig getRepository(File gitDir) {
+        File file = new File(gitDir, "config");
+
+        return cache.computeIfAbsent(file.getAbsolutePath(), path -> {
+            GitConfig config = new GitConfig();
+            config.readFile(file, 0, new HashSet<String>());
+            return config;
+        });
+    }
+
+    /**
+     * Gets a value from this config.
+     * @param key The name of the value, as "section.key" or "section.subsection.key"
+     * @return The value, or null if it isn't set.
+     */
+    public String get(String key) {
+        return values.get(normalizeKey(key));
+    }
+
+    /**
+     * Lowercases the section and key parts of a name, leaving the subsection alone since it is case
+     *  sensitive.
+     * @param key The name to normalize.
+     * @return The normalized name.
+     */
+    private static String normalizeKey(String key) {
+        int first = key.indexOf('.');
+        int last = key.lastIndexOf('.');
+
+        if(first == last) return key.toLowerCase();
+
+        return key.substring(0, first).toLowerCase() + key.substring(first, last) + key.substring(last).toLowerCase();
+    }
+
+    /**
+     * Reads a config file into this config, following any includes.
+     * @param file The file to read. Nothing happens if it doesn't exist.
+     * @param depth How many includes deep this file is.
+     * @param seen The canonical paths of every file already being read, to stop include loops.
+     */
+    private void readFile(File file, int depth, Set<String> seen) {
+        if(!file.isFile() || depth > MAX_INCLUDE_DEPTH) return;
+
+        List<String> lines;
+        String canonical;
+        try {
+            canonical = file.getCanonicalPath();
+            if(!seen.add(canonical)) return;
+
+            lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        } catch(IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        String section = null;
+
+        for(int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+
+            // Join continued lines
+            while(line.endsWith("\\") && !line.endsWith("\\\\") && i + 1 < lines.size()) {
+                line = line.substring(0, line.length() - 1) + lines.get(++i);
+            }
+
+            if(line.isEmpty() || line.startsWith("#") || line.startsWith(";")) continue;
+
+            if(line.startsWith("[")) {
+                int end = line.indexOf(']');
+                if(end == -1) continue;
+
+                section = parseSectionHeader(line.substring(1, end));
+
+                // A value may follow the header on the same line
+                line = line.substring(end + 1).trim();
+                if(line.isEmpty() || line.startsWith("#") || line.startsWith(";")) continue;
+            }
+
+            if(section == null) continue;
+
+            String name;
+            String value;
+            int eq = line.indexOf('=');
+
+            if(eq == -1) {
+                // A key with no value is a boolean set to true
+                name = line.split("[\\s#;]")[0];
+                value = "true";
+            } else {
+                name = line.substring(0, eq).trim();
+                value = parseValue(line.substring(eq + 1));
+            }
+
+            String key = section + "." + name.toLowerCase();
+            values.put(key, value);
+
+            if(key.equals("include.path")) {
+                readFile(resolveInclude(file, value), depth + 1, seen);
+            }
+        }
+
+        seen.remove(canonical);
+    }
+
+    /**
+     * Parses a section header, without its brackets, into the prefix used for its keys.
+     * @param header The header, such as <code>user</code> or <code>remote "origin"</code>
+     * @return The section prefix, such as <code>user</code> or <code>remote.origin</code>
+     */
+    private static String parseSectionHeader(String header) {
+        int quote = header.indexOf('"');
+
+        if(quote == -1) {
+            // Old style [section.subsection] headers have a case insensitive subsection
+            return header.trim().toLowerCase();
+        }
+
+        String section = header.substring(0, quote).trim().toLowerCase();
+        String subsection = header.substring(quote + 1, header.lastIndexOf('"'))
+                                  .replace("\\\"", "\"").replace("\\\\", "\\");
+
+        return section + "." + subsection;
+    }
+
+    /**
+     * Parses the value half of a config line, handling quotes, escapes and trailing comments.
+     * @param raw Everything after the '='
+     * @return The parsed value.
+     */
+    private static String parseValue(String raw) {
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+
+        // Whitespace is only kept inside quotes or between words
+        int pendingSpace = 0;
+
+        for(int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+
+            if(!quoted && (c == '#' || c == ';')) break;
+
+            if(c == '"') {
+                quoted = !quoted;
+                continue;
+            }
+
+            if(!quoted && Character.isWhitespace(c)) {
+                if(value.length() > 0) pendingSpace++;
+                continue;
+            }
+
+            while(pendingSpace > 0) {
+                value.append(' ');
+                pendingSpace--;
+            }
+
+            if(c == '\\' && i + 1 < raw.length()) {
+                char next = raw.charAt(++i);
+                switch(next) {
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    default:
+                        value.append(next);
+                }
+            } else {
+                value.append(c);
+            }
+        }
+
+        return value.toString();
+    }
+
+    /**
+     * Resolves the path of an include, relative to the file that included it.
+     * @param includer The file containing the include.
+     * @param path The included path, which may start with ~/
+     * @return The file to include.
+     */
+    private static File resolveInclude(File includer, String path) {
+        if(path.startsWith("~/")) return new File(System.getProperty("user.home"), path.substring(2));
+
+        File file = new File(path);
+        if(file.isAbsolute()) return file;
+
+        return new File(includer.getAbsoluteFile().getParentFile(), path);
+    }
+}
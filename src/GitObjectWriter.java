@@ -0,0 +1,881 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Writes Git objects directly into a repository without forking any Git processes.
+ * <p>
+ * Committing works the same way <code>git add</code> followed by <code>git commit</code> does: the
+ *  given files are hashed into blobs, the index is updated, trees are built from the index, and a new
+ *  commit is written on top of the currently checked out branch. All objects are written loose, so
+ *  no pack files ever need to be read.
+ * <p>
+ * Like Git, the id of every tree is remembered in the index's cache tree extension, so only the trees
+ *  containing a committed file are written again. The rest are reused as they are.
+ * <p>
+ * If the repository uses a feature this writer does not understand (split or non-v2 indexes, merge
+ *  conflicts, a detached HEAD, ...), then {@link #commit(Collection, String)} returns false without
+ *  touching anything so that the caller can fall back to the git executable.
+ *
+ * @author Tyler Robbins
+ * @version 1.0
+ * @since 1.2
+ */
+public class GitObjectWriter {
+    /**
+     * The id used by Git for an object that does not exist.
+     */
+    public static final String NULL_ID = "0000000000000000000000000000000000000000";
+
+    /**
+     * The mode Git uses for regular, non-executable files.
+     */
+    private static final int REGULAR_FILE_MODE = 0100644;
+
+    /**
+     * The directory containing the checked out files.
+     */
+    private File workTree;
+
+    /**
+     * The .git directory of the repository.
+     */
+    private File gitDir;
+
+    /**
+     * The cache tree read from the index along with its entries.
+     */
+    private CacheTree cacheTree;
+
+    /**
+     * A single entry from the Git index.
+     */
+    private static class IndexEntry {
+        /**
+         * ctime, mtime, dev, ino, mode, uid, gid and size, as stored in the index.
+         */
+        int[] stat = new int[10];
+
+        /**
+         * The id of the blob this entry points to.
+         */
+        byte[] id = new byte[20];
+
+        /**
+         * The entry flags (assume-valid, extended and stage bits, and the name length).
+         */
+        int flags;
+
+        /**
+         * The path of this entry relative to the work tree, using '/' as a separator.
+         */
+        byte[] path;
+
+        /**
+         * Gets the file mode stored in this entry.
+         * @return The file mode of this entry.
+         */
+        int getMode() {
+            return stat[6];
+        }
+    }
+
+    /**
+     * A tree from the index's cache tree extension.
+     */
+    private static class CacheTree {
+        /**
+         * The number of index entries in this tree, including those in its subtrees, or -1 if the tree
+         *  has changed since it was written.
+         */
+        int entryCount = -1;
+
+        /**
+         * The id of this tree, or null if the tree has changed since it was written.
+         */
+        byte[] id;
+
+        /**
+         * All subtrees of this tree, mapped from name.
+         */
+        Map<String, CacheTree> children = new TreeMap<String, CacheTree>();
+
+        /**
+         * Marks this tree and every tree between it and a path as changed.
+         * @param path The path of the changed file, relative to this tree.
+         */
+        void invalidate(String path) {
+            CacheTree tree = this;
+            String[] parts = path.split("/");
+
+            for(int i = 0; tree != null; i++) {
+                tree.entryCount = -1;
+                tree.id = null;
+
+                tree = i < parts.length - 1 ? tree.children.get(parts[i]) : null;
+            }
+        }
+    }
+
+    /**
+     * A tree being built up from index entries.
+     */
+    private static class TreeNode {
+        /**
+         * All children of this tree, mapped from name to either a TreeNode or an IndexEntry.
+         */
+        Map<String, Object> children = new TreeMap<String, Object>();
+    }
+
+    /**
+     * Creates a new GitObjectWriter for the repository checked out at the given directory.
+     * @param newWorkTree The directory of the checked out repository.
+     */
+    public GitObjectWriter(File newWorkTree) {
+        workTree = newWorkTree;
+        gitDir = new File(newWorkTree, ".git");
+    }
+
+    /**
+     * Commits a collection of files onto the currently checked out branch.
+     * <p>
+     * Files that exist are added (or updated) in the commit, and files that no longer exist are
+     *  removed from it.
+     * <p>
+     * If the files are already committed as they are, so that the new tree would be the same as the
+     *  parent's, then no commit is written and nothing is changed.
+     * @param files The files to commit. Each must be inside the work tree.
+     * @param message The commit message.
+     * @return true if the commit was written or there was nothing to commit, false if this repository
+     *          is not supported by this writer or its branch was locked or moved by another process,
+     *          and nothing was changed.
+     * @throws IOException If reading or writing the repository failed.
+     */
+    public boolean commit(Collection<File> files, String message) throws IOException {
+        if(!isSupported()) return false;
+
+        String branchRef = readSymbolicHead();
+        if(branchRef == null) return false;
+
+        String name = getIdentityName();
+        String email = getIdentityEmail();
+        if(name == null || email == null) return false;
+
+        File indexFile = new File(gitDir, "index");
+        File indexLock = new File(gitDir, "index.lock");
+
+        // Taking index.lock keeps any git process from touching the index until we are done
+        if(!indexLock.createNewFile()) {
+            System.err.println("Unable to lock " + indexFile + ", another git process may be running.");
+            return false;
+        }
+
+        try {
+            List<IndexEntry> entries = readIndex(indexFile);
+            if(entries == null) return false;
+
+            for(File file : files) {
+                String path = relativePath(file);
+                if(path == null) return false;
+
+                cacheTree.invalidate(path);
+
+                if(file.isFile()) {
+                    IndexEntry entry = new IndexEntry();
+                    entry.path = path.getBytes(StandardCharsets.UTF_8);
+                    entry.id = writeObject("blob", Files.readAllBytes(file.toPath()));
+                    entry.flags = Math.min(entry.path.length, 0xFFF);
+                    fillStat(file, entry);
+
+                    putEntry(entries, entry);
+                } else {
+                    removeEntry(entries, path.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+
+            String tree = toHex(writeTree(buildTree(entries), cacheTree));
+            String parent = readRef(branchRef);
+
+            // An empty commit would only be noise in the history, and git commit refuses to make one too
+            if(parent != null && tree.equals(readCommitTree(parent))) return true;
+
+            String ident = formatIdentity(name, email);
+            StringBuilder commit = new StringBuilder();
+            commit.append("tree ").append(tree).append('\n');
+            if(parent != null) commit.append("parent ").append(parent).append('\n');
+            commit.append("author ").append(ident).append('\n');
+            commit.append("committer ").append(ident).append('\n');
+            commit.append('\n');
+            commit.append(message).append('\n');
+
+            String commitID = toHex(writeObject("commit", commit.toString().getBytes(StandardCharsets.UTF_8)));
+
+            writeIndex(indexLock, entries);
+
+            if(!updateRef(branchRef, parent, commitID)) return false;
+
+            appendReflog(branchRef, parent, commitID, ident,
+                         (parent == null ? "commit (initial): " : "commit: ") + message.split("\n")[0]);
+
+            Files.move(indexLock.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+
+            return true;
+        } finally {
+            if(indexLock.exists()) indexLock.delete();
+        }
+    }
+
+    /**
+     * Checks if this writer supports the repository it was created for.
+     * @return true if this writer can safely write to the repository, false otherwise.
+     */
+    private boolean isSupported() {
+        if(!gitDir.isDirectory()) return false;
+
+        GitConfig config = GitConfig.getRepository(gitDir);
+
+        // SHA-256 repositories and split indexes are not something we know how to write
+        String format = config.get("extensions.objectformat");
+        if(format != null && !format.equalsIgnoreCase("sha1")) return false;
+
+        return !"true".equalsIgnoreCase(config.get("core.splitindex"));
+    }
+
+    /**
+     * Reads which branch HEAD points to.
+     * @return The full name of the branch HEAD points to (ex: refs/heads/_Tickets), or null if HEAD
+     *          is detached or could not be read.
+     * @throws IOException If HEAD could not be read.
+     */
+    public String readSymbolicHead() throws IOException {
+        File head = new File(gitDir, "HEAD");
+        if(!head.isFile()) return null;
+
+        String contents = new String(Files.readAllBytes(head.toPath()), StandardCharsets.UTF_8).trim();
+        if(!contents.startsWith("ref: ")) return null;
+
+        return contents.substring(5).trim();
+    }
+
+    /**
+     * Reads the id a reference points to, checking both loose references and packed-refs.
+     * @param refName The full name of the reference (ex: refs/heads/_Tickets)
+     * @return The id the reference points to, or null if it does not exist.
+     * @throws IOException If the reference could not be read.
+     */
+    public String readRef(String refName) throws IOException {
+        File loose = new File(gitDir, refName);
+
+        if(loose.isFile()) {
+            String contents = new String(Files.readAllBytes(loose.toPath()), StandardCharsets.UTF_8).trim();
+
+            if(contents.startsWith("ref: ")) return readRef(contents.substring(5).trim());
+
+            return contents.length() == 40 ? contents : null;
+        }
+
+        File packed = new File(gitDir, "packed-refs");
+        if(packed.isFile()) {
+            for(String line : Files.readAllLines(packed.toPath(), StandardCharsets.UTF_8)) {
+                if(line.startsWith("#") || line.startsWith("^")) continue;
+
+                String[] parts = line.split(" ");
+                if(parts.length == 2 && parts[1].equals(refName)) return parts[0];
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Reads the id of the tree a commit points to.
+     * @param commitID The id of the commit.
+     * @return The id of the commit's tree, or null if the commit isn't a loose object, which is all
+     *          this writer can read.
+     * @throws IOException If the commit could not be read.
+     */
+    private String readCommitTree(String commitID) throws IOException {
+        File object = new File(new File(new File(gitDir, "objects"), commitID.substring(0, 2)), commitID.substring(2));
+        if(!object.isFile()) return null;
+
+        // The object is "commit <size>\0tree <id>\n...", so only the start of it is needed
+        byte[] start = new byte[64];
+        int length = 0;
+
+        try(InflaterInputStream in = new InflaterInputStream(new FileInputStream(object))) {
+            int read;
+            while(length < start.length && (read = in.read(start, length, start.length - length)) != -1) length += read;
+        }
+
+        String contents = new String(start, 0, length, StandardCharsets.US_ASCII);
+        int nul = contents.indexOf('\0');
+
+        if(!contents.startsWith("commit ") || nul < 0 || !contents.startsWith("tree ", nul + 1) ||
+           contents.length() < nul + 1 + "tree ".length() + 40) return null;
+
+        return contents.substring(nul + 1 + "tree ".length(), nul + 1 + "tree ".length() + 40);
+    }
+
+    /**
+     * Gets the path of a file relative to the work tree.
+     * @param file The file to get the path of.
+     * @return The path using '/' as a separator, or null if the file is outside the work tree.
+     * @throws IOException From File.getCanonicalPath()
+     */
+    private String relativePath(File file) throws IOException {
+        String root = workTree.getCanonicalPath() + File.separator;
+        String path = file.getCanonicalPath();
+
+        if(!path.startsWith(root)) return null;
+
+        return path.substring(root.length()).replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Reads all entries from a version 2 index file.
+     * @param indexFile The index file to read.
+     * @return A list of all entries sorted by path, or null if the index is not supported.
+     * @throws IOException If the index could not be read.
+     */
+    private List<IndexEntry> readIndex(File indexFile) throws IOException {
+        List<IndexEntry> entries = new ArrayList<IndexEntry>();
+        cacheTree = new CacheTree();
+
+        if(!indexFile.exists()) return entries;
+
+        byte[] data = Files.readAllBytes(indexFile.toPath());
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+        byte[] signature = new byte[4];
+        in.readFully(signature);
+        if(!new String(signature, StandardCharsets.US_ASCII).equals("DIRC") || in.readInt() != 2) {
+            return null;
+        }
+
+        int count = in.readInt();
+        int offset = 12;
+
+        for(int i = 0; i < count; i++) {
+            IndexEntry entry = new IndexEntry();
+
+            for(int j = 0; j < entry.stat.length; j++) entry.stat[j] = in.readInt();
+            in.readFully(entry.id);
+            entry.flags = in.readUnsignedShort();
+
+            // Anything with a stage is an unresolved conflict, which we shouldn't be committing
+            if((entry.flags & 0x3000) != 0) return null;
+
+            ByteArrayOutputStream name = new ByteArrayOutputStream();
+            int b;
+            while((b = in.readUnsignedByte()) != 0) name.write(b);
+            entry.path = name.toByteArray();
+
+            int consumed = 62 + entry.path.length + 1;
+            int padded = (62 + entry.path.length + 8) & ~7;
+            in.skipBytes(padded - consumed);
+            offset += padded;
+
+            entries.add(entry);
+        }
+
+        // Other extensions are dropped when rewriting, which is fine for all of them except a split index
+        while(offset + 8 <= data.length - 20) {
+            in.readFully(signature);
+            int size = in.readInt();
+
+            String ext = new String(signature, StandardCharsets.US_ASCII);
+            if(ext.equals("link") || ext.equals("sdir")) return null;
+
+            if(ext.equals("TREE")) {
+                byte[] extension = new byte[size];
+                in.readFully(extension);
+                readCacheTree(new DataInputStream(new ByteArrayInputStream(extension)), cacheTree);
+            } else {
+                in.skipBytes(size);
+            }
+
+            offset += 8 + size;
+        }
+
+        return entries;
+    }
+
+    /**
+     * Reads a tree, and all trees underneath it, from the cache tree extension.
+     * <p>
+     * Each tree is stored as <code>&lt;name&gt;\0&lt;entry count&gt; &lt;subtree count&gt;\n</code>,
+     *  followed by its id if the entry count isn't -1, followed by its subtrees.
+     * @param in The stream to read the tree from.
+     * @param tree The tree to fill in.
+     * @return The name of the tree.
+     * @throws IOException If the extension is malformed.
+     */
+    private static String readCacheTree(DataInputStream in, CacheTree tree) throws IOException {
+        String name = readUntil(in, 0);
+        tree.entryCount = Integer.parseInt(readUntil(in, ' '));
+        int subtrees = Integer.parseInt(readUntil(in, '\n'));
+
+        if(tree.entryCount >= 0) {
+            tree.id = new byte[20];
+            in.readFully(tree.id);
+        }
+
+        for(int i = 0; i < subtrees; i++) {
+            CacheTree child = new CacheTree();
+            tree.children.put(readCacheTree(in, child), child);
+        }
+
+        return name;
+    }
+
+    /**
+     * Reads a string up to a terminating byte.
+     * @param in The stream to read from.
+     * @param terminator The byte the string ends with, which is read but not returned.
+     * @return The string that was read.
+     * @throws IOException If the stream ended first.
+     */
+    private static String readUntil(DataInputStream in, int terminator) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int b;
+        while((b = in.readUnsignedByte()) != terminator) bytes.write(b);
+
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a tree, and all trees underneath it, to the cache tree extension.
+     * @param out The stream to write the tree to.
+     * @param name The name of the tree.
+     * @param tree The tree to write.
+     * @throws IOException If the tree could not be written.
+     */
+    private static void writeCacheTree(DataOutputStream out, String name, CacheTree tree) throws IOException {
+        out.write(name.getBytes(StandardCharsets.UTF_8));
+        out.write(0);
+        out.writeBytes(tree.entryCount + " " + tree.children.size() + "\n");
+        if(tree.entryCount >= 0) out.write(tree.id);
+
+        for(Map.Entry<String, CacheTree> child : tree.children.entrySet()) {
+            writeCacheTree(out, child.getKey(), child.getValue());
+        }
+    }
+
+    /**
+     * Writes a list of entries to an index file, including the trailing checksum.
+     * @param indexFile The file to write the index to.
+     * @param entries The entries to write, sorted by path.
+     * @throws IOException If the file could not be written.
+     */
+    private void writeIndex(File indexFile, List<IndexEntry> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeBytes("DIRC");
+        out.writeInt(2);
+        out.writeInt(entries.size());
+
+        for(IndexEntry entry : entries) {
+            for(int stat : entry.stat) out.writeInt(stat);
+            out.write(entry.id);
+            out.writeShort(entry.flags);
+            out.write(entry.path);
+
+            int padding = ((62 + entry.path.length + 8) & ~7) - 62 - entry.path.length;
+            for(int i = 0; i < padding; i++) out.writeByte(0);
+        }
+
+        ByteArrayOutputStream extension = new ByteArrayOutputStream();
+        writeCacheTree(new DataOutputStream(extension), "", cacheTree);
+
+        out.writeBytes("TREE");
+        out.writeInt(extension.size());
+        extension.writeTo(out);
+
+        out.flush();
+        byte[] contents = bytes.toByteArray();
+
+        OutputStream fileOut = new FileOutputStream(indexFile);
+        try {
+            fileOut.write(contents);
+            fileOut.write(sha1().digest(contents));
+        } finally {
+            fileOut.close();
+        }
+    }
+
+    /**
+     * Fills the stat information of an index entry from a file.
+     * <p>
+     * Fields which cannot be read on this platform are left as 0, which only causes git to re-hash
+     *  the file the next time it checks it.
+     * @param file The file to read the stat information of.
+     * @param entry The entry to fill.
+     * @throws IOException If the file attributes could not be read.
+     */
+    private void fillStat(File file, IndexEntry entry) throws IOException {
+        long mtime = file.lastModified();
+        entry.stat[2] = (int)(mtime / 1000);
+        entry.stat[3] = (int)((mtime % 1000) * 1000000);
+        entry.stat[6] = REGULAR_FILE_MODE;
+        entry.stat[9] = (int)file.length();
+
+        try {
+            Map<String, Object> attrs = Files.readAttributes(file.toPath(), "unix:ctime,dev,ino,uid,gid,mode");
+
+            long ctime = ((FileTime)attrs.get("ctime")).toMillis();
+            entry.stat[0] = (int)(ctime / 1000);
+            entry.stat[1] = (int)((ctime % 1000) * 1000000);
+            entry.stat[4] = ((Number)attrs.get("dev")).intValue();
+            entry.stat[5] = ((Number)attrs.get("ino")).intValue();
+            entry.stat[7] = ((Number)attrs.get("uid")).intValue();
+            entry.stat[8] = ((Number)attrs.get("gid")).intValue();
+
+            if((((Number)attrs.get("mode")).intValue() & 0111) != 0) entry.stat[6] = 0100755;
+        } catch(UnsupportedOperationException e) {
+            // Not a unix filesystem, leave the rest as 0
+        }
+    }
+
+    /**
+     * Inserts an entry into the sorted entry list, replacing any entry with the same path.
+     * @param entries The sorted list of entries.
+     * @param entry The entry to insert.
+     */
+    private static void putEntry(List<IndexEntry> entries, IndexEntry entry) {
+        int idx = Collections.binarySearch(entries, entry, PATH_ORDER);
+
+        if(idx >= 0) entries.set(idx, entry);
+        else entries.add(-idx - 1, entry);
+    }
+
+    /**
+     * Removes the entry with the given path from the sorted entry list, if it exists.
+     * @param entries The sorted list of entries.
+     * @param path The path of the entry to remove.
+     */
+    private static void removeEntry(List<IndexEntry> entries, byte[] path) {
+        IndexEntry key = new IndexEntry();
+        key.path = path;
+
+        int idx = Collections.binarySearch(entries, key, PATH_ORDER);
+        if(idx >= 0) entries.remove(idx);
+    }
+
+    /**
+     * Orders index entries the same way Git does, by comparing the raw bytes of their paths.
+     */
+    private static final Comparator<IndexEntry> PATH_ORDER = new Comparator<IndexEntry>() {
+        public int compare(IndexEntry a, IndexEntry b) {
+            int len = Math.min(a.path.length, b.path.length);
+
+            for(int i = 0; i < len; i++) {
+                int diff = (a.path[i] & 0xFF) - (b.path[i] & 0xFF);
+                if(diff != 0) return diff;
+            }
+
+            return a.path.length - b.path.length;
+        }
+    };
+
+    /**
+     * Builds a tree hierarchy out of a list of index entries.
+     * @param entries The entries to build the tree from.
+     * @return The root of the tree.
+     */
+    private static TreeNode buildTree(List<IndexEntry> entries) {
+        TreeNode root = new TreeNode();
+
+        for(IndexEntry entry : entries) {
+            String[] parts = new String(entry.path, StandardCharsets.UTF_8).split("/");
+            TreeNode node = root;
+
+            for(int i = 0; i < parts.length - 1; i++) {
+                Object child = node.children.get(parts[i]);
+
+                if(!(child instanceof TreeNode)) {
+                    child = new TreeNode();
+                    node.children.put(parts[i], child);
+                }
+
+                node = (TreeNode)child;
+            }
+
+            node.children.put(parts[parts.length - 1], entry);
+        }
+
+        return root;
+    }
+
+    /**
+     * Writes a tree, and all trees underneath it, to the object database.
+     * <p>
+     * Trees that haven't changed since they were last written are taken from the cache tree instead,
+     *  and the cache tree is filled in with every tree that is written.
+     * @param node The tree to write.
+     * @param cache The cache tree for the same tree.
+     * @return The raw id of the written tree.
+     * @throws IOException If the tree could not be written.
+     */
+    private byte[] writeTree(TreeNode node, CacheTree cache) throws IOException {
+        if(cache.id != null) return cache.id;
+
+        // Git sorts trees as though their name ended with a '/'
+        TreeMap<String, Object> sorted = new TreeMap<String, Object>();
+        for(Map.Entry<String, Object> child : node.children.entrySet()) {
+            String key = child.getKey() + (child.getValue() instanceof TreeNode ? "/" : "");
+            sorted.put(key, child.getValue());
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int entryCount = 0;
+
+        // Forget subtrees that no longer exist
+        cache.children.keySet().retainAll(node.children.keySet());
+
+        for(Map.Entry<String, Object> child : sorted.entrySet()) {
+            String name = child.getKey();
+            byte[] id;
+            String mode;
+
+            if(child.getValue() instanceof TreeNode) {
+                name = name.substring(0, name.length() - 1);
+
+                CacheTree childCache = cache.children.get(name);
+                if(childCache == null) {
+                    childCache = new CacheTree();
+                    cache.children.put(name, childCache);
+                }
+
+                id = writeTree((TreeNode)child.getValue(), childCache);
+                entryCount += childCache.entryCount;
+                mode = "40000";
+            } else {
+                IndexEntry entry = (IndexEntry)child.getValue();
+                id = entry.id;
+                entryCount++;
+                mode = Integer.toOctalString(entry.getMode());
+            }
+
+            out.write((mode + " " + name).getBytes(StandardCharsets.UTF_8));
+            out.write(0);
+            out.write(id);
+        }
+
+        cache.id = writeObject("tree", out.toByteArray());
+        cache.entryCount = entryCount;
+
+        return cache.id;
+    }
+
+    /**
+     * Writes a loose object into the object database, unless it already exists.
+     * @param type The type of the object (blob, tree, commit)
+     * @param contents The contents of the object.
+     * @return The raw id of the object.
+     * @throws IOException If the object could not be written.
+     */
+    public byte[] writeObject(String type, byte[] contents) throws IOException {
+        byte[] header = (type + " " + contents.length + "\0").getBytes(StandardCharsets.US_ASCII);
+
+        MessageDigest md = sha1();
+        md.update(header);
+        md.update(contents);
+        byte[] id = md.digest();
+
+        String hex = toHex(id);
+        File dir = new File(new File(gitDir, "objects"), hex.substring(0, 2));
+        File object = new File(dir, hex.substring(2));
+
+        if(object.exists()) return id;
+
+        if(!dir.exists()) dir.mkdirs();
+
+        File temp = File.createTempFile("tmp_obj_", null, dir);
+        try {
+            DeflaterOutputStream out = new DeflaterOutputStream(new FileOutputStream(temp),
+                                                                new Deflater(Deflater.BEST_SPEED));
+            try {
+                out.write(header);
+                out.write(contents);
+            } finally {
+                out.close();
+            }
+
+            Files.move(temp.toPath(), object.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch(FileAlreadyExistsException e) {
+            // Someone else wrote the same object first, which is just as good
+        } finally {
+            if(temp.exists()) temp.delete();
+        }
+
+        return id;
+    }
+
+    /**
+     * Points a reference at a new id, using a lock file like Git does.
+     * <p>
+     * Like <code>git update-ref &lt;ref&gt; &lt;new&gt; &lt;old&gt;</code>, the reference is only
+     *  updated if it still points at the id it was read as, so that a commit made by another process in
+     *  the meantime is never lost.
+     * @param refName The full name of the reference.
+     * @param oldID The id the reference must still point to, or null if it must not exist yet.
+     * @param id The id to point the reference at.
+     * @return true if the reference was updated, false if it is locked by another process or no
+     *          longer points to <code>oldID</code>.
+     * @throws IOException If the reference could not be read or written.
+     */
+    private boolean updateRef(String refName, String oldID, String id) throws IOException {
+        File ref = new File(gitDir, refName);
+        File lock = new File(gitDir, refName + ".lock");
+
+        if(!ref.getParentFile().exists()) ref.getParentFile().mkdirs();
+
+        if(!lock.createNewFile()) {
+            System.err.println("Unable to lock " + refName + ", another git process may be running.");
+            return false;
+        }
+
+        try {
+            // Git takes the same lock before moving a reference, so it can't move while we hold it
+            String currentID = readRef(refName);
+            if(!Objects.equals(currentID, oldID)) {
+                System.err.println(refName + " was moved by another process, not updating it.");
+                return false;
+            }
+
+            OutputStream out = new FileOutputStream(lock);
+            try {
+                out.write((id + "\n").getBytes(StandardCharsets.US_ASCII));
+            } finally {
+                out.close();
+            }
+
+            Files.move(lock.toPath(), ref.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } finally {
+            if(lock.exists()) lock.delete();
+        }
+    }
+
+    /**
+     * Appends an entry to the reflogs of HEAD and the given branch, if reflogs are being kept.
+     * @param refName The full name of the branch that was updated.
+     * @param oldID The id the branch pointed to before, or null if it did not exist.
+     * @param newID The id the branch points to now.
+     * @param ident The formatted identity of whoever made the change.
+     * @param message The reflog message.
+     */
+    private void appendReflog(String refName, String oldID, String newID, String ident, String message) {
+        File logs = new File(gitDir, "logs");
+        if(!logs.isDirectory()) return;
+
+        String line = (oldID == null ? NULL_ID : oldID) + " " + newID + " " + ident + "\t" + message + "\n";
+
+        for(File log : new File[] { new File(logs, "HEAD"), new File(logs, refName) }) {
+            try {
+                if(!log.getParentFile().exists()) log.getParentFile().mkdirs();
+
+                OutputStream out = new FileOutputStream(log, true);
+                try {
+                    out.write(line.getBytes(StandardCharsets.UTF_8));
+                } finally {
+                    out.close();
+                }
+            } catch(IOException e) {
+                // The reflog is only a convenience, so failing to write it isn't fatal
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Gets the name to write commits as, preferring GIT_COMMITTER_NAME if it is set.
+     * @return The name to write commits as, or null if none is configured.
+     */
+    private static String getIdentityName() {
+        String name = System.getenv("GIT_COMMITTER_NAME");
+        return name != null ? name : GitUtil.getAuthor();
+    }
+
+    /**
+     * Gets the email to write commits as, preferring GIT_COMMITTER_EMAIL if it is set.
+     * @return The email to write commits as, or null if none is configured.
+     */
+    private static String getIdentityEmail() {
+        String email = System.getenv("GIT_COMMITTER_EMAIL");
+        return email != null ? email : GitUtil.getEmail();
+    }
+
+    /**
+     * Formats an identity line the way Git does: "Name &lt;email&gt; seconds +zzzz"
+     * @param name The name of the identity.
+     * @param email The email of the identity.
+     * @return The formatted identity.
+     */
+    private static String formatIdentity(String name, String email) {
+        long now = System.currentTimeMillis();
+        int offset = TimeZone.getDefault().getOffset(now) / 60000;
+
+        char sign = offset < 0 ? '-' : '+';
+        offset = Math.abs(offset);
+
+        return String.format("%s <%s> %d %c%02d%02d", name, email, now / 1000, sign, offset / 60, offset % 60);
+    }
+
+    /**
+     * Gets a new SHA-1 digest.
+     * @return A new SHA-1 MessageDigest.
+     */
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch(NoSuchAlgorithmException e) {
+            // Every Java implementation is required to support SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Converts a raw object id to its hex representation.
+     * @param id The raw id to convert.
+     * @return The id as a lowercase hex string.
+     */
+    public static String toHex(byte[] id) {
+        StringBuilder hex = new StringBuilder(id.length * 2);
+
+        for(byte b : id) {
+            hex.append(Character.forDigit((b & 0xF0) >> 4, 16));
+            hex.append(Character.forDigit(b & 0x0F, 16));
+        }
+
+        return hex.toString();
+    }
+}
@@ -15,12 +15,23 @@ import java.util.List;
  * Command-line options:
  * <p><code> --no-gui</code>
  * <p><code> --gitDir=${GITDIRECTORY}</code>
+ * <p><code> --no-native-git</code>
+ * <p><code> --commit-window=${MILLISECONDS}</code>
+ * <p><code> --commit-batch=${COUNT}</code>
+ * <p><code> --read-objects</code>
+ * <p><code> --network-timeout=${SECONDS}</code>
+ * <p><code> --verbose</code>
+ * <p><code> --background-sync</code>
+ * <p><code> --load-threads=${COUNT}</code>
+ * <p><code> --min-id-length=${LENGTH}</code>
+ * <p><code> --fsync=${always|commit|never}</code>
+ * <p><code> --binary-tickets</code>
  * 
  * <p>Commands:
  * <p><code>  new ${TITLE} ${DETAILS} ${TYPE} ${PRIORITY}</code>
  * <p>    - Creates a new ticket with the corresponding title, details, type, and priority
- * <p><code>  list</code>
- * <p>    - Lists all tickets for this project
+ * <p><code>  list $[--short] $[--explain] $[QUERY...]</code>
+ * <p>    - Lists all tickets for this project, or those matching a query
  * <p><code>  show ${MD5ID} [comment]</code>
  * <p>    - Shows either the contents of a ticket, or the comments for a ticket.
  * <p><code>  edit ${MD5ID} [priority=${PRIORITY}] [status=${STATUS}] [type=${TYPE}]</code>
@@ -31,6 +42,12 @@ import java.util.List;
  * <p>    - Prompts the user for a username and password again
  * <p><code>  sync</code>
  * <p>    - Syncs all local tickets with all tickets stored remotely.
+ * <p><code>  migrate</code>
+ * <p>    - Moves every ticket into a shard directory named after the start of its ID.
+ * <p><code>  search $[--limit=${COUNT}] $QUERY...</code>
+ * <p>    - Searches the title, details and comments of every ticket.
+ * <p><code>  stats $[--by=${FIELD},...] $[--comments] $[QUERY...]</code>
+ * <p>    - Counts tickets and their ages and comments, grouped by their fields.
  * <p><code>  help $[COMMAND]</code>
  * <p>    - Prints a help message
  * 
@@ -53,6 +70,9 @@ public class GitTicketMain {
         SYNC,
         USERPASS,
         COMMENT,
+        MIGRATE,
+        SEARCH,
+        STATS,
         HELP;
         
         /** A cached list of all names in this enum. */
@@ -120,8 +140,13 @@ public class GitTicketMain {
                 System.out.println("\tCreates a new ticket.");
                 break;
             case LIST:
-                System.out.println("list");
-                System.out.println("\tLists all tickets for this project.");
+                System.out.println("list $[--short] $[--explain] $[QUERY...]");
+                System.out.println("\tLists all tickets for this project, or only those matching every term of a query:");
+                System.out.println("\t  status:${STATUS},...  priority:${PRIORITY},...  type:${TYPE},...");
+                System.out.println("\t  author:${TEXT}  created:$[>|>=|<|<=|=]${yyyy-MM-dd|yyyy-MM-ddTHH:mm:ss}");
+                System.out.println("\t  sort:$[-]${id|title|author|date|status|priority|type},...  limit:${COUNT}");
+                System.out.println("\tMatching tickets are sorted by ID unless a sort is given. --explain prints how the");
+                System.out.println("\tquery was executed to stderr.");
                 break;
             case SHOW:
                 System.out.println("show ${MD5ID} [comment]");
@@ -139,6 +164,24 @@ public class GitTicketMain {
                 System.out.println("sync");
                 System.out.println("Syncs all local tickets with all tickets stored remotely.");
                 break;
+            case MIGRATE:
+                System.out.println("migrate");
+                System.out.println("\tMoves every ticket into a shard directory named after the start of its ID, which keeps");
+                System.out.println("\tdirectory listings and commits fast with very many tickets. Only needs to be done once.");
+                break;
+            case SEARCH:
+                System.out.println("search $[--limit=${COUNT}] $QUERY...");
+                System.out.println("\tSearches the title, details and comments of every ticket, printing the ID and title of");
+                System.out.println("\tthe best matches first. Every word must match, and words in double quotes must match as");
+                System.out.println("\ta phrase. At most 20 matches are shown unless a limit is given.");
+                break;
+            case STATS:
+                System.out.println("stats $[--by=${FIELD},...] $[--comments] $[QUERY...]");
+                System.out.println("\tCounts the tickets matching a query (see list), with the percentiles of their ages, grouped");
+                System.out.println("\tby any of status, priority, type, author, day, week, month and year. Tickets are grouped");
+                System.out.println("\tby status unless --by is given. --comments also counts the comments on every ticket,");
+                System.out.println("\twhich reads each one instead of only the ticket index.");
+                break;
         }
     }
     
@@ -152,15 +195,29 @@ public class GitTicketMain {
         System.out.println("Command-line options:");
         System.out.println("\t--no-gui");
         System.out.println("\t--gitDir=${GITDIRECTORY}");
+        System.out.println("\t--no-native-git");
+        System.out.println("\t--commit-window=${MILLISECONDS}");
+        System.out.println("\t--commit-batch=${COUNT}");
+        System.out.println("\t--read-objects");
+        System.out.println("\t--network-timeout=${SECONDS}");
+        System.out.println("\t--verbose");
+        System.out.println("\t--background-sync");
+        System.out.println("\t--load-threads=${COUNT}");
+        System.out.println("\t--min-id-length=${LENGTH}");
+        System.out.println("\t--fsync=${always|commit|never}");
+        System.out.println("\t--binary-tickets");
         System.out.println("");
         System.out.println("Commands:");
         System.out.println(" - new ${TITLE} ${DETAILS} ${TYPE} ${PRIORITY}");
-        System.out.println(" - list");
+        System.out.println(" - list $[--short] $[--explain] $[QUERY...]");
         System.out.println(" - show ${MD5ID} [comment]");
         System.out.println(" - edit ${MD5ID} $[priority=${PRIORITY}] $[status=${STATUS}] $[type=${TYPE}]");
         System.out.println(" - comment ${MD5ID} $COMMENT CONTENTS...");
         System.out.println(" - userpass");
         System.out.println(" - sync");
+        System.out.println(" - migrate");
+        System.out.println(" - search $[--limit=${COUNT}] $QUERY...");
+        System.out.println(" - stats $[--by=${FIELD},...] $[--comments] $[QUERY...]");
         System.out.println(" - help $[COMMAND]");
     }
     
@@ -198,7 +255,7 @@ public class GitTicketMain {
         try {
             File file = FileUtil.writeTicket(t);
             if(file != null) {
-                GitUtil.commit(file);
+                GitUtil.scheduleCommit(file);
             } else {
                 System.err.print("Failed to write ticket to disk.");
                 System.exit(1);
@@ -217,19 +274,43 @@ public class GitTicketMain {
      * @param args The list of arguments for this command.
      */
     private static void listTickets(List<String> args) {
-        List<String> names = FileUtil.getAllTicketFilenames();
-        
         boolean showShort = false;
-        if(args.contains("--short")) showShort = true;
+        boolean explain = false;
+        List<String> terms = new ArrayList<String>();
         
-        for(String name : names) {
-            String id = name.split("\\.")[0];
-            id = id.split("\\\\")[id.split("\\\\").length - 1];
-            
+        for(String arg : args) {
+            if(arg.equals("--short")) showShort = true;
+            else if(arg.equals("--explain")) explain = true;
+            else terms.add(arg);
+        }
+        
+        TicketQuery query = null;
+        try {
+            if(!terms.isEmpty() || explain) query = TicketQuery.parse(terms);
+        } catch(IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            help(CommandType.LIST);
+            System.exit(1);
+        }
+        
+        List<TicketIndex.Entry> entries = query == null ? FileUtil.getAllTicketEntries() : FileUtil.queryTicketEntries(query);
+        
+        if(entries == null) {
+            System.err.println("Failed to read tickets.");
+            System.exit(1);
+        }
+        
+        if(explain) System.err.println(query.getPlan());
+        
+        // Short IDs are only as long as they need to be to tell every listed ticket apart
+        TicketIdTrie ids = new TicketIdTrie();
+        if(showShort) for(TicketIndex.Entry entry : entries) ids.add(entry.getMD5ID());
+        
+        for(TicketIndex.Entry entry : entries) {
             if(showShort)
-                System.out.println(id.substring(0, id.length() / 2));
+                System.out.println(ids.getUniquePrefix(entry.getMD5ID(), Configuration.getMinIdLength()));
             else
-                System.out.println(id);
+                System.out.println(entry.getMD5ID());
         }
     }
     
@@ -283,7 +364,13 @@ public class GitTicketMain {
             // Don't bother writing to disk if the ticket hasn't changed
             if(hasChanged) {
                 try {
-                    FileUtil.writeTicket(t);
+                    File file = FileUtil.writeTicket(t);
+                    if(file != null) {
+                        GitUtil.scheduleCommit(file);
+                    } else {
+                        System.err.println("Failed to save changes to disk.");
+                        System.exit(1);
+                    }
                 } catch(IOException e) {
                     System.err.println("Failed to save changes to disk.");
                     e.printStackTrace();
@@ -362,19 +449,20 @@ public class GitTicketMain {
             System.exit(1);
         }
         
-        Ticket t = FileUtil.readTicket(args.get(0));
+        // The comment is appended in its own file, so the ticket itself never needs to be read
+        String md5ID = FileUtil.resolveTicketID(args.get(0));
         
-        if(t == null) System.exit(1);
+        if(md5ID == null) System.exit(1);
         
         String newContents = "";
         for(int i = 1; i < args.size(); i++) {
             newContents += args.get(i) + " ";
         }
         
-        t.addComment(new TicketComment(GitUtil.getAuthor(), new Date(), newContents.trim()));
+        TicketComment comment = new TicketComment(GitUtil.getAuthor(), new Date(), newContents.trim());
         
         try {
-            FileUtil.writeTicket(t);
+            GitUtil.scheduleCommit(FileUtil.appendComment(FileUtil.getTicketFile(md5ID), comment));
         } catch(IOException e) {
             System.err.println("Failed to update ticket.");
             e.printStackTrace();
@@ -382,6 +470,162 @@ public class GitTicketMain {
         }
     }
     
+    /**
+     * Moves every ticket into its shard directory.
+     * @param args The list of arguments for this command.
+     */
+    private static void migrateTickets(List<String> args) {
+        int moved = FileUtil.migrateToShards();
+        
+        if(moved < 0) {
+            System.err.println("Failed to move every ticket into its shard directory.");
+            System.exit(1);
+        }
+        
+        System.out.println("Moved " + moved + " ticket(s) into shard directories.");
+    }
+    
+    /**
+     * Searches the text of every ticket.
+     * @param args The list of arguments for this command.
+     */
+    private static void searchTickets(List<String> args) {
+        int limit = 20;
+        List<String> words = new ArrayList<String>();
+        
+        for(String arg : args) {
+            if(arg.startsWith("--limit=")) {
+                try {
+                    limit = Integer.parseInt(arg.split("=")[1]);
+                } catch(NumberFormatException e) {
+                    System.err.println("Invalid limit " + arg.split("=")[1]);
+                    System.exit(1);
+                }
+            } else {
+                words.add(arg);
+            }
+        }
+        
+        if(words.isEmpty()) {
+            System.err.println("Invalid number of arguments. Must specify what to search for.");
+            help(CommandType.SEARCH);
+            System.exit(1);
+        }
+        
+        TicketSearchIndex index = TicketSearchIndex.getInstance();
+        List<TicketSearchIndex.Result> results = index == null ? null : index.search(String.join(" ", words), limit);
+        
+        if(results == null) {
+            System.err.println("Failed to search tickets.");
+            System.exit(1);
+        }
+        
+        boolean committed = FileUtil.isReadingCommittedTickets();
+        
+        // Only the headers of the matches are needed for their titles
+        for(TicketSearchIndex.Result result : results) {
+            Ticket t = null;
+            try {
+                t = committed ? FileUtil.readCommittedTicket(result.getMD5ID())
+                              : LazyTicket.read(FileUtil.getTicketFile(result.getMD5ID()));
+            } catch(IOException e) {
+                e.printStackTrace();
+            }
+            
+            System.out.println(result.getMD5ID() + "\t" + (t != null ? t.getTitle() : ""));
+        }
+    }
+    
+    /**
+     * Prints statistics of every ticket, or those matching a query.
+     * @param args The list of arguments for this command.
+     */
+    private static void ticketStats(List<String> args) {
+        List<TicketStats.Field> fields = new ArrayList<TicketStats.Field>();
+        boolean comments = false;
+        List<String> terms = new ArrayList<String>();
+        
+        try {
+            for(String arg : args) {
+                if(arg.startsWith("--by=")) {
+                    for(String field : arg.substring("--by=".length()).split(",")) {
+                        if(!field.isEmpty()) fields.add(TicketStats.Field.parse(field));
+                    }
+                } else if(arg.equals("--comments")) {
+                    comments = true;
+                } else {
+                    terms.add(arg);
+                }
+            }
+        } catch(IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            help(CommandType.STATS);
+            System.exit(1);
+        }
+        
+        if(fields.isEmpty()) fields.add(TicketStats.Field.STATUS);
+        
+        TicketQuery query = null;
+        try {
+            if(!terms.isEmpty()) query = TicketQuery.parse(terms);
+        } catch(IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            help(CommandType.STATS);
+            System.exit(1);
+        }
+        
+        List<TicketIndex.Entry> entries = query == null ? FileUtil.getAllTicketEntries() : FileUtil.queryTicketEntries(query);
+        
+        if(entries == null) {
+            System.err.println("Failed to read tickets.");
+            System.exit(1);
+        }
+        
+        // The headers come from the index, only the comments need the tickets themselves to be read
+        TicketColumns columns = TicketColumns.of(entries);
+        if(comments) {
+            int failed = FileUtil.countComments(columns);
+            if(failed > 0) System.err.println("Failed to count the comments of " + failed + " tickets.");
+        }
+        
+        TicketStats stats = new TicketStats(columns, fields, System.currentTimeMillis());
+        TicketStats.Group total = stats.getTotal();
+        
+        System.out.println("Tickets: " + total.getCount());
+        System.out.println(String.format("Age in days: p50 %.1f, p90 %.1f, p99 %.1f, max %.1f",
+                                         total.getAge(50), total.getAge(90), total.getAge(99), total.getAge(100)));
+        
+        if(comments) {
+            String[] buckets = TicketStats.getCommentBucketLabels();
+            int[] distribution = stats.getCommentDistribution();
+            StringBuilder line = new StringBuilder("Comments: " + total.getCommentCount() + " total, ");
+            
+            line.append(String.format("%.2f mean;", total.getMeanComments()));
+            for(int i = 0; i < buckets.length; i++) line.append(" ").append(buckets[i]).append(": ").append(distribution[i]);
+            
+            System.out.println(line);
+        }
+        
+        System.out.println("");
+        
+        StringBuilder header = new StringBuilder();
+        for(TicketStats.Field field : stats.getFields()) header.append(field).append("\t");
+        header.append("count\tp50\tp90\tp99\tmax");
+        if(comments) header.append("\tcomments\tmean");
+        System.out.println(header);
+        
+        for(TicketStats.Group group : stats.getGroups()) {
+            StringBuilder line = new StringBuilder();
+            
+            for(String label : group.getLabels()) line.append(label).append("\t");
+            line.append(group.getCount());
+            line.append(String.format("\t%.1f\t%.1f\t%.1f\t%.1f", group.getAge(50), group.getAge(90), group.getAge(99), group.getAge(100)));
+            if(comments) line.append("\t").append(group.getCommentCount()).append(String.format("\t%.2f", group.getMeanComments()));
+            
+            System.out.println(line);
+        }
+    }
+    
     /**
      * Changes the username and password used for this repository's ticket origin thing.
      * @param args The list of arguments for this command.
@@ -409,10 +653,61 @@ public class GitTicketMain {
 	        
 	        if(arg.equals("--no-gui")) Configuration.setIsGuiEnabled(false);
 	        else if(arg.startsWith("--gitDir=")) Configuration.setWorkingDir(arg.split("=")[1]);
+	        else if(arg.equals("--no-native-git")) Configuration.setIsNativeGitEnabled(false);
+	        else if(arg.equals("--read-objects")) Configuration.setIsObjectReadEnabled(true);
+	        else if(arg.equals("--verbose")) Configuration.setIsVerbose(true);
+	        else if(arg.equals("--background-sync")) Configuration.setIsBackgroundSyncEnabled(true);
+	        else if(arg.equals("--binary-tickets")) Configuration.setIsBinaryFormatEnabled(true);
+	        else if(arg.startsWith("--network-timeout=")) {
+	            try {
+	                Configuration.setNetworkTimeout(Long.parseLong(arg.split("=")[1]) * 1000);
+	            } catch(NumberFormatException e) {
+	                System.err.println("Invalid network timeout " + arg.split("=")[1]);
+	                System.exit(1);
+	            }
+	        }
+	        else if(arg.startsWith("--commit-window=")) {
+	            try {
+	                Configuration.setCommitWindow(Long.parseLong(arg.split("=")[1]));
+	            } catch(NumberFormatException e) {
+	                System.err.println("Invalid commit window " + arg.split("=")[1]);
+	                System.exit(1);
+	            }
+	        } else if(arg.startsWith("--commit-batch=")) {
+	            try {
+	                Configuration.setCommitBatchSize(Integer.parseInt(arg.split("=")[1]));
+	            } catch(NumberFormatException e) {
+	                System.err.println("Invalid commit batch size " + arg.split("=")[1]);
+	                System.exit(1);
+	            }
+	        } else if(arg.startsWith("--load-threads=")) {
+	            try {
+	                Configuration.setLoadThreads(Math.max(1, Integer.parseInt(arg.split("=")[1])));
+	            } catch(NumberFormatException e) {
+	                System.err.println("Invalid load thread count " + arg.split("=")[1]);
+	                System.exit(1);
+	            }
+	        } else if(arg.startsWith("--min-id-length=")) {
+	            try {
+	                Configuration.setMinIdLength(Integer.parseInt(arg.split("=")[1]));
+	            } catch(NumberFormatException e) {
+	                System.err.println("Invalid minimum ID length " + arg.split("=")[1]);
+	                System.exit(1);
+	            }
+	        } else if(arg.startsWith("--fsync=")) {
+	            try {
+	                Configuration.setFsyncPolicy(Configuration.FsyncPolicy.valueOf(arg.split("=")[1].toUpperCase()));
+	            } catch(IllegalArgumentException e) {
+	                System.err.println("Invalid fsync policy " + arg.split("=")[1]);
+	                System.exit(1);
+	            }
+	        }
 	    }
 	    
 	    GitUtil.init();
 	    
+	    if(Configuration.isBackgroundSyncEnabled()) SyncScheduler.getInstance().resumePending();
+	    
 	    if(Configuration.isGuiEnabled()) {
 	        EventQueue.invokeLater(() -> {
 			    StartGui main = StartGui.getInstance();
@@ -444,6 +739,15 @@ public class GitTicketMain {
 	            case COMMENT:
 	                commentTicket(argList);
 	                break;
+	            case MIGRATE:
+	                migrateTickets(argList);
+	                break;
+	            case SEARCH:
+	                searchTickets(argList);
+	                break;
+	            case STATS:
+	                ticketStats(argList);
+	                break;
 	            case HELP:
 	                help(argList);
 	                break;
@@ -451,6 +755,13 @@ public class GitTicketMain {
                     System.err.println("Invalid command.");
                     System.exit(1);
 	        }
+	        
+	        // Background syncs run on a daemon thread, so run whatever is waiting before exiting
+	        if(Configuration.isBackgroundSyncEnabled()) {
+	            if(!CommitScheduler.getInstance().flush()) System.err.println("Failed to commit pending tickets.");
+	            
+	            SyncScheduler.getInstance().finish();
+	        }
 	    }
 	}
 }
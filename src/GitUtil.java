@@ -1,11 +1,21 @@
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 
 /**
  * @author Tyler Robbins
@@ -13,12 +23,30 @@ import javax.swing.JOptionPane;
  * @since 0.8
  */
 public class GitUtil {
+    /**
+     * The message used for every commit made to the _Tickets branch.
+     */
+    public static final String COMMIT_MESSAGE = "[TICKET] This commit message was auto-generated.";
+    
+    /**
+     * The name of the branch all tickets are stored on.
+     */
+    public static final String TICKETS_BRANCH = "_Tickets";
+    
+    /**
+     * Every directory that has been found to be inside of a Git repository.
+     */
+    private static final Set<String> knownGitDirs = ConcurrentHashMap.newKeySet();
+    
     /**
      * Initializes the copied GIT repository for this project
      * <p>
      * Will create a new folder, with the project repository copied into it.
      *  This folder will be clean of all files except those in the _Tickets branch of the project.
      *  If no such branch exists, then it will be created as an orphan.
+     * <p>
+     * Only the _Tickets branch is ever fetched, so the time and space this takes depends on the
+     *  amount of ticket data rather than the size of the project's history.
      */
     public static void init() {
         try {
@@ -33,26 +61,32 @@ public class GitUtil {
             if(!isGitDir(projectDir)) {
                 System.out.println(projectDir.toString() + " is not a valid git directory. Initializing");
                 try {
-                    // If the directory doesn't exist
-                    Process p = Runtime.getRuntime().exec(new String[] { "git", "clone", "--no-checkout", gitDir, projectDir.getCanonicalPath() });
+                    // Check if the branch exists before cloning, so that we never fetch anything else
+                    ProcessRunner.Result result = ProcessRunner.run(null, "git", "ls-remote", "--exit-code", "--heads",
+                                                                    gitDir, TICKETS_BRANCH);
                     
-                    // System.out.println("Executing git clone --no-checkout " + gitDir + " " + projectDir.getCanonicalPath());
+                    // --exit-code exits with 2 only if the branch doesn't exist, anything else is a real failure
+                    if(result.getExitCode() != 2) checkInitStep(result);
                     
-                    p.waitFor();
-                    
-                    p = Runtime.getRuntime().exec(new String[] { "git", "rev-parse", "--verify", "_Tickets"}, null, projectDir);
-                    
-                    // If the branch doesn't exist, then create it
-                    if(p.waitFor() != 0) {
-                        p = Runtime.getRuntime().exec(new String[] { "git", "checkout", "--orphan", "_Tickets"}, null, projectDir);
-                        p.waitFor();
-                        p = Runtime.getRuntime().exec(new String[] { "git", "rm", "--cached", "-r", projectDir.getCanonicalPath() }, null, projectDir);
-                        p.waitFor();
-                        
-                        FileUtil.cleanUnecessaryFiles(FileUtil.getProjectTicketDir());
+                    if(result.isSuccess()) {
+                        // --no-local stops git from hardlinking every object in the project, and
+                        //  --no-tags stops it from following tags into the rest of the history
+                        checkInitStep(ProcessRunner.run(null, Configuration.getNetworkTimeout(), "git", "clone", "--no-local",
+                                                        "--no-tags", "--single-branch", "--branch", TICKETS_BRANCH,
+                                                        gitDir, projectDir.getCanonicalPath()));
                     } else {
-                        p = Runtime.getRuntime().exec(new String[] { "git", "checkout","_Tickets" }, null, projectDir);
-                        p.waitFor();
+                        // If the branch doesn't exist, then create it as an orphan in an empty repository
+                        checkInitStep(ProcessRunner.run(null, "git", "init", projectDir.getCanonicalPath()));
+                        
+                        // The directory is a repository from here on, so it won't be initialized again on the next run
+                        try {
+                            checkInitStep(ProcessRunner.run(projectDir, "git", "remote", "add", "-t", TICKETS_BRANCH, "origin", gitDir));
+                            checkInitStep(ProcessRunner.run(projectDir, "git", "symbolic-ref", "HEAD", "refs/heads/" + TICKETS_BRANCH));
+                            checkInitStep(ProcessRunner.run(projectDir, "git", "config", "remote.origin.tagOpt", "--no-tags"));
+                        } catch(IOException e) {
+                            System.err.println("Remove " + projectDir + " before trying again.");
+                            throw e;
+                        }
                     }
                     
                     try {
@@ -64,6 +98,11 @@ public class GitUtil {
                             out.println(".gitignore");
                             out.println(".key");
                             out.println(".origin");
+                            out.println(SyncScheduler.PENDING_FILE);
+                            out.println(TicketIndex.INDEX_FILE);
+                            out.println(TicketSearchIndex.INDEX_FILE);
+                            out.println(TicketSearchIndex.JOURNAL_FILE);
+                            out.println(TicketSearchIndex.LOCK_FILE);
                             
                             out.close();
                         } else {
@@ -87,15 +126,6 @@ public class GitUtil {
                         System.err.println("Failed to initialize project dir.");
                     }
                     
-                    System.exit(1);
-                } catch(InterruptedException e) {
-                    e.printStackTrace();
-                    if(Configuration.isGuiEnabled()) {
-                        JOptionPane.showMessageDialog(null, "Failed to initialize project dir. Quitting", "Process interrupted.", JOptionPane.ERROR_MESSAGE);
-                    } else {
-                        System.err.println("Failed to initialize project dir.");
-                    }
-                    
                     System.exit(1);
                 }
             }
@@ -106,6 +136,18 @@ public class GitUtil {
         }
     }
     
+    /**
+     * Checks that a git command run while initializing the copied repository succeeded.
+     * @param result The result of the command.
+     * @throws IOException If the command failed, after printing what it wrote to stderr.
+     */
+    private static void checkInitStep(ProcessRunner.Result result) throws IOException {
+        if(result.isSuccess()) return;
+        
+        System.err.print(result.getStderr());
+        throw new IOException("Failed to initialize project dir: " + result);
+    }
+    
     /**
      * Grabs the remote url set for the copied repository
      * @return The remote url for this repository
@@ -114,20 +156,13 @@ public class GitUtil {
         String remote = null;
         
         try {
-            Process p = Runtime.getRuntime().exec(new String[] { "git", "remote", "get-url", "origin"},
-                                                  null, FileUtil.getProjectTicketDir());
-            BufferedReader stdInput= new BufferedReader(new InputStreamReader(p.getInputStream()));
-        
-            if(p.waitFor() == 0) {
-                remote = "";
-                for (String line = ""; line != null; line = stdInput.readLine()) {
-                    remote += line;
-                }
+            ProcessRunner.Result result = ProcessRunner.run(FileUtil.getProjectTicketDir(), "git", "remote", "get-url", "origin");
+        
+            if(result.isSuccess()) {
+                remote = result.getStdout().trim();
             }
         } catch(IOException e) {
             e.printStackTrace();
-        } catch(InterruptedException e) {
-            e.printStackTrace();
         }
         
         return remote;
@@ -146,46 +181,50 @@ public class GitUtil {
      *  keys, so it is not an option.
      */
     public static void fixRemote() {
-        try {
-            String username = null;
-            char[] password = null;
+        String username = null;
+        char[] password = null;
+        
+        if(Configuration.isGuiEnabled()) {
+            // Syncs run in the background, but the prompt has to be shown on the event dispatch thread
+            UserPassGui[] prompt = new UserPassGui[1];
+            Runnable showPrompt = () -> {
+                prompt[0] = new UserPassGui();
+                prompt[0].setVisible(true);
+            };
             
-            if(Configuration.isGuiEnabled()) {
-                UserPassGui upg = new UserPassGui();
-                upg.setVisible(true);
-                
-                if(upg.getExitState() == UserPassGui.ExitState.OK) {
-                    username = upg.getUsername();
-                    password = upg.getPassword();
-                } else {
-                    System.err.println("Need password to properly set origin.");
+            if(SwingUtilities.isEventDispatchThread()) {
+                showPrompt.run();
+            } else {
+                try {
+                    SwingUtilities.invokeAndWait(showPrompt);
+                } catch(InterruptedException | InvocationTargetException e) {
+                    e.printStackTrace();
                     return;
                 }
+            }
+            
+            UserPassGui upg = prompt[0];
+            if(upg.getExitState() == UserPassGui.ExitState.OK) {
+                username = upg.getUsername();
+                password = upg.getPassword();
             } else {
-                System.out.print("Username: ");
-                username = new Scanner(System.in).nextLine();
-                
-                if(username.length() > 0)
-                    password = System.console().readPassword("Password: ");
+                System.err.println("Need password to properly set origin.");
+                return;
             }
+        } else {
+            System.out.print("Username: ");
+            username = new Scanner(System.in).nextLine();
             
-            Process p = Runtime.getRuntime().exec(new String[] { "git", "remote", "get-url", "origin"},
-                                                  null, new File(FileUtil.getGitDir()));
-            BufferedReader stdInput= new BufferedReader(new InputStreamReader(p.getInputStream()));
-            String origin = "";
+            if(username.length() > 0)
+                password = System.console().readPassword("Password: ");
+        }
+        
+        ProcessRunner.Result result = ProcessRunner.run(new File(FileUtil.getGitDir()), "git", "remote", "get-url", "origin");
+        
+        if(result.isSuccess()) {
+            String origin = result.getStdout().trim();
             
-            int wf = p.waitFor();
-            if(wf == 0) {
-                for (String line = ""; line != null; line = stdInput.readLine()) {
-                    origin += line;
-                }
-                
-                SecurityUtil.writeOrigin("https://" + username + ":" + new String(password) + "@" + origin);
-            }
-        } catch(IOException e) {
-            e.printStackTrace();
-        } catch(InterruptedException e) {
-            e.printStackTrace();
+            SecurityUtil.writeOrigin("https://" + username + ":" + new String(password) + "@" + origin);
         }
     }
     
@@ -204,29 +243,89 @@ public class GitUtil {
     }
     
     /**
-     * Commits a File object using Git using the message "[TICKET] This commit message was auto-generated.".
+     * Commits a File object using Git using the message {@link #COMMIT_MESSAGE}.
      * @param file The File object to commit.
      * @return true if the commit was successful, false otherwise.
      */
     public static boolean commit(File file) {
+        return commit(Collections.singletonList(file));
+    }
+    
+    /**
+     * Commits a collection of File objects as a single commit using the message {@link #COMMIT_MESSAGE}.
+     * <p>
+     * The commit is written directly into the repository with a {@link GitObjectWriter} if native Git
+     *  is enabled, and falls back to calling <code>git add</code> and <code>git commit</code> if that
+     *  is disabled or not supported for the repository.
+     * @param files The File objects to commit. Files which no longer exist are removed.
+     * @return true if the commit was successful or there was nothing to commit, false otherwise.
+     */
+    public static boolean commit(Collection<File> files) {
+        if(Configuration.isNativeGitEnabled()) {
+            try {
+                GitObjectWriter writer = new GitObjectWriter(FileUtil.getProjectTicketDir());
+                
+                if(writer.commit(files, COMMIT_MESSAGE)) return true;
+            } catch(IOException e) {
+                System.err.println("Failed to write commit directly, falling back to git.");
+                e.printStackTrace();
+            }
+        }
+        
         try {
-            Process p = Runtime.getRuntime().exec(new String[] { "git", "add", file.getCanonicalPath()}, null, file.getParentFile());
-            p.waitFor();
+            File projectDir = FileUtil.getProjectTicketDir();
+            List<String> paths = new ArrayList<String>();
+            for(File file : files) paths.add(file.getCanonicalPath());
+            
+            List<String> command = new ArrayList<String>(Arrays.asList("git", "add", "-A", "--"));
+            command.addAll(paths);
+            
+            ProcessRunner.run(projectDir, command.toArray(new String[0]));
+            
+            // Files that are already committed as they are leave nothing to commit, which git commit
+            //  treats as a failure, but the native writer doesn't
+            command = new ArrayList<String>(Arrays.asList("git", "diff", "--cached", "--quiet", "--"));
+            command.addAll(paths);
             
-            p = Runtime.getRuntime().exec(new String[] { "git", "commit", file.getCanonicalPath(), "-m",
-                                                         "[TICKET] This commit message was auto-generated."
-                                                       }, null, file.getParentFile());
+            if(ProcessRunner.run(projectDir, command.toArray(new String[0])).getExitCode() == 0) return true;
             
-            return p.waitFor() == 0;
+            command = new ArrayList<String>(Arrays.asList("git", "commit", "-m", COMMIT_MESSAGE, "--"));
+            command.addAll(paths);
+            
+            return ProcessRunner.run(projectDir, command.toArray(new String[0])).isSuccess();
         } catch(IOException e) {
             e.printStackTrace();
-        } catch(InterruptedException e) {
-            e.printStackTrace();
         }
         
         return false;
     }
     
+    /**
+     * Schedules a filename to be committed with the next group commit.
+     * @param fileName The filename/path to commit
+     * @throws IllegalArgumentException If the filename is null.
+     * @see CommitScheduler
+     */
+    public static void scheduleCommit(String fileName) {
+        if(fileName == null) throw new IllegalArgumentException("File to commit must not be null.");
+        
+        try {
+            scheduleCommit(new File(FileUtil.getProjectTicketDir(), fileName));
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Schedules a File object to be committed with the next group commit.
+     * @param file The File object to commit.
+     * @throws IllegalArgumentException If the File object is null.
+     * @see CommitScheduler
+     */
+    public static void scheduleCommit(File file) {
+        CommitScheduler.getInstance().schedule(file);
+    }
+    
     /**
      * Checks if a given directory is a valid Git directory.
      * @param dirName The directory to check.
@@ -242,37 +341,190 @@ public class GitUtil {
      * @return true if the File object is a valid Git directory, false otherwise.
      */
     public static boolean isGitDir(File dir) {
+        // Running git somewhere that doesn't exist can't succeed, so don't bother
+        if(!dir.isDirectory()) return false;
+        
+        // GIT_DIR changes where git looks, so let git itself handle that case
+        if(!Configuration.isNativeGitEnabled() || System.getenv("GIT_DIR") != null) {
+            return ProcessRunner.run(dir, "git", "rev-parse").isSuccess();
+        }
+        
         try {
-            Process p = Runtime.getRuntime().exec(new String[] { "git", "rev-parse" }, null, dir);
+            File canonical = dir.getCanonicalFile();
+            
+            // Only found directories are cached, since a directory can become a repository later (ex: init())
+            if(knownGitDirs.contains(canonical.getPath())) return true;
             
-            return p.waitFor() == 0;
+            // Like git rev-parse, any directory inside of a repository counts
+            for(File f = canonical; f != null; f = f.getParentFile()) {
+                if(isRepository(new File(f, ".git")) || isRepository(f)) {
+                    knownGitDirs.add(canonical.getPath());
+                    return true;
+                }
+            }
         } catch(IOException e) {
-            // e.printStackTrace();
-        } catch(InterruptedException e) {
             e.printStackTrace();
         }
         
         return false;
     }
     
+    /**
+     * Checks if a path is the .git directory of a repository (or a bare repository), or a .git file
+     *  pointing to one.
+     * @param path The path to check.
+     * @return true if the path is a repository, false otherwise.
+     */
+    private static boolean isRepository(File path) {
+        if(path.isFile() && path.getName().equals(".git")) {
+            try {
+                String contents = new String(Files.readAllBytes(path.toPath()), StandardCharsets.UTF_8).trim();
+                
+                if(!contents.startsWith("gitdir:")) return false;
+                
+                File target = new File(contents.substring("gitdir:".length()).trim());
+                if(!target.isAbsolute()) target = new File(path.getParentFile(), target.getPath());
+                
+                return isRepository(target);
+            } catch(IOException e) {
+                return false;
+            }
+        }
+        
+        return new File(path, "HEAD").isFile() && new File(path, "objects").isDirectory() &&
+               new File(path, "refs").isDirectory();
+    }
+    
     /**
      * Syncs the copied repository with remote.
      * <p>
      * Will call {@link #fixRemote()} if remote points to somewhere on the filesystem.
+     * <p>
+     * The local and remote _Tickets branches are compared first, so that nothing is pulled or pushed
+     *  if they already match, and only a push is done if the remote is behind. If the remote branch
+     *  could not be queried, then a full pull and push is done.
+     * <p>
+     * Only one sync runs at a time, and a successful sync clears the commits recorded by the
+     *  {@link SyncScheduler} as unpushed.
+     * @return true if the sync was successful, false otherwise.
+     */
+    public static synchronized boolean sync() {
+        boolean success = doSync();
+        
+        if(success) SyncScheduler.clearPending();
+        
+        return success;
+    }
+    
+    /**
+     * Does the work of {@link #sync()}.
      * @return true if the sync was successful, false otherwise.
      */
-    public static boolean sync() {
+    private static boolean doSync() {
+        // Make sure anything waiting to be committed goes along with this sync
+        if(!CommitScheduler.getInstance().flush()) {
+            System.err.println("Failed to commit pending tickets before syncing.");
+        }
+        
         // If remote points to somewhere on the system, then fix remote and have it point to the
         //  correct place
-        if(new File(getRemote()).exists()) {
+        if(needsRemoteFix()) {
             fixRemote();
         }
         
         String origin = SecurityUtil.readOrigin();
         
+        String remoteID = getRemoteTicketsID(origin);
+        
+        if(remoteID != null) {
+            String localID = getLocalTicketsID();
+            
+            // Nothing has changed on either side
+            if(remoteID.equals(localID)) return true;
+            
+            // The remote branch doesn't exist yet, or everything it has is already here
+            if(remoteID.isEmpty() || (localID != null && isAncestor(remoteID, localID))) return push(origin);
+            
+            if(!pull(origin)) return false;
+            
+            // If the pull was a fast-forward, then there is nothing new to push
+            if(remoteID.equals(getLocalTicketsID())) return true;
+            
+            return push(origin);
+        }
+        
         return pull(origin) && push(origin);
     }
     
+    /**
+     * Checks if the copied repository's remote still points to somewhere on the filesystem, meaning
+     *  {@link #fixRemote()} has to be called before syncing.
+     * @return true if the remote needs to be fixed, false otherwise.
+     */
+    public static boolean needsRemoteFix() {
+        String remote = getRemote();
+        
+        return remote != null && new File(remote).exists();
+    }
+    
+    /**
+     * Gets the id the local _Tickets branch points to.
+     * @return The id of the local _Tickets branch, or null if it has no commits yet.
+     */
+    public static String getLocalTicketsID() {
+        try {
+            return new GitObjectWriter(FileUtil.getProjectTicketDir()).readRef("refs/heads/" + TICKETS_BRANCH);
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Gets the id the remote _Tickets branch points to, using only the remote's ref advertisement.
+     * @param origin The origin to query.
+     * @return The id of the remote _Tickets branch, an empty string if the remote does not have the
+     *          branch, or null if the remote could not be queried.
+     */
+    public static String getRemoteTicketsID(String origin) {
+        String remote = origin == null ? "origin" : origin.trim();
+        
+        try {
+            ProcessRunner.Result result = ProcessRunner.run(FileUtil.getProjectTicketDir(), Configuration.getNetworkTimeout(),
+                                                            "git", "ls-remote", "--exit-code", remote,
+                                                            "refs/heads/" + TICKETS_BRANCH);
+            String line = result.getStdout().trim();
+            
+            // --exit-code makes ls-remote return 2 if the ref doesn't exist
+            if(result.getExitCode() == 2) return "";
+            
+            if(result.isSuccess() && line.length() >= 40) return line.substring(0, 40);
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Checks if a commit is an ancestor of (or the same as) another commit in the copied repository.
+     * @param ancestor The id of the possible ancestor.
+     * @param descendant The id of the possible descendant.
+     * @return true if {@code ancestor} is an ancestor of {@code descendant}, false if it isn't or
+     *          {@code ancestor} does not exist locally.
+     */
+    public static boolean isAncestor(String ancestor, String descendant) {
+        try {
+            return ProcessRunner.run(FileUtil.getProjectTicketDir(), "git", "merge-base", "--is-ancestor",
+                                     ancestor, descendant).isSuccess();
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+        
+        return false;
+    }
+    
     /**
      * Pushes the copied repository's _Tickets branch to the remote origin if the branch exists.
      * @param origin The origin to push to.
@@ -281,18 +533,12 @@ public class GitUtil {
     public static boolean push(String origin) {
         try {
             // Process p = Runtime.getRuntime().exec(new String[] { "git", "push", "-u", "origin", "_Tickets" },
-            Process p = Runtime.getRuntime().exec(new String[] { "git", "push", "--repo=\"" + origin + "\""},
-                                                  null, FileUtil.getProjectTicketDir());
-            
-            if (p != null) {
-                int out = p.waitFor();
+            ProcessRunner.Result result = ProcessRunner.run(FileUtil.getProjectTicketDir(), Configuration.getNetworkTimeout(),
+                                                            "git", "push", "--repo=\"" + origin + "\"");
             
-                return out == 0;
-            }
+            return result.isSuccess();
         } catch(IOException e) {
             e.printStackTrace();
-        } catch(InterruptedException e) {
-            e.printStackTrace();
         }
         
         return false;
@@ -300,52 +546,73 @@ public class GitUtil {
     
     /**
      * Pulls the copied repository's _Tickets branch from the remote origin if the branch exists.
+     * <p>
+     * The tickets the pull changed are recorded with {@link TicketSearchIndex#filesChanged(Collection)}.
      * @param origin  The origin to pull from.
      * @return true if the pull was successful, false otherwise.
      */
     public static boolean pull(String origin) {
+        String before = getLocalTicketsID();
+        
         try {
             // Process p = Runtime.getRuntime().exec(new String[] { "git", "pull", "origin", "_Tickets" },
-            Process p = Runtime.getRuntime().exec(new String[] { "git", "pull", "\"" + origin + "\"", "_Tickets"},
-                                                  null, FileUtil.getProjectTicketDir());
+            ProcessRunner.Result result = ProcessRunner.run(FileUtil.getProjectTicketDir(), Configuration.getNetworkTimeout(),
+                                                            "git", "pull", "\"" + origin + "\"", TICKETS_BRANCH);
             
-            if(p != null) {
-                int out = p.waitFor();
+            if(result.isSuccess()) recordPulledFiles(before);
             
-                return out == 0;
-            }
+            return result.isSuccess();
         } catch(IOException e) {
             e.printStackTrace();
-        } catch(InterruptedException e) {
-            e.printStackTrace();
         }
         
         return false;
     }
     
     /**
-     * Gets what is registered in the user's git config user.email variable.
-     * @return The users email as defined in git config.
+     * Records which tickets a pull changed, so that the search index reads them again.
+     * <p>
+     * If it can't be told what changed, including when there are so many changes that the list of them
+     *  is cut off at {@link ProcessRunner#MAX_OUTPUT}, then the whole search index is built again.
+     * @param before The id the local _Tickets branch pointed to before the pull, or null if it had no commits.
      */
-    public static String getEmail() {
+    private static void recordPulledFiles(String before) {
+        String after = getLocalTicketsID();
+        
+        if(after == null || after.equals(before)) return;
+        
+        if(before == null) {
+            TicketSearchIndex.invalidate();
+            return;
+        }
+        
         try {
-            Process p = Runtime.getRuntime().exec(new String[] { "git", "config", "--global", "user.email" },
-                                                  null, null);
-            
-            BufferedReader stdInput= new BufferedReader(new InputStreamReader(p.getInputStream()));
-            String email = "";
+            ProcessRunner.Result result = ProcessRunner.run(FileUtil.getProjectTicketDir(), "git", "diff", "--name-only",
+                                                            "--no-renames", "-z", before, after);
             
-            if(p.waitFor() == 0) {
-                for (String line = ""; line != null; line = stdInput.readLine()) {
-                    email += line;
-                }
-                
-                return email;
+            // Output past the limit is dropped, so a list that reaches it may be missing changes
+            if(result.isSuccess() && result.getStdout().getBytes(Charset.defaultCharset()).length < ProcessRunner.MAX_OUTPUT) {
+                TicketSearchIndex.filesChanged(Arrays.asList(result.getStdout().split("\0")));
+                return;
             }
         } catch(IOException e) {
             e.printStackTrace();
-        } catch(InterruptedException e) {
-            e.printStackTrace();
+        }
+        
+        TicketSearchIndex.invalidate();
+    }
+    
+    /**
+     * Gets what is registered in the user's git config user.email variable.
+     * @return The users email as defined in git config.
+     */
+    public static String getEmail() {
+        if(Configuration.isNativeGitEnabled()) return GitConfig.getGlobal().get("user.email");
+        
+        ProcessRunner.Result result = ProcessRunner.run(null, "git", "config", "--global", "user.email");
+        
+        if(result.isSuccess()) {
+            return result.getStdout().trim();
         }
         
         return null;
@@ -356,26 +623,22 @@ public class GitUtil {
      * @return The users name as defined in git config.
      */
     public static String getAuthor() {
-        try {
-            Process p = Runtime.getRuntime().exec(new String[] { "git", "config", "--global", "user.name"},
-                                                  null, null);
+        if(Configuration.isNativeGitEnabled()) {
+            String author = GitConfig.getGlobal().get("user.name");
             
-            BufferedReader stdInput= new BufferedReader(new InputStreamReader(p.getInputStream()));
-            String author = "";
+            if(author != null && author.length() == 0) return getEmail();
             
-            if(p.waitFor() == 0) {
-                for (String line = ""; line != null; line = stdInput.readLine()) {
-                    author += line;
-                }
-                
-                if(author.length() == 0) return getEmail();
-                
-                return author;
-            }
-        } catch(IOException e) {
-            e.printStackTrace();
-        } catch(InterruptedException e) {
-            e.printStackTrace();
+            return author;
+        }
+        
+        ProcessRunner.Result result = ProcessRunner.run(null, "git", "config", "--global", "user.name");
+        
+        if(result.isSuccess()) {
+            String author = result.getStdout().trim();
+            
+            if(author.length() == 0) return getEmail();
+            
+            return author;
         }
         
         return null;
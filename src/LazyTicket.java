@@ -0,0 +1,301 @@
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A Ticket whose details and comments are only read from its file the first time they are needed.
+ * <p>
+ * Creating one only parses the header of the ticket file (the title, author, date, status, priority
+ *  and type), which is all that is needed to list tickets. Both the text format and the
+ *  {@link BinaryTicketFormat} are understood. The details are skipped over without being
+ *  kept, and the comments are never read at all until {@link #getDetails()} or
+ *  {@link #getComments()} is called. Changing any field reads the whole ticket first, so nothing that
+ *  is set is overwritten by what is read later.
+ *
+ * @author Tyler Robbins
+ * @version 1.0
+ * @since 1.2
+ */
+public class LazyTicket extends Ticket {
+    /**
+     * The file this ticket is read from.
+     */
+    private File file;
+
+    /**
+     * The MD5 ID this ticket is stored under, which is used until the whole ticket has been read.
+     */
+    private String md5ID;
+
+    /**
+     * Has the whole ticket been read yet.
+     */
+    private boolean loaded;
+
+    /**
+     * Creates a ticket that hasn't had its details or comments read yet.
+     * @param file The file the ticket is stored in.
+     * @param md5ID The MD5 ID the ticket is stored under.
+     */
+    private LazyTicket(File file, String md5ID) {
+        this.file = file;
+        this.md5ID = md5ID;
+        loaded = false;
+    }
+
+    /**
+     * Reads the header of a ticket file.
+     * @param file The file to read the header from.
+     * @return A LazyTicket if the header could be read, null otherwise.
+     */
+    public static LazyTicket read(File file) {
+        String md5ID = file.getName().split("\\.")[0];
+        LazyTicket ticket = new LazyTicket(file, md5ID);
+
+        try(BufferedInputStream stream = new BufferedInputStream(new FileInputStream(file))) {
+            if(BinaryTicketFormat.isBinary(stream)) {
+                Ticket header = BinaryTicketFormat.readHeader(stream, md5ID);
+                if(header == null) return null;
+
+                ticket.setHeaderTitle(header.getTitle());
+                ticket.setHeaderAuthor(header.getAuthor());
+                ticket.setHeaderDate(header.getDate());
+                ticket.setHeaderStatus(header.getStatus());
+                ticket.setHeaderPriority(header.getPriority());
+                ticket.setHeaderType(header.getType());
+
+                return ticket;
+            }
+
+            LineNumberReader in = new LineNumberReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+            String line;
+
+            if(in.readLine() == null) return malformed(md5ID, in, "short MD5 ID"); // Skip over short MD5 ID
+
+            if((line = in.readLine()) == null) return malformed(md5ID, in, "title");
+            ticket.setHeaderTitle(line.trim());
+
+            if((line = in.readLine()) == null || !line.trim().equals("DetailsStart")) return malformed(md5ID, in, "DetailsStart");
+
+            // Skip the details, they are read later if they are needed
+            while((line = in.readLine()) != null && !line.equals("DetailsEnd"));
+            if(line == null) return malformed(md5ID, in, "DetailsEnd");
+
+            if((line = in.readLine()) == null) return malformed(md5ID, in, "author");
+            ticket.setHeaderAuthor(line.trim());
+
+            if((line = in.readLine()) == null) return malformed(md5ID, in, "date");
+            Date date = FileUtil.parseDate(line.trim());
+            if(date == null) return malformed(md5ID, in, "date in the format " + FileUtil.DATE_PATTERN);
+            ticket.setHeaderDate(date);
+
+            try {
+                if((line = in.readLine()) == null) return malformed(md5ID, in, "status");
+                ticket.setHeaderStatus(Ticket.TicketStatus.values()[Integer.parseInt(line.trim())]);
+
+                if((line = in.readLine()) == null) return malformed(md5ID, in, "priority");
+                ticket.setHeaderPriority(Ticket.TicketPriority.values()[Integer.parseInt(line.trim())]);
+
+                if((line = in.readLine()) == null) return malformed(md5ID, in, "type");
+                ticket.setHeaderType(Ticket.TicketType.values()[Integer.parseInt(line.trim())]);
+            } catch(NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                return malformed(md5ID, in, "status, priority and type numbers");
+            }
+
+            // A ticket written in the platform's old charset doesn't decode as UTF-8, and only the whole
+            //  ticket can be checked against its MD5 ID, so read it all to get the header right
+            if(ticket.getTitle().indexOf('\uFFFD') >= 0 || ticket.getAuthor().indexOf('\uFFFD') >= 0) {
+                try {
+                    ticket.load();
+                } catch(UncheckedIOException e) {
+                    return null;
+                }
+            }
+        } catch(IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        return ticket;
+    }
+
+    /**
+     * Prints where a ticket header is malformed.
+     * @param md5ID The MD5 ID of the malformed ticket.
+     * @param in The reader the header was being read from, which is positioned just after the problem.
+     * @param expected What was expected to be read.
+     * @return null, so that callers can return this directly.
+     */
+    private static LazyTicket malformed(String md5ID, LineNumberReader in, String expected) {
+        System.err.println("Malformed ticket " + md5ID + ": expected " + expected + " at line " + in.getLineNumber() + ".");
+        return null;
+    }
+
+    /**
+     * Reads the whole ticket if it hasn't been read yet.
+     * <p>
+     * If the ticket can no longer be read, then it is left unread, so that it is tried again next time
+     *  and an empty ticket is never written back over the file.
+     * @throws UncheckedIOException If the rest of the ticket could not be read.
+     */
+    private synchronized void load() {
+        if(loaded) return;
+
+        Ticket full = FileUtil.readTicketFile(file);
+
+        if(full == null) {
+            throw new UncheckedIOException(new IOException("Failed to read the rest of ticket " + md5ID + "."));
+        }
+
+        super.setTitle(full.getTitle());
+        super.setDetails(full.getDetails());
+        super.setAuthor(full.getAuthor());
+        super.setDate(full.getDate());
+        super.setStatus(full.getStatus());
+        super.setPriority(full.getPriority());
+        super.setType(full.getType());
+
+        super.getComments().addAll(full.getComments());
+
+        loaded = true;
+    }
+
+    /**
+     * Checks if the whole ticket has been read yet.
+     * @return true if the details and comments have been read, false otherwise.
+     */
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Sets the title read from the header, without reading the rest of the ticket.
+     * @param newTitle The title read from the header.
+     */
+    private void setHeaderTitle(String newTitle) {
+        super.setTitle(newTitle);
+    }
+
+    /**
+     * Sets the author read from the header, without reading the rest of the ticket.
+     * @param newAuthor The author read from the header.
+     */
+    private void setHeaderAuthor(String newAuthor) {
+        super.setAuthor(newAuthor);
+    }
+
+    /**
+     * Sets the date read from the header, without reading the rest of the ticket.
+     * @param newDate The date read from the header.
+     */
+    private void setHeaderDate(Date newDate) {
+        super.setDate(newDate);
+    }
+
+    /**
+     * Sets the status read from the header, without reading the rest of the ticket.
+     * @param newStatus The status read from the header.
+     */
+    private void setHeaderStatus(TicketStatus newStatus) {
+        super.setStatus(newStatus);
+    }
+
+    /**
+     * Sets the priority read from the header, without reading the rest of the ticket.
+     * @param newPriority The priority read from the header.
+     */
+    private void setHeaderPriority(TicketPriority newPriority) {
+        super.setPriority(newPriority);
+    }
+
+    /**
+     * Sets the type read from the header, without reading the rest of the ticket.
+     * @param newType The type read from the header.
+     */
+    private void setHeaderType(TicketType newType) {
+        super.setType(newType);
+    }
+
+    @Override
+    public String getDetails() {
+        load();
+        return super.getDetails();
+    }
+
+    @Override
+    public List<TicketComment> getComments() {
+        load();
+        return super.getComments();
+    }
+
+    @Override
+    public void addComment(TicketComment comment) {
+        load();
+        super.addComment(comment);
+    }
+
+    @Override
+    public void setTitle(String newTitle) {
+        load();
+        super.setTitle(newTitle);
+    }
+
+    @Override
+    public void setDetails(String newDetails) {
+        load();
+        super.setDetails(newDetails);
+    }
+
+    @Override
+    public void setAuthor(String newAuthor) {
+        load();
+        super.setAuthor(newAuthor);
+    }
+
+    @Override
+    public void setDate(Date newDate) {
+        load();
+        super.setDate(newDate);
+    }
+
+    @Override
+    public void setStatus(TicketStatus newStatus) {
+        load();
+        super.setStatus(newStatus);
+    }
+
+    @Override
+    public void setPriority(TicketPriority newPriority) {
+        load();
+        super.setPriority(newPriority);
+    }
+
+    @Override
+    public void setType(TicketType newType) {
+        load();
+        super.setType(newType);
+    }
+
+    /**
+     * Gets the MD5 Hash ID of this ticket.
+     * <p>
+     * Until the whole ticket has been read, this is the ID it is stored under, since the ID depends on
+     *  the details.
+     * @return The MD5 Hash ID of this ticket.
+     */
+    @Override
+    public String getMD5ID() {
+        synchronized(this) {
+            if(!loaded) return md5ID;
+        }
+
+        return super.getMD5ID();
+    }
+}
@@ -7,15 +7,25 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JComponent;
 import javax.swing.JDialog;
 import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
+import javax.swing.JTextField;
 import javax.swing.ListSelectionModel;
 import javax.swing.table.DefaultTableModel;
 
@@ -65,34 +75,66 @@ public class ListTicketsGui extends JDialog {
     private JLabel showOptionsLabel;
     
     /**
-     * A list of all the Ticket objects to show
+     * A label for the search box.
      */
-    private List<Ticket> tickets;
+    private JLabel searchLabel;
     
     /**
-     * A list of all tickets that are being viewed.
+     * A text field to search the text of every ticket with.
      */
-    private List<Ticket> openTickets;
+    private JTextField searchField;
     
     /**
-     * Should open tickets be shown
+     * The button to show a summary of the listed tickets.
      */
-    boolean showOpen;
+    private JButton summaryButton;
     
     /**
-     * Should closed tickets be shown
+     * The MD5 IDs of the tickets that matched the last search, best first, or null if there is no search.
      */
-    boolean showClosed;
+    private Set<String> searchResults;
     
     /**
-     * Should invalid tickets be shown
+     * The index entries of all tickets to show, mapped from their MD5 IDs
      */
-    boolean showInvalid;
+    private Map<String, TicketIndex.Entry> tickets;
     
     /**
-     * Should in progress tickets be shown
+     * The MD5 ID of the ticket in each row of the ticket table.
      */
-    boolean showInProgress;
+    private List<String> rowIDs;
+    
+    /**
+     * The row of the ticket table each MD5 ID in {@link #rowIDs} is in, so that a changed ticket's
+     *  row can be found without searching every row.
+     */
+    private Map<String, Integer> rowOfID;
+    
+    /**
+     * The IDs of every ticket in {@link #tickets}, used to shorten them as much as possible.
+     */
+    private TicketIdTrie ticketIDs;
+    
+    /**
+     * A list of the MD5 IDs of all tickets that are being viewed.
+     */
+    private List<String> openTickets;
+    
+    /**
+     * Bitmap indexes of the status, priority, type and author of every ticket in {@link #tickets}.
+     */
+    private TicketBitmapIndex ticketBitmaps;
+    
+    /**
+     * The rows in {@link #ticketBitmaps} of the tickets with a status that is checked, or null if it
+     *  needs to be worked out again.
+     */
+    private TicketBitmap shownRows;
+    
+    /**
+     * The most matches shown for a search.
+     */
+    private static final int SEARCH_LIMIT = 1000;
     
     /**
      * The instance of this Gui
@@ -116,7 +158,12 @@ public class ListTicketsGui extends JDialog {
     private ListTicketsGui() {
         GitUtil.init();
         
-        openTickets = new ArrayList<Ticket>();
+        openTickets = new ArrayList<String>();
+        ticketIDs = new TicketIdTrie();
+        tickets = new LinkedHashMap<String, TicketIndex.Entry>();
+        ticketBitmaps = new TicketBitmapIndex();
+        rowIDs = new ArrayList<String>();
+        rowOfID = new HashMap<String, Integer>();
         
         updateTicketList();
         
@@ -125,6 +172,22 @@ public class ListTicketsGui extends JDialog {
         setModalityType(JDialog.DEFAULT_MODALITY_TYPE);
         
         updateTicketTable();
+        
+        // Keep up with changes made by syncs and other processes, one ticket at a time
+        TicketCache cache = getCache();
+        if(cache != null) {
+            cache.addListener((type, md5ID, entry) -> EventQueue.invokeLater(() -> ticketChanged(type, md5ID, entry)));
+        }
+    }
+    
+    /**
+     * Gets the cache tickets are listed from.
+     * @return The cache, or null if tickets are read from the object database instead.
+     */
+    private static TicketCache getCache() {
+        if(Configuration.isObjectReadEnabled()) return null;
+        
+        return TicketCache.getInstance();
     }
     
     /**
@@ -140,14 +203,14 @@ public class ListTicketsGui extends JDialog {
     }
 
     /**
-     * Converts a Ticket to a row that can be used in the ticket table.
-     * @param ticket The ticket to convert.
+     * Converts a ticket's index entry to a row that can be used in the ticket table.
+     * @param ticket The entry of the ticket to convert.
      * @return A String[] of all columns in the row to represent a single ticket.
      */
-    public String[] ticketToRow(Ticket ticket) {
+    public String[] ticketToRow(TicketIndex.Entry ticket) {
         String[] row = new String[4];
         
-        row[0] = ticket.getShortMD5ID();
+        row[0] = ticketIDs.getUniquePrefix(ticket.getMD5ID(), Configuration.getMinIdLength());
         row[1] = ticket.getStatus().toString();
         row[2] = ticket.getPriority().toString();
         row[3] = ticket.getTitle();
@@ -161,14 +224,35 @@ public class ListTicketsGui extends JDialog {
      */
     public void showSpecificTicket(int ticketIndex) {
         // Only show the ticket if it isn't already open
-        if(!openTickets.contains(tickets.get(ticketIndex))) {
-            openTickets.add(tickets.get(ticketIndex));
+        String md5ID = rowIDs.get(ticketIndex);
+        
+        if(!openTickets.contains(md5ID)) {
+            // Only the header is indexed, the rest of the ticket is read here since the window shows it
+            Ticket ticket;
+            try {
+                if(FileUtil.isReadingCommittedTickets()) {
+                    ticket = FileUtil.readCommittedTicket(md5ID);
+                } else {
+                    ticket = LazyTicket.read(FileUtil.getTicketFile(md5ID));
+                    if(ticket != null) ticket.getComments();
+                }
+            } catch(IOException e) {
+                e.printStackTrace();
+                return;
+            } catch(UncheckedIOException e) {
+                JOptionPane.showMessageDialog(this, e.getCause().getMessage(), "I/O Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            
+            if(ticket == null) return;
+            
+            openTickets.add(md5ID);
             EventQueue.invokeLater(() -> {
-                ViewTicketGui vtg = new ViewTicketGui(tickets.get(ticketIndex));
+                ViewTicketGui vtg = new ViewTicketGui(ticket);
                 vtg.addWindowListener(new java.awt.event.WindowAdapter() {
                     @Override
                     public void windowClosing(java.awt.event.WindowEvent event) {
-                        openTickets.remove(tickets.get(ticketIndex));
+                        openTickets.remove(md5ID);
                     }
                 });
                 vtg.setVisible(true);
@@ -180,7 +264,131 @@ public class ListTicketsGui extends JDialog {
      * Updates the list of tickets based on the tickets in the copied repository directory.
      */
     public void updateTicketList() {
-        tickets = FileUtil.getAllTickets();
+        TicketCache cache = getCache();
+        List<TicketIndex.Entry> entries = cache != null ? cache.getEntries() : null;
+        
+        // Nothing checked out means the tickets can only be read from the object database
+        if(entries == null || entries.isEmpty()) entries = FileUtil.getAllTicketEntries();
+        if(entries == null) entries = new ArrayList<TicketIndex.Entry>();
+        
+        Map<String, TicketIndex.Entry> old = tickets;
+        tickets = new LinkedHashMap<String, TicketIndex.Entry>();
+        
+        // Only add and remove the IDs that changed, rather than building the trie and bitmaps again
+        for(TicketIndex.Entry t : entries) {
+            tickets.put(t.getMD5ID(), t);
+            ticketIDs.add(t.getMD5ID());
+            
+            if(old.get(t.getMD5ID()) != t) ticketBitmaps.put(t);
+        }
+        
+        for(String md5ID : old.keySet()) {
+            if(!tickets.containsKey(md5ID)) {
+                ticketIDs.remove(md5ID);
+                ticketBitmaps.remove(md5ID);
+            }
+        }
+        
+        shownRows = null;
+    }
+    
+    /**
+     * Updates a single ticket in the list and the table after it changed on disk.
+     * @param type The kind of change.
+     * @param md5ID The MD5 ID of the ticket that changed.
+     * @param entry The new entry of the ticket.
+     */
+    public void ticketChanged(TicketCache.ChangeType type, String md5ID, TicketIndex.Entry entry) {
+        DefaultTableModel model = (DefaultTableModel)ticketsTable.getModel();
+        int row = getRow(md5ID);
+        
+        if(type == TicketCache.ChangeType.REMOVED) ticketBitmaps.remove(md5ID);
+        else ticketBitmaps.put(entry);
+        
+        shownRows = null;
+        updateCounts();
+        
+        if(type == TicketCache.ChangeType.REMOVED) {
+            tickets.remove(md5ID);
+            
+            List<String> neighbours = getNeighbours(md5ID);
+            ticketIDs.remove(md5ID);
+            
+            if(row >= 0) removeRow(row);
+            
+            updateShortIDs(neighbours);
+            return;
+        }
+        
+        tickets.put(md5ID, entry);
+        
+        if(ticketIDs.add(md5ID)) updateShortIDs(getNeighbours(md5ID));
+        
+        if(!isShown(entry)) {
+            if(row >= 0) removeRow(row);
+        } else if(row >= 0) {
+            String[] values = ticketToRow(entry);
+            for(int col = 0; col < values.length; col++) model.setValueAt(values[col], row, col);
+        } else {
+            addRow(entry);
+        }
+    }
+    
+    /**
+     * Gets the IDs whose shortest unique prefix depends on a given ID, which are the ones that share
+     *  all but the last character of its unique prefix.
+     * @param md5ID The ID, which must be in {@link #ticketIDs}.
+     * @return A List of the IDs, including the given one.
+     */
+    private List<String> getNeighbours(String md5ID) {
+        String prefix = ticketIDs.getUniquePrefix(md5ID, 1);
+        
+        return ticketIDs.find(prefix.substring(0, prefix.length() - 1), 64);
+    }
+    
+    /**
+     * Shows the shortest unique prefix of some IDs again, after they may have changed.
+     * @param md5IDs The IDs to update.
+     */
+    private void updateShortIDs(List<String> md5IDs) {
+        for(String md5ID : md5IDs) {
+            int row = getRow(md5ID);
+            
+            if(row >= 0 && ticketIDs.contains(md5ID)) {
+                ticketsTable.getModel().setValueAt(ticketIDs.getUniquePrefix(md5ID, Configuration.getMinIdLength()), row, 0);
+            }
+        }
+    }
+    
+    /**
+     * Checks if a ticket passes the currently set filter settings.
+     * @param t The entry of the ticket to check.
+     * @return true if the ticket should be shown, false otherwise.
+     */
+    public boolean isShown(TicketIndex.Entry t) {
+        if(searchResults != null && !searchResults.contains(t.getMD5ID())) return false;
+        
+        return getShownRows().contains(ticketBitmaps.getRow(t.getMD5ID()));
+    }
+    
+    /**
+     * Gets the rows of the tickets with a status that is checked, uniting the bitmaps of the checked
+     *  statuses if they have changed since the last time.
+     * @return The rows in {@link #ticketBitmaps} of the tickets to show.
+     */
+    private TicketBitmap getShownRows() {
+        if(shownRows == null) {
+            List<Ticket.TicketStatus> statuses = new ArrayList<Ticket.TicketStatus>();
+            
+            if(showOpenCheckBox.isSelected()) statuses.add(Ticket.TicketStatus.OPEN);
+            if(showClosedCheckBox.isSelected()) statuses.add(Ticket.TicketStatus.CLOSED);
+            if(showInvalidCheckBox.isSelected()) statuses.add(Ticket.TicketStatus.INVALID);
+            if(showInProgressCheckBox.isSelected()) statuses.add(Ticket.TicketStatus.IN_PROGRESS);
+            
+            shownRows = ticketBitmaps.getAny(statuses);
+        }
+        
+        return shownRows;
     }
     
     /**
@@ -188,38 +396,113 @@ public class ListTicketsGui extends JDialog {
      */
     public void updateTicketTable() {
         ((DefaultTableModel) ticketsTable.getModel()).setRowCount(0);
+        rowIDs.clear();
+        rowOfID.clear();
         
-        showOpen = showOpenCheckBox.isSelected();
-        showClosed = showClosedCheckBox.isSelected();
-        showInvalid = showInvalidCheckBox.isSelected();
-        showInProgress = showInProgressCheckBox.isSelected();
-        
-        for(Ticket t : tickets) {
-            switch(t.getStatus()) {
-                case OPEN:
-                    if(showOpen) addRow(t);
-                    break;
-                case CLOSED:
-                    if(showClosed) addRow(t);
-                    break;
-                case INVALID:
-                    if(showInvalid) addRow(t);
-                    break;
-                case IN_PROGRESS:
-                    if(showInProgress) addRow(t);
-                    break;
-                default:
-                    System.err.println("Uknown ticket status: " + t.getStatus());
+        shownRows = null;
+        updateCounts();
+        
+        // Matches of a search are shown best first
+        if(searchResults != null) {
+            for(String md5ID : searchResults) {
+                TicketIndex.Entry t = tickets.get(md5ID);
+                if(t != null && isShown(t)) addRow(t);
             }
+            
+            return;
         }
+        
+        for(TicketIndex.Entry t : ticketBitmaps.getEntries(getShownRows())) addRow(t);
+    }
+    
+    /**
+     * Shows how many tickets have each status in the tool tip of its check box.
+     */
+    private void updateCounts() {
+        showOpenCheckBox.setToolTipText(ticketBitmaps.count(Ticket.TicketStatus.OPEN) + " tickets");
+        showClosedCheckBox.setToolTipText(ticketBitmaps.count(Ticket.TicketStatus.CLOSED) + " tickets");
+        showInvalidCheckBox.setToolTipText(ticketBitmaps.count(Ticket.TicketStatus.INVALID) + " tickets");
+        showInProgressCheckBox.setToolTipText(ticketBitmaps.count(Ticket.TicketStatus.IN_PROGRESS) + " tickets");
+    }
+    
+    /**
+     * Searches the text of every ticket for what is in the search box, and shows only the matches.
+     *  An empty search box shows every ticket again.
+     * <p>
+     * The search is run in the background, since the index may have to be built first.
+     */
+    public void search() {
+        String query = searchField.getText().trim();
+        
+        if(query.isEmpty()) {
+            searchResults = null;
+            updateTicketTable();
+            return;
+        }
+        
+        searchField.setEnabled(false);
+        
+        new Thread(() -> {
+            TicketSearchIndex index = TicketSearchIndex.getInstance();
+            List<TicketSearchIndex.Result> results = index != null ? index.search(query, SEARCH_LIMIT) : null;
+            
+            EventQueue.invokeLater(() -> {
+                searchField.setEnabled(true);
+                
+                if(results == null) {
+                    JOptionPane.showMessageDialog(this, "Failed to search tickets.", "Search failed", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                
+                searchResults = new LinkedHashSet<String>();
+                for(TicketSearchIndex.Result result : results) searchResults.add(result.getMD5ID());
+                
+                updateTicketTable();
+            });
+        }, "Ticket search").start();
+    }
+    
+    /**
+     * Shows a summary of the tickets that are currently listed.
+     */
+    public void showSummary() {
+        List<TicketIndex.Entry> shown = new ArrayList<TicketIndex.Entry>(rowIDs.size());
+        for(String md5ID : rowIDs) shown.add(tickets.get(md5ID));
+        
+        TicketStatsGui tsg = new TicketStatsGui(shown);
+        tsg.setVisible(true);
     }
     
     /**
      * Adds a row to the tickets table.
-     * @param t The ticket to add.
+     * @param t The entry of the ticket to add.
      */
-    public void addRow(Ticket t) {
+    public void addRow(TicketIndex.Entry t) {
         ((DefaultTableModel)ticketsTable.getModel()).addRow(ticketToRow(t));
+        rowOfID.put(t.getMD5ID(), rowIDs.size());
+        rowIDs.add(t.getMD5ID());
+    }
+    
+    /**
+     * Removes a row from the tickets table. Only the rows after it have to be numbered again.
+     * @param row The row to remove.
+     */
+    private void removeRow(int row) {
+        ((DefaultTableModel)ticketsTable.getModel()).removeRow(row);
+        rowOfID.remove(rowIDs.remove(row));
+        
+        for(int i = row; i < rowIDs.size(); i++) rowOfID.put(rowIDs.get(i), i);
+    }
+    
+    /**
+     * Gets the row of the tickets table a ticket is in.
+     * @param md5ID The MD5 ID of the ticket.
+     * @return The row, or -1 if the ticket isn't shown.
+     */
+    private int getRow(String md5ID) {
+        Integer row = rowOfID.get(md5ID);
+        
+        return row == null ? -1 : row;
     }
     
     /**
@@ -228,6 +511,8 @@ public class ListTicketsGui extends JDialog {
     public void buildComponents() {
         buildLabels();
         buildCheckBoxes();
+        buildTextFields();
+        buildButtons();
         buildTables();
         buildScrollPanes();
     }
@@ -283,6 +568,27 @@ public class ListTicketsGui extends JDialog {
     public void buildLabels() {
         showOptionsLabel = new JLabel("Show: ");
         showOptionsLabel.setFont(new Font("Courier", Font.PLAIN, 15));
+        
+        searchLabel = new JLabel("Search: ");
+        searchLabel.setFont(new Font("Courier", Font.PLAIN, 15));
+    }
+    
+    /**
+     * Builds all of the text fields for this UI.
+     */
+    public void buildTextFields() {
+        searchField = new JTextField(11);
+        searchField.setToolTipText("Words to search for, or \"a phrase\" in quotes. Press enter to search.");
+        searchField.addActionListener(event -> search());
+    }
+    
+    /**
+     * Builds all of the buttons for this UI.
+     */
+    public void buildButtons() {
+        summaryButton = new JButton("Summary");
+        summaryButton.setToolTipText("Counts the listed tickets by status, priority, type, author or date.");
+        summaryButton.addActionListener(event -> showSummary());
     }
     
     /**
@@ -348,6 +654,18 @@ public class ListTicketsGui extends JDialog {
                      showClosedCheckBox.getPreferredSize().height + 
                      showInvalidCheckBox.getPreferredSize().height);
         
+        int searchTop = 55 + showOptionsLabel.getPreferredSize().height +
+                        showOpenCheckBox.getPreferredSize().height + 
+                        showClosedCheckBox.getPreferredSize().height + 
+                        showInvalidCheckBox.getPreferredSize().height +
+                        showInProgressCheckBox.getPreferredSize().height;
+        addComponent(searchLabel, 30 + ticketsListScrollPane.getPreferredSize().width, searchTop);
+        addComponent(searchField, 40 + ticketsListScrollPane.getPreferredSize().width,
+                     searchTop + 10 + searchLabel.getPreferredSize().height);
+        addComponent(summaryButton, 40 + ticketsListScrollPane.getPreferredSize().width,
+                     searchTop + 25 + searchLabel.getPreferredSize().height +
+                     searchField.getPreferredSize().height);
+        
         setTitle("List Tickets");
         setSize(600, 345);
         setLocationRelativeTo(null);
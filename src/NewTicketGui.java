@@ -5,6 +5,7 @@ import java.awt.Insets;
 import java.awt.event.ActionEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.File;
 import java.io.IOException;
 import java.util.Date;
 import javax.swing.BorderFactory;
@@ -146,7 +147,7 @@ public class NewTicketGui extends JDialog {
 	/**
 	 * Constructs and submits a new ticket.
 	 * <p>
-	 * Will write a ticket to the filename MD5Hash.ticket, and commit it. Will show an error message
+	 * Will write a ticket to the filename MD5Hash.ticket, and schedule it to be committed. Will show an error message
      *  dialog box on error.
 	 * @return 0 if the submission was successful, 1 otherwise.
 	 */
@@ -160,8 +161,10 @@ public class NewTicketGui extends JDialog {
 	    ticket = buildNewTicket();
 	    
 	    try {
-	        FileUtil.writeTicket(ticket);
-	        GitUtil.commit(ticket.getMD5ID() + ".ticket");
+	        File file = FileUtil.writeTicket(ticket);
+	        if(file == null) throw new IOException("Failed to write ticket " + ticket.getMD5ID());
+	        
+	        GitUtil.scheduleCommit(file);
 	        
 	        submitted = true;
 	    } catch(IOException e) {
@@ -0,0 +1,286 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs external commands (mainly git) with a timeout, and records how long each one took.
+ * <p>
+ * Both stdout and stderr are drained on background threads while the command runs, so a command
+ *  that writes a lot of output can never fill up a pipe and block. Only the first
+ *  {@link #MAX_OUTPUT} bytes of each stream are kept.
+ *
+ * @author Tyler Robbins
+ * @version 1.0
+ * @since 1.2
+ */
+public class ProcessRunner {
+    /**
+     * How long, in milliseconds, a command that doesn't touch the network may run for.
+     */
+    public static final long LOCAL_TIMEOUT = 60 * 1000;
+
+    /**
+     * The maximum number of bytes kept from each output stream.
+     */
+    public static final int MAX_OUTPUT = 1024 * 1024;
+
+    /**
+     * The maximum number of results kept in the history.
+     */
+    private static final int MAX_HISTORY = 100;
+
+    /**
+     * The threads used to drain output streams.
+     */
+    private static final ExecutorService drainers = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "ProcessRunner");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * The results of the most recent commands, oldest first.
+     */
+    private static final LinkedList<Result> history = new LinkedList<Result>();
+
+    /**
+     * Dummy constructor to prevent outside construction.
+     */
+    private ProcessRunner() { }
+
+    /**
+     * The result of running a command.
+     *
+     * @author Tyler Robbins
+     * @version 1.0
+     * @since 1.2
+     */
+    public static class Result {
+        /**
+         * The command that was run.
+         */
+        private List<String> command;
+
+        /**
+         * The exit code of the command, or -1 if it could not be started or timed out.
+         */
+        private int exitCode = -1;
+
+        /**
+         * Everything the command wrote to stdout.
+         */
+        private String stdout = "";
+
+        /**
+         * Everything the command wrote to stderr.
+         */
+        private String stderr = "";
+
+        /**
+         * How long the command took to run, in milliseconds.
+         */
+        private long wallTime;
+
+        /**
+         * If the command was killed for running too long.
+         */
+        private boolean timedOut;
+
+        /**
+         * Gets the command that was run.
+         * @return The command that was run.
+         */
+        public List<String> getCommand() {
+            return command;
+        }
+
+        /**
+         * Gets the exit code of the command.
+         * @return The exit code of the command, or -1 if it could not be started or timed out.
+         */
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        /**
+         * Gets everything the command wrote to stdout.
+         * @return The command's stdout.
+         */
+        public String getStdout() {
+            return stdout;
+        }
+
+        /**
+         * Gets everything the command wrote to stderr.
+         * @return The command's stderr.
+         */
+        public String getStderr() {
+            return stderr;
+        }
+
+        /**
+         * Gets how long the command took to run.
+         * @return The wall time of the command in milliseconds.
+         */
+        public long getWallTime() {
+            return wallTime;
+        }
+
+        /**
+         * Gets if the command was killed for running too long.
+         * @return true if the command timed out, false otherwise.
+         */
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        /**
+         * Gets if the command exited with 0.
+         * @return true if the command succeeded, false otherwise.
+         */
+        public boolean isSuccess() {
+            return exitCode == 0;
+        }
+
+        @Override
+        public String toString() {
+            return wallTime + "ms exit=" + exitCode + (timedOut ? " (timed out)" : "") + ": " +
+                   maskCredentials(String.join(" ", command));
+        }
+    }
+
+    /**
+     * Runs a command with the {@link #LOCAL_TIMEOUT}.
+     * @param dir The directory to run the command in, or null for the current directory.
+     * @param command The command and its arguments.
+     * @return The result of the command.
+     */
+    public static Result run(File dir, String... command) {
+        return run(dir, LOCAL_TIMEOUT, command);
+    }
+
+    /**
+     * Runs a command, killing it if it takes longer than the timeout.
+     * @param dir The directory to run the command in, or null for the current directory.
+     * @param timeout How long, in milliseconds, the command may run for.
+     * @param command The command and its arguments.
+     * @return The result of the command.
+     */
+    public static Result run(File dir, long timeout, String... command) {
+        Result result = new Result();
+        result.command = new ArrayList<String>(Arrays.asList(command));
+
+        long start = System.nanoTime();
+
+        try {
+            Process p = new ProcessBuilder(command).directory(dir).start();
+
+            // Nothing is ever written to a command, so let it see EOF right away
+            p.getOutputStream().close();
+
+            Future<String> stdout = drainers.submit(() -> drain(p.getInputStream()));
+            Future<String> stderr = drainers.submit(() -> drain(p.getErrorStream()));
+
+            if(p.waitFor(timeout, TimeUnit.MILLISECONDS)) {
+                result.exitCode = p.exitValue();
+            } else {
+                result.timedOut = true;
+                p.destroyForcibly();
+                System.err.println("Killed after " + timeout + "ms: " + maskCredentials(String.join(" ", command)));
+            }
+
+            result.stdout = getDrained(stdout);
+            result.stderr = getDrained(stderr);
+        } catch(IOException e) {
+            e.printStackTrace();
+        } catch(InterruptedException e) {
+            e.printStackTrace();
+            Thread.currentThread().interrupt();
+        }
+
+        result.wallTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        synchronized(history) {
+            history.add(result);
+            if(history.size() > MAX_HISTORY) history.removeFirst();
+        }
+
+        if(Configuration.isVerbose()) System.err.println("[run] " + result);
+
+        return result;
+    }
+
+    /**
+     * Gets the results of the most recently run commands.
+     * @return A copy of the most recent results, oldest first.
+     */
+    public static List<Result> getHistory() {
+        synchronized(history) {
+            return new ArrayList<Result>(history);
+        }
+    }
+
+    /**
+     * Reads a stream until it ends, keeping at most {@link #MAX_OUTPUT} bytes.
+     * @param in The stream to read.
+     * @return What was kept from the stream.
+     * @throws IOException If the stream could not be read.
+     */
+    private static String drain(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+
+        try {
+            while((read = in.read(buffer)) != -1) {
+                // Keep reading past the limit so the process never blocks, just don't keep anything
+                int keep = Math.min(read, MAX_OUTPUT - out.size());
+                if(keep > 0) out.write(buffer, 0, keep);
+            }
+        } finally {
+            in.close();
+        }
+
+        return new String(out.toByteArray(), Charset.defaultCharset());
+    }
+
+    /**
+     * Gets what was drained from a stream, waiting a short time for the drain to finish.
+     * @param drained The drain to get the results of.
+     * @return What was drained, or an empty string if the drain failed.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    private static String getDrained(Future<String> drained) throws InterruptedException {
+        try {
+            return drained.get(5, TimeUnit.SECONDS);
+        } catch(ExecutionException e) {
+            e.printStackTrace();
+        } catch(TimeoutException e) {
+            // A killed process can leave a child holding the pipe open, so just give up on it
+            drained.cancel(true);
+        }
+
+        return "";
+    }
+
+    /**
+     * Hides any username and password stored in a url, so that they never end up in a log.
+     * @param str The string to mask credentials in.
+     * @return The string with all "://user:pass@" replaced by "://***@"
+     */
+    public static String maskCredentials(String str) {
+        return str.replaceAll("://[^/@\\s]+@", "://***@");
+    }
+}
@@ -2,11 +2,13 @@ import java.awt.Dimension;
 import java.awt.EventQueue;
 import java.awt.Insets;
 import java.awt.event.ActionEvent;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.JButton;
 import javax.swing.JComponent;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
 
 public class StartGui extends JFrame {
     private static final long serialVersionUID = 1L;
@@ -58,11 +60,33 @@ public class StartGui extends JFrame {
 		
 		syncButton = new JButton("Sync");
 		syncButton.addActionListener((ActionEvent event) -> {
-		    if(!GitUtil.sync()) {
-		        JOptionPane.showMessageDialog(null, "Failed to sync.", "Sync error.", JOptionPane.ERROR_MESSAGE);
-		    } else {
-		        JOptionPane.showMessageDialog(null, "Sync Successful.");
-		    }
+		    // Sync off of the event thread so that the window doesn't freeze while talking to the remote
+		    syncButton.setEnabled(false);
+		    
+		    new SwingWorker<Boolean, Void>() {
+		        @Override
+		        protected Boolean doInBackground() {
+		            return GitUtil.sync();
+		        }
+		        
+		        @Override
+		        protected void done() {
+		            syncButton.setEnabled(true);
+		            
+		            boolean success = false;
+		            try {
+		                success = get();
+		            } catch(InterruptedException | ExecutionException e) {
+		                e.printStackTrace();
+		            }
+		            
+		            if(!success) {
+		                JOptionPane.showMessageDialog(null, "Failed to sync.", "Sync error.", JOptionPane.ERROR_MESSAGE);
+		            } else {
+		                JOptionPane.showMessageDialog(null, "Sync Successful.");
+		            }
+		        }
+		    }.execute();
 		});
 		
 		changeUserButton = new JButton("Change User");
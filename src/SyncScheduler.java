@@ -0,0 +1,235 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link GitUtil#sync()} in the background after local commits.
+ * <p>
+ * Sync requests are debounced, so a burst of commits results in a single sync once things have been
+ *  quiet for {@link #DEBOUNCE} milliseconds. If a sync fails, it is retried with an exponential
+ *  backoff until it succeeds.
+ * <p>
+ * Every commit that still needs to be pushed is recorded in a .pending-sync file in the copied
+ *  project repository, so unpushed commits are remembered even if the program exits before it gets
+ *  the chance to sync. {@link #resumePending()} picks them back up on the next start.
+ * <p>
+ * Syncs run on a daemon thread, so they never keep the program running on their own. The command line
+ *  calls {@link #finish()} before exiting, which runs a waiting sync straight away and waits for it.
+ *
+ * @author Tyler Robbins
+ * @version 1.0
+ * @since 1.2
+ */
+public class SyncScheduler {
+    /**
+     * How long, in milliseconds, to wait for more commits before syncing.
+     */
+    public static final long DEBOUNCE = 5 * 1000;
+
+    /**
+     * How long, in milliseconds, to wait before retrying the first failed sync.
+     */
+    public static final long INITIAL_BACKOFF = 2 * 1000;
+
+    /**
+     * The longest, in milliseconds, to ever wait before retrying a failed sync.
+     */
+    public static final long MAX_BACKOFF = 5 * 60 * 1000;
+
+    /**
+     * The name of the file unpushed commits are recorded in.
+     */
+    public static final String PENDING_FILE = ".pending-sync";
+
+    /**
+     * The instance of this singleton.
+     */
+    private static SyncScheduler instance = null;
+
+    /**
+     * The thread syncs are run on.
+     */
+    private ScheduledExecutorService executor;
+
+    /**
+     * The next scheduled sync, or null if none is scheduled.
+     */
+    private ScheduledFuture<?> nextSync;
+
+    /**
+     * How long to wait before the next retry, or 0 if the last sync didn't fail.
+     */
+    private long backoff;
+
+    /**
+     * Has {@link #finish()} been called, in which case failed syncs are left for the next run instead
+     *  of being retried.
+     */
+    private boolean finishing;
+
+    /**
+     * Constructs a new SyncScheduler.
+     */
+    private SyncScheduler() {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "SyncScheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        backoff = 0;
+        finishing = false;
+    }
+
+    /**
+     * Gets the instance for this singleton.
+     * @return The instance for this singleton.
+     */
+    public static synchronized SyncScheduler getInstance() {
+        if(instance == null) {
+            instance = new SyncScheduler();
+        }
+
+        return instance;
+    }
+
+    /**
+     * Records that a commit needs to be pushed, and schedules a sync for once the debounce period is
+     *  over. Any sync already waiting is pushed back.
+     * @param commitID The id of the commit that needs to be pushed, or null if it isn't known.
+     */
+    public synchronized void requestSync(String commitID) {
+        recordPending(commitID);
+
+        // A retry that is backing off shouldn't be made to go sooner by new commits
+        if(backoff > 0 && nextSync != null) return;
+
+        schedule(DEBOUNCE);
+    }
+
+    /**
+     * Schedules a sync if there are any unpushed commits left over from a previous run.
+     */
+    public synchronized void resumePending() {
+        if(hasPending()) schedule(DEBOUNCE);
+    }
+
+    /**
+     * Runs any sync that is waiting or left over from a previous run straight away, and waits for it to
+     *  finish. If it fails, the unpushed commits stay recorded for the next run.
+     * <p>
+     * This is used before the command line exits, since the daemon thread syncs run on would otherwise
+     *  be stopped before the sync gets a chance to run.
+     */
+    public void finish() {
+        Future<?> sync;
+
+        synchronized(this) {
+            if(nextSync == null && !hasPending()) return;
+
+            if(nextSync != null) nextSync.cancel(false);
+            nextSync = null;
+            finishing = true;
+
+            sync = executor.submit(this::runSync);
+        }
+
+        try {
+            sync.get();
+        } catch(InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Schedules a sync, replacing whichever one is already scheduled.
+     * @param delay How long, in milliseconds, to wait before syncing.
+     */
+    private void schedule(long delay) {
+        if(nextSync != null) nextSync.cancel(false);
+
+        nextSync = executor.schedule(this::runSync, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs a sync, and schedules a retry if it failed.
+     */
+    private void runSync() {
+        synchronized(this) {
+            nextSync = null;
+        }
+
+        // Fixing the remote needs the user to type a password, which can't happen in the background
+        boolean success = !GitUtil.needsRemoteFix() && GitUtil.sync();
+
+        synchronized(this) {
+            if(success) {
+                backoff = 0;
+            } else {
+                if(finishing) {
+                    System.err.println("Background sync failed, it will be retried on the next run.");
+                } else {
+                    backoff = Math.min(Math.max(backoff * 2, INITIAL_BACKOFF), MAX_BACKOFF);
+
+                    if(Configuration.isVerbose()) System.err.println("Background sync failed, retrying in " + backoff + "ms.");
+
+                    if(nextSync == null) schedule(backoff);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if there are commits that still need to be pushed.
+     * @return true if there are unpushed commits, false otherwise.
+     */
+    public static boolean hasPending() {
+        try {
+            return new File(FileUtil.getProjectTicketDir(), PENDING_FILE).exists();
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+
+    /**
+     * Appends a commit to the file of unpushed commits.
+     * @param commitID The id of the commit, or null to only mark that something is unpushed.
+     */
+    private static void recordPending(String commitID) {
+        try {
+            File file = new File(FileUtil.getProjectTicketDir(), PENDING_FILE);
+
+            OutputStream out = new FileOutputStream(file, true);
+            try {
+                if(commitID != null) out.write((commitID + "\n").getBytes(StandardCharsets.US_ASCII));
+            } finally {
+                out.close();
+            }
+        } catch(IOException e) {
+            System.err.println("Failed to record unpushed commit.");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Forgets every unpushed commit, after they have all been pushed.
+     */
+    public static void clearPending() {
+        try {
+            File file = new File(FileUtil.getProjectTicketDir(), PENDING_FILE);
+
+            if(file.exists() && !file.delete()) System.err.println("Failed to delete " + file);
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
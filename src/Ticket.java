@@ -1,5 +1,6 @@
 import java.util.Date;
 import java.util.List;
+import java.util.Objects;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
@@ -179,6 +180,31 @@ public class Ticket {
 	 */
 	private List<TicketComment> comments;
 	
+	/**
+	 * The MD5 Hash ID of this ticket, or null if it needs to be generated again.
+	 * <p>
+	 * Only the title, details, author, and date go into the ID, so only their setters clear it. The
+	 *  Date returned by {@link #getDate()} must not be modified in place.
+	 */
+	private String md5ID;
+	
+	/**
+	 * A MD5 digest for each thread, so one doesn't have to be looked up for every ID.
+	 */
+	private static final ThreadLocal<MessageDigest> MD5 = ThreadLocal.withInitial(() -> {
+	    try {
+	        return MessageDigest.getInstance("MD5");
+	    } catch(NoSuchAlgorithmException e) {
+	        e.printStackTrace();
+	        return null;
+	    }
+	});
+	
+	/**
+	 * The hex digits, indexed by their value.
+	 */
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+	
 	/**
 	 * The next ID of this ticket
 	 * @deprecated Use the MD5 Hash ID instead.
@@ -268,6 +294,7 @@ public class Ticket {
 	 * @param newTitle What to set this Ticket's title to.
 	 */
 	public void setTitle(String newTitle) {
+	    if(!Objects.equals(title, newTitle)) md5ID = null;
 		title = newTitle;
 	}
 	
@@ -276,6 +303,7 @@ public class Ticket {
 	 * @param newDetails What to set this Ticket's details to.
 	 */
 	public void setDetails(String newDetails) {
+	    if(!Objects.equals(details, newDetails)) md5ID = null;
 		details = newDetails;
 	}
 	
@@ -308,6 +336,7 @@ public class Ticket {
 	 * @param newDate What to set this ticket's date to.
 	 */
 	public void setDate(Date newDate) {
+	    if(!Objects.equals(date, newDate)) md5ID = null;
 	    date = newDate;
 	}
 	
@@ -316,6 +345,7 @@ public class Ticket {
 	 * @param newAuthor What to set this ticket's author to.
 	 */
 	public void setAuthor(String newAuthor) {
+	    if(!Objects.equals(author, newAuthor)) md5ID = null;
 	    author = newAuthor;
 	}
 	
@@ -396,11 +426,14 @@ public class Ticket {
 	}
 	
 	/**
-	 * Gets the MD5 Hash ID of this ticket.
+	 * Gets the MD5 Hash ID of this ticket, only generating it again if the title, details, author,
+	 *  or date have changed since it was last generated.
 	 * @return The MD5 Hash ID of this ticket.
 	 */
 	public String getMD5ID() {
-	    return generateMD5ID(this);
+	    if(md5ID == null) md5ID = generateMD5ID(this);
+	    
+	    return md5ID;
 	}
 	
 	/**
@@ -425,17 +458,13 @@ public class Ticket {
 	 * @return The MD5 Hash ID for a ticket if no errors occurred, null otherwise.
 	 */
 	public static String generateMD5ID(Ticket ticket) {
-	    try {
-	        byte[] bytes = (ticket.getTitle() + ticket.getDetails() + ticket.getAuthor() + ticket.getDate().toString()).getBytes();
+	    byte[] bytes = (ticket.getTitle() + ticket.getDetails() + ticket.getAuthor() + ticket.getDate().toString()).getBytes();
 	    
-	        MessageDigest md = MessageDigest.getInstance("MD5");
-	        byte[] digested = md.digest(bytes);
-	        
-	        return toHexString(digested);
-	    } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-            return null;
-        }
+	    // digest() resets the digest afterwards, so it is ready for the next ID on this thread
+	    MessageDigest md = MD5.get();
+	    if(md == null) return null;
+	    
+	    return toHexString(md.digest(bytes));
 	}
 	
 	/**
@@ -450,11 +479,11 @@ public class Ticket {
         if (bytes == null) {
             throw new IllegalArgumentException("Byte array must not be null.");
         }
-        StringBuffer hex = new StringBuffer(bytes.length * 2);
+        char[] hex = new char[bytes.length * 2];
         for (int i = 0; i < bytes.length; i++) {
-            hex.append(Character.forDigit((bytes[i] & 0XF0) >> 4, 16));
-            hex.append(Character.forDigit((bytes[i] & 0X0F), 16));
+            hex[i * 2] = HEX_DIGITS[(bytes[i] & 0XF0) >> 4];
+            hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0X0F];
         }
-        return hex.toString();
+        return new String(hex);
     }
 }
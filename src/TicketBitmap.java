@@ -0,0 +1,702 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed set of non-negative ints, used by {@link TicketBitmapIndex} to hold the rows of the
+ *  tickets with some property.
+ * <p>
+ * Like a Roaring bitmap, the ints are split by their high 16 bits into chunks of up to 65536. A chunk
+ *  with at most {@link #ARRAY_MAX} ints is stored as a sorted array of their low 16 bits, and a larger
+ *  one as 1024 words of bits. Sparse sets then take 2 bytes per int, dense ones at most 8KB per chunk,
+ *  and intersecting, uniting and subtracting them works a chunk (and mostly a word) at a time instead
+ *  of an int at a time.
+ * <p>
+ * A bitmap is not safe to change from multiple threads at once. The results of {@link #and},
+ *  {@link #or} and {@link #andNot} are new bitmaps which never share chunks with their arguments.
+ *
+ * @author Tyler Robbins
+ * @version 1.0
+ * @since 1.2
+ */
+public final class TicketBitmap {
+    /**
+     * The most ints stored in an array chunk, past which a chunk is stored as bits. At this size both
+     *  take up 8KB.
+     */
+    private static final int ARRAY_MAX = 4096;
+
+    /**
+     * How many words a bits chunk has.
+     */
+    private static final int WORDS = 1024;
+
+    /**
+     * The high 16 bits of the ints in each chunk, in increasing order.
+     */
+    private char[] keys;
+
+    /**
+     * Each chunk, either a sorted char[] of the low 16 bits of its ints, or a long[] of {@link #WORDS} bits.
+     */
+    private Object[] chunks;
+
+    /**
+     * How many ints are in each chunk. Only this many elements of an array chunk are used.
+     */
+    private int[] counts;
+
+    /**
+     * How many chunks are in use.
+     */
+    private int size;
+
+    /**
+     * Creates an empty bitmap.
+     */
+    public TicketBitmap() {
+        this(4);
+    }
+
+    /**
+     * Creates an empty bitmap with room for some chunks.
+     * @param capacity How many chunks to make room for.
+     */
+    private TicketBitmap(int capacity) {
+        keys = new char[capacity];
+        chunks = new Object[capacity];
+        counts = new int[capacity];
+        size = 0;
+    }
+
+    /**
+     * Creates a bitmap containing some ints.
+     * @param values The ints, which need not be sorted.
+     * @return A new bitmap containing the ints.
+     */
+    public static TicketBitmap of(int... values) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        // In order, every int is added to the end of the last chunk without moving any others
+        TicketBitmap bitmap = new TicketBitmap();
+        for(int value : sorted) bitmap.add(value);
+
+        return bitmap;
+    }
+
+    /**
+     * Finds the chunk with some high bits.
+     * @param key The high 16 bits.
+     * @return Where the chunk is, or <code>-(insertion point) - 1</code> if there isn't one.
+     */
+    private int find(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    /**
+     * Adds an int to this bitmap.
+     * @param value The int to add, which must not be negative.
+     * @return true if the int was added, false if it was already in this bitmap.
+     */
+    public boolean add(int value) {
+        if(value < 0) throw new IllegalArgumentException("Negative value " + value);
+
+        char key = (char)(value >>> 16);
+        char low = (char)value;
+        int i = find(key);
+
+        if(i < 0) {
+            i = -i - 1;
+            insertChunk(i, key, new char[] { low, 0, 0, 0 }, 1);
+            return true;
+        }
+
+        if(chunks[i] instanceof long[]) {
+            long[] words = (long[])chunks[i];
+            long bit = 1L << low;
+
+            if((words[low >>> 6] & bit) != 0) return false;
+
+            words[low >>> 6] |= bit;
+            counts[i]++;
+            return true;
+        }
+
+        char[] array = (char[])chunks[i];
+        int at = Arrays.binarySearch(array, 0, counts[i], low);
+        if(at >= 0) return false;
+        at = -at - 1;
+
+        if(counts[i] == ARRAY_MAX) {
+            long[] words = toWords(array, counts[i]);
+            words[low >>> 6] |= 1L << low;
+            chunks[i] = words;
+        } else {
+            if(counts[i] == array.length) chunks[i] = array = Arrays.copyOf(array, Math.min(ARRAY_MAX, array.length * 2));
+
+            System.arraycopy(array, at, array, at + 1, counts[i] - at);
+            array[at] = low;
+        }
+
+        counts[i]++;
+        return true;
+    }
+
+    /**
+     * Removes an int from this bitmap.
+     * @param value The int to remove.
+     * @return true if the int was removed, false if it wasn't in this bitmap.
+     */
+    public boolean remove(int value) {
+        if(value < 0) return false;
+
+        int i = find((char)(value >>> 16));
+        if(i < 0) return false;
+
+        char low = (char)value;
+
+        if(chunks[i] instanceof long[]) {
+            long[] words = (long[])chunks[i];
+            long bit = 1L << low;
+
+            if((words[low >>> 6] & bit) == 0) return false;
+
+            words[low >>> 6] &= ~bit;
+            if(--counts[i] <= ARRAY_MAX) chunks[i] = toArray(words, counts[i]);
+
+            return true;
+        }
+
+        char[] array = (char[])chunks[i];
+        int at = Arrays.binarySearch(array, 0, counts[i], low);
+        if(at < 0) return false;
+
+        System.arraycopy(array, at + 1, array, at, counts[i] - at - 1);
+        if(--counts[i] == 0) removeChunk(i);
+
+        return true;
+    }
+
+    /**
+     * Checks if an int is in this bitmap.
+     * @param value The int to check.
+     * @return true if the int is in this bitmap, false otherwise.
+     */
+    public boolean contains(int value) {
+        if(value < 0) return false;
+
+        int i = find((char)(value >>> 16));
+
+        return i >= 0 && chunkContains(chunks[i], counts[i], (char)value);
+    }
+
+    /**
+     * Gets how many ints are in this bitmap.
+     * @return How many ints are in this bitmap.
+     */
+    public int getCardinality() {
+        int count = 0;
+        for(int i = 0; i < size; i++) count += counts[i];
+
+        return count;
+    }
+
+    /**
+     * Checks if this bitmap is empty.
+     * @return true if there are no ints in this bitmap, false otherwise.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the smallest int in this bitmap.
+     * @return The smallest int, or -1 if this bitmap is empty.
+     */
+    public int first() {
+        if(size == 0) return -1;
+
+        if(chunks[0] instanceof char[]) return keys[0] << 16 | ((char[])chunks[0])[0];
+
+        long[] words = (long[])chunks[0];
+        int w = 0;
+        while(words[w] == 0) w++;
+
+        return keys[0] << 16 | (w << 6) | Long.numberOfTrailingZeros(words[w]);
+    }
+
+    /**
+     * Calls a function with every int in this bitmap, in increasing order.
+     * @param consumer The function to call.
+     */
+    public void forEach(IntConsumer consumer) {
+        for(int i = 0; i < size; i++) {
+            int high = keys[i] << 16;
+
+            if(chunks[i] instanceof long[]) {
+                long[] words = (long[])chunks[i];
+
+                for(int w = 0; w < WORDS; w++) {
+                    for(long word = words[w]; word != 0; word &= word - 1) {
+                        consumer.accept(high | (w << 6) | Long.numberOfTrailingZeros(word));
+                    }
+                }
+            } else {
+                char[] array = (char[])chunks[i];
+                for(int j = 0; j < counts[i]; j++) consumer.accept(high | array[j]);
+            }
+        }
+    }
+
+    /**
+     * Gets every int in this bitmap.
+     * @return The ints, in increasing order.
+     */
+    public int[] toArray() {
+        int[] values = new int[getCardinality()];
+        int[] at = { 0 };
+        forEach(value -> values[at[0]++] = value);
+
+        return values;
+    }
+
+    /**
+     * Copies this bitmap.
+     * @return A new bitmap with the same ints, which shares nothing with this one.
+     */
+    public TicketBitmap copy() {
+        TicketBitmap copy = new TicketBitmap(Math.max(size, 1));
+
+        for(int i = 0; i < size; i++) {
+            Object chunk = chunks[i] instanceof long[] ? ((long[])chunks[i]).clone()
+                                                       : Arrays.copyOf((char[])chunks[i], counts[i]);
+            copy.appendChunk(keys[i], chunk, counts[i]);
+        }
+
+        return copy;
+    }
+
+    /**
+     * Writes this bitmap, one chunk at a time in the form it is stored in.
+     * @param out The stream to write to.
+     * @throws IOException If the bitmap could not be written.
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(size);
+
+        for(int i = 0; i < size; i++) {
+            out.writeChar(keys[i]);
+            out.writeInt(counts[i]);
+
+            if(chunks[i] instanceof long[]) {
+                out.writeBoolean(true);
+                for(long word : (long[])chunks[i]) out.writeLong(word);
+            } else {
+                out.writeBoolean(false);
+
+                char[] array = (char[])chunks[i];
+                for(int j = 0; j < counts[i]; j++) out.writeChar(array[j]);
+            }
+        }
+    }
+
+    /**
+     * Reads a bitmap written by {@link #write(DataOutputStream)}.
+     * @param in The stream to read from.
+     * @return The bitmap that was read.
+     * @throws IOException If the stream ended first, or the bitmap is corrupt.
+     */
+    public static TicketBitmap read(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if(size < 0 || size > 65536) throw new IOException("bitmap of " + size + " chunks is invalid");
+
+        TicketBitmap bitmap = new TicketBitmap(Math.max(size, 1));
+
+        for(int i = 0; i < size; i++) {
+            char key = in.readChar();
+            int count = in.readInt();
+            boolean bits = in.readBoolean();
+
+            // Chunks are never empty and always in order, and only bits can hold more than ARRAY_MAX
+            if((i > 0 && key <= bitmap.keys[i - 1]) || count <= 0 || count > (bits ? 65536 : ARRAY_MAX)) {
+                throw new IOException("bitmap chunk " + (int)key + " of " + count + " ints is invalid");
+            }
+
+            if(bits) {
+                long[] words = new long[WORDS];
+                int actual = 0;
+
+                for(int w = 0; w < WORDS; w++) {
+                    words[w] = in.readLong();
+                    actual += Long.bitCount(words[w]);
+                }
+
+                if(actual != count) throw new IOException("bitmap chunk " + (int)key + " has " + actual + " ints, not " + count);
+
+                bitmap.appendChunk(key, words, count);
+            } else {
+                char[] array = new char[count];
+
+                for(int j = 0; j < count; j++) {
+                    array[j] = in.readChar();
+                    if(j > 0 && array[j] <= array[j - 1]) throw new IOException("bitmap chunk " + (int)key + " is not sorted");
+                }
+
+                bitmap.appendChunk(key, array, count);
+            }
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * Intersects two bitmaps.
+     * @param a The first bitmap.
+     * @param b The second bitmap.
+     * @return A new bitmap with the ints in both.
+     */
+    public static TicketBitmap and(TicketBitmap a, TicketBitmap b) {
+        TicketBitmap result = new TicketBitmap(Math.max(1, Math.min(a.size, b.size)));
+        int i = 0;
+        int j = 0;
+
+        while(i < a.size && j < b.size) {
+            if(a.keys[i] < b.keys[j]) {
+                i++;
+            } else if(a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                result.appendResult(a.keys[i], andChunks(a.chunks[i], a.counts[i], b.chunks[j], b.counts[j]));
+                i++;
+                j++;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Unites two bitmaps.
+     * @param a The first bitmap.
+     * @param b The second bitmap.
+     * @return A new bitmap with the ints in either.
+     */
+    public static TicketBitmap or(TicketBitmap a, TicketBitmap b) {
+        TicketBitmap result = new TicketBitmap(Math.max(1, a.size + b.size));
+        int i = 0;
+        int j = 0;
+
+        while(i < a.size || j < b.size) {
+            if(j == b.size || (i < a.size && a.keys[i] < b.keys[j])) {
+                result.appendChunk(a.keys[i], copyChunk(a.chunks[i], a.counts[i]), a.counts[i]);
+                i++;
+            } else if(i == a.size || a.keys[i] > b.keys[j]) {
+                result.appendChunk(b.keys[j], copyChunk(b.chunks[j], b.counts[j]), b.counts[j]);
+                j++;
+            } else {
+                result.appendResult(a.keys[i], orChunks(a.chunks[i], a.counts[i], b.chunks[j], b.counts[j]));
+                i++;
+                j++;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Subtracts one bitmap from another.
+     * @param a The bitmap to subtract from.
+     * @param b The bitmap to subtract.
+     * @return A new bitmap with the ints in the first but not the second.
+     */
+    public static TicketBitmap andNot(TicketBitmap a, TicketBitmap b) {
+        TicketBitmap result = new TicketBitmap(Math.max(1, a.size));
+        int j = 0;
+
+        for(int i = 0; i < a.size; i++) {
+            while(j < b.size && b.keys[j] < a.keys[i]) j++;
+
+            if(j < b.size && b.keys[j] == a.keys[i]) {
+                result.appendResult(a.keys[i], andNotChunks(a.chunks[i], a.counts[i], b.chunks[j], b.counts[j]));
+            } else {
+                result.appendChunk(a.keys[i], copyChunk(a.chunks[i], a.counts[i]), a.counts[i]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets the complement of this bitmap within another.
+     * @param universe The bitmap of every int that could be in this one.
+     * @return A new bitmap with the ints in the universe but not in this bitmap.
+     */
+    public TicketBitmap not(TicketBitmap universe) {
+        return andNot(universe, this);
+    }
+
+    /**
+     * Checks if a chunk contains some low bits.
+     * @param chunk The chunk.
+     * @param count How many ints are in the chunk.
+     * @param low The low 16 bits.
+     * @return true if the chunk contains them, false otherwise.
+     */
+    private static boolean chunkContains(Object chunk, int count, char low) {
+        if(chunk instanceof long[]) return (((long[])chunk)[low >>> 6] & (1L << low)) != 0;
+
+        return Arrays.binarySearch((char[])chunk, 0, count, low) >= 0;
+    }
+
+    /**
+     * Intersects two chunks.
+     * @return The resulting chunk, which may be empty.
+     */
+    private static Object andChunks(Object a, int aCount, Object b, int bCount) {
+        if(a instanceof long[] && b instanceof long[]) {
+            long[] x = (long[])a;
+            long[] y = (long[])b;
+            long[] words = new long[WORDS];
+
+            for(int w = 0; w < WORDS; w++) words[w] = x[w] & y[w];
+
+            return words;
+        }
+
+        // Test the elements of the array against the other chunk
+        if(a instanceof long[]) return andChunks(b, bCount, a, aCount);
+
+        // Walk two arrays of similar sizes together, rather than searching one for every element of the other
+        if(b instanceof char[] && aCount * 32 > bCount && bCount * 32 > aCount) {
+            char[] x = (char[])a;
+            char[] y = (char[])b;
+            char[] result = new char[Math.min(aCount, bCount)];
+            int i = 0;
+            int j = 0;
+            int count = 0;
+
+            while(i < aCount && j < bCount) {
+                if(x[i] < y[j]) i++;
+                else if(x[i] > y[j]) j++;
+                else {
+                    result[count++] = x[i++];
+                    j++;
+                }
+            }
+
+            return Arrays.copyOf(result, count);
+        }
+
+        if(b instanceof char[] && aCount > bCount) return andChunks(b, bCount, a, aCount);
+
+        char[] array = (char[])a;
+        char[] result = new char[Math.min(aCount, bCount)];
+        int count = 0;
+
+        for(int k = 0; k < aCount; k++) {
+            if(chunkContains(b, bCount, array[k])) result[count++] = array[k];
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Unites two chunks.
+     * @return The resulting chunk.
+     */
+    private static Object orChunks(Object a, int aCount, Object b, int bCount) {
+        if(a instanceof char[] && b instanceof char[] && aCount + bCount <= ARRAY_MAX) {
+            char[] x = (char[])a;
+            char[] y = (char[])b;
+            char[] result = new char[aCount + bCount];
+            int i = 0;
+            int j = 0;
+            int count = 0;
+
+            while(i < aCount || j < bCount) {
+                if(j == bCount || (i < aCount && x[i] < y[j])) result[count++] = x[i++];
+                else if(i == aCount || x[i] > y[j]) result[count++] = y[j++];
+                else {
+                    result[count++] = x[i++];
+                    j++;
+                }
+            }
+
+            return Arrays.copyOf(result, count);
+        }
+
+        long[] words = a instanceof long[] ? ((long[])a).clone() : toWords((char[])a, aCount);
+
+        if(b instanceof long[]) {
+            long[] y = (long[])b;
+            for(int w = 0; w < WORDS; w++) words[w] |= y[w];
+        } else {
+            char[] y = (char[])b;
+            for(int k = 0; k < bCount; k++) words[y[k] >>> 6] |= 1L << y[k];
+        }
+
+        return words;
+    }
+
+    /**
+     * Subtracts one chunk from another.
+     * @return The resulting chunk, which may be empty.
+     */
+    private static Object andNotChunks(Object a, int aCount, Object b, int bCount) {
+        if(a instanceof char[]) {
+            char[] array = (char[])a;
+            char[] result = new char[aCount];
+            int count = 0;
+
+            for(int k = 0; k < aCount; k++) {
+                if(!chunkContains(b, bCount, array[k])) result[count++] = array[k];
+            }
+
+            return Arrays.copyOf(result, count);
+        }
+
+        long[] words = ((long[])a).clone();
+
+        if(b instanceof long[]) {
+            long[] y = (long[])b;
+            for(int w = 0; w < WORDS; w++) words[w] &= ~y[w];
+        } else {
+            char[] y = (char[])b;
+            for(int k = 0; k < bCount; k++) words[y[k] >>> 6] &= ~(1L << y[k]);
+        }
+
+        return words;
+    }
+
+    /**
+     * Copies a chunk.
+     * @param chunk The chunk to copy.
+     * @param count How many ints are in the chunk.
+     * @return A copy of the chunk, trimmed if it is an array.
+     */
+    private static Object copyChunk(Object chunk, int count) {
+        return chunk instanceof long[] ? ((long[])chunk).clone() : Arrays.copyOf((char[])chunk, count);
+    }
+
+    /**
+     * Converts an array chunk to a bits chunk.
+     * @param array The array chunk.
+     * @param count How many ints are in the chunk.
+     * @return The bits chunk.
+     */
+    private static long[] toWords(char[] array, int count) {
+        long[] words = new long[WORDS];
+        for(int k = 0; k < count; k++) words[array[k] >>> 6] |= 1L << array[k];
+
+        return words;
+    }
+
+    /**
+     * Converts a bits chunk to an array chunk.
+     * @param words The bits chunk.
+     * @param count How many ints are in the chunk.
+     * @return The array chunk.
+     */
+    private static char[] toArray(long[] words, int count) {
+        char[] array = new char[count];
+        int k = 0;
+
+        for(int w = 0; w < WORDS; w++) {
+            for(long word = words[w]; word != 0; word &= word - 1) {
+                array[k++] = (char)((w << 6) | Long.numberOfTrailingZeros(word));
+            }
+        }
+
+        return array;
+    }
+
+    /**
+     * Adds the result of combining two chunks to the end of this bitmap, in whichever form fits it
+     *  best, unless it is empty.
+     * @param key The high 16 bits of the chunk, which must be greater than any already added.
+     * @param chunk The resulting chunk, with no unused elements if it is an array.
+     */
+    private void appendResult(char key, Object chunk) {
+        if(chunk instanceof char[]) {
+            char[] array = (char[])chunk;
+            if(array.length > 0) appendChunk(key, array, array.length);
+            return;
+        }
+
+        long[] words = (long[])chunk;
+        int count = 0;
+        for(int w = 0; w < WORDS; w++) count += Long.bitCount(words[w]);
+
+        if(count == 0) return;
+
+        appendChunk(key, count <= ARRAY_MAX ? toArray(words, count) : words, count);
+    }
+
+    /**
+     * Adds a chunk to the end of this bitmap.
+     * @param key The high 16 bits of the chunk, which must be greater than any already added.
+     * @param chunk The chunk.
+     * @param count How many ints are in the chunk.
+     */
+    private void appendChunk(char key, Object chunk, int count) {
+        insertChunk(size, key, chunk, count);
+    }
+
+    /**
+     * Inserts a chunk into this bitmap.
+     * @param at Where to insert the chunk.
+     * @param key The high 16 bits of the chunk.
+     * @param chunk The chunk.
+     * @param count How many ints are in the chunk.
+     */
+    private void insertChunk(int at, char key, Object chunk, int count) {
+        if(size == keys.length) {
+            int capacity = Math.max(4, size * 2);
+
+            keys = Arrays.copyOf(keys, capacity);
+            chunks = Arrays.copyOf(chunks, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+
+        System.arraycopy(keys, at, keys, at + 1, size - at);
+        System.arraycopy(chunks, at, chunks, at + 1, size - at);
+        System.arraycopy(counts, at, counts, at + 1, size - at);
+
+        keys[at] = key;
+        chunks[at] = chunk;
+        counts[at] = count;
+        size++;
+    }
+
+    /**
+     * Removes an empty chunk from this bitmap.
+     * @param at Where the chunk is.
+     */
+    private void removeChunk(int at) {
+        System.arraycopy(keys, at + 1, keys, at, size - at - 1);
+        System.arraycopy(chunks, at + 1, chunks, at, size - at - 1);
+        System.arraycopy(counts, at + 1, counts, at, size - at - 1);
+
+        chunks[--size] = null;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if(!(other instanceof TicketBitmap)) return false;
+
+        return Arrays.equals(toArray(), ((TicketBitmap)other).toArray());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toArray());
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
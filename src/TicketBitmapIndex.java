@@ -0,0 +1,402 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bitmap indexes over the header fields of a set of tickets, for filtering and counting them without
+ *  looking at every ticket.
+ * <p>
+ * Every ticket is given a row, and there is a {@link TicketBitmap} of the rows with each status,
+ *  priority and type, and by each author. Authors are interned into a dictionary, so each distinct
+ *  author is only stored once however many tickets they wrote. Combining filters is then a matter of
+ *  intersecting, uniting and subtracting bitmaps, and counting the matches is just
+ *  {@link TicketBitmap#getCardinality()}.
+ * <p>
+ * The indexes are kept up to date one ticket at a time with {@link #put(TicketIndex.Entry)} and
+ *  {@link #remove(String)}. The rows of removed tickets are given to the next tickets to be added, so
+ *  the bitmaps never grow past the most tickets there have been at once.
+ * <p>
+ * The bitmaps can be written with {@link #write(DataOutputStream)} and read back with
+ *  {@link #read(DataInputStream, List, int[])}, so that {@link TicketIndex} can keep them in its index
+ *  file instead of building them again on every run.
+ *
+ * @author Tyler Robbins
+ * @version 1.0
+ * @since 1.2
+ */
+public class TicketBitmapIndex {
+    /**
+     * The entry in each row, or null if the row is free.
+     */
+    private List<TicketIndex.Entry> rows;
+
+    /**
+     * The row of each ticket, mapped from its MD5 ID.
+     */
+    private Map<String, Integer> rowIDs;
+
+    /**
+     * The rows which are free to be given to new tickets.
+     */
+    private TicketBitmap free;
+
+    /**
+     * The rows of every ticket.
+     */
+    private TicketBitmap all;
+
+    /**
+     * The rows with each status, priority and type.
+     */
+    private Map<Enum<?>, TicketBitmap> byValue;
+
+    /**
+     * The ID of each interned author, mapped from the author.
+     */
+    private Map<String, Integer> authorIDs;
+
+    /**
+     * Each interned author, by their ID.
+     */
+    private List<String> authors;
+
+    /**
+     * The rows by each author, by the author's ID. Authors with no tickets left keep an empty bitmap.
+     */
+    private List<TicketBitmap> byAuthor;
+
+    /**
+     * Creates an empty index.
+     */
+    public TicketBitmapIndex() {
+        rows = new ArrayList<TicketIndex.Entry>();
+        rowIDs = new HashMap<String, Integer>();
+        free = new TicketBitmap();
+        all = new TicketBitmap();
+        byValue = new HashMap<Enum<?>, TicketBitmap>();
+        authorIDs = new HashMap<String, Integer>();
+        authors = new ArrayList<String>();
+        byAuthor = new ArrayList<TicketBitmap>();
+
+        for(Enum<?> value : Ticket.TicketStatus.values()) byValue.put(value, new TicketBitmap());
+        for(Enum<?> value : Ticket.TicketPriority.values()) byValue.put(value, new TicketBitmap());
+        for(Enum<?> value : Ticket.TicketType.values()) byValue.put(value, new TicketBitmap());
+    }
+
+    /**
+     * Creates an index of some entries.
+     * @param entries The entries to index.
+     */
+    public TicketBitmapIndex(Collection<TicketIndex.Entry> entries) {
+        this();
+
+        for(TicketIndex.Entry entry : entries) put(entry);
+    }
+
+    /**
+     * Writes the bitmaps and authors of this index. The entries themselves aren't written, only how many
+     *  rows there are, so the row of each entry has to be written along with it.
+     * @param out The stream to write to.
+     * @throws IOException If the index could not be written.
+     * @see #getRow(String)
+     */
+    public synchronized void write(DataOutputStream out) throws IOException {
+        out.writeInt(rows.size());
+
+        free.write(out);
+        all.write(out);
+
+        writeValues(out, Ticket.TicketStatus.values());
+        writeValues(out, Ticket.TicketPriority.values());
+        writeValues(out, Ticket.TicketType.values());
+
+        out.writeInt(authors.size());
+        for(int id = 0; id < authors.size(); id++) {
+            TicketIndex.writeString(out, authors.get(id));
+            byAuthor.get(id).write(out);
+        }
+    }
+
+    /**
+     * Writes the bitmaps of some statuses, priorities or types.
+     * @param out The stream to write to.
+     * @param values Every status, priority or type.
+     * @throws IOException If the bitmaps could not be written.
+     */
+    private void writeValues(DataOutputStream out, Enum<?>[] values) throws IOException {
+        out.writeInt(values.length);
+        for(Enum<?> value : values) byValue.get(value).write(out);
+    }
+
+    /**
+     * Reads an index written by {@link #write(DataOutputStream)}.
+     * @param in The stream to read from.
+     * @param entries The entries that were in the index.
+     * @param entryRows The row of each entry, in the same order.
+     * @return The index that was read.
+     * @throws IOException If the stream ended first, or the index is corrupt or doesn't match the entries.
+     */
+    public static TicketBitmapIndex read(DataInputStream in, List<TicketIndex.Entry> entries, int[] entryRows) throws IOException {
+        TicketBitmapIndex index = new TicketBitmapIndex();
+
+        int rowCount = in.readInt();
+        if(rowCount < entries.size()) throw new IOException(rowCount + " rows can't hold " + entries.size() + " entries");
+
+        TicketIndex.Entry[] rows = new TicketIndex.Entry[rowCount];
+        for(int i = 0; i < entries.size(); i++) {
+            int row = entryRows[i];
+            if(row < 0 || row >= rowCount || rows[row] != null) throw new IOException("Invalid row " + row);
+
+            rows[row] = entries.get(i);
+            index.rowIDs.put(entries.get(i).getMD5ID(), row);
+        }
+
+        index.rows = new ArrayList<TicketIndex.Entry>(Arrays.asList(rows));
+        index.free = TicketBitmap.read(in);
+        index.all = TicketBitmap.read(in);
+
+        // Every row is either free or taken, so anything else means the bitmaps don't match the entries
+        if(index.all.getCardinality() != entries.size() || index.free.getCardinality() != rowCount - entries.size()) {
+            throw new IOException("Bitmaps don't match the entries");
+        }
+
+        index.readValues(in, Ticket.TicketStatus.values());
+        index.readValues(in, Ticket.TicketPriority.values());
+        index.readValues(in, Ticket.TicketType.values());
+
+        int authorCount = in.readInt();
+        if(authorCount < 0) throw new IOException("Invalid number of authors " + authorCount);
+
+        for(int id = 0; id < authorCount; id++) {
+            String author = TicketIndex.readString(in);
+
+            index.authorIDs.put(author, id);
+            index.authors.add(author);
+            index.byAuthor.add(TicketBitmap.read(in));
+        }
+
+        return index;
+    }
+
+    /**
+     * Reads the bitmaps of some statuses, priorities or types.
+     * @param in The stream to read from.
+     * @param values Every status, priority or type.
+     * @throws IOException If the stream ended first, or there are a different number of them now.
+     */
+    private void readValues(DataInputStream in, Enum<?>[] values) throws IOException {
+        int count = in.readInt();
+        if(count != values.length) throw new IOException(count + " bitmaps can't be for " + values.length + " values");
+
+        for(Enum<?> value : values) byValue.put(value, TicketBitmap.read(in));
+    }
+
+    /**
+     * Adds a ticket to the index, or updates it if it is already there.
+     * @param entry The entry of the ticket.
+     */
+    public synchronized void put(TicketIndex.Entry entry) {
+        Integer existing = rowIDs.get(entry.getMD5ID());
+        int row;
+
+        if(existing != null) {
+            row = existing;
+            clear(row, rows.get(row));
+        } else if(!free.isEmpty()) {
+            row = free.first();
+            free.remove(row);
+        } else {
+            row = rows.size();
+            rows.add(null);
+        }
+
+        rows.set(row, entry);
+        rowIDs.put(entry.getMD5ID(), row);
+
+        all.add(row);
+        byValue.get(entry.getStatus()).add(row);
+        byValue.get(entry.getPriority()).add(row);
+        byValue.get(entry.getType()).add(row);
+        byAuthor.get(intern(entry.getAuthor())).add(row);
+    }
+
+    /**
+     * Removes a ticket from the index.
+     * @param md5ID The MD5 ID of the ticket.
+     * @return true if the ticket was removed, false if it wasn't in the index.
+     */
+    public synchronized boolean remove(String md5ID) {
+        Integer row = rowIDs.remove(md5ID);
+        if(row == null) return false;
+
+        clear(row, rows.get(row));
+        rows.set(row, null);
+        all.remove(row);
+        free.add(row);
+
+        return true;
+    }
+
+    /**
+     * Removes a row from the bitmaps of the values of an entry.
+     * @param row The row.
+     * @param entry The entry that was in the row.
+     */
+    private void clear(int row, TicketIndex.Entry entry) {
+        byValue.get(entry.getStatus()).remove(row);
+        byValue.get(entry.getPriority()).remove(row);
+        byValue.get(entry.getType()).remove(row);
+        byAuthor.get(intern(entry.getAuthor())).remove(row);
+    }
+
+    /**
+     * Gets the ID of an author, interning them if they haven't been seen before.
+     * @param author The author.
+     * @return The ID of the author.
+     */
+    private int intern(String author) {
+        Integer id = authorIDs.get(author);
+
+        if(id == null) {
+            id = authors.size();
+            authorIDs.put(author, id);
+            authors.add(author);
+            byAuthor.add(new TicketBitmap());
+        }
+
+        return id;
+    }
+
+    /**
+     * Gets the rows of every ticket.
+     * @return A copy of the bitmap of every row.
+     */
+    public synchronized TicketBitmap getAll() {
+        return all.copy();
+    }
+
+    /**
+     * Gets the rows of the tickets with a status, priority or type.
+     * @param value The status, priority or type.
+     * @return A copy of the bitmap of the matching rows.
+     */
+    public synchronized TicketBitmap get(Enum<?> value) {
+        TicketBitmap bitmap = byValue.get(value);
+
+        return bitmap == null ? new TicketBitmap() : bitmap.copy();
+    }
+
+    /**
+     * Gets the rows of the tickets with any of some statuses, priorities or types.
+     * @param values The statuses, priorities and types.
+     * @return A new bitmap of the matching rows.
+     */
+    public synchronized TicketBitmap getAny(Collection<? extends Enum<?>> values) {
+        TicketBitmap bitmap = new TicketBitmap();
+
+        for(Enum<?> value : values) {
+            TicketBitmap rowsWithValue = byValue.get(value);
+            if(rowsWithValue != null) bitmap = TicketBitmap.or(bitmap, rowsWithValue);
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * Counts the tickets with a status, priority or type.
+     * @param value The status, priority or type.
+     * @return How many tickets have the value.
+     */
+    public synchronized int count(Enum<?> value) {
+        TicketBitmap bitmap = byValue.get(value);
+
+        return bitmap == null ? 0 : bitmap.getCardinality();
+    }
+
+    /**
+     * Gets the rows of the tickets by an author.
+     * @param author The author, exactly as written in the tickets.
+     * @return A copy of the bitmap of the matching rows.
+     */
+    public synchronized TicketBitmap getAuthor(String author) {
+        Integer id = authorIDs.get(author);
+
+        return id == null ? new TicketBitmap() : byAuthor.get(id).copy();
+    }
+
+    /**
+     * Counts the tickets by an author.
+     * @param author The author, exactly as written in the tickets.
+     * @return How many tickets the author wrote.
+     */
+    public synchronized int countAuthor(String author) {
+        Integer id = authorIDs.get(author);
+
+        return id == null ? 0 : byAuthor.get(id).getCardinality();
+    }
+
+    /**
+     * Gets every author who has written a ticket in the index.
+     * @return An unmodifiable List of the authors.
+     */
+    public synchronized List<String> getAuthors() {
+        List<String> current = new ArrayList<String>();
+
+        for(int id = 0; id < authors.size(); id++) {
+            if(!byAuthor.get(id).isEmpty()) current.add(authors.get(id));
+        }
+
+        return Collections.unmodifiableList(current);
+    }
+
+    /**
+     * Gets the row of a ticket.
+     * @param md5ID The MD5 ID of the ticket.
+     * @return The row of the ticket, or -1 if it isn't in the index.
+     */
+    public synchronized int getRow(String md5ID) {
+        Integer row = rowIDs.get(md5ID);
+
+        return row == null ? -1 : row;
+    }
+
+    /**
+     * Gets the entry in a row.
+     * @param row The row.
+     * @return The entry in the row, or null if the row is free.
+     */
+    public synchronized TicketIndex.Entry getEntry(int row) {
+        return row >= 0 && row < rows.size() ? rows.get(row) : null;
+    }
+
+    /**
+     * Gets the entries in some rows.
+     * @param bitmap The rows.
+     * @return A List of the entries, in order of their rows.
+     */
+    public synchronized List<TicketIndex.Entry> getEntries(TicketBitmap bitmap) {
+        List<TicketIndex.Entry> entries = new ArrayList<TicketIndex.Entry>(bitmap.getCardinality());
+
+        bitmap.forEach(row -> {
+            TicketIndex.Entry entry = getEntry(row);
+            if(entry != null) entries.add(entry);
+        });
+
+        return entries;
+    }
+
+    /**
+     * Gets how many tickets are in the index.
+     * @return How many tickets are in the index.
+     */
+    public synchronized int size() {
+        return rowIDs.size();
+    }
+}
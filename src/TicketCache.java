@@ -0,0 +1,341 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A live cache of the header of every ticket in the copied project repository.
+ * <p>
+ * The directory and its shard directories are watched with a {@link WatchService}, and only the
+ *  ticket files that are created, modified or deleted are read again. Every change is passed on to the registered
+ *  {@link Listener}s, so that they can update themselves without reloading every ticket. If the
+ *  watch service loses track of events, then the whole directory is checked again through the
+ *  {@link TicketIndex} and only the differences are passed on.
+ *
+ * @author Tyler Robbins
+ * @version 1.0
+ * @since 1.2
+ */
+public class TicketCache {
+    /**
+     * The kinds of changes that can happen to a ticket.
+     *
+     * @author Tyler Robbins
+     * @version 1.0
+     * @since 1.2
+     */
+    public enum ChangeType {
+        /**
+         * If the ticket was created.
+         */
+        ADDED,
+
+        /**
+         * If the ticket's file was changed.
+         */
+        MODIFIED,
+
+        /**
+         * If the ticket was deleted.
+         */
+        REMOVED;
+    }
+
+    /**
+     * Is told about every change to a ticket in the cache.
+     *
+     * @author Tyler Robbins
+     * @version 1.0
+     * @since 1.2
+     */
+    public interface Listener {
+        /**
+         * Called on the cache's watching thread whenever a ticket changes.
+         * @param type The kind of change.
+         * @param md5ID The MD5 ID of the ticket that changed.
+         * @param entry The new header of the ticket, or the last known one if it was removed.
+         */
+        void ticketChanged(ChangeType type, String md5ID, TicketIndex.Entry entry);
+    }
+
+    /**
+     * The instance of this singleton.
+     */
+    private static TicketCache instance = null;
+
+    /**
+     * The directory being watched.
+     */
+    private File dir;
+
+    /**
+     * The header of every ticket, mapped from its MD5 ID.
+     */
+    private Map<String, TicketIndex.Entry> entries;
+
+    /**
+     * Everything that is told about changes.
+     */
+    private List<Listener> listeners;
+
+    /**
+     * The service watching {@link #dir}, or null if the directory could not be watched.
+     */
+    private WatchService watcher;
+
+    /**
+     * The directory each key of {@link #watcher} is watching.
+     */
+    private Map<WatchKey, File> watchedDirs;
+
+    /**
+     * Creates a cache of the tickets in a directory and starts watching it.
+     * @param dir The directory containing the tickets.
+     */
+    private TicketCache(File dir) {
+        this.dir = dir;
+        entries = new ConcurrentHashMap<String, TicketIndex.Entry>();
+        listeners = new CopyOnWriteArrayList<Listener>();
+
+        watchedDirs = new ConcurrentHashMap<WatchKey, File>();
+
+        // Start watching before reading, so that nothing changed in between is missed
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            for(File ticketDir : FileUtil.getTicketDirs(dir)) register(ticketDir);
+        } catch(IOException e) {
+            System.err.println("Failed to watch " + dir + " for changes to tickets.");
+            e.printStackTrace();
+            watcher = null;
+        }
+
+        rescan();
+
+        if(watcher != null) {
+            Thread thread = new Thread(this::watch, "TicketCache");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Gets the instance for this singleton, reading every ticket in the copied project repository and
+     *  starting to watch it if it hasn't been already.
+     * @return The instance for this singleton, or null if the copied project repository could not be found.
+     */
+    public static synchronized TicketCache getInstance() {
+        if(instance == null) {
+            try {
+                instance = new TicketCache(FileUtil.getProjectTicketDir());
+            } catch(IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * Gets the header of every ticket in the cache.
+     * @return A List of the entries of every ticket.
+     */
+    public List<TicketIndex.Entry> getEntries() {
+        return new ArrayList<TicketIndex.Entry>(entries.values());
+    }
+
+    /**
+     * Gets the header of a single ticket.
+     * @param md5ID The MD5 ID of the ticket.
+     * @return The entry of the ticket, or null if it isn't in the cache.
+     */
+    public TicketIndex.Entry getEntry(String md5ID) {
+        return entries.get(md5ID);
+    }
+
+    /**
+     * Registers a listener to be told about every change from now on.
+     * @param listener The listener to add.
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stops telling a listener about changes.
+     * @param listener The listener to remove.
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Stops watching the directory.
+     */
+    public void close() {
+        try {
+            if(watcher != null) watcher.close();
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Starts watching a directory that holds tickets.
+     * @param ticketDir The directory to watch.
+     * @throws IOException If the directory could not be watched.
+     */
+    private void register(File ticketDir) throws IOException {
+        WatchKey key = ticketDir.toPath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                                                   StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        watchedDirs.put(key, ticketDir);
+    }
+
+    /**
+     * Waits for changes to the directory and handles them, until the watch service is closed.
+     */
+    private void watch() {
+        try {
+            while(true) {
+                WatchKey key = watcher.take();
+                File watched = watchedDirs.get(key);
+
+                for(WatchEvent<?> event : key.pollEvents()) {
+                    if(event.kind() == StandardWatchEventKinds.OVERFLOW || watched == null) {
+                        rescan();
+                        continue;
+                    }
+
+                    String name = ((Path)event.context()).toString();
+
+                    if(name.endsWith(".ticket")) {
+                        update(watched, name);
+                    } else if(watched.equals(dir) && event.kind() == StandardWatchEventKinds.ENTRY_CREATE &&
+                              FileUtil.isShardDir(name))
+                    {
+                        watchShard(new File(dir, name));
+                    }
+                }
+
+                if(!key.reset()) {
+                    watchedDirs.remove(key);
+
+                    // A shard directory going away is normal, but nothing works without the directory itself
+                    if(dir.equals(watched)) {
+                        System.err.println("Stopped watching " + dir + " for changes to tickets.");
+                        return;
+                    }
+                }
+            }
+        } catch(InterruptedException | ClosedWatchServiceException e) {
+            // Stopped watching
+        }
+    }
+
+    /**
+     * Starts watching a new shard directory, and reads any tickets that were written into it before
+     *  it was being watched.
+     * @param shard The shard directory.
+     */
+    private void watchShard(File shard) {
+        try {
+            register(shard);
+        } catch(IOException e) {
+            System.err.println("Failed to watch " + shard + " for changes to tickets.");
+            e.printStackTrace();
+            return;
+        }
+
+        String[] names = shard.list();
+        if(names == null) return;
+
+        for(String name : names) {
+            if(name.endsWith(".ticket")) update(shard, name);
+        }
+    }
+
+    /**
+     * Reads a single ticket file again and passes on what changed.
+     * @param ticketDir The directory the ticket file is in.
+     * @param name The name of the ticket file.
+     */
+    private synchronized void update(File ticketDir, String name) {
+        String md5ID = name.substring(0, name.length() - ".ticket".length());
+        File file = new File(ticketDir, name);
+
+        // A ticket that was only moved into its shard directory still exists
+        if(!file.exists()) file = FileUtil.getTicketFile(dir, md5ID);
+
+        if(!file.exists()) {
+            TicketIndex.Entry old = entries.remove(md5ID);
+            if(old != null) publish(ChangeType.REMOVED, md5ID, old);
+            return;
+        }
+
+        // A file that is still being written can't be read yet, there will be another event once it is
+        LazyTicket ticket = LazyTicket.read(file);
+        if(ticket == null) return;
+
+        TicketIndex.Entry entry = new TicketIndex.Entry(md5ID, ticket);
+        TicketIndex.Entry old = entries.put(md5ID, entry);
+
+        // A file is often modified more than once while it is written, only pass on real changes
+        if(old == null) {
+            publish(ChangeType.ADDED, md5ID, entry);
+        } else if(!entry.hasSameHeader(old)) {
+            publish(ChangeType.MODIFIED, md5ID, entry);
+        }
+    }
+
+    /**
+     * Checks every ticket file through the {@link TicketIndex}, and passes on what changed.
+     */
+    private synchronized void rescan() {
+        TicketIndex index = TicketIndex.getInstance();
+        if(index == null) return;
+
+        Map<String, TicketIndex.Entry> fresh = new HashMap<String, TicketIndex.Entry>();
+        for(TicketIndex.Entry entry : index.refresh()) fresh.put(entry.getMD5ID(), entry);
+
+        for(String md5ID : new ArrayList<String>(entries.keySet())) {
+            if(!fresh.containsKey(md5ID)) publish(ChangeType.REMOVED, md5ID, entries.remove(md5ID));
+        }
+
+        for(TicketIndex.Entry entry : fresh.values()) {
+            TicketIndex.Entry old = entries.put(entry.getMD5ID(), entry);
+
+            if(old == null) {
+                publish(ChangeType.ADDED, entry.getMD5ID(), entry);
+            } else if(!entry.hasSameHeader(old)) {
+                publish(ChangeType.MODIFIED, entry.getMD5ID(), entry);
+            }
+        }
+    }
+
+    /**
+     * Tells every listener about a change.
+     * @param type The kind of change.
+     * @param md5ID The MD5 ID of the ticket that changed.
+     * @param entry The entry of the ticket.
+     */
+    private void publish(ChangeType type, String md5ID, TicketIndex.Entry entry) {
+        for(Listener listener : listeners) {
+            try {
+                listener.ticketChanged(type, md5ID, entry);
+            } catch(RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,689 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * The header fields of many tickets, stored a column at a time in arrays of primitives rather than as
+ *  one object per ticket.
+ * <p>
+ * Each ticket is a row. The status, priority and type of every row are kept in <code>byte[]</code>s
+ *  of their ordinals, the creation dates in a <code>long[]</code> of milliseconds, the MD5 IDs as 16
+ *  raw bytes each, and the authors as ids into a dictionary of distinct authors. Titles are appended
+ *  to a single UTF-8 arena, and each row only remembers where its title starts. A row takes about 40
+ *  bytes plus its title, against several hundred for a {@link Ticket} with its Strings, Date, enums
+ *  and comment list, and scanning, sorting or counting a column touches one dense array instead of
+ *  chasing a pointer per ticket.
+ * <p>
+ * {@link #getRow(int)} gives a read-only view of a row, whose getters read the columns. The details
+ *  and comments of its ticket are only read from the ticket's file when asked for.
+ * <p>
+ * Rows can only be added, and a store is not safe to add to from multiple threads at once.
+ *
+ * @author Tyler Robbins
+ * @version 1.0
+ * @since 1.2
+ */
+public class TicketColumns {
+    /**
+     * How many bytes of each MD5 ID are stored.
+     */
+    private static final int MD5_SIZE = 16;
+
+    /**
+     * The hex digits, indexed by their value.
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Every status, indexed by its ordinal, so that one isn't cloned for every row looked up.
+     */
+    private static final Ticket.TicketStatus[] STATUSES = Ticket.TicketStatus.values();
+
+    /**
+     * Every priority, indexed by its ordinal.
+     */
+    private static final Ticket.TicketPriority[] PRIORITIES = Ticket.TicketPriority.values();
+
+    /**
+     * Every type, indexed by its ordinal.
+     */
+    private static final Ticket.TicketType[] TYPES = Ticket.TicketType.values();
+
+    /**
+     * How many rows there are.
+     */
+    private int size;
+
+    /**
+     * The raw bytes of the MD5 ID of each row, {@link #MD5_SIZE} per row.
+     */
+    private byte[] md5IDs;
+
+    /**
+     * The ordinal of the status of each row.
+     */
+    private byte[] statuses;
+
+    /**
+     * The ordinal of the priority of each row.
+     */
+    private byte[] priorities;
+
+    /**
+     * The ordinal of the type of each row.
+     */
+    private byte[] types;
+
+    /**
+     * When each row's ticket was created, in milliseconds since the epoch.
+     */
+    private long[] dates;
+
+    /**
+     * The id of the author of each row, in {@link #authorNames}.
+     */
+    private int[] authors;
+
+    /**
+     * How many comments each row's ticket has, or -1 if it isn't known.
+     */
+    private int[] commentCounts;
+
+    /**
+     * Where the title of each row starts in {@link #titles}. The title of the last row ends at
+     *  {@link #titlesLength}, and every other title ends where the next one starts.
+     */
+    private int[] titleOffsets;
+
+    /**
+     * The UTF-8 bytes of every title, one after another.
+     */
+    private byte[] titles;
+
+    /**
+     * How many bytes of {@link #titles} are used.
+     */
+    private int titlesLength;
+
+    /**
+     * Each distinct author, by their id.
+     */
+    private List<String> authorNames;
+
+    /**
+     * The id of each distinct author, mapped from the author.
+     */
+    private Map<String, Integer> authorIDs;
+
+    /**
+     * Creates an empty store.
+     */
+    public TicketColumns() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty store with room for some rows.
+     * @param capacity How many rows to make room for.
+     */
+    public TicketColumns(int capacity) {
+        capacity = Math.max(capacity, 1);
+
+        size = 0;
+        md5IDs = new byte[capacity * MD5_SIZE];
+        statuses = new byte[capacity];
+        priorities = new byte[capacity];
+        types = new byte[capacity];
+        dates = new long[capacity];
+        authors = new int[capacity];
+        commentCounts = new int[capacity];
+        titleOffsets = new int[capacity];
+        titles = new byte[capacity * 32];
+        titlesLength = 0;
+        authorNames = new ArrayList<String>();
+        authorIDs = new HashMap<String, Integer>();
+    }
+
+    /**
+     * Creates a store of some index entries, in the same order.
+     * @param entries The entries to store.
+     * @return A new store with a row for each entry.
+     */
+    public static TicketColumns of(Collection<TicketIndex.Entry> entries) {
+        TicketColumns columns = new TicketColumns(entries.size());
+        for(TicketIndex.Entry entry : entries) columns.add(entry);
+
+        return columns;
+    }
+
+    /**
+     * Adds a row for an index entry. The number of comments is not known.
+     * @param entry The entry to add.
+     * @return The row that was added.
+     */
+    public int add(TicketIndex.Entry entry) {
+        return add(entry.getMD5ID(), entry.getTitle(), entry.getAuthor(), entry.getDate().getTime(),
+                   entry.getStatus(), entry.getPriority(), entry.getType(), -1);
+    }
+
+    /**
+     * Adds a row for a ticket.
+     * <p>
+     * The comments of a {@link LazyTicket} that hasn't been read yet are not counted, so that adding
+     *  one doesn't read the rest of its file.
+     * @param ticket The ticket to add.
+     * @return The row that was added.
+     */
+    public int add(Ticket ticket) {
+        boolean counted = !(ticket instanceof LazyTicket) || ((LazyTicket)ticket).isLoaded();
+
+        return add(ticket.getMD5ID(), ticket.getTitle(), ticket.getAuthor(), ticket.getDate().getTime(),
+                   ticket.getStatus(), ticket.getPriority(), ticket.getType(),
+                   counted ? ticket.getComments().size() : -1);
+    }
+
+    /**
+     * Adds a row.
+     * @param md5ID The MD5 ID of the ticket, as 32 hex digits.
+     * @param title The title of the ticket.
+     * @param author The author of the ticket.
+     * @param date When the ticket was created, in milliseconds since the epoch.
+     * @param status The status of the ticket.
+     * @param priority The priority of the ticket.
+     * @param type The type of the ticket.
+     * @param comments How many comments the ticket has, or -1 if it isn't known.
+     * @return The row that was added.
+     * @throws IllegalArgumentException If the MD5 ID is not 32 hex digits.
+     */
+    public int add(String md5ID, String title, String author, long date, Ticket.TicketStatus status,
+                   Ticket.TicketPriority priority, Ticket.TicketType type, int comments)
+    {
+        if(md5ID.length() != MD5_SIZE * 2) throw new IllegalArgumentException("Invalid MD5 ID " + md5ID);
+
+        if(size == statuses.length) grow(size * 2);
+
+        int row = size;
+
+        for(int i = 0; i < MD5_SIZE; i++) {
+            int high = Character.digit(md5ID.charAt(i * 2), 16);
+            int low = Character.digit(md5ID.charAt(i * 2 + 1), 16);
+            if(high < 0 || low < 0) throw new IllegalArgumentException("Invalid MD5 ID " + md5ID);
+
+            md5IDs[row * MD5_SIZE + i] = (byte)(high << 4 | low);
+        }
+
+        statuses[row] = (byte)status.ordinal();
+        priorities[row] = (byte)priority.ordinal();
+        types[row] = (byte)type.ordinal();
+        dates[row] = date;
+        authors[row] = intern(author);
+        commentCounts[row] = comments;
+
+        byte[] bytes = title.getBytes(StandardCharsets.UTF_8);
+        if(titlesLength + bytes.length > titles.length) {
+            titles = Arrays.copyOf(titles, Math.max(titles.length * 2, titlesLength + bytes.length));
+        }
+
+        titleOffsets[row] = titlesLength;
+        System.arraycopy(bytes, 0, titles, titlesLength, bytes.length);
+        titlesLength += bytes.length;
+
+        size++;
+        return row;
+    }
+
+    /**
+     * Makes room for more rows in every column.
+     * @param capacity How many rows to make room for.
+     */
+    private void grow(int capacity) {
+        md5IDs = Arrays.copyOf(md5IDs, capacity * MD5_SIZE);
+        statuses = Arrays.copyOf(statuses, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        types = Arrays.copyOf(types, capacity);
+        dates = Arrays.copyOf(dates, capacity);
+        authors = Arrays.copyOf(authors, capacity);
+        commentCounts = Arrays.copyOf(commentCounts, capacity);
+        titleOffsets = Arrays.copyOf(titleOffsets, capacity);
+    }
+
+    /**
+     * Gets the id of an author, adding them to the dictionary if they haven't been seen before.
+     * @param author The author.
+     * @return The id of the author.
+     */
+    private int intern(String author) {
+        Integer id = authorIDs.get(author);
+
+        if(id == null) {
+            id = authorNames.size();
+            authorIDs.put(author, id);
+            authorNames.add(author);
+        }
+
+        return id;
+    }
+
+    /**
+     * Gets how many rows there are.
+     * @return How many rows there are.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the MD5 ID of a row.
+     * @param row The row.
+     * @return The MD5 ID, as 32 hex digits.
+     */
+    public String getMD5ID(int row) {
+        char[] hex = new char[MD5_SIZE * 2];
+
+        for(int i = 0; i < MD5_SIZE; i++) {
+            int b = md5IDs[row * MD5_SIZE + i];
+
+            hex[i * 2] = HEX_DIGITS[(b >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX_DIGITS[b & 0xF];
+        }
+
+        return new String(hex);
+    }
+
+    /**
+     * Gets the title of a row.
+     * @param row The row.
+     * @return The title, decoded from the arena.
+     */
+    public String getTitle(int row) {
+        int end = row + 1 < size ? titleOffsets[row + 1] : titlesLength;
+
+        return new String(titles, titleOffsets[row], end - titleOffsets[row], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the author of a row.
+     * @param row The row.
+     * @return The author.
+     */
+    public String getAuthor(int row) {
+        return authorNames.get(authors[row]);
+    }
+
+    /**
+     * Gets the id of the author of a row.
+     * @param row The row.
+     * @return The id of the author, which can be given to {@link #getAuthorName(int)}.
+     */
+    public int getAuthorID(int row) {
+        return authors[row];
+    }
+
+    /**
+     * Gets an author by their id.
+     * @param id The id of the author.
+     * @return The author.
+     */
+    public String getAuthorName(int id) {
+        return authorNames.get(id);
+    }
+
+    /**
+     * Gets how many distinct authors there are.
+     * @return How many distinct authors there are, which is one more than the largest author id.
+     */
+    public int getAuthorCount() {
+        return authorNames.size();
+    }
+
+    /**
+     * Gets when the ticket in a row was created.
+     * @param row The row.
+     * @return When the ticket was created, in milliseconds since the epoch.
+     */
+    public long getDate(int row) {
+        return dates[row];
+    }
+
+    /**
+     * Gets the status of a row.
+     * @param row The row.
+     * @return The status.
+     */
+    public Ticket.TicketStatus getStatus(int row) {
+        return STATUSES[statuses[row]];
+    }
+
+    /**
+     * Gets the priority of a row.
+     * @param row The row.
+     * @return The priority.
+     */
+    public Ticket.TicketPriority getPriority(int row) {
+        return PRIORITIES[priorities[row]];
+    }
+
+    /**
+     * Gets the type of a row.
+     * @param row The row.
+     * @return The type.
+     */
+    public Ticket.TicketType getType(int row) {
+        return TYPES[types[row]];
+    }
+
+    /**
+     * Gets how many comments the ticket in a row has.
+     * @param row The row.
+     * @return How many comments the ticket has, or -1 if it isn't known.
+     */
+    public int getCommentCount(int row) {
+        return commentCounts[row];
+    }
+
+    /**
+     * Sets how many comments the ticket in a row has, once they have been counted.
+     * <p>
+     * Unlike adding rows, different rows may have their counts set from different threads at once.
+     * @param row The row.
+     * @param count How many comments the ticket has.
+     */
+    public void setCommentCount(int row, int count) {
+        commentCounts[row] = count;
+    }
+
+    /**
+     * Counts the rows with each status.
+     * @return How many rows have each status, indexed by the status's ordinal.
+     */
+    public int[] countStatuses() {
+        return count(statuses, STATUSES.length);
+    }
+
+    /**
+     * Counts the rows with each priority.
+     * @return How many rows have each priority, indexed by the priority's ordinal.
+     */
+    public int[] countPriorities() {
+        return count(priorities, PRIORITIES.length);
+    }
+
+    /**
+     * Counts the rows with each type.
+     * @return How many rows have each type, indexed by the type's ordinal.
+     */
+    public int[] countTypes() {
+        return count(types, TYPES.length);
+    }
+
+    /**
+     * Counts the rows by each author.
+     * @return How many rows each author has, indexed by the author's id.
+     */
+    public int[] countAuthors() {
+        int[] counts = new int[authorNames.size()];
+        for(int row = 0; row < size; row++) counts[authors[row]]++;
+
+        return counts;
+    }
+
+    /**
+     * Counts the rows with each ordinal in a column.
+     * @param column The column.
+     * @param values How many different ordinals there are.
+     * @return How many rows have each ordinal.
+     */
+    private int[] count(byte[] column, int values) {
+        int[] counts = new int[values];
+        for(int row = 0; row < size; row++) counts[column[row]]++;
+
+        return counts;
+    }
+
+    /**
+     * Compares the titles of two rows by their UTF-8 bytes, which orders them by code point, without
+     *  decoding them.
+     * @param a The first row.
+     * @param b The second row.
+     * @return A negative number, zero, or a positive number if the first title is less than, equal
+     *  to, or greater than the second.
+     */
+    public int compareTitles(int a, int b) {
+        int aStart = titleOffsets[a];
+        int aEnd = a + 1 < size ? titleOffsets[a + 1] : titlesLength;
+        int bStart = titleOffsets[b];
+        int bEnd = b + 1 < size ? titleOffsets[b + 1] : titlesLength;
+
+        for(int i = aStart, j = bStart; i < aEnd && j < bEnd; i++, j++) {
+            if(titles[i] != titles[j]) return (titles[i] & 0xFF) - (titles[j] & 0xFF);
+        }
+
+        return (aEnd - aStart) - (bEnd - bStart);
+    }
+
+    /**
+     * Compares the MD5 IDs of two rows.
+     * @param a The first row.
+     * @param b The second row.
+     * @return A negative number, zero, or a positive number if the first ID is less than, equal to,
+     *  or greater than the second, in the same order as comparing their hex digits.
+     */
+    public int compareMD5IDs(int a, int b) {
+        for(int i = 0; i < MD5_SIZE; i++) {
+            int x = md5IDs[a * MD5_SIZE + i] & 0xFF;
+            int y = md5IDs[b * MD5_SIZE + i] & 0xFF;
+
+            if(x != y) return x - y;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Compares the creation dates of two rows.
+     * @param a The first row.
+     * @param b The second row.
+     * @return A negative number, zero, or a positive number if the first ticket was created before,
+     *  at the same time as, or after the second.
+     */
+    public int compareDates(int a, int b) {
+        return Long.compare(dates[a], dates[b]);
+    }
+
+    /**
+     * Sorts every row.
+     * @param order Compares two rows, like a {@link java.util.Comparator} of row numbers.
+     * @return The rows in order. Rows that compare equal stay in the order they were added.
+     */
+    public int[] sort(IntBinaryOperator order) {
+        int[] rows = new int[size];
+        for(int row = 0; row < size; row++) rows[row] = row;
+
+        return sort(rows, order);
+    }
+
+    /**
+     * Sorts some rows, with a merge sort that never boxes them.
+     * @param rows The rows to sort, which are sorted in place.
+     * @param order Compares two rows, like a {@link java.util.Comparator} of row numbers.
+     * @return The sorted rows. Rows that compare equal stay in the order they were given.
+     */
+    public static int[] sort(int[] rows, IntBinaryOperator order) {
+        int[] from = rows;
+        int[] to = new int[rows.length];
+
+        for(int width = 1; width < rows.length; width *= 2) {
+            for(int start = 0; start < rows.length; start += width * 2) {
+                int mid = Math.min(start + width, rows.length);
+                int end = Math.min(start + width * 2, rows.length);
+                int i = start;
+                int j = mid;
+                int k = start;
+
+                while(i < mid && j < end) to[k++] = order.applyAsInt(from[j], from[i]) < 0 ? from[j++] : from[i++];
+                while(i < mid) to[k++] = from[i++];
+                while(j < end) to[k++] = from[j++];
+            }
+
+            int[] swap = from;
+            from = to;
+            to = swap;
+        }
+
+        if(from != rows) System.arraycopy(from, 0, rows, 0, rows.length);
+
+        return rows;
+    }
+
+    /**
+     * Gets roughly how many bytes the columns take up, not counting the authors' Strings.
+     * @return The number of bytes used by the arrays of every column.
+     */
+    public long getMemoryUsage() {
+        return md5IDs.length + statuses.length + priorities.length + types.length + 8L * dates.length +
+               4L * authors.length + 4L * commentCounts.length + 4L * titleOffsets.length + titles.length;
+    }
+
+    /**
+     * Gets a read-only view of a row.
+     * @param row The row.
+     * @return A view whose getters read the columns of the row.
+     */
+    public Row getRow(int row) {
+        if(row < 0 || row >= size) throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+
+        return new Row(row);
+    }
+
+    /**
+     * Gets a read-only view of every row.
+     * @return A List which creates a view of each row as it is accessed.
+     */
+    public List<Row> getRows() {
+        return new AbstractList<Row>() {
+            @Override
+            public Row get(int row) {
+                return getRow(row);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * A read-only view of one row, with a getter for each of its columns.
+     */
+    public class Row {
+        /**
+         * The row this is a view of.
+         */
+        private final int row;
+
+        /**
+         * Creates a view of a row.
+         * @param row The row.
+         */
+        private Row(int row) {
+            this.row = row;
+        }
+
+        /**
+         * Gets the index of the row in the store.
+         * @return The row.
+         */
+        public int getIndex() {
+            return row;
+        }
+
+        /**
+         * Gets the MD5 ID of the ticket.
+         * @return The MD5 ID of the ticket.
+         */
+        public String getMD5ID() {
+            return TicketColumns.this.getMD5ID(row);
+        }
+
+        /**
+         * Gets the title of the ticket.
+         * @return The title of the ticket.
+         */
+        public String getTitle() {
+            return TicketColumns.this.getTitle(row);
+        }
+
+        /**
+         * Gets the author of the ticket.
+         * @return The author of the ticket.
+         */
+        public String getAuthor() {
+            return TicketColumns.this.getAuthor(row);
+        }
+
+        /**
+         * Gets when the ticket was created.
+         * @return The creation date of the ticket.
+         */
+        public Date getDate() {
+            return new Date(dates[row]);
+        }
+
+        /**
+         * Gets the status of the ticket.
+         * @return The status of the ticket.
+         */
+        public Ticket.TicketStatus getStatus() {
+            return TicketColumns.this.getStatus(row);
+        }
+
+        /**
+         * Gets the priority of the ticket.
+         * @return The priority of the ticket.
+         */
+        public Ticket.TicketPriority getPriority() {
+            return TicketColumns.this.getPriority(row);
+        }
+
+        /**
+         * Gets the type of the ticket.
+         * @return The type of the ticket.
+         */
+        public Ticket.TicketType getType() {
+            return TicketColumns.this.getType(row);
+        }
+
+        /**
+         * Gets how many comments the ticket has.
+         * @return How many comments the ticket has, or -1 if they haven't been counted.
+         */
+        public int getCommentCount() {
+            return TicketColumns.this.getCommentCount(row);
+        }
+
+        /**
+         * Reads the whole ticket from its file, or from the object database if that is where tickets
+         *  are read from, for its details and comments.
+         * @return The ticket, or null if it could not be read.
+         */
+        public Ticket readTicket() {
+            if(FileUtil.isReadingCommittedTickets()) return FileUtil.readCommittedTicket(getMD5ID());
+
+            try {
+                return FileUtil.readTicketFile(FileUtil.getTicketFile(getMD5ID()));
+            } catch(IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+    }
+}
@@ -1,4 +1,3 @@
-import java.text.SimpleDateFormat;
 import java.util.Date;
 
 /**
@@ -22,6 +21,12 @@ public class TicketComment {
      */
     private String comment;
     
+    /**
+     * The name of the file this comment was appended to its ticket as, or null if it is stored in the
+     *  ticket file itself.
+     */
+    private String storedAs;
+    
     /**
      * Constructs a new TicketComment.
      * @param newAuthor The author of this comment.
@@ -67,6 +72,22 @@ public class TicketComment {
         return comment;
     }
     
+    /**
+     * Gets the name of the file this comment was appended to its ticket as.
+     * @return The name of the comment's file, or null if it is stored in the ticket file itself.
+     */
+    public String getStoredAs() {
+        return storedAs;
+    }
+    
+    /**
+     * Sets the name of the file this comment was appended to its ticket as.
+     * @param newStoredAs The name of the comment's file, or null if it is stored in the ticket file itself.
+     */
+    public void setStoredAs(String newStoredAs) {
+        storedAs = newStoredAs;
+    }
+    
     /**
      * Converts this comment to a row that can be used in a table in {@link ViewTicketGui}.
      * @return This comment represented as a 3 element String array.
@@ -74,7 +95,7 @@ public class TicketComment {
     public String[] toRow() {
         return new String[] {
                 author,
-                new SimpleDateFormat("yyyy/MM/dd HH:mm:ss").format(date),
+                FileUtil.formatDate(date),
                 comment.split("\n")[0]
         };
     }
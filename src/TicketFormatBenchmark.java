@@ -0,0 +1,165 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the text ticket format against the {@link BinaryTicketFormat}, by on-disk size and by
+ *  how fast each can be parsed.
+ * <p>
+ * Every ticket in a directory (and its shard directories) is read, encoded in both formats, and then
+ *  parsed from memory over and over, so that only the cost of parsing is measured.
+ * <p>
+ * <code>java TicketFormatBenchmark ${TICKETDIRECTORY} $[ROUNDS]</code>
+ *
+ * @author Tyler Robbins
+ * @version 1.0
+ * @since 1.2
+ */
+public final class TicketFormatBenchmark {
+    /**
+     * How many times every ticket is parsed if the number of rounds isn't given.
+     */
+    private static final int DEFAULT_ROUNDS = 5;
+
+    /**
+     * Dummy constructor to prevent outside construction.
+     */
+    private TicketFormatBenchmark() { }
+
+    /**
+     * Runs the benchmark.
+     * @param args The directory containing the tickets, and optionally how many rounds to parse them for.
+     * @throws Exception If the tickets could not be read.
+     */
+    public static void main(String[] args) throws Exception {
+        if(args.length < 1) {
+            System.err.println("Usage: TicketFormatBenchmark ${TICKETDIRECTORY} $[ROUNDS]");
+            System.exit(1);
+        }
+
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+
+        List<String> ids = new ArrayList<String>();
+        List<byte[]> text = new ArrayList<byte[]>();
+        List<byte[]> binary = new ArrayList<byte[]>();
+        long textSize = 0;
+        long binarySize = 0;
+
+        for(File file : FileUtil.listTicketFiles(new File(args[0]))) {
+            byte[] contents = Files.readAllBytes(file.toPath());
+            String md5ID = file.getName().split("\\.")[0];
+
+            // Tickets already in the binary format are converted back to text, so both sides are equal
+            Ticket ticket = BinaryTicketFormat.isBinary(contents, contents.length)
+                                ? BinaryTicketFormat.read(new ByteArrayInputStream(contents), md5ID)
+                                : FileUtil.readTicket(new BufferedReader(new InputStreamReader(new ByteArrayInputStream(contents), StandardCharsets.UTF_8)), md5ID);
+            if(ticket == null) continue;
+
+            byte[] encodedText = encodeText(ticket, contents);
+            byte[] encodedBinary = BinaryTicketFormat.encode(ticket);
+
+            ids.add(md5ID);
+            text.add(encodedText);
+            binary.add(encodedBinary);
+            textSize += encodedText.length;
+            binarySize += encodedBinary.length;
+        }
+
+        if(ids.isEmpty()) {
+            System.err.println("No tickets found in " + args[0]);
+            System.exit(1);
+        }
+
+        System.out.println("Tickets: " + ids.size());
+        System.out.println("Text size:   " + textSize + " bytes (" + (textSize / ids.size()) + " per ticket)");
+        System.out.println("Binary size: " + binarySize + " bytes (" + (binarySize / ids.size()) + " per ticket, " +
+                           (100 * binarySize / textSize) + "% of text)");
+
+        // The first round of each only warms up the JIT
+        for(int round = 0; round <= rounds; round++) {
+            long textTime = parseText(ids, text);
+            long binaryTime = parseBinary(ids, binary);
+
+            if(round == 0) continue;
+
+            System.out.println("Round " + round + ": text " + perSecond(ids.size(), textTime) + " tickets/s, binary " +
+                               perSecond(ids.size(), binaryTime) + " tickets/s");
+        }
+    }
+
+    /**
+     * Gets a ticket in the text format.
+     * @param ticket The ticket.
+     * @param contents The contents of the ticket's file.
+     * @return The contents if they are already text, or the ticket written as text otherwise.
+     */
+    private static byte[] encodeText(Ticket ticket, byte[] contents) {
+        if(!BinaryTicketFormat.isBinary(contents, contents.length)) return contents;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try(PrintStream ps = new PrintStream(out, false, "UTF-8")) {
+            FileUtil.writeText(ticket, ps);
+        } catch(UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Parses every ticket in the text format once.
+     * @param ids The MD5 ID of each ticket.
+     * @param encoded Each ticket in the text format.
+     * @return How long it took, in nanoseconds.
+     */
+    private static long parseText(List<String> ids, List<byte[]> encoded) {
+        long start = System.nanoTime();
+
+        for(int i = 0; i < ids.size(); i++) {
+            BufferedInputStream in = new BufferedInputStream(new ByteArrayInputStream(encoded.get(i)));
+            if(FileUtil.readTicket(new LineNumberReader(new InputStreamReader(in, StandardCharsets.UTF_8)), ids.get(i)) == null) {
+                throw new IllegalStateException("Failed to parse text ticket " + ids.get(i));
+            }
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Parses every ticket in the binary format once.
+     * @param ids The MD5 ID of each ticket.
+     * @param encoded Each ticket in the binary format.
+     * @return How long it took, in nanoseconds.
+     */
+    private static long parseBinary(List<String> ids, List<byte[]> encoded) {
+        long start = System.nanoTime();
+
+        for(int i = 0; i < ids.size(); i++) {
+            if(BinaryTicketFormat.read(new ByteArrayInputStream(encoded.get(i)), ids.get(i)) == null) {
+                throw new IllegalStateException("Failed to parse binary ticket " + ids.get(i));
+            }
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Converts a count and a duration into a rate.
+     * @param count How many things were done.
+     * @param nanos How long it took, in nanoseconds.
+     * @return How many things were done per second.
+     */
+    private static long perSecond(int count, long nanos) {
+        return nanos == 0 ? 0 : count * 1000000000L / nanos;
+    }
+}
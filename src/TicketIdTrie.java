@@ -0,0 +1,456 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A radix trie of every ticket's MD5 ID, used to find a ticket from the beginning of its ID.
+ * <p>
+ * Looking up a prefix takes time proportional to the length of the prefix, no matter how many tickets
+ *  there are. The trie is built from the names in the copied project repository directory and its
+ *  shard directories the first time it is needed, and is built again whenever any of those
+ *  directories have changed since then (which is how tickets added or removed by another process, or
+ *  by a sync, are noticed). Tickets written by this process are added as they are written.
+ * <p>
+ * Looking up a single ticket doesn't need the whole trie, so {@link #getInstance(String)} only lists
+ *  the shard directory the ID is stored in.
+ * <p>
+ * Tickets can be written on any thread, so every lookup and change locks the trie.
+ *
+ * @author Tyler Robbins
+ * @version 1.0
+ * @since 1.2
+ */
+public class TicketIdTrie {
+    /**
+     * A node in the trie. Each node holds the part of an ID between it and its parent, so chains of
+     *  nodes with only one child are stored as a single node.
+     */
+    private static class Node {
+        /**
+         * The characters between this node's parent and this node.
+         */
+        String label;
+
+        /**
+         * The children of this node, mapped from the first character of their labels.
+         */
+        Map<Character, Node> children = new TreeMap<Character, Node>();
+
+        /**
+         * Does an ID end at this node.
+         */
+        boolean terminal;
+
+        /**
+         * The number of IDs that end at this node or below it.
+         */
+        int count;
+
+        /**
+         * Creates a node.
+         * @param label The characters between the node's parent and the node.
+         */
+        Node(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * The instance of this singleton.
+     */
+    private static TicketIdTrie instance = null;
+
+    /**
+     * The root of the trie, which always has an empty label.
+     */
+    private Node root;
+
+    /**
+     * The directory the IDs were listed from, or null if this trie isn't backed by a directory.
+     */
+    private File dir;
+
+    /**
+     * The modification time of {@link #dir} and each of its shard directories when they were listed.
+     */
+    private Map<File, Long> dirModified;
+
+    /**
+     * When {@link #dir} was listed.
+     */
+    private long listedAt;
+
+    /**
+     * Creates an empty trie.
+     */
+    public TicketIdTrie() {
+        root = new Node("");
+        dirModified = new HashMap<File, Long>();
+    }
+
+    /**
+     * Gets the instance for this singleton, building it from the copied project repository directory
+     *  if it hasn't been built yet or the directory has changed since it was.
+     * @return The instance for this singleton, or null if the directory could not be found.
+     */
+    public static synchronized TicketIdTrie getInstance() {
+        File dir;
+        try {
+            dir = FileUtil.getProjectTicketDir();
+        } catch(IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        if(instance == null || !instance.isCurrent(dir)) {
+            instance = new TicketIdTrie();
+            instance.build(dir);
+        }
+
+        return instance;
+    }
+
+    /**
+     * Gets a trie of at least every ID that starts with a prefix, for looking up a single ticket.
+     * <p>
+     * If the prefix is long enough to name a shard directory, then only that directory and the tickets
+     *  stored directly in the copied project repository directory are listed, instead of every shard
+     *  directory. The trie that is built isn't kept, since it only holds some of the IDs. If the whole
+     *  trie has already been built and is still current, then it is used instead.
+     * @param prefix The prefix that will be looked up.
+     * @return A trie of every ID starting with the prefix, or null if the directory could not be found.
+     */
+    public static synchronized TicketIdTrie getInstance(String prefix) {
+        if(prefix.length() < FileUtil.SHARD_LENGTH) return getInstance();
+
+        File dir;
+        try {
+            dir = FileUtil.getProjectTicketDir();
+        } catch(IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        if(instance != null && instance.isCurrent(dir)) return instance;
+
+        TicketIdTrie trie = new TicketIdTrie();
+        trie.addTickets(dir, prefix);
+        trie.addTickets(new File(dir, prefix.substring(0, FileUtil.SHARD_LENGTH)), prefix);
+
+        return trie;
+    }
+
+    /**
+     * Adds the ID of every ticket file in a directory, and in its shard directories, to this trie.
+     * @param dir The directory to list.
+     */
+    private void build(File dir) {
+        this.dir = dir;
+        listedAt = System.currentTimeMillis();
+
+        for(File ticketDir : FileUtil.getTicketDirs(dir)) {
+            dirModified.put(ticketDir, ticketDir.lastModified());
+            addTickets(ticketDir, "");
+        }
+    }
+
+    /**
+     * Adds the ID of every ticket file directly in a directory that starts with a prefix to this trie.
+     * @param ticketDir The directory to list, which may not exist.
+     * @param prefix The prefix the IDs must start with.
+     */
+    private void addTickets(File ticketDir, String prefix) {
+        String[] names = ticketDir.list();
+        if(names == null) return;
+
+        for(String name : names) {
+            if(name.startsWith(prefix) && name.endsWith(".ticket")) add(name.substring(0, name.length() - ".ticket".length()));
+        }
+    }
+
+    /**
+     * Checks if this trie still matches the ticket files in a directory.
+     * <p>
+     * A new shard directory changes the modification time of the directory itself, so only the
+     *  directories that were listed need to be checked.
+     * <p>
+     * A directory modified in the same instant it was listed could have changed afterwards without
+     *  its modification time changing, so it is never considered current.
+     * @param dir The directory to check.
+     * @return true if nothing has been added to or removed from the directory since it was listed.
+     */
+    private boolean isCurrent(File dir) {
+        if(!dir.equals(this.dir)) return false;
+
+        for(Map.Entry<File, Long> modified : dirModified.entrySet()) {
+            long time = modified.getValue();
+            if(modified.getKey().lastModified() != time || time >= listedAt - 1000) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds a ticket that this process just wrote, without building the whole trie again.
+     * @param md5ID The MD5 ID of the ticket.
+     */
+    public static synchronized void ticketWritten(String md5ID) {
+        if(instance == null || instance.dir == null) return;
+
+        boolean current = instance.isCurrent(instance.dir);
+        instance.add(md5ID);
+
+        // Only this process' own change has happened, so the directories it touched can be considered
+        //  listed again
+        if(current) {
+            long latest = 0;
+
+            for(File changed : new File[] { instance.dir, new File(instance.dir, md5ID.substring(0, FileUtil.SHARD_LENGTH)) }) {
+                if(!changed.isDirectory()) continue;
+
+                long time = changed.lastModified();
+                instance.dirModified.put(changed, time);
+                latest = Math.max(latest, time);
+            }
+
+            instance.listedAt = Math.max(System.currentTimeMillis(), latest + 1001);
+        }
+    }
+
+    /**
+     * Adds an ID to this trie.
+     * @param id The ID to add.
+     * @return true if the ID was added, false if it was already in the trie.
+     */
+    public synchronized boolean add(String id) {
+        if(contains(id)) return false;
+
+        Node node = root;
+        node.count++;
+        int pos = 0;
+
+        while(pos < id.length()) {
+            Node child = node.children.get(id.charAt(pos));
+
+            if(child == null) {
+                Node leaf = new Node(id.substring(pos));
+                leaf.terminal = true;
+                leaf.count = 1;
+                node.children.put(id.charAt(pos), leaf);
+                return true;
+            }
+
+            int common = commonLength(child.label, id, pos);
+
+            if(common < child.label.length()) {
+                // Split the child so that the shared part becomes its own node
+                Node split = new Node(child.label.substring(0, common));
+                split.count = child.count;
+                child.label = child.label.substring(common);
+                split.children.put(child.label.charAt(0), child);
+                node.children.put(split.label.charAt(0), split);
+                child = split;
+            }
+
+            child.count++;
+            pos += common;
+            node = child;
+        }
+
+        node.terminal = true;
+        return true;
+    }
+
+    /**
+     * Removes an ID from this trie.
+     * @param id The ID to remove.
+     * @return true if the ID was removed, false if it wasn't in the trie.
+     */
+    public synchronized boolean remove(String id) {
+        if(!contains(id)) return false;
+
+        List<Node> path = new ArrayList<Node>();
+        Node node = root;
+        int pos = 0;
+
+        path.add(node);
+        while(pos < id.length()) {
+            node = node.children.get(id.charAt(pos));
+            pos += node.label.length();
+            path.add(node);
+        }
+
+        node.terminal = false;
+        for(Node n : path) n.count--;
+
+        // Drop nodes that no longer lead to any ID, then merge a lone child back into its parent
+        for(int i = path.size() - 1; i > 0; i--) {
+            Node n = path.get(i);
+            Node parent = path.get(i - 1);
+
+            if(n.count == 0) {
+                parent.children.remove(n.label.charAt(0));
+            } else if(!n.terminal && n.children.size() == 1) {
+                Node only = n.children.values().iterator().next();
+                only.label = n.label + only.label;
+                parent.children.put(only.label.charAt(0), only);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks if an ID is in this trie.
+     * @param id The ID to check.
+     * @return true if the ID is in this trie, false otherwise.
+     */
+    public synchronized boolean contains(String id) {
+        Node node = root;
+        int pos = 0;
+
+        while(pos < id.length()) {
+            node = node.children.get(id.charAt(pos));
+            if(node == null || !id.startsWith(node.label, pos)) return false;
+            pos += node.label.length();
+        }
+
+        return node.terminal;
+    }
+
+    /**
+     * Counts the IDs that start with a prefix.
+     * @param prefix The prefix to count.
+     * @return The number of IDs starting with the prefix.
+     */
+    public synchronized int count(String prefix) {
+        Node node = findNode(prefix);
+        return node == null ? 0 : node.count;
+    }
+
+    /**
+     * Finds the IDs that start with a prefix, in sorted order.
+     * @param prefix The prefix to find.
+     * @param limit The most IDs to return.
+     * @return A List of at most {@code limit} IDs starting with the prefix.
+     */
+    public synchronized List<String> find(String prefix, int limit) {
+        List<String> ids = new ArrayList<String>();
+        Node node = root;
+        int pos = 0;
+
+        while(pos < prefix.length()) {
+            node = node.children.get(prefix.charAt(pos));
+            if(node == null) return ids;
+
+            int common = commonLength(node.label, prefix, pos);
+            if(common < node.label.length() && pos + common < prefix.length()) return ids;
+
+            pos += node.label.length();
+        }
+
+        // The prefix may have ended part way through the last node's label
+        String base = prefix;
+        if(pos > prefix.length()) base += node.label.substring(node.label.length() - (pos - prefix.length()));
+
+        collect(node, new StringBuilder(base), ids, limit);
+
+        return ids;
+    }
+
+    /**
+     * Gets the shortest prefix of an ID that no other ID in this trie starts with.
+     * @param id The ID, which should be in this trie.
+     * @param minLength The shortest the prefix may be.
+     * @return The shortest unique prefix of the ID that is at least {@code minLength} long, or the whole
+     *          ID if it is shorter than that.
+     */
+    public synchronized String getUniquePrefix(String id, int minLength) {
+        Node node = root;
+        int pos = 0;
+        int length = id.length();
+
+        // The prefix is unique as soon as it leads into a node with only one ID below it
+        while(pos < id.length()) {
+            node = node.children.get(id.charAt(pos));
+            if(node == null) break;
+
+            if(node.count == 1) {
+                length = pos + 1;
+                break;
+            }
+
+            pos += node.label.length();
+        }
+
+        return id.substring(0, Math.min(id.length(), Math.max(length, minLength)));
+    }
+
+    /**
+     * Gets the number of IDs in this trie.
+     * @return The number of IDs in this trie.
+     */
+    public synchronized int size() {
+        return root.count;
+    }
+
+    /**
+     * Finds the node below which every ID starting with a prefix is.
+     * @param prefix The prefix to find.
+     * @return The node, or null if no ID starts with the prefix.
+     */
+    private Node findNode(String prefix) {
+        Node node = root;
+        int pos = 0;
+
+        while(pos < prefix.length()) {
+            node = node.children.get(prefix.charAt(pos));
+            if(node == null) return null;
+
+            int common = commonLength(node.label, prefix, pos);
+            if(common < node.label.length() && pos + common < prefix.length()) return null;
+
+            pos += node.label.length();
+        }
+
+        return node;
+    }
+
+    /**
+     * Adds every ID at or below a node to a list, in sorted order.
+     * @param node The node to start at.
+     * @param id The ID up to and including this node's label.
+     * @param ids The list to add IDs to.
+     * @param limit The most IDs the list may hold.
+     */
+    private static void collect(Node node, StringBuilder id, List<String> ids, int limit) {
+        if(ids.size() >= limit) return;
+
+        if(node.terminal) ids.add(id.toString());
+
+        for(Node child : node.children.values()) {
+            int length = id.length();
+            id.append(child.label);
+            collect(child, id, ids, limit);
+            id.setLength(length);
+        }
+    }
+
+    /**
+     * Gets how many characters a label shares with a string starting at a position.
+     * @param label The label to compare.
+     * @param str The string to compare against.
+     * @param pos Where in the string to start comparing.
+     * @return The number of characters the label and string have in common.
+     */
+    private static int commonLength(String label, String str, int pos) {
+        int i = 0;
+        while(i < label.length() && pos + i < str.length() && label.charAt(i) == str.charAt(pos + i)) i++;
+
+        return i;
+    }
+}
@@ -0,0 +1,613 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An on-disk index of the header fields of every ticket in the copied project repository.
+ * <p>
+ * Each entry remembers the size and modification time of the file it was read from, so that only
+ *  tickets whose files have changed since the index was last written need to be parsed again.
+ * <p>
+ * Only the header of a changed ticket is parsed, as a {@link LazyTicket}, so the contents of a
+ *  ticket aren't checked against its MD5 ID until it is opened.
+ * <p>
+ * Like Git's own index, a file modified in the same instant that the index was written cannot be
+ *  told apart from one that wasn't modified, so such "racy" entries are always parsed again.
+ * <p>
+ * For {@link TicketQuery}, the entries can also be looked up through a {@link TicketBitmapIndex} of
+ *  their status, priority, type and author, and by creation date. Both are kept in the index file:
+ *  the entries are written in order of creation, each with its row in the bitmaps, followed by the
+ *  bitmaps themselves. Every refresh updates them with only the entries that changed, so a new process
+ *  can query the index without building either again.
+ *
+ * @author Tyler Robbins
+ * @version 1.0
+ * @since 1.2
+ */
+public class TicketIndex {
+    /**
+     * The name of the index file in the copied project repository.
+     */
+    public static final String INDEX_FILE = ".ticket-index";
+
+    /**
+     * Identifies a ticket index file.
+     */
+    private static final int MAGIC = 0x54494458; // "TIDX"
+
+    /**
+     * The version of the index file format.
+     */
+    private static final int VERSION = 5;
+
+    /**
+     * The most bytes a single string in the index file may take up, so that a corrupt length can't
+     *  exhaust memory.
+     */
+    private static final int MAX_STRING_LENGTH = 64 * 1024 * 1024;
+
+    /**
+     * Orders entries by when they were created.
+     */
+    private static final Comparator<Entry> BY_DATE = Comparator.comparingLong(e -> e.date);
+
+    /**
+     * The header fields of a single ticket.
+     *
+     * @author Tyler Robbins
+     * @version 1.0
+     * @since 1.2
+     */
+    public static class Entry {
+        /**
+         * The MD5 ID of the ticket.
+         */
+        private String md5ID;
+
+        /**
+         * The title of the ticket.
+         */
+        private String title;
+
+        /**
+         * The status of the ticket.
+         */
+        private Ticket.TicketStatus status;
+
+        /**
+         * The priority of the ticket.
+         */
+        private Ticket.TicketPriority priority;
+
+        /**
+         * The type of the ticket.
+         */
+        private Ticket.TicketType type;
+
+        /**
+         * The author of the ticket.
+         */
+        private String author;
+
+        /**
+         * When the ticket was created, in milliseconds since the epoch.
+         */
+        private long date;
+
+        /**
+         * The size of the ticket's file when it was read.
+         */
+        private long size;
+
+        /**
+         * The modification time of the ticket's file when it was read, in nanoseconds.
+         */
+        private long mtime;
+
+        /**
+         * Creates an empty entry, to be filled in when reading the index.
+         */
+        private Entry() { }
+
+        /**
+         * Creates an entry for a ticket.
+         * @param md5ID The MD5 ID the ticket is stored under.
+         * @param ticket The ticket to take the header fields of.
+         */
+        public Entry(String md5ID, Ticket ticket) {
+            this.md5ID = md5ID;
+            title = ticket.getTitle();
+            status = ticket.getStatus();
+            priority = ticket.getPriority();
+            type = ticket.getType();
+            author = ticket.getAuthor();
+            date = ticket.getDate().getTime();
+        }
+
+        /**
+         * Checks if another entry has the same header fields as this one.
+         * @param other The entry to compare to.
+         * @return true if the ID, title, status, priority, type, author and date are all the same, false otherwise.
+         */
+        public boolean hasSameHeader(Entry other) {
+            return other != null && md5ID.equals(other.md5ID) && title.equals(other.title) &&
+                   status == other.status && priority == other.priority && type == other.type &&
+                   author.equals(other.author) && date == other.date;
+        }
+
+        /**
+         * Gets the MD5 ID of the ticket.
+         * @return The MD5 ID of the ticket.
+         */
+        public String getMD5ID() {
+            return md5ID;
+        }
+
+        /**
+         * Gets the short version of the MD5 ID of the ticket (The first half of it)
+         * @return The short version of the MD5 ID of the ticket.
+         */
+        public String getShortMD5ID() {
+            return md5ID.substring(0, md5ID.length() / 2);
+        }
+
+        /**
+         * Gets the title of the ticket.
+         * @return The title of the ticket.
+         */
+        public String getTitle() {
+            return title;
+        }
+
+        /**
+         * Gets the status of the ticket.
+         * @return The status of the ticket.
+         */
+        public Ticket.TicketStatus getStatus() {
+            return status;
+        }
+
+        /**
+         * Gets the priority of the ticket.
+         * @return The priority of the ticket.
+         */
+        public Ticket.TicketPriority getPriority() {
+            return priority;
+        }
+
+        /**
+         * Gets the type of the ticket.
+         * @return The type of the ticket.
+         */
+        public Ticket.TicketType getType() {
+            return type;
+        }
+
+        /**
+         * Gets the author of the ticket.
+         * @return The author of the ticket.
+         */
+        public String getAuthor() {
+            return author;
+        }
+
+        /**
+         * Gets when the ticket was created.
+         * @return When the ticket was created.
+         */
+        public Date getDate() {
+            return new Date(date);
+        }
+    }
+
+    /**
+     * The instance of this singleton.
+     */
+    private static TicketIndex instance = null;
+
+    /**
+     * The directory containing the tickets.
+     */
+    private File dir;
+
+    /**
+     * Every indexed ticket, mapped from the name of its file.
+     */
+    private Map<String, Entry> entries;
+
+    /**
+     * When the index file was last written, in nanoseconds, or 0 if it never was.
+     */
+    private long writeTime;
+
+    /**
+     * The bitmap indexes of the entries, or null if they haven't been built or read yet.
+     */
+    private TicketBitmapIndex bitmaps;
+
+    /**
+     * Whether the index file is missing something that could be read from it, so that it has to be
+     *  written again even if no tickets have changed.
+     */
+    private boolean saveNeeded;
+
+    /**
+     * Every entry in order of creation, or null if they haven't been looked up since the entries last changed.
+     */
+    private Entry[] byDate;
+
+    /**
+     * Creates an index of the tickets in a directory, reading the index file if there is one.
+     * @param dir The directory containing the tickets.
+     */
+    public TicketIndex(File dir) {
+        this.dir = dir;
+        entries = new HashMap<String, Entry>();
+        writeTime = 0;
+
+        load();
+    }
+
+    /**
+     * Gets the instance for this singleton, loading the index of the copied project repository if it
+     *  hasn't been loaded yet.
+     * @return The instance for this singleton, or null if the copied project repository could not be found.
+     */
+    public static synchronized TicketIndex getInstance() {
+        if(instance == null) {
+            try {
+                instance = new TicketIndex(FileUtil.getProjectTicketDir());
+            } catch(IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * Brings the index up to date with the ticket files on disk, and gets every entry in it.
+     * <p>
+     * Only tickets whose files were added or changed are parsed. The index file is rewritten if
+     *  anything changed.
+     * @return A List of the entries of every ticket that could be read.
+     */
+    public synchronized List<Entry> refresh() {
+        Map<String, Entry> updated = new HashMap<String, Entry>();
+        List<File> changedFiles = new ArrayList<File>();
+        List<long[]> changedStats = new ArrayList<long[]>();
+
+        // Tickets may be directly in the directory or in shard directories, so list all of them
+        for(File ticketDir : FileUtil.getTicketDirs(dir)) {
+            try(DirectoryStream<Path> stream = Files.newDirectoryStream(ticketDir.toPath(), "*.ticket")) {
+                for(Path path : stream) {
+                    String name = path.getFileName().toString();
+
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                    } catch(IOException e) {
+                        // The file was removed while listing
+                        continue;
+                    }
+
+                    long size = attrs.size();
+                    long mtime = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+
+                    Entry entry = entries.get(name);
+
+                    if(entry == null || entry.size != size || entry.mtime != mtime || mtime >= writeTime) {
+                        changedFiles.add(path.toFile());
+                        changedStats.add(new long[] { size, mtime });
+                    } else {
+                        updated.put(name, entry);
+                    }
+                }
+            } catch(IOException e) {
+                System.err.println("Failed to list tickets in " + ticketDir);
+                e.printStackTrace();
+            }
+        }
+
+        // Parse everything that changed at once so that it can be spread across threads
+        Ticket[] tickets = FileUtil.readTicketFiles(changedFiles, true);
+
+        int failed = 0;
+        for(int i = 0; i < tickets.length; i++) {
+            if(tickets[i] == null) {
+                failed++;
+                continue;
+            }
+
+            String name = changedFiles.get(i).getName();
+
+            Entry entry = new Entry(name.substring(0, name.length() - ".ticket".length()), tickets[i]);
+            entry.size = changedStats.get(i)[0];
+            entry.mtime = changedStats.get(i)[1];
+
+            updated.put(name, entry);
+        }
+
+        if(failed > 0) System.err.println("Failed to read " + failed + " ticket(s) into the index.");
+
+        if(!changedFiles.isEmpty() || updated.size() != entries.size() || saveNeeded) {
+            if(bitmaps != null) {
+                for(Map.Entry<String, Entry> old : entries.entrySet()) {
+                    if(!updated.containsKey(old.getKey())) bitmaps.remove(old.getValue().md5ID);
+                }
+
+                for(File file : changedFiles) {
+                    Entry entry = updated.get(file.getName());
+                    if(entry != null) bitmaps.put(entry);
+                }
+            }
+
+            if(byDate != null) {
+                // Most entries keep their place, so sorting the ones that are left with the changed ones
+                //  added to the end is close to linear
+                List<Entry> dated = new ArrayList<Entry>(updated.size());
+                for(Entry entry : byDate) {
+                    if(updated.get(entry.md5ID + ".ticket") == entry) dated.add(entry);
+                }
+
+                for(File file : changedFiles) {
+                    Entry entry = updated.get(file.getName());
+                    if(entry != null) dated.add(entry);
+                }
+
+                byDate = dated.toArray(new Entry[dated.size()]);
+                Arrays.sort(byDate, BY_DATE);
+            }
+
+            entries = updated;
+            save();
+        }
+
+        return new ArrayList<Entry>(entries.values());
+    }
+
+    /**
+     * Gets how many entries are in the index.
+     * @return How many entries are in the index.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets every entry in the index, as of the last {@link #refresh()}.
+     * @return A List of every entry.
+     */
+    public synchronized List<Entry> getEntries() {
+        return new ArrayList<Entry>(entries.values());
+    }
+
+    /**
+     * Gets the bitmap indexes of the entries, as of the last {@link #refresh()}.
+     * <p>
+     * The same indexes are returned every time, and are updated by each refresh.
+     * @return The bitmap indexes of the entries.
+     */
+    public synchronized TicketBitmapIndex getBitmaps() {
+        if(bitmaps == null) bitmaps = new TicketBitmapIndex(entries.values());
+
+        return bitmaps;
+    }
+
+    /**
+     * Gets the entries of the tickets created in a range of time, as of the last {@link #refresh()}.
+     * @param from The start of the range, in milliseconds since the epoch, which is included.
+     * @param to The end of the range, in milliseconds since the epoch, which is not included.
+     * @return An unmodifiable List of the entries, in order of creation.
+     */
+    public synchronized List<Entry> getEntriesCreated(long from, long to) {
+        sortByDate();
+
+        int start = firstCreatedAt(from);
+        int end = Math.max(start, firstCreatedAt(to));
+
+        return Collections.unmodifiableList(Arrays.asList(byDate).subList(start, end));
+    }
+
+    /**
+     * Sorts the entries into {@link #byDate} if they haven't been yet.
+     */
+    private void sortByDate() {
+        if(byDate == null) {
+            byDate = entries.values().toArray(new Entry[entries.size()]);
+            Arrays.sort(byDate, BY_DATE);
+        }
+    }
+
+    /**
+     * Finds the first entry in {@link #byDate} created at or after a time.
+     * @param time The time, in milliseconds since the epoch.
+     * @return Where the first such entry is, or the number of entries if there isn't one.
+     */
+    private int firstCreatedAt(long time) {
+        int low = 0;
+        int high = byDate.length;
+
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+
+            if(byDate[mid].date < time) low = mid + 1;
+            else high = mid;
+        }
+
+        return low;
+    }
+
+    /**
+     * Reads the index file, leaving the index empty if it doesn't exist or can't be read.
+     * <p>
+     * If only the bitmaps can't be read, then the entries are still used and the bitmaps are built
+     *  again the next time they are needed.
+     */
+    private void load() {
+        File file = new File(dir, INDEX_FILE);
+        if(!file.exists()) return;
+
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536))) {
+            if(in.readInt() != MAGIC || in.readInt() != VERSION) {
+                System.err.println("Ignoring unknown ticket index format.");
+                return;
+            }
+
+            long time = in.readLong();
+            int count = in.readInt();
+
+            // Every entry takes more than a byte, so a larger count can only come from a corrupt file
+            if(count < 0 || count > file.length()) {
+                System.err.println("Ignoring corrupt ticket index.");
+                return;
+            }
+
+            Map<String, Entry> loaded = new HashMap<String, Entry>(count * 2);
+            List<Entry> dated = new ArrayList<Entry>(count);
+            int[] rows = new int[count];
+
+            for(int i = 0; i < count; i++) {
+                Entry entry = new Entry();
+                entry.md5ID = readString(in);
+                entry.title = readString(in);
+                entry.status = Ticket.TicketStatus.values()[in.readByte()];
+                entry.priority = Ticket.TicketPriority.values()[in.readByte()];
+                entry.type = Ticket.TicketType.values()[in.readByte()];
+                entry.author = readString(in);
+                entry.date = in.readLong();
+                entry.size = in.readLong();
+                entry.mtime = in.readLong();
+                rows[i] = in.readInt();
+
+                loaded.put(entry.md5ID + ".ticket", entry);
+                dated.add(entry);
+            }
+
+            entries = loaded;
+            writeTime = time;
+            byDate = dated.toArray(new Entry[count]);
+
+            try {
+                bitmaps = TicketBitmapIndex.read(in, dated, rows);
+            } catch(IOException e) {
+                System.err.println("Ignoring corrupt ticket bitmaps.");
+                saveNeeded = true;
+            }
+        } catch(EOFException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Ignoring corrupt ticket index.");
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes the index file, replacing the old one all at once so that a crash can never leave it
+     *  half written.
+     * <p>
+     * The bitmaps and the order of creation are kept in the file too, so they are built first if they
+     *  haven't been needed yet.
+     */
+    private void save() {
+        File file = new File(dir, INDEX_FILE);
+        File temp = new File(dir, INDEX_FILE + ".tmp");
+
+        // Anything modified from here on must not be trusted the next time the index is read
+        long time = System.currentTimeMillis() * 1000000L;
+
+        TicketBitmapIndex indexes = getBitmaps();
+        sortByDate();
+
+        try {
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 65536))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(time);
+                out.writeInt(byDate.length);
+
+                for(Entry entry : byDate) {
+                    writeString(out, entry.md5ID);
+                    writeString(out, entry.title);
+                    out.writeByte(entry.status.ordinal());
+                    out.writeByte(entry.priority.ordinal());
+                    out.writeByte(entry.type.ordinal());
+                    writeString(out, entry.author);
+                    out.writeLong(entry.date);
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.mtime);
+                    out.writeInt(indexes.getRow(entry.md5ID));
+                }
+
+                indexes.write(out);
+            }
+
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch(AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            writeTime = time;
+            saveNeeded = false;
+        } catch(IOException e) {
+            System.err.println("Failed to write ticket index.");
+            e.printStackTrace();
+            temp.delete();
+        }
+    }
+
+    /**
+     * Writes a string as its length followed by its UTF-8 bytes.
+     * <p>
+     * {@link DataOutputStream#writeUTF(String)} can't write more than 65535 bytes, which a title can
+     *  be longer than.
+     * @param out The stream to write to.
+     * @param str The string to write.
+     * @throws IOException If the string could not be written.
+     */
+    static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+     * @param in The stream to read from.
+     * @return The string that was read.
+     * @throws IOException If the stream ended first, or the length is invalid.
+     */
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if(length < 0 || length > MAX_STRING_LENGTH) throw new IOException("string of " + length + " bytes is invalid");
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,125 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Shows how much memoizing {@link Ticket#getMD5ID()} saves when sorting and filtering a large list
+ *  of tickets.
+ * <p>
+ * A list of tickets is generated, then sorted by their short MD5 IDs and filtered by an MD5 ID
+ *  prefix, the same way the ticket list does. This is done once with the memoized IDs, and once with
+ *  {@link Ticket#generateMD5ID(Ticket)} called every time an ID is needed, which is what every call
+ *  to {@link Ticket#getMD5ID()} used to cost.
+ * <p>
+ * <code>java TicketMD5Benchmark $[TICKETS] $[ROUNDS]</code>
+ *
+ * @author Tyler Robbins
+ * @version 1.0
+ * @since 1.2
+ */
+public final class TicketMD5Benchmark {
+    /**
+     * How many tickets are generated if the number of tickets isn't given.
+     */
+    private static final int DEFAULT_TICKETS = 100000;
+
+    /**
+     * How many times the tickets are sorted and filtered if the number of rounds isn't given.
+     */
+    private static final int DEFAULT_ROUNDS = 5;
+
+    /**
+     * A line of a generated ticket's details.
+     */
+    private static final String LINE = "The quick brown fox jumps over the lazy dog, and then does it all again.\n";
+
+    /**
+     * Dummy constructor to prevent outside construction.
+     */
+    private TicketMD5Benchmark() { }
+
+    /**
+     * Runs the benchmark.
+     * @param args Optionally how many tickets to generate, and how many rounds to sort and filter
+     *  them for.
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TICKETS;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+
+        List<Ticket> tickets = generateTickets(count);
+
+        // Generate every ID once, so the memoized rounds only measure looking them up
+        for(Ticket ticket : tickets) ticket.getMD5ID();
+
+        System.out.println("Tickets: " + tickets.size());
+
+        // The first round of each only warms up the JIT
+        for(int round = 0; round <= rounds; round++) {
+            long memoized = sortAndFilter(tickets, Ticket::getMD5ID);
+            long generated = sortAndFilter(tickets, Ticket::generateMD5ID);
+
+            if(round == 0) continue;
+
+            System.out.println(String.format("Round %d: memoized %.1f ms, generated every time %.1f ms (%.1fx)",
+                                             round, memoized / 1000000.0, generated / 1000000.0,
+                                             (double)generated / Math.max(memoized, 1)));
+        }
+    }
+
+    /**
+     * Generates tickets with a few lines of details each.
+     * @param count How many tickets to generate.
+     * @return The generated tickets.
+     */
+    private static List<Ticket> generateTickets(int count) {
+        Random random = new Random(count);
+        List<Ticket> tickets = new ArrayList<Ticket>(count);
+
+        for(int i = 0; i < count; i++) {
+            StringBuilder details = new StringBuilder();
+            for(int line = random.nextInt(10); line >= 0; line--) details.append(LINE);
+
+            tickets.add(new Ticket("Benchmark ticket " + i, details.toString(), "Benchmark",
+                                   new Date(random.nextInt() * 1000L), Ticket.TicketType.values()[0],
+                                   Ticket.TicketPriority.values()[0], Ticket.TicketStatus.OPEN));
+        }
+
+        return tickets;
+    }
+
+    /**
+     * Sorts a copy of the tickets by their short MD5 IDs, then filters them by an MD5 ID prefix.
+     * @param tickets The tickets.
+     * @param md5ID Gets the MD5 ID of a ticket.
+     * @return How long it took, in nanoseconds.
+     */
+    private static long sortAndFilter(List<Ticket> tickets, Function<Ticket, String> md5ID) {
+        long start = System.nanoTime();
+
+        List<Ticket> sorted = new ArrayList<Ticket>(tickets);
+        Collections.sort(sorted, Comparator.comparing(t -> shortID(md5ID.apply(t))));
+
+        List<Ticket> filtered = new ArrayList<Ticket>();
+        for(Ticket ticket : sorted) {
+            if(md5ID.apply(ticket).startsWith("a")) filtered.add(ticket);
+        }
+
+        if(filtered.isEmpty()) throw new IllegalStateException("No tickets matched the filter");
+
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Gets the short version of an MD5 ID, the same way {@link Ticket#getShortMD5ID()} does.
+     * @param md5ID The MD5 ID.
+     * @return The first half of the MD5 ID.
+     */
+    private static String shortID(String md5ID) {
+        return md5ID.substring(0, md5ID.length() / 2);
+    }
+}
@@ -0,0 +1,366 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads tickets straight out of the Git object database through a single long-lived
+ *  <code>git cat-file --batch</code> process.
+ * <p>
+ * This does not need the _Tickets branch to be checked out, and reads every ticket through one pipe
+ *  instead of opening each file on disk.
+ *
+ * @author Tyler Robbins
+ * @version 1.0
+ * @since 1.2
+ */
+public class TicketObjectReader {
+    /**
+     * The instance of this singleton.
+     */
+    private static TicketObjectReader instance = null;
+
+    /**
+     * The running <code>git cat-file --batch</code> process.
+     */
+    private Process process;
+
+    /**
+     * Where object requests are written to.
+     */
+    private OutputStream requests;
+
+    /**
+     * Where object contents are read from.
+     */
+    private DataInputStream responses;
+
+    /**
+     * A blob or tree as returned by <code>git cat-file --batch</code>.
+     */
+    private static class GitObject {
+        /**
+         * The type of the object (blob, tree, commit, tag)
+         */
+        String type;
+
+        /**
+         * The raw contents of the object.
+         */
+        byte[] contents;
+    }
+
+    /**
+     * Starts a new <code>git cat-file --batch</code> process for the given repository.
+     * @param repoDir The repository to read objects from.
+     * @throws IOException If the process could not be started.
+     */
+    public TicketObjectReader(File repoDir) throws IOException {
+        process = new ProcessBuilder("git", "cat-file", "--batch")
+                .directory(repoDir)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+
+        requests = new BufferedOutputStream(process.getOutputStream());
+        responses = new DataInputStream(new BufferedInputStream(process.getInputStream(), 65536));
+    }
+
+    /**
+     * Gets the instance for this singleton, starting the reader for the copied project repository if
+     *  it isn't running yet.
+     * @return The instance for this singleton.
+     * @throws IOException If the reader could not be started.
+     */
+    public static synchronized TicketObjectReader getInstance() throws IOException {
+        if(instance == null) {
+            TicketObjectReader reader = new TicketObjectReader(FileUtil.getProjectTicketDir());
+            instance = reader;
+
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> reader.close()));
+        }
+
+        return instance;
+    }
+
+    /**
+     * Reads every ticket in the tree of a revision.
+     * <p>
+     * All ticket and appended comment blobs are requested up front, and each one is parsed as soon as
+     *  it arrives.
+     * <p>
+     * If anything goes wrong part way through, the git process is stopped, since it can't be told
+     *  which of its responses have been read. The next {@link #getInstance()} starts a new one.
+     * @param rev The revision to read tickets from (ex: _Tickets)
+     * @return A list of every ticket that could be read, or null if the revision does not exist.
+     * @throws IOException If communicating with git failed.
+     */
+    public synchronized List<Ticket> readAllTickets(String rev) throws IOException {
+        Thread writer = null;
+
+        try {
+            List<String> ids = new ArrayList<String>();
+            List<String> names = new ArrayList<String>();
+
+            GitObject root = request(rev + "^{tree}");
+            if(root == null) return null;
+
+            collectTickets(root.contents, null, ids, names);
+
+            // Write every request from another thread so that neither side of the pipe can fill up and block
+            writer = new Thread(() -> {
+                try {
+                    for(String id : ids) requests.write((id + "\n").getBytes(StandardCharsets.US_ASCII));
+                    requests.flush();
+                } catch(IOException e) {
+                    e.printStackTrace();
+                }
+            }, "TicketObjectReader");
+            writer.start();
+
+            List<Ticket> tickets = new ArrayList<Ticket>(ids.size());
+            Map<String, List<TicketComment>> comments = new HashMap<String, List<TicketComment>>();
+
+            for(int i = 0; i < ids.size(); i++) {
+                GitObject blob = readResponse();
+                if(blob == null || !blob.type.equals("blob")) continue;
+
+                String name = names.get(i);
+                int slash = name.indexOf('/');
+
+                if(slash >= 0 && !BinaryTicketFormat.isBinary(blob.contents, blob.contents.length)) {
+                    TicketComment comment = parseComment(blob.contents, name.substring(slash + 1));
+                    if(comment == null) continue;
+
+                    String md5ID = name.substring(0, slash);
+                    if(!comments.containsKey(md5ID)) comments.put(md5ID, new ArrayList<TicketComment>());
+                    comments.get(md5ID).add(comment);
+                } else {
+                    Ticket ticket = parseTicket(blob.contents, name);
+
+                    if(ticket != null) tickets.add(ticket);
+                }
+            }
+
+            // Trees are sorted by name, so each ticket's comments are already in the order they were written
+            for(Ticket ticket : tickets) {
+                List<TicketComment> appended = comments.get(ticket.getMD5ID());
+                if(appended != null) ticket.getComments().addAll(appended);
+            }
+
+            return tickets;
+        } catch(IOException | RuntimeException e) {
+            // Whatever is left in the pipe would be read as the answers to the next requests, so the
+            //  process can't be used again
+            close();
+            discard(this);
+            throw e;
+        } finally {
+            if(writer != null) {
+                try {
+                    writer.join();
+                } catch(InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a single ticket, and the comments appended to it, from the tree of a revision.
+     * <p>
+     * The ticket is looked for in its shard directory first, and then directly in the tree.
+     * @param rev The revision to read the ticket from (ex: _Tickets)
+     * @param md5ID The full MD5 ID of the ticket.
+     * @return The ticket, or null if it does not exist in the revision or could not be parsed.
+     * @throws IOException If communicating with git failed.
+     */
+    public synchronized Ticket readTicket(String rev, String md5ID) throws IOException {
+        try {
+            String path = md5ID.substring(0, FileUtil.SHARD_LENGTH) + "/" + md5ID;
+            GitObject blob = request(rev + ":" + path + ".ticket");
+
+            if(blob == null) {
+                path = md5ID;
+                blob = request(rev + ":" + path + ".ticket");
+            }
+
+            if(blob == null || !blob.type.equals("blob")) return null;
+
+            Ticket ticket = parseTicket(blob.contents, md5ID);
+            if(ticket == null) return null;
+
+            GitObject tree = request(rev + ":" + path + FileUtil.COMMENTS_SUFFIX);
+            if(tree != null && tree.type.equals("tree")) {
+                List<String> ids = new ArrayList<String>();
+                List<String> names = new ArrayList<String>();
+
+                collectTickets(tree.contents, md5ID, ids, names);
+
+                for(int i = 0; i < ids.size(); i++) {
+                    GitObject comment = request(ids.get(i));
+                    if(comment == null || !comment.type.equals("blob")) continue;
+
+                    TicketComment tc = parseComment(comment.contents, names.get(i).substring(md5ID.length() + 1));
+                    if(tc != null) ticket.getComments().add(tc);
+                }
+            }
+
+            return ticket;
+        } catch(IOException | RuntimeException e) {
+            close();
+            discard(this);
+            throw e;
+        }
+    }
+
+    /**
+     * Parses a ticket blob, in either the text or the {@link BinaryTicketFormat}.
+     * @param contents The contents of the blob.
+     * @param md5ID The MD5 ID the ticket is stored under.
+     * @return The ticket, or null if it could not be parsed.
+     */
+    private static Ticket parseTicket(byte[] contents, String md5ID) {
+        if(BinaryTicketFormat.isBinary(contents, contents.length)) {
+            return BinaryTicketFormat.read(new ByteArrayInputStream(contents), md5ID);
+        }
+
+        return FileUtil.readTicket(new ByteArrayInputStream(contents), md5ID, () -> new ByteArrayInputStream(contents));
+    }
+
+    /**
+     * Parses the blob of a comment appended to a ticket.
+     * @param contents The contents of the blob.
+     * @param name The name of the comment's file.
+     * @return The comment, or null if it could not be parsed.
+     */
+    private static TicketComment parseComment(byte[] contents, String name) {
+        BufferedReader br = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(contents), StandardCharsets.UTF_8));
+
+        return FileUtil.readComment(br, name);
+    }
+
+    /**
+     * Collects the ids and MD5 IDs of every .ticket blob in a tree, recursing into subtrees.
+     * <p>
+     * The blobs of comments appended to a ticket are collected too, named
+     *  <code>&lt;MD5 ID&gt;/&lt;comment file&gt;</code>.
+     * @param tree The raw contents of the tree.
+     * @param commentsOf The MD5 ID of the ticket whose comments the tree holds, or null if it isn't a comments tree.
+     * @param ids The list to add blob ids to.
+     * @param names The list to add ticket MD5 IDs and comment names to.
+     * @throws IOException If a subtree could not be read.
+     */
+    private void collectTickets(byte[] tree, String commentsOf, List<String> ids, List<String> names) throws IOException {
+        int pos = 0;
+
+        // Each entry is "<mode> <name>\0<20 byte id>"
+        while(pos < tree.length) {
+            int space = pos;
+            while(tree[space] != ' ') space++;
+
+            int nul = space + 1;
+            while(tree[nul] != 0) nul++;
+
+            String mode = new String(tree, pos, space - pos, StandardCharsets.US_ASCII);
+            String name = new String(tree, space + 1, nul - space - 1, StandardCharsets.UTF_8);
+
+            byte[] rawID = new byte[20];
+            System.arraycopy(tree, nul + 1, rawID, 0, 20);
+            String id = GitObjectWriter.toHex(rawID);
+
+            pos = nul + 21;
+
+            if(mode.equals("40000")) {
+                GitObject subtree = request(id);
+                if(subtree == null) continue;
+
+                if(commentsOf == null && name.endsWith(FileUtil.COMMENTS_SUFFIX)) {
+                    collectTickets(subtree.contents, name.substring(0, name.length() - FileUtil.COMMENTS_SUFFIX.length()), ids, names);
+                } else {
+                    collectTickets(subtree.contents, commentsOf, ids, names);
+                }
+            } else if(commentsOf != null) {
+                if(name.endsWith(".comment")) {
+                    ids.add(id);
+                    names.add(commentsOf + "/" + name);
+                }
+            } else if(name.endsWith(".ticket")) {
+                ids.add(id);
+                names.add(name.substring(0, name.length() - ".ticket".length()));
+            }
+        }
+    }
+
+    /**
+     * Requests a single object and waits for its contents.
+     * @param rev The object to request.
+     * @return The object, or null if it does not exist.
+     * @throws IOException If communicating with git failed.
+     */
+    private GitObject request(String rev) throws IOException {
+        requests.write((rev + "\n").getBytes(StandardCharsets.UTF_8));
+        requests.flush();
+
+        return readResponse();
+    }
+
+    /**
+     * Reads the next response from git.
+     * @return The object that was read, or null if the requested object does not exist.
+     * @throws IOException If communicating with git failed.
+     */
+    private GitObject readResponse() throws IOException {
+        // The header is either "<id> <type> <size>\n" or "<rev> missing\n"
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        int b;
+        while((b = responses.read()) != '\n') {
+            if(b == -1) throw new IOException("git cat-file exited unexpectedly.");
+            header.write(b);
+        }
+
+        String[] parts = header.toString("UTF-8").split(" ");
+        if(parts.length != 3) return null;
+
+        GitObject object = new GitObject();
+        object.type = parts[1];
+        object.contents = new byte[Integer.parseInt(parts[2])];
+
+        responses.readFully(object.contents);
+        responses.read(); // Skip the trailing newline
+
+        return object;
+    }
+
+    /**
+     * Forgets a reader that can no longer be used, so that the next call to {@link #getInstance()}
+     *  starts a new one.
+     * @param reader The reader to forget.
+     */
+    private static synchronized void discard(TicketObjectReader reader) {
+        if(instance == reader) instance = null;
+    }
+
+    /**
+     * Stops the git process.
+     */
+    public synchronized void close() {
+        try {
+            requests.close();
+        } catch(IOException e) {
+            // The process has already gone away
+        }
+
+        process.destroy();
+    }
+}
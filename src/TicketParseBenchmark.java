@@ -0,0 +1,146 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Shows how long it takes to parse text tickets as they get larger, to check that parsing scales
+ *  linearly with the size of a ticket.
+ * <p>
+ * Tickets are generated with long details and many comments, doubling in size each time, and then
+ *  parsed from memory. If parsing is linear then the time per megabyte stays roughly the same as
+ *  the tickets grow.
+ * <p>
+ * <code>java TicketParseBenchmark $[LARGESTMEGABYTES] $[ROUNDS]</code>
+ *
+ * @author Tyler Robbins
+ * @version 1.0
+ * @since 1.2
+ */
+public final class TicketParseBenchmark {
+    /**
+     * The size of the largest ticket if it isn't given, in megabytes.
+     */
+    private static final int DEFAULT_LARGEST = 16;
+
+    /**
+     * How many times each ticket is parsed if the number of rounds isn't given.
+     */
+    private static final int DEFAULT_ROUNDS = 5;
+
+    /**
+     * The size of the smallest ticket, in megabytes.
+     */
+    private static final double SMALLEST = 0.25;
+
+    /**
+     * A line of a generated ticket's details or comments.
+     */
+    private static final String LINE = "The quick brown fox jumps over the lazy dog, and then does it all again.";
+
+    /**
+     * Dummy constructor to prevent outside construction.
+     */
+    private TicketParseBenchmark() { }
+
+    /**
+     * Runs the benchmark.
+     * @param args Optionally the size of the largest ticket in megabytes, and how many rounds to parse
+     *  each ticket for.
+     */
+    public static void main(String[] args) {
+        int largest = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_LARGEST;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+
+        List<Ticket> tickets = new ArrayList<Ticket>();
+        List<byte[]> contents = new ArrayList<byte[]>();
+
+        for(double megabytes = SMALLEST; megabytes <= largest; megabytes *= 2) {
+            Ticket ticket = generateTicket((int)(megabytes * 1024 * 1024));
+
+            tickets.add(ticket);
+            contents.add(encode(ticket));
+        }
+
+        // Every ticket is parsed once first only to warm up the JIT, so the smallest aren't measured cold
+        for(int i = 0; i < tickets.size(); i++) parse(contents.get(i), tickets.get(i).getMD5ID());
+
+        for(int i = 0; i < tickets.size(); i++) {
+            long best = Long.MAX_VALUE;
+            for(int round = 0; round < rounds; round++) {
+                best = Math.min(best, parse(contents.get(i), tickets.get(i).getMD5ID()));
+            }
+
+            double size = contents.get(i).length / (1024.0 * 1024.0);
+            double millis = best / 1000000.0;
+
+            System.out.println(String.format("%6.2f MB, %5d comments: %8.1f ms, %6.1f ms/MB",
+                                             size, tickets.get(i).getComments().size(), millis, millis / size));
+        }
+    }
+
+    /**
+     * Generates a ticket with about half of its size in its details and half in its comments.
+     * @param size About how large the ticket should be, in bytes.
+     * @return The generated ticket.
+     */
+    private static Ticket generateTicket(int size) {
+        StringBuilder details = new StringBuilder(size / 2 + LINE.length());
+        while(details.length() < size / 2) details.append(LINE).append('\n');
+
+        // Tickets only keep whole seconds, so the date has to be one that survives being written
+        Date date = new Date(System.currentTimeMillis() / 1000 * 1000);
+
+        // Details are trimmed when they are read, so they have to be trimmed here to match the MD5 ID
+        Ticket ticket = new Ticket("Benchmark ticket", details.toString().trim(), "Benchmark", date,
+                                   Ticket.TicketType.values()[0], Ticket.TicketPriority.values()[0],
+                                   Ticket.TicketStatus.OPEN);
+
+        // Each comment is ten lines, so that long comments are also accumulated line by line
+        StringBuilder comment = new StringBuilder();
+        for(int i = 0; i < 10; i++) comment.append(LINE).append('\n');
+
+        for(int written = 0; written < size / 2; written += comment.length()) {
+            ticket.addComment(new TicketComment("Benchmark", date, comment.toString()));
+        }
+
+        return ticket;
+    }
+
+    /**
+     * Writes a ticket in the text format.
+     * @param ticket The ticket.
+     * @return The ticket as it would be written to its file.
+     */
+    private static byte[] encode(Ticket ticket) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024 * 1024);
+        try(PrintStream ps = new PrintStream(out, false, "UTF-8")) {
+            FileUtil.writeText(ticket, ps);
+        } catch(UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Parses a ticket in the text format once.
+     * @param contents The ticket in the text format.
+     * @param md5ID The MD5 ID of the ticket.
+     * @return How long it took, in nanoseconds.
+     */
+    private static long parse(byte[] contents, String md5ID) {
+        long start = System.nanoTime();
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(contents), StandardCharsets.UTF_8));
+        if(FileUtil.readTicket(in, md5ID) == null) throw new IllegalStateException("Failed to parse ticket " + md5ID);
+
+        return System.nanoTime() - start;
+    }
+}
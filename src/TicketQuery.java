@@ -0,0 +1,588 @@
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * A query over the header fields of every ticket, as given to the <code>list</code> command.
+ * <p>
+ * A query is a list of <code>key:value</code> terms, all of which must match:
+ * <pre>
+ * status:open,in-progress priority:high type:hotfix author:alice created:&gt;2026-01-01 sort:-date limit:50
+ * </pre>
+ * <ul>
+ * <li><code>status</code>, <code>priority</code> and <code>type</code> take one or more names,
+ *  separated by commas, any of which may match.</li>
+ * <li><code>author</code> matches any author containing the value, ignoring case.</li>
+ * <li><code>created</code> takes a date (<code>yyyy-MM-dd</code>) or a time
+ *  (<code>yyyy-MM-dd'T'HH:mm:ss</code>) in local time, optionally after one of <code>&gt;</code>,
+ *  <code>&gt;=</code>, <code>&lt;</code>, <code>&lt;=</code> or <code>=</code>. A bare date matches
+ *  the whole day.</li>
+ * <li><code>sort</code> takes one or more of <code>id</code>, <code>title</code>, <code>author</code>,
+ *  <code>date</code>, <code>status</code>, <code>priority</code> and <code>type</code>, separated by
+ *  commas, each of which is descending if it starts with <code>-</code>. Ties are broken by ID, which
+ *  is also the order if no sort is given.</li>
+ * <li><code>limit</code> takes the most entries to return.</li>
+ * </ul>
+ * <p>
+ * When executed against a {@link TicketIndex}, the conditions are evaluated through its
+ *  {@link TicketBitmapIndex}, most selective first: each condition's bitmap of matching rows is
+ *  intersected with the matches so far, and only the final matches are turned back into entries. A
+ *  range of creation dates has no bitmap of its own, so one is only built when the range is smaller
+ *  than the matches so far, and otherwise the remaining matches are tested against it. No ticket
+ *  file is read beyond what the index itself needs to refresh.
+ *
+ * @author Tyler Robbins
+ * @version 1.0
+ * @since 1.2
+ */
+public class TicketQuery {
+    /**
+     * One term of a query that entries must match.
+     */
+    private interface Condition {
+        /**
+         * Checks if an entry matches this condition.
+         * @param entry The entry to check.
+         * @return true if the entry matches, false otherwise.
+         */
+        boolean test(TicketIndex.Entry entry);
+
+        /**
+         * Gets how many entries in an index match this condition, without building a list of them.
+         * @param index The index to check.
+         * @return The number of matching entries.
+         */
+        int estimate(TicketIndex index);
+
+        /**
+         * Looks up the rows of the entries in an index which match this condition.
+         * @param index The index to look the rows up in.
+         * @return A new bitmap of the rows in {@link TicketIndex#getBitmaps()} of every matching entry.
+         */
+        TicketBitmap bitmap(TicketIndex index);
+
+        /**
+         * Checks if the bitmap of this condition is kept in the index, rather than built from a list
+         *  of entries each time it is needed.
+         * @return true if the bitmap is kept in the index, false otherwise.
+         */
+        boolean isIndexed();
+    }
+
+    /**
+     * A condition on the status, priority or type of a ticket.
+     */
+    private static class ValueCondition implements Condition {
+        /**
+         * The term this condition was parsed from.
+         */
+        private String term;
+
+        /**
+         * The values, all of the same enum, any of which may match.
+         */
+        private Set<Enum<?>> values;
+
+        /**
+         * Creates a condition.
+         * @param term The term this condition was parsed from.
+         * @param values The values, all of the same enum, any of which may match.
+         */
+        public ValueCondition(String term, Set<Enum<?>> values) {
+            this.term = term;
+            this.values = values;
+        }
+
+        @Override
+        public boolean test(TicketIndex.Entry entry) {
+            return values.contains(entry.getStatus()) || values.contains(entry.getPriority()) ||
+                   values.contains(entry.getType());
+        }
+
+        @Override
+        public int estimate(TicketIndex index) {
+            int count = 0;
+            for(Enum<?> value : values) count += index.getBitmaps().count(value);
+
+            return count;
+        }
+
+        @Override
+        public TicketBitmap bitmap(TicketIndex index) {
+            return index.getBitmaps().getAny(values);
+        }
+
+        @Override
+        public boolean isIndexed() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return term;
+        }
+    }
+
+    /**
+     * A condition on the author of a ticket.
+     */
+    private static class AuthorCondition implements Condition {
+        /**
+         * The term this condition was parsed from.
+         */
+        private String term;
+
+        /**
+         * The lower case text the author must contain.
+         */
+        private String text;
+
+        /**
+         * Creates a condition.
+         * @param term The term this condition was parsed from.
+         * @param text The text the author must contain.
+         */
+        public AuthorCondition(String term, String text) {
+            this.term = term;
+            this.text = text.toLowerCase(Locale.ROOT);
+        }
+
+        /**
+         * Checks if an author matches this condition.
+         * @param author The author to check.
+         * @return true if the author contains the text, ignoring case, false otherwise.
+         */
+        private boolean matches(String author) {
+            return author.toLowerCase(Locale.ROOT).contains(text);
+        }
+
+        @Override
+        public boolean test(TicketIndex.Entry entry) {
+            return matches(entry.getAuthor());
+        }
+
+        @Override
+        public int estimate(TicketIndex index) {
+            TicketBitmapIndex bitmaps = index.getBitmaps();
+            int count = 0;
+
+            for(String author : bitmaps.getAuthors()) {
+                if(matches(author)) count += bitmaps.countAuthor(author);
+            }
+
+            return count;
+        }
+
+        @Override
+        public TicketBitmap bitmap(TicketIndex index) {
+            TicketBitmapIndex bitmaps = index.getBitmaps();
+            TicketBitmap bitmap = new TicketBitmap();
+
+            for(String author : bitmaps.getAuthors()) {
+                if(matches(author)) bitmap = TicketBitmap.or(bitmap, bitmaps.getAuthor(author));
+            }
+
+            return bitmap;
+        }
+
+        @Override
+        public boolean isIndexed() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return term;
+        }
+    }
+
+    /**
+     * A condition on when a ticket was created.
+     */
+    private static class CreatedCondition implements Condition {
+        /**
+         * The term this condition was parsed from.
+         */
+        private String term;
+
+        /**
+         * The earliest matching time, in milliseconds since the epoch.
+         */
+        private long from;
+
+        /**
+         * The first time after the matching ones, in milliseconds since the epoch.
+         */
+        private long to;
+
+        /**
+         * Creates a condition.
+         * @param term The term this condition was parsed from.
+         * @param from The earliest matching time, in milliseconds since the epoch.
+         * @param to The first time after the matching ones, in milliseconds since the epoch.
+         */
+        public CreatedCondition(String term, long from, long to) {
+            this.term = term;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean test(TicketIndex.Entry entry) {
+            long date = entry.getDate().getTime();
+            return date >= from && date < to;
+        }
+
+        @Override
+        public int estimate(TicketIndex index) {
+            return index.getEntriesCreated(from, to).size();
+        }
+
+        @Override
+        public TicketBitmap bitmap(TicketIndex index) {
+            TicketBitmapIndex bitmaps = index.getBitmaps();
+            List<TicketIndex.Entry> entries = index.getEntriesCreated(from, to);
+            int[] rows = new int[entries.size()];
+            int count = 0;
+
+            for(TicketIndex.Entry entry : entries) {
+                int row = bitmaps.getRow(entry.getMD5ID());
+                if(row >= 0) rows[count++] = row;
+            }
+
+            return TicketBitmap.of(Arrays.copyOf(rows, count));
+        }
+
+        @Override
+        public boolean isIndexed() {
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return term;
+        }
+    }
+
+    /**
+     * The order entries are returned in if no sort is given.
+     */
+    private static final Comparator<TicketIndex.Entry> BY_ID = Comparator.comparing(TicketIndex.Entry::getMD5ID);
+
+    /**
+     * The conditions every returned entry must match.
+     */
+    private List<Condition> conditions;
+
+    /**
+     * The order entries are returned in.
+     */
+    private Comparator<TicketIndex.Entry> order;
+
+    /**
+     * The sort keys the order was parsed from, for {@link #getPlan()}.
+     */
+    private String orderTerm;
+
+    /**
+     * The most entries to return, or -1 for no limit.
+     */
+    private int limit;
+
+    /**
+     * A description of how the query was last executed.
+     */
+    private String plan;
+
+    /**
+     * Creates a query which matches every entry.
+     */
+    private TicketQuery() {
+        conditions = new ArrayList<Condition>();
+        order = BY_ID;
+        orderTerm = "id";
+        limit = -1;
+        plan = "";
+    }
+
+    /**
+     * Parses a query.
+     * @param terms The terms of the query.
+     * @return The parsed query.
+     * @throws IllegalArgumentException If a term is not understood.
+     */
+    public static TicketQuery parse(List<String> terms) {
+        TicketQuery query = new TicketQuery();
+
+        for(String term : terms) {
+            int colon = term.indexOf(':');
+            if(colon <= 0 || colon == term.length() - 1) throw new IllegalArgumentException("Invalid query term " + term);
+
+            String key = term.substring(0, colon).toLowerCase(Locale.ROOT);
+            String value = term.substring(colon + 1);
+
+            switch(key) {
+                case "status":
+                    query.conditions.add(new ValueCondition(term, parseValues(value, Ticket.TicketStatus.class)));
+                    break;
+                case "priority":
+                    query.conditions.add(new ValueCondition(term, parseValues(value, Ticket.TicketPriority.class)));
+                    break;
+                case "type":
+                    query.conditions.add(new ValueCondition(term, parseValues(value, Ticket.TicketType.class)));
+                    break;
+                case "author":
+                    query.conditions.add(new AuthorCondition(term, value));
+                    break;
+                case "created":
+                    query.conditions.add(parseCreated(term, value));
+                    break;
+                case "sort":
+                    query.order = parseOrder(value);
+                    query.orderTerm = value;
+                    break;
+                case "limit":
+                    try {
+                        query.limit = Integer.parseInt(value);
+                    } catch(NumberFormatException e) {
+                        query.limit = -1;
+                    }
+
+                    if(query.limit < 0) throw new IllegalArgumentException("Invalid limit " + value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown query key " + key);
+            }
+        }
+
+        return query;
+    }
+
+    /**
+     * Parses a list of enum names separated by commas.
+     * @param value The names, which may be in any case, and may use <code>-</code> for <code>_</code>.
+     * @param type The enum the names are of.
+     * @return The values named.
+     * @throws IllegalArgumentException If a name is not one of the enum's.
+     */
+    private static <E extends Enum<E>> Set<Enum<?>> parseValues(String value, Class<E> type) {
+        Set<Enum<?>> values = new LinkedHashSet<Enum<?>>();
+
+        for(String name : value.split(",")) {
+            try {
+                values.add(Enum.valueOf(type, name.trim().toUpperCase(Locale.ROOT).replace('-', '_')));
+            } catch(IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid value " + name + ", must be one of " + EnumSet.allOf(type));
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Parses the value of a <code>created</code> term.
+     * @param term The whole term.
+     * @param value The value of the term.
+     * @return The condition the term describes.
+     * @throws IllegalArgumentException If the value is not a comparison with a date or time.
+     */
+    private static CreatedCondition parseCreated(String term, String value) {
+        String operator = value.startsWith(">=") || value.startsWith("<=") ? value.substring(0, 2)
+                        : value.startsWith(">") || value.startsWith("<") || value.startsWith("=") ? value.substring(0, 1)
+                        : "=";
+        String date = value.startsWith(operator) ? value.substring(operator.length()) : value;
+
+        // A date covers the whole day, and a time covers the whole second
+        long start;
+        long end;
+
+        try {
+            if(date.contains("T")) {
+                start = parseDate(date, "yyyy-MM-dd'T'HH:mm:ss").getTime();
+                end = start + 1000;
+            } else {
+                Date day = parseDate(date, "yyyy-MM-dd");
+                start = day.getTime();
+
+                // Days are not always 24 hours long in local time
+                Calendar next = Calendar.getInstance();
+                next.setTime(day);
+                next.add(Calendar.DAY_OF_MONTH, 1);
+                end = next.getTimeInMillis();
+            }
+        } catch(ParseException e) {
+            throw new IllegalArgumentException("Invalid date " + date + ", must be yyyy-MM-dd or yyyy-MM-ddTHH:mm:ss");
+        }
+
+        switch(operator) {
+            case ">":  return new CreatedCondition(term, end, Long.MAX_VALUE);
+            case ">=": return new CreatedCondition(term, start, Long.MAX_VALUE);
+            case "<":  return new CreatedCondition(term, Long.MIN_VALUE, start);
+            case "<=": return new CreatedCondition(term, Long.MIN_VALUE, end);
+            default:   return new CreatedCondition(term, start, end);
+        }
+    }
+
+    /**
+     * Strictly parses a date in local time.
+     * @param date The date to parse.
+     * @param pattern The pattern the date must be in.
+     * @return The parsed date.
+     * @throws ParseException If the date is not in the pattern.
+     */
+    private static Date parseDate(String date, String pattern) throws ParseException {
+        SimpleDateFormat format = new SimpleDateFormat(pattern);
+        format.setLenient(false);
+
+        return format.parse(date);
+    }
+
+    /**
+     * Parses the value of a <code>sort</code> term.
+     * @param value The sort keys, separated by commas.
+     * @return The order the keys describe, with ties broken by ID.
+     * @throws IllegalArgumentException If a key is not understood.
+     */
+    private static Comparator<TicketIndex.Entry> parseOrder(String value) {
+        Comparator<TicketIndex.Entry> order = null;
+
+        for(String key : value.split(",")) {
+            boolean descending = key.startsWith("-");
+            String name = (descending ? key.substring(1) : key).toLowerCase(Locale.ROOT);
+            Comparator<TicketIndex.Entry> next;
+
+            switch(name) {
+                case "id":       next = BY_ID; break;
+                case "title":    next = Comparator.comparing(TicketIndex.Entry::getTitle, String.CASE_INSENSITIVE_ORDER); break;
+                case "author":   next = Comparator.comparing(TicketIndex.Entry::getAuthor, String.CASE_INSENSITIVE_ORDER); break;
+                case "date":
+                case "created":  next = Comparator.comparing(TicketIndex.Entry::getDate); break;
+                case "status":   next = Comparator.comparing(TicketIndex.Entry::getStatus); break;
+                case "priority": next = Comparator.comparing(TicketIndex.Entry::getPriority); break;
+                case "type":     next = Comparator.comparing(TicketIndex.Entry::getType); break;
+                default:
+                    throw new IllegalArgumentException("Unknown sort key " + name);
+            }
+
+            if(descending) next = next.reversed();
+            order = order == null ? next : order.thenComparing(next);
+        }
+
+        return order == null ? BY_ID : order.thenComparing(BY_ID);
+    }
+
+    /**
+     * Executes this query against an index, looking up the most selective condition first.
+     * @param index The index to query, which should already have been refreshed.
+     * @return The matching entries, sorted and limited.
+     */
+    public List<TicketIndex.Entry> execute(TicketIndex index) {
+        TicketBitmapIndex bitmaps = index.getBitmaps();
+        StringBuilder description = new StringBuilder();
+
+        // Estimating only counts the rows in bitmaps, which is cheap next to combining them
+        int[] estimates = new int[conditions.size()];
+        for(int i = 0; i < estimates.length; i++) estimates[i] = conditions.get(i).estimate(index);
+
+        List<Integer> byEstimate = new ArrayList<Integer>();
+        for(int i = 0; i < estimates.length; i++) byEstimate.add(i);
+        byEstimate.sort(Comparator.comparingInt(i -> estimates[i]));
+
+        TicketBitmap matches = null;
+        List<Condition> filters = new ArrayList<Condition>();
+
+        for(int i : byEstimate) {
+            Condition condition = conditions.get(i);
+
+            if(matches == null) {
+                matches = condition.bitmap(index);
+                description.append("bitmap: ").append(condition).append(" (").append(estimates[i])
+                           .append(" of ").append(bitmaps.size()).append(" entries)\n");
+            } else if(matches.isEmpty()) {
+                break;
+            } else if(condition.isIndexed() || estimates[i] <= matches.getCardinality()) {
+                matches = TicketBitmap.and(matches, condition.bitmap(index));
+                description.append("and: ").append(condition).append(" (").append(estimates[i])
+                           .append(" entries) -> ").append(matches.getCardinality()).append('\n');
+            } else {
+                filters.add(condition);
+                description.append("filter: ").append(condition).append(" (").append(estimates[i]).append(" entries)\n");
+            }
+        }
+
+        if(matches == null) {
+            matches = bitmaps.getAll();
+            description.append("all: ").append(matches.getCardinality()).append(" entries\n");
+        }
+
+        List<TicketIndex.Entry> results = finish(bitmaps.getEntries(matches), filters);
+        plan = description.append(describeOrder()).toString();
+
+        return results;
+    }
+
+    /**
+     * Executes this query by testing every entry in a list, for when there is no index.
+     * @param entries The entries to query.
+     * @return The matching entries, sorted and limited.
+     */
+    public List<TicketIndex.Entry> execute(List<TicketIndex.Entry> entries) {
+        StringBuilder description = new StringBuilder();
+
+        description.append("scan: all ").append(entries.size()).append(" entries\n");
+        for(Condition condition : conditions) description.append("filter: ").append(condition).append('\n');
+
+        List<TicketIndex.Entry> results = finish(entries, conditions);
+        plan = description.append(describeOrder()).toString();
+
+        return results;
+    }
+
+    /**
+     * Filters, sorts and limits a list of entries.
+     * @param entries The entries to finish.
+     * @param filters The conditions the entries must still match, in the order they should be tested.
+     * @return The matching entries, sorted and limited.
+     */
+    private List<TicketIndex.Entry> finish(List<TicketIndex.Entry> entries, List<Condition> filters) {
+        List<TicketIndex.Entry> results = new ArrayList<TicketIndex.Entry>(filters.isEmpty() ? entries.size() : 16);
+
+        outer:
+        for(TicketIndex.Entry entry : entries) {
+            for(Condition condition : filters) {
+                if(!condition.test(entry)) continue outer;
+            }
+
+            results.add(entry);
+        }
+
+        results.sort(order);
+
+        return limit >= 0 && results.size() > limit ? new ArrayList<TicketIndex.Entry>(results.subList(0, limit)) : results;
+    }
+
+    /**
+     * Describes how the results are sorted and limited.
+     * @return The lines of the plan describing the sort and limit.
+     */
+    private String describeOrder() {
+        return "sort: " + orderTerm + (limit >= 0 ? "\nlimit: " + limit : "");
+    }
+
+    /**
+     * Gets a description of how this query was last executed, one step per line.
+     * @return The plan of the last execution, or an empty string if it hasn't been executed.
+     */
+    public String getPlan() {
+        return plan;
+    }
+}
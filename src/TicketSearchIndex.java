@@ -0,0 +1,1614 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * An on-disk full-text index of the title, details and comments of every ticket in the copied
+ *  project repository, used to search for tickets.
+ * <p>
+ * Text is split into lowercase runs of letters and digits. For every term, the index stores which
+ *  tickets contain it and at which positions, so that whole phrases can be searched for. Matches are
+ *  ranked with BM25.
+ * <p>
+ * The index file is never rewritten for a single change. Instead, {@link FileUtil#writeTicket(Ticket)},
+ *  {@link FileUtil#appendComment(File, TicketComment)} and syncs record the IDs of the tickets they
+ *  change in a journal. Searches read those tickets again and search them alongside the index file,
+ *  and once more than {@link #MERGE_THRESHOLD} tickets have changed they are merged into a new index
+ *  file, which is streamed from the old one term by term. The journal only exists once the index
+ *  has been built, so nothing is recorded for repositories that are never searched.
+ * <p>
+ * Searches lock {@link #LOCK_FILE} from checking the index file until its postings have been read,
+ *  so that no other process can replace the index file or clear the journal in between.
+ * <p>
+ * The index file is laid out as:
+ * <pre>
+ * MAGIC VERSION [DOC COUNT] [TERM COUNT] [TOTAL LENGTH] [TERM TABLE OFFSET]
+ * ([MD5 ID] [LENGTH])...                          Sorted by MD5 ID
+ * ([TERM] [DOC FREQUENCY] [SIZE] [POSTINGS])...   Sorted by the UTF-8 bytes of the term
+ * ([TERM OFFSET])...
+ * </pre>
+ * Only the header, the documents and the term offsets are read when the index is opened, and the
+ *  postings of a term are only read when it is searched for.
+ *
+ * @author Tyler Robbins
+ * @version 1.0
+ * @since 1.2
+ */
+public class TicketSearchIndex {
+    /**
+     * The name of the index file in the copied project repository.
+     */
+    public static final String INDEX_FILE = ".ticket-search";
+
+    /**
+     * The name of the journal of changed tickets in the copied project repository.
+     */
+    public static final String JOURNAL_FILE = ".ticket-search-pending";
+
+    /**
+     * The name of the file in the copied project repository that is locked while the index file is
+     *  checked, built, merged or read, so that only one process at a time does so.
+     */
+    public static final String LOCK_FILE = ".ticket-search-lock";
+
+    /**
+     * Held while {@link #LOCK_FILE} is locked, since a process can only lock a file once.
+     */
+    private static final Object INDEX_LOCK = new Object();
+
+    /**
+     * How many changed tickets are searched alongside the index file before they are merged into it.
+     */
+    public static final int MERGE_THRESHOLD = 64;
+
+    /**
+     * Identifies a search index file.
+     */
+    private static final int MAGIC = 0x54535258; // "TSRX"
+
+    /**
+     * The version of the index file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The size of the header of the index file.
+     */
+    private static final int HEADER_SIZE = 32;
+
+    /**
+     * The size of each document in the index file: the raw MD5 ID and the number of terms.
+     */
+    private static final int DOC_SIZE = 20;
+
+    /**
+     * The longest term that is indexed, in characters. Longer runs are almost always hashes or
+     *  encoded data that nobody searches for.
+     */
+    private static final int MAX_TERM_LENGTH = 64;
+
+    /**
+     * How many tickets are read at once when building the index from scratch.
+     */
+    private static final int BUILD_BATCH = 4096;
+
+    /**
+     * The BM25 term frequency saturation parameter.
+     */
+    private static final double K1 = 1.2;
+
+    /**
+     * The BM25 document length normalization parameter.
+     */
+    private static final double B = 0.75;
+
+    /**
+     * A ticket that matched a search.
+     *
+     * @author Tyler Robbins
+     * @version 1.0
+     * @since 1.2
+     */
+    public static class Result {
+        /**
+         * The MD5 ID of the ticket.
+         */
+        private String md5ID;
+
+        /**
+         * The BM25 score of the ticket.
+         */
+        private double score;
+
+        /**
+         * Creates a result.
+         * @param md5ID The MD5 ID of the ticket.
+         * @param score The BM25 score of the ticket.
+         */
+        private Result(String md5ID, double score) {
+            this.md5ID = md5ID;
+            this.score = score;
+        }
+
+        /**
+         * Gets the MD5 ID of the ticket.
+         * @return The MD5 ID of the ticket.
+         */
+        public String getMD5ID() {
+            return md5ID;
+        }
+
+        /**
+         * Gets the BM25 score of the ticket. Higher scores are better matches.
+         * @return The BM25 score of the ticket.
+         */
+        public double getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * The postings of a single term, sorted by document. Only the documents and the number of times
+     *  the term appears in each are decoded, and the positions are decoded when a phrase needs them.
+     *
+     * @author Tyler Robbins
+     * @version 1.0
+     * @since 1.2
+     */
+    private static class Postings {
+        /**
+         * How many documents the term appears in.
+         */
+        private int size = 0;
+
+        /**
+         * The documents the term appears in.
+         */
+        private int[] docs = new int[8];
+
+        /**
+         * How many times the term appears in each document.
+         */
+        private int[] frequencies = new int[8];
+
+        /**
+         * The encoded postings the positions in each document are in.
+         */
+        private byte[][] sources = new byte[8][];
+
+        /**
+         * Where the positions in each document start in its source.
+         */
+        private int[] starts = new int[8];
+
+        /**
+         * Adds the document a reader is at, which must come after every document already added.
+         * @param doc The document to add it as.
+         * @param reader The reader.
+         */
+        private void add(int doc, PostingsReader reader) {
+            if(size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+                sources = Arrays.copyOf(sources, size * 2);
+                starts = Arrays.copyOf(starts, size * 2);
+            }
+
+            docs[size] = doc;
+            frequencies[size] = reader.frequency;
+            sources[size] = reader.bytes;
+            starts[size] = reader.positionsStart;
+            size++;
+        }
+
+        /**
+         * Finds a document, starting from where the last one was found.
+         * @param doc The document.
+         * @param from Where to start looking.
+         * @return Where the document is, or -(where it would be) - 1 if the term isn't in it.
+         */
+        private int find(int doc, int from) {
+            return Arrays.binarySearch(docs, from, size, doc);
+        }
+
+        /**
+         * Decodes the positions of the term in a document.
+         * @param i Where the document is.
+         * @return The positions, in order.
+         */
+        private int[] getPositions(int i) {
+            PostingsReader reader = new PostingsReader(sources[i], 0);
+            reader.at = starts[i];
+
+            int[] positions = new int[frequencies[i]];
+            int position = 0;
+            for(int p = 0; p < positions.length; p++) {
+                position += reader.readVarInt();
+                positions[p] = position;
+            }
+
+            return positions;
+        }
+    }
+
+    /**
+     * Reads encoded postings one document at a time. The positions are skipped over, so that they
+     *  can be decoded later or copied as they are.
+     *
+     * @author Tyler Robbins
+     * @version 1.0
+     * @since 1.2
+     */
+    private static class PostingsReader {
+        /**
+         * The encoded postings.
+         */
+        private byte[] bytes;
+
+        /**
+         * How many documents are left to read.
+         */
+        private int remaining;
+
+        /**
+         * Where the next byte is read from.
+         */
+        private int at = 0;
+
+        /**
+         * The current document.
+         */
+        private int doc = 0;
+
+        /**
+         * How many times the term appears in the current document.
+         */
+        private int frequency;
+
+        /**
+         * Where the positions in the current document start.
+         */
+        private int positionsStart;
+
+        /**
+         * Creates a reader.
+         * @param bytes The encoded postings.
+         * @param docFrequency How many documents are in the postings.
+         */
+        private PostingsReader(byte[] bytes, int docFrequency) {
+            this.bytes = bytes;
+            remaining = docFrequency;
+        }
+
+        /**
+         * Moves to the next document.
+         * @return true if there was another document, false otherwise.
+         */
+        private boolean next() {
+            if(remaining == 0) return false;
+            remaining--;
+
+            doc += readVarInt();
+            frequency = readVarInt();
+            positionsStart = at;
+
+            for(int i = 0; i < frequency; i++) {
+                while((bytes[at++] & 0x80) != 0);
+            }
+
+            return true;
+        }
+
+        /**
+         * Moves to the next document that is kept by a mapping.
+         * @param map The document each document becomes, or -1 for those that are left out.
+         * @return true if there was another such document, false otherwise.
+         */
+        private boolean next(int[] map) {
+            while(next()) {
+                if(map[doc] >= 0) return true;
+            }
+
+            return false;
+        }
+
+        /**
+         * Reads an unsigned LEB128 varint.
+         * @return The number that was read.
+         */
+        private int readVarInt() {
+            int value = 0;
+
+            for(int shift = 0; shift < 32; shift += 7) {
+                int b = bytes[at++];
+                value |= (b & 0x7F) << shift;
+
+                if((b & 0x80) == 0) break;
+            }
+
+            return value;
+        }
+    }
+
+    /**
+     * Encodes postings as they are stored in the index file: for each document, the difference from
+     *  the last document, the number of positions, and the difference of each position from the last.
+     *
+     * @author Tyler Robbins
+     * @version 1.0
+     * @since 1.2
+     */
+    private static class PostingsBuilder {
+        /**
+         * The encoded postings.
+         */
+        private byte[] bytes = new byte[16];
+
+        /**
+         * How many bytes of {@link #bytes} are used.
+         */
+        private int length = 0;
+
+        /**
+         * How many documents have been added.
+         */
+        private int docFrequency = 0;
+
+        /**
+         * The last document added.
+         */
+        private int lastDoc = 0;
+
+        /**
+         * Adds a document, which must come after every document already added.
+         * @param doc The document.
+         * @param positions The positions of the term in the document, in order.
+         * @param from Where the positions start in {@code positions}.
+         * @param to Where the positions end in {@code positions}.
+         */
+        private void add(int doc, int[] positions, int from, int to) {
+            writeVarInt(doc - lastDoc);
+            writeVarInt(to - from);
+
+            int last = 0;
+            for(int i = from; i < to; i++) {
+                writeVarInt(positions[i] - last);
+                last = positions[i];
+            }
+
+            lastDoc = doc;
+            docFrequency++;
+        }
+
+        /**
+         * Adds the document a reader is at as another document, copying its positions as they are.
+         * @param doc The document to add it as, which must come after every document already added.
+         * @param reader The reader.
+         */
+        private void copy(int doc, PostingsReader reader) {
+            writeVarInt(doc - lastDoc);
+            writeVarInt(reader.frequency);
+
+            int count = reader.at - reader.positionsStart;
+            if(length + count > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + count));
+
+            System.arraycopy(reader.bytes, reader.positionsStart, bytes, length, count);
+            length += count;
+
+            lastDoc = doc;
+            docFrequency++;
+        }
+
+        /**
+         * Removes every document, keeping the buffer to be used again.
+         */
+        private void clear() {
+            length = 0;
+            docFrequency = 0;
+            lastDoc = 0;
+        }
+
+        /**
+         * Creates a reader of the postings.
+         * @return A reader positioned before the first document.
+         */
+        private PostingsReader reader() {
+            return new PostingsReader(bytes, docFrequency);
+        }
+
+        /**
+         * Writes a non-negative number as an unsigned LEB128 varint.
+         * @param value The number to write.
+         */
+        private void writeVarInt(int value) {
+            if(length + 5 > bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+
+            while((value & ~0x7F) != 0) {
+                bytes[length++] = (byte)((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+
+            bytes[length++] = (byte)value;
+        }
+    }
+
+    /**
+     * An in-memory index of some tickets, for tickets that changed since the index file was written
+     *  and for building a new index file.
+     *
+     * @author Tyler Robbins
+     * @version 1.0
+     * @since 1.2
+     */
+    private static class Segment {
+        /**
+         * The MD5 ID of each document.
+         */
+        private List<String> md5IDs = new ArrayList<String>();
+
+        /**
+         * The number of terms in each document.
+         */
+        private int[] lengths = new int[16];
+
+        /**
+         * The postings of every term.
+         */
+        private Map<String, PostingsBuilder> terms = new HashMap<String, PostingsBuilder>();
+
+        /**
+         * The number of terms in every document.
+         */
+        private long totalLength = 0;
+
+        /**
+         * Adds a ticket as the next document.
+         * @param md5ID The MD5 ID of the ticket.
+         * @param ticket The ticket.
+         */
+        private void add(String md5ID, Ticket ticket) {
+            int doc = md5IDs.size();
+
+            // A gap between the title, details and each comment stops phrases from spanning them
+            List<String> tokens = new ArrayList<String>();
+            addTokens(ticket.getTitle(), tokens);
+            tokens.add(null);
+            addTokens(ticket.getDetails(), tokens);
+            for(TicketComment tc : ticket.getComments()) {
+                tokens.add(null);
+                addTokens(tc.getComment(), tokens);
+            }
+
+            // The number of positions of each term, followed by the positions
+            Map<String, int[]> positions = new HashMap<String, int[]>();
+            for(int position = 0; position < tokens.size(); position++) {
+                String term = tokens.get(position);
+                if(term == null) continue;
+
+                int[] pos = positions.get(term);
+                if(pos == null) {
+                    pos = new int[4];
+                    positions.put(term, pos);
+                } else if(pos[0] + 1 == pos.length) {
+                    pos = Arrays.copyOf(pos, pos.length * 2);
+                    positions.put(term, pos);
+                }
+
+                pos[++pos[0]] = position;
+            }
+
+            int count = 0;
+            for(Map.Entry<String, int[]> entry : positions.entrySet()) {
+                int[] pos = entry.getValue();
+
+                terms.computeIfAbsent(entry.getKey(), term -> new PostingsBuilder()).add(doc, pos, 1, pos[0] + 1);
+                count += pos[0];
+            }
+
+            md5IDs.add(md5ID);
+            if(doc == lengths.length) lengths = Arrays.copyOf(lengths, doc * 2);
+            lengths[doc] = count;
+            totalLength += count;
+        }
+
+        /**
+         * Gets how many documents are in this segment.
+         * @return How many documents are in this segment.
+         */
+        private int size() {
+            return md5IDs.size();
+        }
+    }
+
+    /**
+     * Compares terms by their UTF-8 bytes, which is the order they are stored in.
+     */
+    private static final Comparator<byte[]> TERM_ORDER = TicketSearchIndex::compareTerms;
+
+    /**
+     * The instance of this singleton.
+     */
+    private static TicketSearchIndex instance = null;
+
+    /**
+     * The directory containing the tickets.
+     */
+    private File dir;
+
+    /**
+     * The number of documents in the index file.
+     */
+    private int docCount;
+
+    /**
+     * The number of terms in the index file.
+     */
+    private int termCount;
+
+    /**
+     * The number of terms in every document in the index file.
+     */
+    private long totalLength;
+
+    /**
+     * The MD5 ID and length of every document in the index file.
+     */
+    private byte[] docTable;
+
+    /**
+     * The number of terms in every document in the index file.
+     */
+    private int[] lengths;
+
+    /**
+     * Where each term starts in the index file.
+     */
+    private long[] termOffsets;
+
+    /**
+     * The size of the index file when it was loaded, or -1 if it hasn't been.
+     */
+    private long loadedSize;
+
+    /**
+     * The modification time of the index file when it was loaded.
+     */
+    private long loadedModified;
+
+    /**
+     * The tickets in the journal, read again since the index file was written.
+     */
+    private Segment changed;
+
+    /**
+     * The documents in the index file that are out of date, because they are in {@link #changed}.
+     */
+    private BitSet stale;
+
+    /**
+     * The length of the journal {@link #changed} was read from, or -1 if it hasn't been read.
+     */
+    private long changedJournalLength;
+
+    /**
+     * Creates a search index of the tickets in a directory. Nothing is read until the first search.
+     * @param dir The directory containing the tickets.
+     */
+    public TicketSearchIndex(File dir) {
+        this.dir = dir;
+        loadedSize = -1;
+        changedJournalLength = -1;
+    }
+
+    /**
+     * Gets the instance for this singleton.
+     * @return The instance for this singleton, or null if the copied project repository could not be found.
+     */
+    public static synchronized TicketSearchIndex getInstance() {
+        if(instance == null) {
+            try {
+                instance = new TicketSearchIndex(FileUtil.getProjectTicketDir());
+            } catch(IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * Searches for tickets.
+     * <p>
+     * Every word in the query must appear in a ticket for it to match, and words in double quotes
+     *  must appear next to each other, in order. Case and punctuation are ignored.
+     * <p>
+     * The index is built first if it doesn't exist yet, and any tickets changed since it was written
+     *  are read again.
+     * @param query The query.
+     * @param limit The most results to return.
+     * @return The best matches, best first, or null if the index could not be read.
+     */
+    public synchronized List<Result> search(String query, int limit) {
+        List<List<String>> clauses = parseQuery(query);
+        Postings[] postings;
+
+        synchronized(INDEX_LOCK) {
+            FileLock lock = lockIndex(dir);
+            if(lock == null) return null;
+
+            try {
+                if(!prepare()) return null;
+                if(clauses.isEmpty() || limit <= 0) return new ArrayList<Result>();
+
+                postings = lookupAll(clauses);
+                if(postings == null) return null;
+            } finally {
+                unlockIndex(lock);
+            }
+        }
+
+        // Nothing can match if a term isn't anywhere
+        for(Postings p : postings) {
+            if(p == null || p.size == 0) return new ArrayList<Result>();
+        }
+
+        // Which of the distinct terms each clause is made of, in the same order as their postings
+        List<String> terms = distinctTerms(clauses);
+        int[][] clauseTerms = new int[clauses.size()][];
+        for(int c = 0; c < clauses.size(); c++) {
+            clauseTerms[c] = new int[clauses.get(c).size()];
+
+            for(int i = 0; i < clauseTerms[c].length; i++) clauseTerms[c][i] = terms.indexOf(clauses.get(c).get(i));
+        }
+
+        int docs = docCount - stale.cardinality() + changed.size();
+        double averageLength = (double)(totalLength - staleLength() + changed.totalLength) / docs;
+
+        // Walk the documents of the rarest term, since every match has to contain it
+        int rarest = 0;
+        double[] idf = new double[postings.length];
+        for(int t = 0; t < postings.length; t++) {
+            if(postings[t].size < postings[rarest].size) rarest = t;
+
+            idf[t] = Math.log(1 + (docs - postings[t].size + 0.5) / (postings[t].size + 0.5));
+        }
+
+        // The worst of the best results so far is at the head, so that it can be replaced
+        PriorityQueue<Result> best = new PriorityQueue<Result>(limit + 1, Comparator.comparingDouble(Result::getScore)
+                                                                    .thenComparing(Result::getMD5ID, Comparator.reverseOrder()));
+        int[] found = new int[postings.length];
+
+        for(int i = 0; i < postings[rarest].size; i++) {
+            int doc = postings[rarest].docs[i];
+            if(!matches(doc, postings, clauseTerms, found)) continue;
+
+            double norm = K1 * (1 - B + B * getLength(doc) / averageLength);
+            double score = 0;
+            for(int t = 0; t < postings.length; t++) {
+                int tf = postings[t].frequencies[found[t]];
+                score += idf[t] * tf * (K1 + 1) / (tf + norm);
+            }
+
+            if(best.size() < limit || score >= best.peek().getScore()) {
+                best.add(new Result(getMD5ID(doc), score));
+                if(best.size() > limit) best.poll();
+            }
+        }
+
+        List<Result> results = new ArrayList<Result>(best);
+        results.sort(Comparator.comparingDouble(Result::getScore).reversed().thenComparing(Result::getMD5ID));
+
+        return results;
+    }
+
+    /**
+     * Gets every distinct term in a query, in the order they first appear.
+     * @param clauses The clauses of the query, from {@link #parseQuery(String)}.
+     * @return The distinct terms.
+     */
+    private static List<String> distinctTerms(List<List<String>> clauses) {
+        List<String> terms = new ArrayList<String>();
+        for(List<String> clause : clauses) {
+            for(String term : clause) {
+                if(!terms.contains(term)) terms.add(term);
+            }
+        }
+
+        return terms;
+    }
+
+    /**
+     * Reads the postings of every distinct term in a query, from the index file and the tickets in
+     *  the journal.
+     * <p>
+     * Nothing can match once a term isn't anywhere, so the terms after it are left null.
+     * @param clauses The clauses of the query, from {@link #parseQuery(String)}.
+     * @return The postings of each of {@link #distinctTerms(List)}, or null if the index file could not be read.
+     */
+    private Postings[] lookupAll(List<List<String>> clauses) {
+        List<String> terms = distinctTerms(clauses);
+        Postings[] postings = new Postings[terms.size()];
+
+        try(FileChannel channel = FileChannel.open(new File(dir, INDEX_FILE).toPath(), StandardOpenOption.READ)) {
+            for(int t = 0; t < postings.length; t++) {
+                postings[t] = lookup(channel, terms.get(t));
+                if(postings[t].size == 0) break;
+            }
+        } catch(IOException e) {
+            System.err.println("Failed to read the search index.");
+            e.printStackTrace();
+            return null;
+        }
+
+        return postings;
+    }
+
+    /**
+     * Checks if a document matches every clause of a query.
+     * <p>
+     * Documents must be checked in order, since each term is only searched for after where it was
+     *  last found.
+     * @param doc The document.
+     * @param postings The postings of every term in the query.
+     * @param clauseTerms The terms of each clause of the query, each of which is a word or a phrase.
+     * @param found Where each term was last found in its postings, which is updated.
+     * @return true if the document contains every word and phrase, false otherwise.
+     */
+    private static boolean matches(int doc, Postings[] postings, int[][] clauseTerms, int[] found) {
+        for(int t = 0; t < postings.length; t++) {
+            int i = postings[t].find(doc, found[t]);
+
+            if(i < 0) {
+                found[t] = -i - 1;
+                return false;
+            }
+
+            found[t] = i;
+        }
+
+        for(int[] clause : clauseTerms) {
+            if(clause.length == 1) continue;
+
+            int[][] positions = new int[clause.length][];
+            for(int i = 0; i < clause.length; i++) positions[i] = postings[clause[i]].getPositions(found[clause[i]]);
+
+            boolean phrase = false;
+            for(int start : positions[0]) {
+                phrase = true;
+
+                for(int i = 1; i < positions.length && phrase; i++) {
+                    phrase = Arrays.binarySearch(positions[i], start + i) >= 0;
+                }
+
+                if(phrase) break;
+            }
+
+            if(!phrase) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Makes sure the index is ready to be searched: builds it if it doesn't exist, loads it again
+     *  if another process replaced it, and reads the tickets in the journal again, merging them into
+     *  the index file if there are too many.
+     * @return true if the index is ready, false if it could not be read or built.
+     */
+    private boolean prepare() {
+        File file = new File(dir, INDEX_FILE);
+
+        if(!file.exists() || !new File(dir, JOURNAL_FILE).exists()) {
+            if(!rebuild()) return false;
+        } else if(file.length() != loadedSize || file.lastModified() != loadedModified) {
+            if(!load()) {
+                System.err.println("Rebuilding the search index.");
+                if(!rebuild()) return false;
+            }
+        }
+
+        long journalLength = new File(dir, JOURNAL_FILE).length();
+        if(journalLength == changedJournalLength) return true;
+
+        Set<String> journal = readJournal(dir);
+        if(journal == null) return false;
+
+        Segment segment = readTickets(journal);
+
+        if(journal.size() > MERGE_THRESHOLD) {
+            if(!write(segment, journal)) return false;
+
+            dropJournal(dir, journalLength);
+
+            // Anything recorded while merging is still in the journal
+            return load() && prepare();
+        }
+
+        changed = segment;
+        stale = new BitSet(docCount);
+        for(String md5ID : journal) {
+            int doc = findDoc(md5ID);
+            if(doc >= 0) stale.set(doc);
+        }
+
+        changedJournalLength = journalLength;
+        return true;
+    }
+
+    /**
+     * Builds the index file from every ticket.
+     * <p>
+     * The journal is created first, so that tickets changed while the index is being built are
+     *  recorded, and then cleared of everything recorded before the build started.
+     * @return true if the index was built, false otherwise.
+     */
+    private boolean rebuild() {
+        long journalLength = createJournal(dir);
+        if(journalLength < 0) return false;
+
+        List<File> files = FileUtil.listTicketFiles(dir);
+        files.sort(Comparator.comparing(File::getName));
+
+        Segment segment = new Segment();
+        for(int start = 0; start < files.size(); start += BUILD_BATCH) {
+            List<File> batch = files.subList(start, Math.min(files.size(), start + BUILD_BATCH));
+            Ticket[] tickets = FileUtil.readTicketFiles(batch);
+
+            for(int i = 0; i < tickets.length; i++) {
+                String name = batch.get(i).getName();
+                if(tickets[i] != null) segment.add(name.substring(0, name.length() - ".ticket".length()), tickets[i]);
+            }
+        }
+
+        // Start from nothing, so that no old documents are carried over
+        loadedSize = -1;
+        docCount = 0;
+        termCount = 0;
+        totalLength = 0;
+        docTable = new byte[0];
+        lengths = new int[0];
+        termOffsets = new long[0];
+
+        if(!write(segment, Collections.<String>emptySet())) return false;
+
+        dropJournal(dir, journalLength);
+        return load();
+    }
+
+    /**
+     * Reads the tickets with some MD5 IDs into a segment. Tickets that no longer exist are left out.
+     * @param md5IDs The MD5 IDs of the tickets.
+     * @return A segment of the tickets, in order of their MD5 IDs.
+     */
+    private Segment readTickets(Set<String> md5IDs) {
+        List<String> sorted = new ArrayList<String>(md5IDs);
+        Collections.sort(sorted);
+
+        List<String> ids = new ArrayList<String>();
+        List<File> files = new ArrayList<File>();
+        for(String md5ID : sorted) {
+            File file = FileUtil.getTicketFile(dir, md5ID);
+
+            if(file.exists()) {
+                ids.add(md5ID);
+                files.add(file);
+            }
+        }
+
+        Ticket[] tickets = FileUtil.readTicketFiles(files);
+        Segment segment = new Segment();
+
+        for(int i = 0; i < tickets.length; i++) {
+            if(tickets[i] != null) segment.add(ids.get(i), tickets[i]);
+        }
+
+        return segment;
+    }
+
+    /**
+     * Reads the header, the documents and the term offsets of the index file.
+     * @return true if the index file was read, false if it is missing, corrupt or of an unknown version.
+     */
+    private boolean load() {
+        File file = new File(dir, INDEX_FILE);
+
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long modified = file.lastModified();
+
+            ByteBuffer header = read(channel, 0, HEADER_SIZE);
+            if(header.getInt() != MAGIC || header.getInt() != VERSION) {
+                System.err.println("Ignoring unknown search index format.");
+                return false;
+            }
+
+            int docs = header.getInt();
+            int terms = header.getInt();
+            long length = header.getLong();
+            long termTableOffset = header.getLong();
+
+            if(docs < 0 || terms < 0 || termTableOffset + (long)terms * 8 != size) {
+                System.err.println("Ignoring corrupt search index.");
+                return false;
+            }
+
+            byte[] table = new byte[docs * DOC_SIZE];
+            read(channel, HEADER_SIZE, table.length).get(table);
+
+            int[] docLengths = new int[docs];
+            for(int doc = 0; doc < docs; doc++) docLengths[doc] = ByteBuffer.wrap(table, doc * DOC_SIZE + 16, 4).getInt();
+
+            long[] offsets = new long[terms];
+            read(channel, termTableOffset, terms * 8).asLongBuffer().get(offsets);
+
+            docCount = docs;
+            termCount = terms;
+            totalLength = length;
+            docTable = table;
+            lengths = docLengths;
+            termOffsets = offsets;
+            loadedSize = size;
+            loadedModified = modified;
+
+            // The tickets in the journal have to be read again against the new documents
+            changed = new Segment();
+            stale = new BitSet();
+            changedJournalLength = -1;
+
+            return true;
+        } catch(EOFException e) {
+            System.err.println("Ignoring corrupt search index.");
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+
+        return false;
+    }
+
+    /**
+     * Writes a new index file, made of the loaded index file without the removed tickets, and the
+     *  tickets in a segment. The loaded index file is read one term at a time while the new one is
+     *  written, so only the segment has to fit in memory.
+     * @param added The tickets to add, in order of their MD5 IDs.
+     * @param removed The MD5 IDs of the tickets to remove. Tickets being replaced must be in here too.
+     * @return true if the index file was written, false otherwise.
+     */
+    private boolean write(Segment added, Set<String> removed) {
+        File file = new File(dir, INDEX_FILE);
+        File temp;
+        try {
+            temp = File.createTempFile(INDEX_FILE + ".", ".tmp", dir);
+        } catch(IOException e) {
+            System.err.println("Failed to write search index.");
+            e.printStackTrace();
+            return false;
+        }
+
+        // Number the new documents in order of their MD5 IDs, which is the order of both inputs
+        int[] oldToNew = new int[docCount];
+        int[] addedToNew = new int[added.size()];
+        List<Integer> newLengths = new ArrayList<Integer>();
+        List<byte[]> newIDs = new ArrayList<byte[]>();
+        long newTotalLength = 0;
+
+        int oldDoc = 0;
+        int addedDoc = 0;
+        while(oldDoc < docCount || addedDoc < added.size()) {
+            String oldID = oldDoc < docCount ? getMD5ID(oldDoc) : null;
+
+            if(oldID != null && removed.contains(oldID)) {
+                oldToNew[oldDoc++] = -1;
+                continue;
+            }
+
+            boolean takeOld = addedDoc >= added.size() || (oldID != null && oldID.compareTo(added.md5IDs.get(addedDoc)) < 0);
+            int length;
+
+            if(takeOld) {
+                oldToNew[oldDoc] = newIDs.size();
+                newIDs.add(toBytes(oldID));
+                length = getLength(oldDoc++);
+            } else {
+                addedToNew[addedDoc] = newIDs.size();
+                newIDs.add(toBytes(added.md5IDs.get(addedDoc)));
+                length = added.lengths[addedDoc++];
+            }
+
+            newLengths.add(length);
+            newTotalLength += length;
+        }
+
+        List<byte[]> addedTerms = new ArrayList<byte[]>(added.terms.size());
+        for(String term : added.terms.keySet()) addedTerms.add(term.getBytes(StandardCharsets.UTF_8));
+        addedTerms.sort(TERM_ORDER);
+
+        List<Long> newOffsets = new ArrayList<Long>();
+
+        try {
+            long termTableOffset;
+
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 65536));
+                DataInputStream in = termCount == 0 ? null : openTerms()) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(newIDs.size());
+                out.writeInt(0); // Filled in once the terms have been written
+                out.writeLong(newTotalLength);
+                out.writeLong(0);
+
+                for(int i = 0; i < newIDs.size(); i++) {
+                    out.write(newIDs.get(i));
+                    out.writeInt(newLengths.get(i));
+                }
+
+                PostingsBuilder merged = new PostingsBuilder();
+                byte[] oldTerm = null;
+                PostingsReader oldPostings = null;
+                int oldTerms = 0;
+                int addedTerm = 0;
+
+                while(true) {
+                    if(oldTerm == null && oldTerms < termCount) {
+                        oldTerm = new byte[in.readUnsignedShort()];
+                        in.readFully(oldTerm);
+
+                        int df = in.readInt();
+                        byte[] bytes = new byte[in.readInt()];
+                        in.readFully(bytes);
+
+                        oldPostings = new PostingsReader(bytes, df);
+                        oldTerms++;
+                    }
+
+                    if(oldTerm == null && addedTerm >= addedTerms.size()) break;
+
+                    int order = oldTerm == null ? 1 : addedTerm >= addedTerms.size() ? -1 : compareTerms(oldTerm, addedTerms.get(addedTerm));
+
+                    byte[] term = order <= 0 ? oldTerm : addedTerms.get(addedTerm);
+                    PostingsReader old = order <= 0 ? oldPostings : null;
+                    PostingsReader add = order >= 0 ? added.terms.get(new String(addedTerms.get(addedTerm++), StandardCharsets.UTF_8)).reader() : null;
+
+                    if(order <= 0) oldTerm = null;
+
+                    // Both are in order of their MD5 IDs, so they only have to be interleaved
+                    merged.clear();
+                    boolean hasOld = old != null && old.next(oldToNew);
+                    boolean hasAdded = add != null && add.next(addedToNew);
+
+                    while(hasOld || hasAdded) {
+                        if(hasAdded && (!hasOld || addedToNew[add.doc] < oldToNew[old.doc])) {
+                            merged.copy(addedToNew[add.doc], add);
+                            hasAdded = add.next(addedToNew);
+                        } else {
+                            merged.copy(oldToNew[old.doc], old);
+                            hasOld = old.next(oldToNew);
+                        }
+                    }
+
+                    // A term only in removed tickets is left out
+                    if(merged.docFrequency == 0) continue;
+
+                    newOffsets.add((long)out.size());
+                    out.writeShort(term.length);
+                    out.write(term);
+                    out.writeInt(merged.docFrequency);
+                    out.writeInt(merged.length);
+                    out.write(merged.bytes, 0, merged.length);
+                }
+
+                termTableOffset = out.size();
+                for(long offset : newOffsets) out.writeLong(offset);
+            }
+
+            try(RandomAccessFile raf = new RandomAccessFile(temp, "rw")) {
+                raf.seek(12);
+                raf.writeInt(newOffsets.size());
+                raf.seek(24);
+                raf.writeLong(termTableOffset);
+            }
+
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch(AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            return true;
+        } catch(IOException e) {
+            System.err.println("Failed to write search index.");
+            e.printStackTrace();
+            temp.delete();
+        }
+
+        return false;
+    }
+
+    /**
+     * Opens the loaded index file at its first term.
+     * @return A stream positioned at the first term.
+     * @throws IOException If the index file could not be opened.
+     */
+    private DataInputStream openTerms() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(new File(dir, INDEX_FILE)), 65536));
+
+        long skip = termOffsets[0];
+        while(skip > 0) {
+            long skipped = in.skip(skip);
+            if(skipped <= 0) throw new EOFException();
+            skip -= skipped;
+        }
+
+        return in;
+    }
+
+    /**
+     * Gets the postings of a term, from both the index file and the changed tickets. Documents of
+     *  the changed tickets are numbered after those of the index file.
+     * @param channel The index file.
+     * @param term The term.
+     * @return The postings of the term, which are empty if it isn't in any ticket.
+     * @throws IOException If the index file could not be read.
+     */
+    private Postings lookup(FileChannel channel, String term) throws IOException {
+        Postings postings = new Postings();
+        byte[] key = term.getBytes(StandardCharsets.UTF_8);
+
+        int low = 0;
+        int high = termCount - 1;
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            long offset = termOffsets[mid];
+
+            byte[] found = new byte[read(channel, offset, 2).getShort() & 0xFFFF];
+            read(channel, offset + 2, found.length).get(found);
+
+            int order = compareTerms(found, key);
+            if(order < 0) {
+                low = mid + 1;
+            } else if(order > 0) {
+                high = mid - 1;
+            } else {
+                ByteBuffer sizes = read(channel, offset + 2 + found.length, 8);
+                int df = sizes.getInt();
+                byte[] bytes = new byte[sizes.getInt()];
+                read(channel, offset + 2 + found.length + 8, bytes.length).get(bytes);
+
+                PostingsReader reader = new PostingsReader(bytes, df);
+                while(reader.next()) {
+                    if(!stale.get(reader.doc)) postings.add(reader.doc, reader);
+                }
+                break;
+            }
+        }
+
+        PostingsBuilder changedPostings = changed.terms.get(term);
+        if(changedPostings != null) {
+            PostingsReader reader = changedPostings.reader();
+            while(reader.next()) postings.add(docCount + reader.doc, reader);
+        }
+
+        return postings;
+    }
+
+    /**
+     * Reads part of a file.
+     * @param channel The file.
+     * @param offset Where to start reading.
+     * @param length How many bytes to read.
+     * @return A buffer holding the bytes, ready to be read.
+     * @throws IOException If the file could not be read, or ended first.
+     */
+    private static ByteBuffer read(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+
+        while(buffer.hasRemaining()) {
+            if(channel.read(buffer, offset + buffer.position()) < 0) throw new EOFException();
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Gets the number of terms in a document.
+     * @param doc The document, which is one of the changed tickets if it is at least {@link #docCount}.
+     * @return The number of terms in the document.
+     */
+    private int getLength(int doc) {
+        if(doc >= docCount) return changed.lengths[doc - docCount];
+
+        return lengths[doc];
+    }
+
+    /**
+     * Gets the MD5 ID of a document.
+     * @param doc The document, which is one of the changed tickets if it is at least {@link #docCount}.
+     * @return The MD5 ID of the document.
+     */
+    private String getMD5ID(int doc) {
+        if(doc >= docCount) return changed.md5IDs.get(doc - docCount);
+
+        char[] md5ID = new char[32];
+        for(int i = 0; i < 16; i++) {
+            int b = docTable[doc * DOC_SIZE + i] & 0xFF;
+
+            md5ID[i * 2] = Character.forDigit(b >> 4, 16);
+            md5ID[i * 2 + 1] = Character.forDigit(b & 0xF, 16);
+        }
+
+        return new String(md5ID);
+    }
+
+    /**
+     * Gets the total number of terms in the documents of the index file that are out of date.
+     * @return The total number of terms in the stale documents.
+     */
+    private long staleLength() {
+        long length = 0;
+        for(int doc = stale.nextSetBit(0); doc >= 0; doc = stale.nextSetBit(doc + 1)) length += getLength(doc);
+
+        return length;
+    }
+
+    /**
+     * Finds the document of a ticket in the index file.
+     * @param md5ID The MD5 ID of the ticket.
+     * @return The document, or -1 if the ticket isn't in the index file.
+     */
+    private int findDoc(String md5ID) {
+        byte[] key = toBytes(md5ID);
+        if(key == null) return -1;
+
+        int low = 0;
+        int high = docCount - 1;
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+
+            int order = 0;
+            for(int i = 0; i < 16 && order == 0; i++) order = (docTable[mid * DOC_SIZE + i] & 0xFF) - (key[i] & 0xFF);
+
+            if(order < 0) low = mid + 1;
+            else if(order > 0) high = mid - 1;
+            else return mid;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Converts an MD5 ID to its raw bytes.
+     * @param md5ID The MD5 ID.
+     * @return The 16 bytes of the MD5 ID, or null if it isn't a valid MD5 ID.
+     */
+    private static byte[] toBytes(String md5ID) {
+        if(md5ID.length() != 32) return null;
+
+        byte[] bytes = new byte[16];
+        for(int i = 0; i < 16; i++) {
+            int high = Character.digit(md5ID.charAt(i * 2), 16);
+            int low = Character.digit(md5ID.charAt(i * 2 + 1), 16);
+            if(high < 0 || low < 0) return null;
+
+            bytes[i] = (byte)((high << 4) | low);
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Compares two terms by their UTF-8 bytes, which orders them by code point.
+     * @param a The first term.
+     * @param b The second term.
+     * @return Less than 0 if {@code a} comes first, more than 0 if {@code b} does, and 0 if they are equal.
+     */
+    private static int compareTerms(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+
+        for(int i = 0; i < length; i++) {
+            int order = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if(order != 0) return order;
+        }
+
+        return a.length - b.length;
+    }
+
+    /**
+     * Splits text into terms.
+     * @param text The text to split.
+     * @return Every term in the text, in order.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<String>();
+        addTokens(text, terms);
+
+        return terms;
+    }
+
+    /**
+     * Splits text into terms, which are lowercase runs of letters and digits.
+     * @param text The text to split, which may be null.
+     * @param terms The list to add the terms to, in order.
+     */
+    private static void addTokens(String text, List<String> terms) {
+        if(text == null) return;
+
+        int start = -1;
+        for(int i = 0; i <= text.length(); ) {
+            int c = i < text.length() ? text.codePointAt(i) : ' ';
+
+            if(Character.isLetterOrDigit(c)) {
+                if(start < 0) start = i;
+            } else if(start >= 0) {
+                if(text.codePointCount(start, i) <= MAX_TERM_LENGTH) {
+                    terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                }
+
+                start = -1;
+            }
+
+            i += i < text.length() ? Character.charCount(c) : 1;
+        }
+    }
+
+    /**
+     * Splits a query into clauses. Each word is a clause of its own, and each quoted phrase is a
+     *  single clause of all of its words.
+     * @param query The query.
+     * @return The clauses of the query, leaving out any without words.
+     */
+    public static List<List<String>> parseQuery(String query) {
+        List<List<String>> clauses = new ArrayList<List<String>>();
+        String[] parts = query.split("\"", -1);
+
+        // Every other part is inside quotes, and an unterminated quote runs to the end
+        for(int i = 0; i < parts.length; i++) {
+            List<String> terms = tokenize(parts[i]);
+
+            if(i % 2 == 1) {
+                if(!terms.isEmpty()) clauses.add(terms);
+            } else {
+                for(String term : terms) clauses.add(Collections.singletonList(term));
+            }
+        }
+
+        return clauses;
+    }
+
+    /**
+     * Records that a ticket changed, so that it is read again on the next search.
+     * @param md5ID The MD5 ID of the ticket.
+     */
+    public static void ticketChanged(String md5ID) {
+        ticketsChanged(Collections.singleton(md5ID));
+    }
+
+    /**
+     * Records that some files in the copied project repository changed, such as after a sync, so
+     *  that the tickets they belong to are read again on the next search.
+     * @param paths The paths of the files, relative to the copied project repository.
+     */
+    public static void filesChanged(Collection<String> paths) {
+        Set<String> md5IDs = new LinkedHashSet<String>();
+
+        for(String path : paths) {
+            for(String part : path.split("[/\\\\]")) {
+                if(part.endsWith(".ticket")) {
+                    md5IDs.add(part.substring(0, part.length() - ".ticket".length()));
+                } else if(part.endsWith(FileUtil.COMMENTS_SUFFIX)) {
+                    md5IDs.add(part.substring(0, part.length() - FileUtil.COMMENTS_SUFFIX.length()));
+                }
+            }
+        }
+
+        if(!md5IDs.isEmpty()) ticketsChanged(md5IDs);
+    }
+
+    /**
+     * Records that some tickets changed, so that they are read again on the next search.
+     * <p>
+     * Nothing is recorded if the index hasn't been built.
+     * @param md5IDs The MD5 IDs of the tickets.
+     */
+    public static synchronized void ticketsChanged(Collection<String> md5IDs) {
+        File journal;
+        try {
+            journal = new File(FileUtil.getProjectTicketDir(), JOURNAL_FILE);
+        } catch(IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        if(!journal.exists()) return;
+
+        StringBuilder lines = new StringBuilder();
+        for(String md5ID : md5IDs) lines.append(md5ID).append('\n');
+
+        try(FileChannel channel = FileChannel.open(journal.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            FileLock lock = channel.lock();
+            try {
+                channel.write(ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8)));
+            } finally {
+                lock.release();
+            }
+        } catch(IOException e) {
+            System.err.println("Failed to record changed tickets for the search index.");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Throws away the index, so that it is built from scratch on the next search. Used when it isn't
+     *  known which tickets changed.
+     */
+    public static void invalidate() {
+        File dir;
+        try {
+            dir = FileUtil.getProjectTicketDir();
+        } catch(IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        synchronized(INDEX_LOCK) {
+            FileLock lock = lockIndex(dir);
+            if(lock == null) return;
+
+            try {
+                // The journal goes first, so that nothing relies on the old index while it is removed
+                Files.deleteIfExists(new File(dir, JOURNAL_FILE).toPath());
+                Files.deleteIfExists(new File(dir, INDEX_FILE).toPath());
+            } catch(IOException e) {
+                e.printStackTrace();
+            } finally {
+                unlockIndex(lock);
+            }
+        }
+    }
+
+    /**
+     * Locks {@link #LOCK_FILE}, waiting for any other process holding it. Must be called while
+     *  holding {@link #INDEX_LOCK}.
+     * @param dir The directory containing the tickets.
+     * @return The lock, to pass to {@link #unlockIndex(FileLock)}, or null if it could not be taken.
+     */
+    private static FileLock lockIndex(File dir) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(new File(dir, LOCK_FILE).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            return channel.lock();
+        } catch(IOException e) {
+            System.err.println("Failed to lock the search index.");
+            e.printStackTrace();
+
+            if(channel != null) {
+                try {
+                    channel.close();
+                } catch(IOException e2) {
+                    e2.printStackTrace();
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Releases a lock taken with {@link #lockIndex(File)}.
+     * @param lock The lock.
+     */
+    private static void unlockIndex(FileLock lock) {
+        // Closing the channel releases the lock
+        try {
+            lock.channel().close();
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Creates the journal if it doesn't exist.
+     * @param dir The directory containing the tickets.
+     * @return The length of the journal, or -1 if it could not be created.
+     */
+    private static synchronized long createJournal(File dir) {
+        try(FileChannel channel = FileChannel.open(new File(dir, JOURNAL_FILE).toPath(), StandardOpenOption.CREATE,
+                                                   StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock();
+            try {
+                return channel.size();
+            } finally {
+                lock.release();
+            }
+        } catch(IOException e) {
+            System.err.println("Failed to create the search index journal.");
+            e.printStackTrace();
+        }
+
+        return -1;
+    }
+
+    /**
+     * Reads the MD5 IDs of every ticket in the journal.
+     * @param dir The directory containing the tickets.
+     * @return The MD5 IDs, or null if the journal could not be read.
+     */
+    private static synchronized Set<String> readJournal(File dir) {
+        Set<String> md5IDs = new HashSet<String>();
+
+        try(FileChannel channel = FileChannel.open(new File(dir, JOURNAL_FILE).toPath(), StandardOpenOption.READ,
+                                                   StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock();
+            try {
+                String contents = new String(read(channel, 0, (int)channel.size()).array(), StandardCharsets.UTF_8);
+
+                for(String line : contents.split("\n")) {
+                    if(line.length() == 32 && toBytes(line) != null) md5IDs.add(line);
+                }
+
+                return md5IDs;
+            } finally {
+                lock.release();
+            }
+        } catch(IOException e) {
+            System.err.println("Failed to read the search index journal.");
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    /**
+     * Removes the start of the journal once it is part of the index file, keeping whatever was
+     *  recorded since.
+     * @param dir The directory containing the tickets.
+     * @param length How many bytes to remove from the start of the journal.
+     */
+    private static synchronized void dropJournal(File dir, long length) {
+        try(FileChannel channel = FileChannel.open(new File(dir, JOURNAL_FILE).toPath(), StandardOpenOption.READ,
+                                                   StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock();
+            try {
+                // Another process may have already cleared it
+                ByteBuffer rest = read(channel, length, (int)Math.max(0, channel.size() - length));
+
+                channel.truncate(0);
+                channel.write(rest, 0);
+            } finally {
+                lock.release();
+            }
+        } catch(IOException e) {
+            System.err.println("Failed to clear the search index journal.");
+            e.printStackTrace();
+        }
+    }
+}
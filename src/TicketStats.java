@@ -0,0 +1,504 @@
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.IsoFields;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Counts, ages and comment counts of a set of tickets, grouped by any of their status, priority,
+ *  type, author and when they were created.
+ * <p>
+ * The statistics are worked out from the columns of a {@link TicketColumns} store, so no ticket is
+ *  ever read into a {@link Ticket}. Each row is put into the group for its values of the fields being
+ *  grouped by, and each group keeps its count, the age of each of its tickets for percentiles, and the
+ *  total of its known comment counts. Rows whose comments haven't been counted (see
+ *  {@link FileUtil#countComments(TicketColumns)}) are left out of the comment statistics.
+ *
+ * @author Tyler Robbins
+ * @version 1.0
+ * @since 1.2
+ */
+public class TicketStats {
+    /**
+     * A field tickets can be grouped by.
+     */
+    public enum Field {
+        STATUS, PRIORITY, TYPE, AUTHOR, DAY, WEEK, MONTH, YEAR;
+
+        /**
+         * Parses a field by its name, ignoring case.
+         * @param name The name of the field.
+         * @return The field.
+         * @throws IllegalArgumentException If there is no field with that name.
+         */
+        public static Field parse(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch(IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown field " + name + ", must be one of " + Arrays.toString(values()));
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * The smallest number of comments in each bucket of {@link #getCommentDistribution()}.
+     */
+    private static final int[] COMMENT_BUCKETS = { 0, 1, 2, 5, 10 };
+
+    /**
+     * How many milliseconds are in a day.
+     */
+    private static final double DAY_MILLIS = 24 * 60 * 60 * 1000.0;
+
+    /**
+     * The tickets with the same values of the fields being grouped by.
+     */
+    public static class Group {
+        /**
+         * The values of the fields being grouped by, as they are shown.
+         */
+        private List<String> labels;
+
+        /**
+         * The age of each ticket in the group in milliseconds, sorted.
+         */
+        private long[] ages;
+
+        /**
+         * How many tickets in the group have had their comments counted.
+         */
+        private int commented;
+
+        /**
+         * How many comments the tickets that have had their comments counted have in total.
+         */
+        private long comments;
+
+        /**
+         * Creates a group.
+         * @param labels The values of the fields being grouped by, as they are shown.
+         * @param ages The age of each ticket in the group in milliseconds, which will be sorted.
+         * @param commented How many tickets in the group have had their comments counted.
+         * @param comments How many comments those tickets have in total.
+         */
+        private Group(List<String> labels, long[] ages, int commented, long comments) {
+            this.labels = labels;
+            this.ages = ages;
+            this.commented = commented;
+            this.comments = comments;
+
+            Arrays.sort(ages);
+        }
+
+        /**
+         * Gets the values of the fields being grouped by.
+         * @return An unmodifiable List of the values, in the same order as the fields.
+         */
+        public List<String> getLabels() {
+            return Collections.unmodifiableList(labels);
+        }
+
+        /**
+         * Gets how many tickets are in the group.
+         * @return How many tickets are in the group.
+         */
+        public int getCount() {
+            return ages.length;
+        }
+
+        /**
+         * Gets a percentile of the ages of the tickets in the group, by the nearest rank.
+         * @param percentile The percentile, from 0 to 100.
+         * @return The age at that percentile, in days, or 0 if the group is empty.
+         */
+        public double getAge(double percentile) {
+            if(ages.length == 0) return 0;
+
+            int rank = (int)Math.ceil(percentile / 100 * ages.length);
+            return ages[Math.min(ages.length, Math.max(rank, 1)) - 1] / DAY_MILLIS;
+        }
+
+        /**
+         * Gets how many tickets in the group have had their comments counted.
+         * @return How many tickets have a known number of comments.
+         */
+        public int getCommentedCount() {
+            return commented;
+        }
+
+        /**
+         * Gets how many comments the tickets in the group have in total.
+         * @return The total number of comments, of the tickets which have had them counted.
+         */
+        public long getCommentCount() {
+            return comments;
+        }
+
+        /**
+         * Gets how many comments the tickets in the group have on average.
+         * @return The mean number of comments, of the tickets which have had them counted, or 0 if none have.
+         */
+        public double getMeanComments() {
+            return commented == 0 ? 0 : (double)comments / commented;
+        }
+    }
+
+    /**
+     * The largest table that is used to number groups directly by their key before falling back to a map.
+     */
+    private static final int MAX_TABLE_SIZE = 1 << 22;
+
+    /**
+     * The fields the tickets are grouped by.
+     */
+    private List<Field> fields;
+
+    /**
+     * Every group, largest first.
+     */
+    private List<Group> groups;
+
+    /**
+     * Every ticket in one group.
+     */
+    private Group total;
+
+    /**
+     * How many tickets have each number of comments in {@link #COMMENT_BUCKETS}.
+     */
+    private int[] commentDistribution;
+
+    /**
+     * Works out the statistics of the tickets in a store.
+     * <p>
+     * Each field is turned into a small number for every row, and the rows are numbered by group one
+     *  field at a time by combining the group so far with the next field. Those numbers are then used
+     *  as indexes into arrays of counts and totals, so nothing is looked up by value per row.
+     * @param columns The store of the tickets.
+     * @param fields The fields to group the tickets by, which may be empty.
+     * @param now The time to work out the ages of the tickets from, in milliseconds since the epoch.
+     */
+    public TicketStats(TicketColumns columns, List<Field> fields, long now) {
+        this.fields = new ArrayList<Field>(fields);
+
+        int size = columns.size();
+        int[] days = null;
+
+        for(Field field : fields) {
+            if(isDate(field)) {
+                days = localDays(columns, ZoneId.systemDefault());
+                break;
+            }
+        }
+
+        // The group of each row, and the first row of each group to label it with
+        int[] groupOf = new int[size];
+        int groupCount = size == 0 ? 0 : 1;
+        int[] firstRows = new int[groupCount];
+
+        for(Field field : fields) {
+            long[] buckets = new long[size];
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+
+            for(int row = 0; row < size; row++) {
+                buckets[row] = bucket(columns, row, field, days);
+                min = Math.min(min, buckets[row]);
+                max = Math.max(max, buckets[row]);
+            }
+
+            long radix = size == 0 ? 1 : max - min + 1;
+            int[] table = null;
+            Map<Long, Integer> numbers = null;
+            int[] nextFirstRows = new int[(int)Math.min(size, groupCount * radix)];
+            int next = 0;
+
+            if(groupCount * radix <= MAX_TABLE_SIZE) {
+                table = new int[(int)(groupCount * radix)];
+                Arrays.fill(table, -1);
+            } else {
+                numbers = new HashMap<Long, Integer>();
+            }
+
+            for(int row = 0; row < size; row++) {
+                long key = groupOf[row] * radix + (buckets[row] - min);
+                int group;
+
+                if(table != null) {
+                    group = table[(int)key];
+                } else {
+                    Integer existing = numbers.get(key);
+                    group = existing == null ? -1 : existing;
+                }
+
+                if(group < 0) {
+                    group = next++;
+                    nextFirstRows[group] = row;
+
+                    if(table != null) table[(int)key] = group;
+                    else numbers.put(key, group);
+                }
+
+                groupOf[row] = group;
+            }
+
+            groupCount = next;
+            firstRows = Arrays.copyOf(nextFirstRows, groupCount);
+        }
+
+        int[] counts = new int[groupCount];
+        int[] commented = new int[groupCount];
+        long[] comments = new long[groupCount];
+        long[] ages = new long[size];
+
+        commentDistribution = new int[COMMENT_BUCKETS.length];
+
+        for(int row = 0; row < size; row++) {
+            int group = groupOf[row];
+            int commentCount = columns.getCommentCount(row);
+
+            counts[group]++;
+            ages[row] = Math.max(0, now - columns.getDate(row));
+
+            if(commentCount >= 0) {
+                commented[group]++;
+                comments[group] += commentCount;
+
+                int bucket = COMMENT_BUCKETS.length - 1;
+                while(commentCount < COMMENT_BUCKETS[bucket]) bucket--;
+
+                commentDistribution[bucket]++;
+            }
+        }
+
+        long[][] groupAges = new long[groupCount][];
+        for(int group = 0; group < groupCount; group++) groupAges[group] = new long[counts[group]];
+
+        int[] filled = new int[groupCount];
+        for(int row = 0; row < size; row++) groupAges[groupOf[row]][filled[groupOf[row]]++] = ages[row];
+
+        int totalCommented = 0;
+        long totalComments = 0;
+        groups = new ArrayList<Group>(groupCount);
+
+        for(int group = 0; group < groupCount; group++) {
+            groups.add(new Group(labels(columns, firstRows[group], days), groupAges[group], commented[group], comments[group]));
+
+            totalCommented += commented[group];
+            totalComments += comments[group];
+        }
+
+        // The groups' ages are already sorted, and sorting runs of sorted values only has to merge them
+        int offset = 0;
+        for(long[] sorted : groupAges) {
+            System.arraycopy(sorted, 0, ages, offset, sorted.length);
+            offset += sorted.length;
+        }
+
+        total = new Group(Collections.<String>emptyList(), ages, totalCommented, totalComments);
+
+        groups.sort(Comparator.comparingInt((Group g) -> -g.getCount()).thenComparing(g -> String.join("\t", g.labels)));
+    }
+
+    /**
+     * Checks whether a field buckets tickets by when they were created.
+     * @param field The field.
+     * @return true if the field is a date bucket.
+     */
+    private static boolean isDate(Field field) {
+        return field == Field.DAY || field == Field.WEEK || field == Field.MONTH || field == Field.YEAR;
+    }
+
+    /**
+     * Works out the day each ticket was created in a time zone.
+     * <p>
+     * Rather than converting each date on its own, the offset changes of the zone between the first
+     *  and last dates are looked up once, and each date is then given the offset it falls after.
+     * @param columns The store.
+     * @param zone The time zone.
+     * @return The day each row was created, as a count of days since the epoch.
+     */
+    private static int[] localDays(TicketColumns columns, ZoneId zone) {
+        int size = columns.size();
+        int[] days = new int[size];
+        if(size == 0) return days;
+
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+
+        for(int row = 0; row < size; row++) {
+            min = Math.min(min, columns.getDate(row));
+            max = Math.max(max, columns.getDate(row));
+        }
+
+        ZoneRules rules = zone.getRules();
+        List<ZoneOffsetTransition> transitions = new ArrayList<ZoneOffsetTransition>();
+
+        ZoneOffsetTransition transition = rules.nextTransition(Instant.ofEpochMilli(min));
+        while(transition != null && transition.toEpochSecond() * 1000 <= max) {
+            transitions.add(transition);
+            transition = rules.nextTransition(transition.getInstant());
+        }
+
+        // The offset at starts[i] and after is offsets[i]
+        long[] starts = new long[transitions.size() + 1];
+        long[] offsets = new long[transitions.size() + 1];
+
+        starts[0] = Long.MIN_VALUE;
+        offsets[0] = rules.getOffset(Instant.ofEpochMilli(min)).getTotalSeconds() * 1000L;
+
+        for(int i = 0; i < transitions.size(); i++) {
+            starts[i + 1] = transitions.get(i).toEpochSecond() * 1000;
+            offsets[i + 1] = transitions.get(i).getOffsetAfter().getTotalSeconds() * 1000L;
+        }
+
+        for(int row = 0; row < size; row++) {
+            long date = columns.getDate(row);
+            int i = Arrays.binarySearch(starts, date);
+            if(i < 0) i = -i - 2;
+
+            days[row] = (int)Math.floorDiv(date + offsets[i], (long)DAY_MILLIS);
+        }
+
+        return days;
+    }
+
+    /**
+     * Gets the value of a field of a row as a number, where the numbers of date buckets count up by one
+     *  from one bucket to the next.
+     * @param columns The store.
+     * @param row The row.
+     * @param field The field.
+     * @param days The day each row was created, from {@link #localDays(TicketColumns, ZoneId)}.
+     * @return The ordinal of the status, priority or type, the ID of the author, or the date bucket.
+     */
+    private static long bucket(TicketColumns columns, int row, Field field, int[] days) {
+        switch(field) {
+            case STATUS:
+                return columns.getStatus(row).ordinal();
+            case PRIORITY:
+                return columns.getPriority(row).ordinal();
+            case TYPE:
+                return columns.getType(row).ordinal();
+            case AUTHOR:
+                return columns.getAuthorID(row);
+            case DAY:
+                return days[row];
+            case WEEK:
+                // Weeks start on a Monday, and the epoch was a Thursday
+                return Math.floorDiv(days[row] + 3, 7);
+            case MONTH:
+                LocalDate date = LocalDate.ofEpochDay(days[row]);
+                return date.getYear() * 12L + date.getMonthValue() - 1;
+            default:
+                return LocalDate.ofEpochDay(days[row]).getYear();
+        }
+    }
+
+    /**
+     * Gets the labels of the values of the fields being grouped by of a row.
+     * @param columns The store.
+     * @param row The row.
+     * @param days The day each row was created, from {@link #localDays(TicketColumns, ZoneId)}.
+     * @return The label of each value, in the same order as the fields.
+     */
+    private List<String> labels(TicketColumns columns, int row, int[] days) {
+        List<String> labels = new ArrayList<String>(fields.size());
+
+        for(Field field : fields) {
+            switch(field) {
+                case STATUS:
+                    labels.add(columns.getStatus(row).toString());
+                    break;
+                case PRIORITY:
+                    labels.add(columns.getPriority(row).toString());
+                    break;
+                case TYPE:
+                    labels.add(columns.getType(row).toString());
+                    break;
+                case AUTHOR:
+                    labels.add(columns.getAuthor(row));
+                    break;
+                case DAY:
+                    labels.add(LocalDate.ofEpochDay(days[row]).toString());
+                    break;
+                case WEEK:
+                    LocalDate date = LocalDate.ofEpochDay(days[row]);
+                    labels.add(String.format("%04d-W%02d", date.get(IsoFields.WEEK_BASED_YEAR), date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR)));
+                    break;
+                case MONTH:
+                    labels.add(LocalDate.ofEpochDay(days[row]).toString().substring(0, 7));
+                    break;
+                default:
+                    labels.add(String.valueOf(LocalDate.ofEpochDay(days[row]).getYear()));
+                    break;
+            }
+        }
+
+        return labels;
+    }
+
+    /**
+     * Gets the fields the tickets are grouped by.
+     * @return An unmodifiable List of the fields.
+     */
+    public List<Field> getFields() {
+        return Collections.unmodifiableList(fields);
+    }
+
+    /**
+     * Gets every group, with the most tickets first and ties in order of their labels.
+     * @return An unmodifiable List of the groups.
+     */
+    public List<Group> getGroups() {
+        return Collections.unmodifiableList(groups);
+    }
+
+    /**
+     * Gets a group of every ticket.
+     * @return A group with no labels, containing every ticket.
+     */
+    public Group getTotal() {
+        return total;
+    }
+
+    /**
+     * Gets how many tickets have each number of comments, of those which have had their comments counted.
+     * @return How many tickets are in each bucket named by {@link #getCommentBucketLabels()}.
+     */
+    public int[] getCommentDistribution() {
+        return commentDistribution.clone();
+    }
+
+    /**
+     * Gets the names of the buckets of {@link #getCommentDistribution()}.
+     * @return The name of each bucket, such as <code>2-4</code> or <code>10+</code>.
+     */
+    public static String[] getCommentBucketLabels() {
+        String[] labels = new String[COMMENT_BUCKETS.length];
+
+        for(int i = 0; i < COMMENT_BUCKETS.length; i++) {
+            int from = COMMENT_BUCKETS[i];
+
+            if(i == COMMENT_BUCKETS.length - 1) labels[i] = from + "+";
+            else if(COMMENT_BUCKETS[i + 1] == from + 1) labels[i] = String.valueOf(from);
+            else labels[i] = from + "-" + (COMMENT_BUCKETS[i + 1] - 1);
+        }
+
+        return labels;
+    }
+}
@@ -0,0 +1,301 @@
+import java.awt.Dimension;
+import java.awt.EventQueue;
+import java.awt.Font;
+import java.awt.Insets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JComponent;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.table.DefaultTableModel;
+
+/**
+ * A summary of a set of tickets, counting them and their ages and comments grouped by one of their
+ *  fields.
+ * <p>
+ * The summary is worked out from the index entries of the tickets, in the background so that the
+ *  window stays responsive. Comments are only counted when asked for, since they have to be read from
+ *  every ticket.
+ *
+ * @author Tyler Robbins
+ * @version 1.0
+ * @since 1.2
+ */
+public class TicketStatsGui extends JDialog {
+    /**
+     * Done only because eclipse wouldn't shut up otherwise.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The label for the group by combo box.
+     */
+    private JLabel groupByLabel;
+
+    /**
+     * The combo box of the field to group the tickets by.
+     */
+    private JComboBox<TicketStats.Field> groupByComboBox;
+
+    /**
+     * The check box to also count the comments on every ticket.
+     */
+    private JCheckBox countCommentsCheckBox;
+
+    /**
+     * The label showing how many tickets there are.
+     */
+    private JLabel countLabel;
+
+    /**
+     * The label showing the percentiles of the ages of every ticket.
+     */
+    private JLabel ageLabel;
+
+    /**
+     * The label showing how many comments the tickets have.
+     */
+    private JLabel commentsLabel;
+
+    /**
+     * The table of the groups.
+     */
+    private JTable groupsTable;
+
+    /**
+     * The scrollpane for the groups table.
+     */
+    private JScrollPane groupsTableScrollPane;
+
+    /**
+     * The columns of the tickets being summarized.
+     */
+    private TicketColumns ticketColumns;
+
+    /**
+     * Whether the comments of every ticket in {@link #ticketColumns} have been counted.
+     */
+    private boolean commentsCounted = false;
+
+    /**
+     * An array of all the columns in the groups table after the group's label.
+     */
+    public final String[] columns = {
+            "Count",
+            "Age p50",
+            "p90",
+            "p99",
+            "Max",
+            "Comments"
+    };
+
+    /**
+     * Constructs a TicketStatsGui, initializes the UI, and starts working out the summary.
+     * @param entries The index entries of the tickets to summarize.
+     */
+    public TicketStatsGui(List<TicketIndex.Entry> entries) {
+        ticketColumns = TicketColumns.of(entries);
+
+        initUI();
+        setModalityType(JDialog.DEFAULT_MODALITY_TYPE);
+
+        updateStats();
+    }
+
+    /**
+     * Works out the summary for the currently selected options in the background, then shows it.
+     */
+    public void updateStats() {
+        TicketStats.Field field = (TicketStats.Field)groupByComboBox.getSelectedItem();
+        boolean countComments = countCommentsCheckBox.isSelected();
+
+        groupByComboBox.setEnabled(false);
+        countCommentsCheckBox.setEnabled(false);
+        countLabel.setText("Working...");
+
+        new Thread(() -> {
+            // Counting fills in the columns, so it only has to be done once. The options are disabled
+            //  until this finishes, so only one of these threads is ever using the columns
+            if(countComments && !commentsCounted) {
+                int failed = FileUtil.countComments(ticketColumns);
+                if(failed > 0) System.err.println("Failed to count the comments of " + failed + " tickets.");
+
+                commentsCounted = true;
+            }
+
+            TicketStats stats = new TicketStats(ticketColumns, Collections.singletonList(field), System.currentTimeMillis());
+
+            EventQueue.invokeLater(() -> {
+                showStats(stats, countComments);
+
+                groupByComboBox.setEnabled(true);
+                countCommentsCheckBox.setEnabled(true);
+            });
+        }, "Ticket stats").start();
+    }
+
+    /**
+     * Shows a summary in the labels and groups table.
+     * @param stats The summary.
+     * @param showComments Whether to show the comment counts.
+     */
+    private void showStats(TicketStats stats, boolean showComments) {
+        TicketStats.Group total = stats.getTotal();
+
+        countLabel.setText("Tickets: " + total.getCount());
+        ageLabel.setText(String.format("Age in days: p50 %.1f, p90 %.1f, p99 %.1f, max %.1f",
+                                       total.getAge(50), total.getAge(90), total.getAge(99), total.getAge(100)));
+
+        if(showComments) {
+            String[] buckets = TicketStats.getCommentBucketLabels();
+            int[] distribution = stats.getCommentDistribution();
+            StringBuilder text = new StringBuilder(String.format("Comments: %.2f mean;", total.getMeanComments()));
+
+            for(int i = 0; i < buckets.length; i++) text.append(" ").append(buckets[i]).append(": ").append(distribution[i]);
+
+            commentsLabel.setText(text.toString());
+        } else {
+            commentsLabel.setText("Comments: not counted");
+        }
+
+        List<String> header = new ArrayList<String>();
+        header.add(stats.getFields().get(0).toString());
+        for(String column : columns) header.add(column);
+
+        DefaultTableModel model = new DefaultTableModel(header.toArray(), 0);
+
+        for(TicketStats.Group group : stats.getGroups()) {
+            model.addRow(new Object[] {
+                    group.getLabels().get(0),
+                    group.getCount(),
+                    String.format("%.1f", group.getAge(50)),
+                    String.format("%.1f", group.getAge(90)),
+                    String.format("%.1f", group.getAge(99)),
+                    String.format("%.1f", group.getAge(100)),
+                    showComments ? String.format("%d (%.2f)", group.getCommentCount(), group.getMeanComments()) : ""
+            });
+        }
+
+        groupsTable.setModel(model);
+    }
+
+    /**
+     * Builds all of the components for this UI.
+     */
+    public void buildComponents() {
+        buildLabels();
+        buildComboBoxes();
+        buildCheckBoxes();
+        buildTables();
+        buildScrollPanes();
+    }
+
+    /**
+     * Builds all of the labels for this UI.
+     */
+    public void buildLabels() {
+        groupByLabel = new JLabel("Group by: ");
+        groupByLabel.setFont(new Font("Courier", Font.PLAIN, 15));
+
+        countLabel = new JLabel();
+        countLabel.setFont(new Font("Courier", Font.PLAIN, 15));
+        countLabel.setPreferredSize(new Dimension(560, 20));
+
+        ageLabel = new JLabel();
+        ageLabel.setFont(new Font("Courier", Font.PLAIN, 15));
+        ageLabel.setPreferredSize(new Dimension(560, 20));
+
+        commentsLabel = new JLabel();
+        commentsLabel.setFont(new Font("Courier", Font.PLAIN, 15));
+        commentsLabel.setPreferredSize(new Dimension(560, 20));
+    }
+
+    /**
+     * Builds all of the combo boxes for this UI.
+     */
+    public void buildComboBoxes() {
+        groupByComboBox = new JComboBox<TicketStats.Field>(TicketStats.Field.values());
+        groupByComboBox.setSelectedItem(TicketStats.Field.STATUS);
+        groupByComboBox.addActionListener(event -> updateStats());
+    }
+
+    /**
+     * Builds all of the check boxes for this UI.
+     */
+    public void buildCheckBoxes() {
+        countCommentsCheckBox = new JCheckBox("Count comments", false);
+        countCommentsCheckBox.setFont(new Font("Courier", Font.PLAIN, 15));
+        countCommentsCheckBox.setToolTipText("Reads every ticket to count its comments, which can take a while.");
+        countCommentsCheckBox.addActionListener(event -> updateStats());
+    }
+
+    /**
+     * Builds all of the tables for this UI.
+     */
+    protected void buildTables() {
+        groupsTable = new JTable() {
+            private static final long serialVersionUID = 1L;
+
+            public boolean isCellEditable(int r, int c) {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Builds all of the scroll panes for this UI.
+     */
+    public void buildScrollPanes() {
+        groupsTableScrollPane = new JScrollPane(groupsTable);
+        groupsTableScrollPane.setPreferredSize(new Dimension(560, 230));
+    }
+
+    /**
+     * Initializes the UI.
+     * <p>
+     * Builds the components, sets the window dimensions, places all components, then finishes
+     *  setting the window properties.
+     */
+    public void initUI() {
+        buildComponents();
+
+        getContentPane().setLayout(null);
+
+        addComponent(groupByLabel, 10, 14);
+        addComponent(groupByComboBox, 20 + groupByLabel.getPreferredSize().width, 10);
+        addComponent(countCommentsCheckBox, 40 + groupByLabel.getPreferredSize().width +
+                     groupByComboBox.getPreferredSize().width, 10);
+
+        int summaryTop = 20 + groupByComboBox.getPreferredSize().height;
+        addComponent(countLabel, 10, summaryTop);
+        addComponent(ageLabel, 10, summaryTop + 25);
+        addComponent(commentsLabel, 10, summaryTop + 50);
+        addComponent(groupsTableScrollPane, 10, summaryTop + 80);
+
+        setTitle("Ticket Summary");
+        setSize(600, 400);
+        setLocationRelativeTo(null);
+        setResizable(false);
+    }
+
+    /**
+     * Adds a component to the JDialog this gui extends from.
+     * @param component The component to add.
+     * @param xPos The x position to add the component to.
+     * @param yPos The y position to add the component to.
+     */
+    public void addComponent(JComponent component, int xPos, int yPos) {
+        getContentPane().add(component);
+
+        Insets insets = getContentPane().getInsets();
+        Dimension size = component.getPreferredSize();
+
+        component.setBounds(xPos + insets.left, yPos + insets.top, size.width, size.height);
+    }
+}
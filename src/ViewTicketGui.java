@@ -12,6 +12,7 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -329,15 +330,26 @@ public class ViewTicketGui extends JDialog {
                                                           null, options, options[0]);
                 if(result == JOptionPane.YES_OPTION) {
                     try {
-                        FileUtil.writeTicket(ticket); // Rewrite the ticket to disk.
-                        GitUtil.commit(ticket.getMD5ID() + ".ticket");
+                        File ticketFile = FileUtil.getTicketFile(ticket.getMD5ID());
                         
-                        oldTicket = ticket;
+                        // New comments are appended in their own files instead of rewriting the ticket
+                        for(TicketComment tc : ticket.getComments()) {
+                            if(tc.getStoredAs() == null && !oldTicket.getComments().contains(tc)) {
+                                GitUtil.scheduleCommit(FileUtil.appendComment(ticketFile, tc));
+                            }
+                        }
+                        
+                        if(ticket.getStatus() != oldTicket.getStatus() || ticket.getPriority() != oldTicket.getPriority() ||
+                           ticket.getType() != oldTicket.getType())
+                        {
+                            // Rewrite the ticket to disk, and commit wherever it was actually written
+                            GitUtil.scheduleCommit(FileUtil.writeTicket(ticket));
+                        }
+                        
+                        oldTicket = new Ticket(ticket);
                         
                         ListTicketsGui.getInstance().updateTicketList();
                         ListTicketsGui.getInstance().updateTicketTable();
-                        
-                        oldTicket = ticket;
                     } catch(IOException e) {
                         e.printStackTrace();
                         JOptionPane.showMessageDialog(null,